@@ -1,6 +1,8 @@
 10 ' GAME OF LIFE
 20 DIM GRID1%(64, 64)
 30 DIM GRID2%(64, 64)
+40 DIM NBR%(64, 64)
+45 DIM KERNEL%(3, 3) : ARRAYFILL KERNEL%, 1 : KERNEL%(1, 1) = 0
 50 DIM TILE0%(8, 8)
 60 NROWS% = 64 : NCOLS% = 64 : TILER% = 8 : TILEC% = 8 : NITER% = 60
 70 GOSUB 5000 ' CREATE SCREEN
@@ -25,9 +27,10 @@
 230     WHILE ITER% < NITER%
 240        ARRAYCOPY GRID1%, GRID2%
 250        ITER% = ITER% + 1
+255        ARRAY2DCONV GRID1%, KERNEL%, NBR% ' COUNT NEIGHBORS
 260        FOR row% = 0 TO NROWS% - 1
 270            FOR col% = 0 TO NCOLS% - 1
-280                GOSUB 6500 ' COUNT NEIGHBORS
+280                countnbr% = NBR%(row%, col%)
 290                alive% = GRID1%(row%, col%)
 300                IF alive% = 1 AND (countnbr% < 2 OR countnbr% > 3) THEN GRID2%(row%, col%)=0 : PUT(col% * TILEC%, row% * TILER%), TILE0%
 310                IF alive% = 0 AND countnbr% = 3 THEN GRID2%(row%, col%)=1 : PUT(col% * TILEC%, row% * TILER%), TILE0%, "PSET"
@@ -56,17 +59,6 @@
 6040     NEXT C%
 6050 NEXT R%
 6060 RETURN
-6500 ' COUNT NEIGHBORS
-6510 countnbr% = 0
-6520 FOR DR% = -1 TO 1 ' ROW
-6530     FOR DC% = -1 TO 1 ' COL
-6540         ri% = row% + DR%
-6550         ci% = col% + DC%
-6560         IF DR% = 0 AND DC% = 0 THEN v% = 0 ELSE v% = 1
-6570         IF ri% >= 0 AND ri% < NROWS% AND ci% >= 0 AND ci% < NCOLS% THEN countnbr% = countnbr% + v% * GRID1%(ri%, ci%)
-6580     NEXT DC%
-6590 NEXT DR%
-6600 RETURN
 7000 ' INIT PATTERN 1 - Oscillators - Blinker (period = 2)
 7010 GRID1%(R%, C%) = 1 : GRID1%(R%, C%+1) = 1 : GRID1%(R%, C%+2) = 1
 7020 RETURN
@@ -99,6 +99,26 @@ stmt
     | array1dsortstmt
     | array2dshifthorstmt
     | array2dshiftverstmt
+    | loadcsvstmt
+    | savecsvstmt
+    | arraysavestmt
+    | arrayloadstmt
+    | saveobjstmt
+    | loadobjstmt
+    | array1dpctsstmt
+    | arrayarithstmt
+    | arrayscalestmt
+    | arrayaxpystmt
+    | arrayclampstmt
+    | matmulstmt
+    | mattransposestmt
+    | array2dconvstmt
+    | argsortstmt
+    | permutestmt
+    | array1dmergestmt
+    | groupbystmt
+    | histogramstmt
+    | hashjoinstmt
     | loadwavstmt
     | playwavstmt
     | stopwavstmt
@@ -107,6 +127,12 @@ stmt
     | liststmt
     | dictstmt
     | setstmt
+    | bitsetstmt
+    | pqueuestmt
+    | dequestmt
+    | sorteddictstmt
+    | spatialgridstmt
+    | columnliststmt
     | structstmt
     | structinstancestmt
     | func
@@ -233,6 +259,7 @@ func
     | ARRAY1DSTD LPAREN variable RPAREN                     # FuncArray1DStd
     | ARRAY1DMEDIAN LPAREN variable RPAREN                  # FuncArray1DMedian
     | ARRAY1DPCT LPAREN variable COMMA p=expr RPAREN        # FuncArray1DPct
+    | ARRAYDOT LPAREN x=variable COMMA y=variable RPAREN    # FuncArrayDot
     | ARRAY1DBINSEARCH LPAREN variable COMMA expr RPAREN    # FuncArray1DBinSearch
     | ARRAY2DFINDROW LPAREN variable COMMA
         x1=expr COMMA y1=expr COMMA x2=expr COMMA
@@ -250,11 +277,14 @@ func
     | MOUSEBUTTONRELEASED LPAREN RPAREN                     # FuncMouseButtonReleased
     | ISKEYPRESSED LPAREN expr RPAREN                       # FuncIsKeyPressed
     | SPLITDLR LPAREN str=expr COMMA regex=expr RPAREN      # FuncSplitDlr
+    | REGEXMATCH LPAREN str=expr COMMA regex=expr RPAREN    # FuncRegexMatch
+    | REGEXFINDDLR LPAREN str=expr COMMA regex=expr RPAREN  # FuncRegexFindDlr
+    | REGEXREPLACEDLR LPAREN str=expr COMMA regex=expr COMMA repl=expr RPAREN # FuncRegexReplaceDlr
     | ALLOCARRAY varsuffix LPAREN expr (COMMA expr)? RPAREN # FuncAllocArray
     ;
 
 funcname
-    : varname | GET | APPEND | PUT
+    : varname | GET | APPEND | PUT | SET | LOGAND | LOGOR | LOGXOR
     ;
 
 gosubstmt
@@ -378,7 +408,7 @@ libtagstmt
     ;
 
 dimstmt
-    : DIM varname varsuffix? LPAREN expr (COMMA expr)* RPAREN
+    : DIM varname varsuffix? LPAREN dims+=expr (COMMA dims+=expr)* RPAREN (MAPPED path=expr)?
     ;
 
 reallocstmt
@@ -608,6 +638,91 @@ array2dshiftverstmt
     : ARRAY2DSHIFTVER variable COMMA step=expr
     ;
 
+loadcsvstmt
+    : LOADCSV path=expr COMMA skip=expr (COMMA first=expr COMMA count=expr)?
+        (USING cols+=expr (COMMA cols+=expr)*)? AS variable (COMMA variable)*
+    ;
+
+savecsvstmt
+    : SAVECSV path=expr (USING headers+=expr (COMMA headers+=expr)*)? AS variable (COMMA variable)*
+    ;
+
+arraysavestmt
+    : ARRAYSAVE path=expr COMMA variable
+    ;
+
+arrayloadstmt
+    : ARRAYLOAD path=expr COMMA variable
+    ;
+
+saveobjstmt
+    : SAVEOBJ path=expr COMMA variable
+    ;
+
+loadobjstmt
+    : LOADOBJ path=expr COMMA variable
+    ;
+
+array1dpctsstmt
+    : ARRAY1DPCTS src=variable COMMA pcts=variable COMMA dst=variable
+    ;
+
+arrayarithstmt
+    : op=(ARRAYADD | ARRAYSUB | ARRAYMUL | ARRAYDIV) src1=variable COMMA src2=variable COMMA dst=variable
+    ;
+
+arrayscalestmt
+    : ARRAYSCALE src=variable COMMA alpha=expr COMMA dst=variable
+    ;
+
+arrayaxpystmt
+    : ARRAYAXPY alpha=expr COMMA x=variable COMMA y=variable
+    ;
+
+arrayclampstmt
+    : ARRAYCLAMP variable COMMA min=expr COMMA max=expr
+    ;
+
+matmulstmt
+    : MATMUL a=variable COMMA b=variable COMMA c=variable
+    ;
+
+mattransposestmt
+    : MATTRANSPOSE src=variable COMMA dst=variable
+    ;
+
+array2dconvstmt
+    : ARRAY2DCONV src=variable COMMA kernel=variable COMMA dst=variable
+    ;
+
+argsortstmt
+    : ARGSORT perm=variable COMMA argsortkey (COMMA argsortkey)*
+    ;
+
+argsortkey
+    : variable DESC?
+    ;
+
+permutestmt
+    : PERMUTE src=variable COMMA perm=variable COMMA dst=variable
+    ;
+
+array1dmergestmt
+    : ARRAY1DMERGE src1=variable COMMA src2=variable COMMA dst=variable
+    ;
+
+groupbystmt
+    : GROUPBY keys=variable COMMA values=variable COMMA outkeys=variable COMMA stats=variable
+    ;
+
+histogramstmt
+    : HISTOGRAM values=variable COMMA lo=expr COMMA hi=expr COMMA nbins=expr COMMA counts=variable
+    ;
+
+hashjoinstmt
+    : HASHJOIN left=variable COMMA right=variable COMMA leftidx=variable COMMA rightidx=variable
+    ;
+
 loadwavstmt
     : LOADWAV path=expr COMMA variable
     ;
@@ -633,13 +748,37 @@ liststmt
     ;
 
 dictstmt
-    : DICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT dictname=varname
+    : DICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT dictname=varname (MAPPED path=expr)?
     ;
 
 setstmt
     : SET RELLT (typesuffix=varsuffix) RELGT setname=varname
     ;
 
+bitsetstmt
+    : BITSET setname=varname
+    ;
+
+pqueuestmt
+    : PQUEUE RELLT (pqueuek1=varsuffix) COMMA (pqueuev1=varname|pqueuev2=varsuffix) RELGT pqueuename=varname
+    ;
+
+dequestmt
+    : DEQUE RELLT (typesuffix=varsuffix) RELGT dequename=varname
+    ;
+
+sorteddictstmt
+    : SORTEDDICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT dictname=varname
+    ;
+
+spatialgridstmt
+    : SPATIALGRID gridname=varname
+    ;
+
+columnliststmt
+    : COLUMNLIST RELLT typename=varname RELGT listname=varname
+    ;
+
 structstmt
     : STRUCT structname=varname LBRACE compositetype (COMMA compositetype)* RBRACE
     ;
@@ -650,6 +789,12 @@ compositetype
         | struct1=varname elem=varname
         | LIST RELLT (list1=varname|list2=varsuffix|DIM list3=varsuffix) RELGT elem=varname
         | SET RELLT (set1=varname|set2=varsuffix) RELGT elem=varname
+        | BITSET elem=varname
+        | PQUEUE RELLT (pqueuek1=varsuffix) COMMA (pqueuev1=varname|pqueuev2=varsuffix) RELGT elem=varname
+        | DEQUE RELLT deque2=varsuffix RELGT elem=varname
+        | SORTEDDICT RELLT (sdictk1=varsuffix) COMMA (sdictv1=varname|sdictv2=varsuffix) RELGT elem=varname
+        | SPATIALGRID elem=varname
+        | COLUMNLIST RELLT collist1=varname RELGT elem=varname
         | DICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT elem=varname)
     ;
 
@@ -668,6 +813,30 @@ SET
     : S E T
     ;
 
+BITSET
+    : B I T S E T
+    ;
+
+PQUEUE
+    : P Q U E U E
+    ;
+
+DEQUE
+    : D E Q U E
+    ;
+
+SORTEDDICT
+    : S O R T E D D I C T
+    ;
+
+SPATIALGRID
+    : S P A T I A L G R I D
+    ;
+
+COLUMNLIST
+    : C O L U M N L I S T
+    ;
+
 EQGT
     : '=' '>'
     ;
@@ -1265,6 +1434,42 @@ ARRAY1DPCT
     : A R R A Y '1' D P C T
     ;
 
+ARRAY1DPCTS
+    : A R R A Y '1' D P C T S
+    ;
+
+ARRAYADD
+    : A R R A Y A D D
+    ;
+
+ARRAYSUB
+    : A R R A Y S U B
+    ;
+
+ARRAYMUL
+    : A R R A Y M U L
+    ;
+
+ARRAYDIV
+    : A R R A Y D I V
+    ;
+
+ARRAYSCALE
+    : A R R A Y S C A L E
+    ;
+
+ARRAYAXPY
+    : A R R A Y A X P Y
+    ;
+
+ARRAYDOT
+    : A R R A Y D O T
+    ;
+
+ARRAYCLAMP
+    : A R R A Y C L A M P
+    ;
+
 ARRAY1DSORT
     : A R R A Y '1' D S O R T
     ;
@@ -1297,6 +1502,46 @@ ARRAY2DSHIFTVER
     : A R R A Y '2' D S H I F T V E R
     ;
 
+ARRAY2DCONV
+    : A R R A Y '2' D C O N V
+    ;
+
+MATMUL
+    : M A T M U L
+    ;
+
+MATTRANSPOSE
+    : M A T T R A N S P O S E
+    ;
+
+ARGSORT
+    : A R G S O R T
+    ;
+
+DESC
+    : D E S C
+    ;
+
+PERMUTE
+    : P E R M U T E
+    ;
+
+ARRAY1DMERGE
+    : A R R A Y '1' D M E R G E
+    ;
+
+GROUPBY
+    : G R O U P B Y
+    ;
+
+HISTOGRAM
+    : H I S T O G R A M
+    ;
+
+HASHJOIN
+    : H A S H J O I N
+    ;
+
 HSB2RGB
     : H S B '2' R G B
     ;
@@ -1361,6 +1606,46 @@ SPLITDLR
     : S P L I T DOLLAR
     ;
 
+REGEXMATCH
+    : R E G E X M A T C H
+    ;
+
+REGEXFINDDLR
+    : R E G E X F I N D DOLLAR
+    ;
+
+REGEXREPLACEDLR
+    : R E G E X R E P L A C E DOLLAR
+    ;
+
+MAPPED
+    : M A P P E D
+    ;
+
+LOADCSV
+    : L O A D C S V
+    ;
+
+SAVECSV
+    : S A V E C S V
+    ;
+
+ARRAYSAVE
+    : A R R A Y S A V E
+    ;
+
+ARRAYLOAD
+    : A R R A Y L O A D
+    ;
+
+SAVEOBJ
+    : S A V E O B J
+    ;
+
+LOADOBJ
+    : L O A D O B J
+    ;
+
 string
     : STRING
     ;
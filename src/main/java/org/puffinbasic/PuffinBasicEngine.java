@@ -0,0 +1,65 @@
+package org.puffinbasic;
+
+import org.puffinbasic.PuffinBasicInterpreterMain.UserOptions;
+import org.puffinbasic.runtime.ArrayParallelism;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Entry point for embedding the interpreter in a Java application.
+ * compile parses and builds the IR once; the returned program can then
+ * be run any number of times, from any number of threads, each run
+ * paying only for execution.
+ *
+ * <pre>
+ * var engine = new PuffinBasicEngine();
+ * var program = engine.compile("Y# = X# * 2");
+ * var outputs = program.run(Map.of("X#", 21.0), System.out);
+ * </pre>
+ */
+public final class PuffinBasicEngine {
+
+    private static final String EMBEDDED_SOURCE_FILE = "<EMBEDDED>";
+
+    private final UserOptions userOptions;
+    private final ArrayParallelism arrayParallelism;
+
+    public PuffinBasicEngine() {
+        this(ArrayParallelism.DEFAULT_THRESHOLD, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PuffinBasicEngine(int parallelThreshold, int parallelism) {
+        this.userOptions = new UserOptions(
+                false, false, false, false, false, parallelThreshold, parallelism, null);
+        this.arrayParallelism = new ArrayParallelism(parallelThreshold, parallelism);
+    }
+
+    public PuffinBasicProgram compile(String sourceCode) {
+        return compile(EMBEDDED_SOURCE_FILE, sourceCode);
+    }
+
+    /**
+     * Compiles sourceCode. IMPORT paths are resolved relative to sourceFilename.
+     */
+    public PuffinBasicProgram compile(String sourceFilename, String sourceCode) {
+        return compile(sourceFilename, sourceCode, List.of());
+    }
+
+    /**
+     * Compiles sourceCode with hostArrays, e.g. "A%", declared as global
+     * arrays: the program indexes them without DIM, and their contents
+     * and dims come from the run's inputs.
+     */
+    public PuffinBasicProgram compile(
+            String sourceFilename, String sourceCode, Collection<String> hostArrays)
+    {
+        // The grammar ends every line with a newline; embedded snippets often don't.
+        if (!sourceCode.endsWith("\n")) {
+            sourceCode = sourceCode + "\n";
+        }
+        return new PuffinBasicProgram(
+                PuffinBasicInterpreterMain.compile(userOptions, sourceFilename, sourceCode, hostArrays),
+                arrayParallelism);
+    }
+}
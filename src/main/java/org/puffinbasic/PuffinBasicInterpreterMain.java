@@ -5,23 +5,31 @@ import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CodePointCharStream;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.puffinbasic.antlr4.PuffinBasicLexer;
 import org.puffinbasic.antlr4.PuffinBasicParser;
 import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.error.PuffinBasicSyntaxError;
+import org.puffinbasic.parser.CompiledProgram;
+import org.puffinbasic.parser.CompiledProgramCache;
 import org.puffinbasic.parser.LinenumberListener;
 import org.puffinbasic.parser.LinenumberListener.ThrowOnDuplicate;
 import org.puffinbasic.parser.PuffinBasicIR;
 import org.puffinbasic.parser.PuffinBasicIRListener;
 import org.puffinbasic.parser.PuffinBasicImportPath;
 import org.puffinbasic.parser.PuffinBasicSourceFile;
+import org.puffinbasic.runtime.ArrayParallelism;
 import org.puffinbasic.runtime.Environment;
 import org.puffinbasic.runtime.Environment.SystemEnv;
 import org.puffinbasic.runtime.PuffinBasicRuntime;
@@ -33,7 +41,19 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IMPORT_ERROR;
@@ -81,6 +101,16 @@ public final class PuffinBasicInterpreterMain {
         parser.addArgument("-g", "--graphics")
                 .help("Enable graphics")
                 .action(Arguments.storeTrue());
+        parser.addArgument("--parallel-threshold")
+                .help("Min array length for parallel bulk array operations")
+                .type(Integer.class)
+                .setDefault(ArrayParallelism.DEFAULT_THRESHOLD);
+        parser.addArgument("--parallelism")
+                .help("#Threads for parallel bulk array operations, 1 disables them")
+                .type(Integer.class)
+                .setDefault(Runtime.getRuntime().availableProcessors());
+        parser.addArgument("--cache")
+                .help("Directory to cache compiled programs in, to skip parsing when a program is unchanged");
         parser.addArgument("file").nargs(1);
         Namespace res = null;
         try {
@@ -99,6 +129,9 @@ public final class PuffinBasicInterpreterMain {
                 res.getBoolean("ir"),
                 res.getBoolean("timing"),
                 res.getBoolean("graphics"),
+                res.getInt("parallel_threshold"),
+                res.getInt("parallelism"),
+                res.getString("cache"),
                 (String) res.getList("file").get(0)
         );
     }
@@ -130,39 +163,105 @@ public final class PuffinBasicInterpreterMain {
             String sourceCode,
             PrintStream out,
             Environment env)
+    {
+        var program = compile(userOptions, sourceFilename, sourceCode);
+        run(userOptions, program, out, env);
+    }
+
+    static CompiledProgram compile(UserOptions userOptions, String sourceCode) {
+        return compile(userOptions, UNKNOWN_SOURCE_FILE, sourceCode);
+    }
+
+    static CompiledProgram compile(
+            UserOptions userOptions,
+            String sourceFilename,
+            String sourceCode)
+    {
+        return compile(userOptions, sourceFilename, sourceCode, List.of());
+    }
+
+    static CompiledProgram compile(
+            UserOptions userOptions,
+            String sourceFilename,
+            String sourceCode,
+            Collection<String> hostArrays)
     {
         var importPath = new PuffinBasicImportPath(sourceFilename);
 
+        // Listing (-l) prints the parsed source, so it bypasses the cache
+        CompiledProgramCache cache = null;
+        String cacheKey = null;
+        if (userOptions.cacheDir != null && !userOptions.listSourceCode) {
+            Instant t0 = Instant.now();
+            cache = new CompiledProgramCache(userOptions.cacheDir);
+            cacheKey = CompiledProgramCache.key(
+                    sourceFilename, sourceCode, userOptions.graphics, userOptions.logOnDuplicate, hostArrays);
+            var cached = cache.load(cacheKey, importPath);
+            if (cached.isPresent()) {
+                logTimeTaken("CACHE", t0, userOptions.timing);
+                printIR(userOptions, cached.get());
+                return cached.get();
+            }
+        }
+
         Instant t1 = Instant.now();
-        var sourceFile = syntaxCheckAndSortByLineNumber(
+        var sourceFile = parseSourceFiles(
                 importPath,
                 sourceFilename,
                 sourceCode,
                 userOptions.logOnDuplicate ? LOG : THROW,
-                SourceFileMode.MAIN);
-        if (sourceFile.getSourceCode().isEmpty()) {
+                userOptions.parallelism);
+        if (sourceFile.getSortedLines().isEmpty()) {
             throw new PuffinBasicSyntaxError(
                     "Failed to parse source code! Check if a linenumber is missing");
         }
-        logTimeTaken("SORT", t1, userOptions.timing);
+        logTimeTaken("PARSE", t1, userOptions.timing);
 
         log("LIST", userOptions.listSourceCode);
-        log(sourceFile.getSourceCode(), userOptions.listSourceCode);
+        if (userOptions.listSourceCode) {
+            log(sourceFile.getSortedCode(), true);
+        }
 
         Instant t2 = Instant.now();
-        var ir = generateIR(sourceFile, userOptions.graphics);
+        var program = new CompiledProgram(generateIR(sourceFile, userOptions.graphics, hostArrays));
         logTimeTaken("IR", t2, userOptions.timing);
+        printIR(userOptions, program);
+
+        if (cache != null) {
+            cache.save(cacheKey, importPath, sourceFile, program);
+        }
+        return program;
+    }
+
+    private static void printIR(UserOptions userOptions, CompiledProgram program) {
         log("IR", userOptions.printIR);
         if (userOptions.printIR) {
             int i = 0;
-            for (var instruction : ir.getInstructions()) {
+            for (var instruction : program.getInstructions()) {
                 log(i++ + ": " + instruction, true);
             }
         }
+    }
 
+    /**
+     * Runs a compiled program once. Each call gets its own execution
+     * state, so the same program can be run again, or from several
+     * threads at once.
+     */
+    static void run(
+            UserOptions userOptions,
+            CompiledProgram program,
+            PrintStream out,
+            Environment env)
+    {
         log("RUN", userOptions.timing);
         Instant t3 = Instant.now();
-        run(ir, out, env);
+        var runtime = new PuffinBasicRuntime(
+                program,
+                out,
+                env,
+                new ArrayParallelism(userOptions.parallelThreshold, userOptions.parallelism));
+        runtime.run();
         logTimeTaken("RUN", t3, userOptions.timing);
     }
 
@@ -178,13 +277,13 @@ public final class PuffinBasicInterpreterMain {
         log("[" + tag + "] time taken = " + timeSec + " s", log);
     }
 
-    private static void run(PuffinBasicIR ir, PrintStream out, Environment env) {
-        var runtime = new PuffinBasicRuntime(ir, out, env);
-        runtime.run();
-    }
-
-    private static PuffinBasicIR generateIR(PuffinBasicSourceFile sourceFile, boolean graphics) {
+    private static PuffinBasicIR generateIR(
+            PuffinBasicSourceFile sourceFile, boolean graphics, Collection<String> hostArrays)
+    {
         var symbolTable = new PuffinBasicSymbolTable();
+        for (var hostArray : hostArrays) {
+            symbolTable.addHostArray(hostArray);
+        }
         var ir = new PuffinBasicIR(symbolTable);
         for (var importFile : sourceFile.getImportFiles()) {
             generateIR(importFile, ir, graphics);
@@ -193,20 +292,77 @@ public final class PuffinBasicInterpreterMain {
         return ir;
     }
 
+    /**
+     * Generates IR by walking the lines of the parse tree in line number
+     * order, the tree is not needed after that.
+     */
     private static void generateIR(PuffinBasicSourceFile sourceFile, PuffinBasicIR ir, boolean graphics) {
         var in = sourceFile.getSourceCodeStream();
-        var lexer = new PuffinBasicLexer(in);
-        var tokens = new CommonTokenStream(lexer);
-        var parser = new PuffinBasicParser(tokens);
-        var tree = parser.prog();
         var walker = new ParseTreeWalker();
         var irListener = new PuffinBasicIRListener(sourceFile, in, ir, graphics);
-        walker.walk(irListener, tree);
+        for (var line : sourceFile.getSortedLines()) {
+            walker.walk(irListener, line);
+        }
         irListener.semanticCheckAfterParsing();
+        sourceFile.discardSortedLines();
     }
 
-    private static PuffinBasicSourceFile syntaxCheckAndSortByLineNumber(
+    /**
+     * Parses with SLL prediction first, which is faster and enough for
+     * nearly all programs, and only on failure parses again with full LL,
+     * which also reports syntax errors.
+     */
+    private static PuffinBasicParser.ProgContext parse(
+            CommonTokenStream tokens, ThrowingErrorListener syntaxErrorListener)
+    {
+        var parser = new PuffinBasicParser(tokens);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.prog();
+        } catch (ParseCancellationException e) {
+            tokens.seek(0);
+            parser.reset();
+            parser.addErrorListener(syntaxErrorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.prog();
+        }
+    }
+
+    /**
+     * Parses the main source file and, recursively, the libraries it
+     * IMPORTs. Libraries are loaded and parsed on a pool of parallelism
+     * threads (serially for 1), each file once however many files import
+     * it, and then linked into the same import order as a serial parse,
+     * so IR generation and ids don't depend on which parse ends first.
+     */
+    private static PuffinBasicSourceFile parseSourceFiles(
             PuffinBasicImportPath importPath,
+            String sourceFilename,
+            String sourceCode,
+            ThrowOnDuplicate throwOnDuplicate,
+            int parallelism)
+    {
+        var main = parseSourceFile(sourceFilename, sourceCode, throwOnDuplicate, SourceFileMode.MAIN);
+        if (main.importFiles.isEmpty()) {
+            return main.toSourceFile(new LinkedHashSet<>());
+        }
+        var pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        try {
+            var libParser = new LibParser(importPath, throwOnDuplicate, pool != null ? pool : Runnable::run);
+            main.importFiles.forEach(libParser::submit);
+            libParser.awaitAll();
+            return libParser.link(main, new HashMap<>(), new HashSet<>());
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private static ParsedSourceFile parseSourceFile(
             String sourceFile,
             String input,
             ThrowOnDuplicate throwOnDuplicate,
@@ -218,10 +374,7 @@ public final class PuffinBasicInterpreterMain {
         lexer.removeErrorListeners();
         lexer.addErrorListener(syntaxErrorListener);
         var tokens = new CommonTokenStream(lexer);
-        var parser = new PuffinBasicParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(syntaxErrorListener);
-        var tree = parser.prog();
+        var tree = parse(tokens, syntaxErrorListener);
         var walker = new ParseTreeWalker();
         var linenumListener = new LinenumberListener(in, throwOnDuplicate);
         walker.walk(linenumListener, tree);
@@ -241,23 +394,135 @@ public final class PuffinBasicInterpreterMain {
             }
         }
 
-        LinkedHashSet<PuffinBasicSourceFile> importSourceFiles = new LinkedHashSet<>();
-        for (String importFilename : linenumListener.getImportFiles()) {
-            var importedInput = loadSource(importPath.find(importFilename));
-            var importSourceFile = syntaxCheckAndSortByLineNumber(
-                    importPath, importFilename, importedInput,
-                    throwOnDuplicate, SourceFileMode.LIB);
-            importSourceFiles.add(importSourceFile);
-            importSourceFiles.addAll(importSourceFile.getImportFiles());
-        }
-
-        String sortedCode = linenumListener.getSortedCode();
-        return new PuffinBasicSourceFile(
+        return new ParsedSourceFile(
                 sourceFile,
                 linenumListener.getLibtag(),
-                sortedCode,
-                CharStreams.fromString(sortedCode),
-                importSourceFiles);
+                input,
+                in,
+                linenumListener.getSortedLines(),
+                List.copyOf(linenumListener.getImportFiles()));
+    }
+
+    /**
+     * A parsed file whose imports are not linked yet.
+     */
+    private static final class ParsedSourceFile {
+        private final String relativePath;
+        private final String libtag;
+        private final String input;
+        private final CodePointCharStream in;
+        private final List<PuffinBasicParser.LineContext> sortedLines;
+        private final List<String> importFiles;
+
+        ParsedSourceFile(
+                String relativePath,
+                String libtag,
+                String input,
+                CodePointCharStream in,
+                List<PuffinBasicParser.LineContext> sortedLines,
+                List<String> importFiles)
+        {
+            this.relativePath = relativePath;
+            this.libtag = libtag;
+            this.input = input;
+            this.in = in;
+            this.sortedLines = sortedLines;
+            this.importFiles = importFiles;
+        }
+
+        PuffinBasicSourceFile toSourceFile(LinkedHashSet<PuffinBasicSourceFile> importSourceFiles) {
+            return new PuffinBasicSourceFile(relativePath, libtag, input, in, sortedLines, importSourceFiles);
+        }
+    }
+
+    /**
+     * Loads and parses libraries on an executor. A parse submits the
+     * imports of its file before it completes, so once every submitted
+     * parse is done and no new one was submitted, all files are parsed.
+     */
+    private static final class LibParser {
+        private final PuffinBasicImportPath importPath;
+        private final ThrowOnDuplicate throwOnDuplicate;
+        private final Executor executor;
+        private final ConcurrentMap<String, CompletableFuture<ParsedSourceFile>> parsed;
+
+        LibParser(PuffinBasicImportPath importPath, ThrowOnDuplicate throwOnDuplicate, Executor executor) {
+            this.importPath = importPath;
+            this.throwOnDuplicate = throwOnDuplicate;
+            this.executor = executor;
+            this.parsed = new ConcurrentHashMap<>();
+        }
+
+        void submit(String importFilename) {
+            var future = new CompletableFuture<ParsedSourceFile>();
+            if (parsed.putIfAbsent(importFilename, future) != null) {
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    var input = loadSource(importPath.find(importFilename));
+                    var lib = parseSourceFile(importFilename, input, throwOnDuplicate, SourceFileMode.LIB);
+                    lib.importFiles.forEach(this::submit);
+                    future.complete(lib);
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+
+        void awaitAll() {
+            int n;
+            do {
+                var futures = parsed.values().toArray(new CompletableFuture<?>[0]);
+                n = futures.length;
+                // Failures are reported by link, in import order
+                CompletableFuture.allOf(futures).handle((result, e) -> null).join();
+            } while (parsed.size() != n);
+        }
+
+        private ParsedSourceFile get(String importFilename) {
+            try {
+                return parsed.get(importFilename).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Links the imports of file, each import becoming one source file
+         * shared by all the files that import it. Like a serial parse, the
+         * imports of a file are its own imports each followed by theirs.
+         */
+        PuffinBasicSourceFile link(
+                ParsedSourceFile file,
+                Map<String, PuffinBasicSourceFile> linked,
+                Set<String> linking)
+        {
+            var importSourceFiles = new LinkedHashSet<PuffinBasicSourceFile>();
+            for (var importFilename : file.importFiles) {
+                var importSourceFile = linked.get(importFilename);
+                if (importSourceFile == null) {
+                    if (!linking.add(importFilename)) {
+                        throw new PuffinBasicRuntimeError(
+                                IMPORT_ERROR,
+                                "Circular import of " + importFilename + " in " + file.relativePath
+                        );
+                    }
+                    importSourceFile = link(get(importFilename), linked, linking);
+                    linking.remove(importFilename);
+                    linked.put(importFilename, importSourceFile);
+                }
+                importSourceFiles.add(importSourceFile);
+                importSourceFiles.addAll(importSourceFile.getImportFiles());
+            }
+            return file.toSourceFile(importSourceFiles);
+        }
     }
 
     private static final class ThrowingErrorListener extends BaseErrorListener {
@@ -301,7 +566,8 @@ public final class PuffinBasicInterpreterMain {
 
         static UserOptions ofTest() {
             return new UserOptions(
-                    false, false, false, false, false, null
+                    false, false, false, false, false,
+                    ArrayParallelism.DEFAULT_THRESHOLD, Runtime.getRuntime().availableProcessors(), null
             );
         }
 
@@ -310,6 +576,9 @@ public final class PuffinBasicInterpreterMain {
         final boolean printIR;
         final boolean timing;
         final boolean graphics;
+        final int parallelThreshold;
+        final int parallelism;
+        final String cacheDir;
         public final String filename;
 
         UserOptions(
@@ -318,6 +587,23 @@ public final class PuffinBasicInterpreterMain {
                 boolean printIR,
                 boolean timing,
                 boolean graphics,
+                int parallelThreshold,
+                int parallelism,
+                String filename)
+        {
+            this(logOnDuplicate, listSourceCode, printIR, timing, graphics,
+                    parallelThreshold, parallelism, null, filename);
+        }
+
+        UserOptions(
+                boolean logOnDuplicate,
+                boolean listSourceCode,
+                boolean printIR,
+                boolean timing,
+                boolean graphics,
+                int parallelThreshold,
+                int parallelism,
+                String cacheDir,
                 String filename)
         {
             this.logOnDuplicate = logOnDuplicate;
@@ -325,6 +611,9 @@ public final class PuffinBasicInterpreterMain {
             this.printIR = printIR;
             this.timing = timing;
             this.graphics = graphics;
+            this.parallelThreshold = parallelThreshold;
+            this.parallelism = parallelism;
+            this.cacheDir = cacheDir;
             this.filename = filename;
         }
     }
@@ -0,0 +1,100 @@
+package org.puffinbasic;
+
+import org.puffinbasic.domain.HostValues;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.CompiledProgram;
+import org.puffinbasic.runtime.ArrayParallelism;
+import org.puffinbasic.runtime.Environment;
+import org.puffinbasic.runtime.Environment.SystemEnv;
+import org.puffinbasic.runtime.ExecutionContext;
+import org.puffinbasic.runtime.PuffinBasicRuntime;
+
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+
+/**
+ * A program compiled by PuffinBasicEngine. Immutable, so it can be run
+ * many times and from several threads at once.
+ * Host values are passed in and out by variable name, with the type
+ * suffix, e.g. "N%", "NAME$", "XS#" (see HostValues for the Java types).
+ */
+public final class PuffinBasicProgram {
+
+    private final CompiledProgram program;
+    private final ArrayParallelism arrayParallelism;
+    private final Set<String> variableNames;
+
+    PuffinBasicProgram(CompiledProgram program, ArrayParallelism arrayParallelism) {
+        this.program = program;
+        this.arrayParallelism = arrayParallelism;
+        this.variableNames = Collections.unmodifiableSet(
+                new TreeSet<>(getHostVariables(program.getSymbolTable()).keySet()));
+    }
+
+    /**
+     * Names of the global scalar and array variables, which can be set
+     * as inputs and are returned as outputs.
+     */
+    public Set<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public Map<String, Object> run(Map<String, ?> inputs, PrintStream out) {
+        return run(inputs, out, new SystemEnv());
+    }
+
+    /**
+     * Sets inputs, runs the program writing to out, and returns the final
+     * values of the global scalar and array variables.
+     * Input arrays replace the array's contents and dims, so a program
+     * should not DIM an array it takes as input.
+     */
+    public Map<String, Object> run(Map<String, ?> inputs, PrintStream out, Environment env) {
+        var context = new ExecutionContext(program, out, env);
+        var variables = getHostVariables(context.getSymbolTable());
+        try {
+            for (var input : inputs.entrySet()) {
+                var entry = variables.get(input.getKey());
+                if (entry == null) {
+                    throw new PuffinBasicRuntimeError(
+                            ILLEGAL_FUNCTION_PARAM,
+                            "Program has no scalar or array variable: " + input.getKey()
+                    );
+                }
+                HostValues.set(input.getKey(), entry, input.getValue());
+            }
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+
+        new PuffinBasicRuntime(program, context, arrayParallelism).execute();
+
+        var outputs = new TreeMap<String, Object>();
+        for (var variable : variables.entrySet()) {
+            var value = HostValues.get(variable.getValue());
+            if (value != null) {
+                outputs.put(variable.getKey(), value);
+            }
+        }
+        return outputs;
+    }
+
+    private static Map<String, STEntry> getHostVariables(PuffinBasicSymbolTable symbolTable) {
+        var variables = new TreeMap<String, STEntry>();
+        symbolTable.forEachGlobalVariable((variableName, entry) -> {
+            if (HostValues.isSupported(entry)) {
+                variables.put(variableName.getVarname() + variableName.getSuffix(), entry);
+            }
+        });
+        return variables;
+    }
+}
@@ -0,0 +1,167 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.puffinbasic.domain.STObjects.AbstractSTArrayValue;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ARRAY_INDEX_OUT_OF_BOUNDS;
+
+/**
+ * Rows of scalar fields stored column by column, each column in its own
+ * 1D array value of the field's type. Columns grow by doubling; handing
+ * out a column first trims it to the row count, after which the caller's
+ * array shares the column's storage until the table grows again.
+ */
+final class ColumnTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final PuffinBasicAtomTypeId[] types;
+    private final AbstractSTArrayValue[] columns;
+    private int size;
+
+    ColumnTable(PuffinBasicAtomTypeId[] types) {
+        this.types = types;
+        this.columns = new AbstractSTArrayValue[types.length];
+        for (int i = 0; i < types.length; i++) {
+            columns[i] = resize(i, INITIAL_CAPACITY);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int numColumns() {
+        return columns.length;
+    }
+
+    /**
+     * Adds a row of default values (0 or "") and returns its index.
+     */
+    int appendRow() {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].getTotalLength() == size) {
+                columns[i] = resize(i, Math.max(INITIAL_CAPACITY, size * 2));
+            }
+        }
+        return size++;
+    }
+
+    void get(int column, int row, STValue result) {
+        var values = columns[column];
+        values.setArrayIndexID(checkRow(row));
+        result.assign(values);
+    }
+
+    void set(int column, int row, STValue value) {
+        var values = columns[column];
+        values.setArrayIndexID(checkRow(row));
+        values.assign(value);
+    }
+
+    void column(int column, STValue result) {
+        if (columns[column].getTotalLength() != size) {
+            columns[column] = resize(column, size);
+        }
+        result.replace(columns[column]);
+    }
+
+    void clear() {
+        size = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = resize(i, INITIAL_CAPACITY);
+        }
+    }
+
+    void encode(ObjectFile.Encoder encoder) throws IOException {
+        encoder.writeInt(size);
+        for (var column : columns) {
+            var values = backing(column);
+            if (values instanceof int[]) {
+                encoder.writeInts((int[]) values, 0, size);
+            } else if (values instanceof long[]) {
+                encoder.writeLongs((long[]) values, 0, size);
+            } else if (values instanceof float[]) {
+                encoder.writeFloats((float[]) values, 0, size);
+            } else if (values instanceof double[]) {
+                encoder.writeDoubles((double[]) values, 0, size);
+            } else {
+                encoder.writeStrings((Object[]) values, 0, size);
+            }
+        }
+    }
+
+    /**
+     * Reads each column straight into a new column array.
+     */
+    void decode(ObjectFile.Decoder decoder) throws IOException {
+        int n = decoder.readCount(Integer.BYTES * columns.length);
+        size = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = resize(i, Math.max(INITIAL_CAPACITY, n));
+            var values = backing(columns[i]);
+            if (values instanceof int[]) {
+                decoder.readInts((int[]) values, 0, n);
+            } else if (values instanceof long[]) {
+                decoder.readLongs((long[]) values, 0, n);
+            } else if (values instanceof float[]) {
+                decoder.readFloats((float[]) values, 0, n);
+            } else if (values instanceof double[]) {
+                decoder.readDoubles((double[]) values, 0, n);
+            } else {
+                decoder.readStrings((Object[]) values, 0, n);
+            }
+        }
+        size = n;
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new PuffinBasicRuntimeError(
+                    ARRAY_INDEX_OUT_OF_BOUNDS,
+                    "Row index: " + row + " is out of bounds, list size: " + size
+            );
+        }
+        return row;
+    }
+
+    /**
+     * Returns a new array value of the given length holding the column's
+     * first min(size, length) rows.
+     */
+    private AbstractSTArrayValue resize(int column, int length) {
+        var values = (AbstractSTArrayValue) types[column].createArrayEntry().getValue();
+        var dims = new IntArrayList(1);
+        dims.add(length);
+        values.setArrayDimensions(dims);
+        var old = columns[column];
+        if (old != null) {
+            System.arraycopy(backing(old), 0, backing(values), 0, Math.min(size, length));
+        }
+        return values;
+    }
+
+    private static Object backing(AbstractSTArrayValue values) {
+        if (values instanceof STInt32ArrayValue) {
+            return ((STInt32ArrayValue) values).getValue();
+        } else if (values instanceof STInt64ArrayValue) {
+            return ((STInt64ArrayValue) values).getValue();
+        } else if (values instanceof STFloat32ArrayValue) {
+            return ((STFloat32ArrayValue) values).getValue();
+        } else if (values instanceof STFloat64ArrayValue) {
+            return ((STFloat64ArrayValue) values).getValue();
+        } else {
+            return ((STStringArrayValue) values).getValue();
+        }
+    }
+}
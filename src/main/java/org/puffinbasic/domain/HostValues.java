@@ -0,0 +1,192 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.ARRAY;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+
+/**
+ * Moves values between Java host code and scalar and array variables,
+ * without going through strings.
+ * Scalars map to Integer, Long, Float, Double and String.
+ * Arrays map to int[], long[], float[], double[] and String[]. On input a
+ * Java array of the matching element type is copied in bulk; other Java
+ * arrays and collections are copied element by element. Java arrays are
+ * one dimensional; a BASIC array is returned flattened in row-major order.
+ */
+public final class HostValues {
+
+    private HostValues() {}
+
+    public static boolean isSupported(STEntry entry) {
+        var typeId = entry.getType().getTypeId();
+        return (typeId == SCALAR || typeId == ARRAY)
+                && entry.getType().getAtomTypeId() != PuffinBasicAtomTypeId.COMPOSITE;
+    }
+
+    public static void set(String name, STEntry entry, Object hostValue) {
+        if (!isSupported(entry)) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Can't set " + name + " from the host, only scalar and array variables are supported"
+            );
+        }
+        var atomTypeId = entry.getType().getAtomTypeId();
+        var value = entry.getValue();
+        if (entry.getType().getTypeId() == SCALAR) {
+            setScalar(name, atomTypeId, value, hostValue);
+        } else if (!setArrayBulk(value, hostValue)) {
+            setArray(name, atomTypeId, value, hostValue);
+        }
+    }
+
+    /**
+     * Returns the value as a Java object, or null if it has none.
+     */
+    public static Object get(STEntry entry) {
+        var value = entry.getValue();
+        if (entry.getType().getTypeId() == SCALAR) {
+            return value.isInitialized() ? entry.getType().getAtomTypeId().getValueFrom(value) : null;
+        }
+        final Object array;
+        if (value instanceof STInt32ArrayValue) {
+            array = ((STInt32ArrayValue) value).getValue();
+        } else if (value instanceof STInt64ArrayValue) {
+            array = ((STInt64ArrayValue) value).getValue();
+        } else if (value instanceof STFloat32ArrayValue) {
+            array = ((STFloat32ArrayValue) value).getValue();
+        } else if (value instanceof STFloat64ArrayValue) {
+            array = ((STFloat64ArrayValue) value).getValue();
+        } else if (value instanceof STStringArrayValue) {
+            array = ((STStringArrayValue) value).getValue();
+        } else {
+            // Memory mapped arrays stay in their file.
+            array = null;
+        }
+        if (array == null) {
+            return null;
+        }
+        var copy = Array.newInstance(array.getClass().getComponentType(), Array.getLength(array));
+        System.arraycopy(array, 0, copy, 0, Array.getLength(array));
+        return copy;
+    }
+
+    private static boolean setArrayBulk(STValue value, Object hostValue) {
+        if (value instanceof STInt32ArrayValue && hostValue instanceof int[]) {
+            var src = (int[]) hostValue;
+            value.setArrayDimensions(dims(src.length));
+            System.arraycopy(src, 0, ((STInt32ArrayValue) value).getValue(), 0, src.length);
+        } else if (value instanceof STInt64ArrayValue && hostValue instanceof long[]) {
+            var src = (long[]) hostValue;
+            value.setArrayDimensions(dims(src.length));
+            System.arraycopy(src, 0, ((STInt64ArrayValue) value).getValue(), 0, src.length);
+        } else if (value instanceof STFloat32ArrayValue && hostValue instanceof float[]) {
+            var src = (float[]) hostValue;
+            value.setArrayDimensions(dims(src.length));
+            System.arraycopy(src, 0, ((STFloat32ArrayValue) value).getValue(), 0, src.length);
+        } else if (value instanceof STFloat64ArrayValue && hostValue instanceof double[]) {
+            var src = (double[]) hostValue;
+            value.setArrayDimensions(dims(src.length));
+            System.arraycopy(src, 0, ((STFloat64ArrayValue) value).getValue(), 0, src.length);
+        } else if (value instanceof STStringArrayValue && hostValue instanceof String[]) {
+            var src = (String[]) hostValue;
+            value.setArrayDimensions(dims(src.length));
+            System.arraycopy(src, 0, ((STStringArrayValue) value).getValue(), 0, src.length);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    private static void setArray(String name, PuffinBasicAtomTypeId atomTypeId, STValue value, Object hostValue) {
+        final Object[] elements;
+        if (hostValue instanceof Collection) {
+            elements = ((Collection<?>) hostValue).toArray();
+        } else if (hostValue != null && hostValue.getClass().isArray()) {
+            elements = new Object[Array.getLength(hostValue)];
+            for (int i = 0; i < elements.length; i++) {
+                elements[i] = Array.get(hostValue, i);
+            }
+        } else {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Can't set array " + name + " from " + describe(hostValue)
+            );
+        }
+        value.setArrayDimensions(dims(elements.length));
+        for (int i = 0; i < elements.length; i++) {
+            value.resetArrayIndex();
+            value.setArrayIndex(0, i);
+            setScalar(name, atomTypeId, value, elements[i]);
+        }
+        value.resetArrayIndex();
+    }
+
+    private static void setScalar(String name, PuffinBasicAtomTypeId atomTypeId, STValue value, Object hostValue) {
+        if (atomTypeId == PuffinBasicAtomTypeId.STRING) {
+            if (!(hostValue instanceof CharSequence)) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "Can't set string " + name + " from " + describe(hostValue)
+                );
+            }
+            value.setString(hostValue.toString());
+            return;
+        }
+        final Number number;
+        if (hostValue instanceof Number) {
+            number = (Number) hostValue;
+        } else if (hostValue instanceof Boolean) {
+            // BASIC true is -1
+            number = (Boolean) hostValue ? -1 : 0;
+        } else {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Can't set numeric " + name + " from " + describe(hostValue)
+            );
+        }
+        switch (atomTypeId) {
+            case INT32:
+                value.setInt32(number.intValue());
+                break;
+            case INT64:
+                value.setInt64(number.longValue());
+                break;
+            case FLOAT:
+                value.setFloat32(number.floatValue());
+                break;
+            case DOUBLE:
+                value.setFloat64(number.doubleValue());
+                break;
+            default:
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "Can't set " + name + " of type " + atomTypeId + " from the host"
+                );
+        }
+    }
+
+    private static IntList dims(int length) {
+        var dims = new IntArrayList(1);
+        dims.add(length);
+        return dims;
+    }
+
+    private static String describe(Object hostValue) {
+        return hostValue == null ? "null" : hostValue.getClass().getSimpleName();
+    }
+}
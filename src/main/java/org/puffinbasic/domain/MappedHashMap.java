@@ -0,0 +1,558 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+
+/**
+ * Open addressing (linear probing) hash table in a memory-mapped file, so
+ * a dict survives the program and is usable again right after opening.
+ * <p>
+ * File layout, little-endian: a 64 byte header, then per slot an int tag
+ * (0 empty, 1 deleted, else the key hash with bit 1 set), then per slot a
+ * fixed 8 byte key and 8 byte value, then the string arena. Numbers are
+ * stored as their long or double bits; strings as the arena offset of an
+ * int length followed by UTF-8 bytes.
+ * When the slots are half used or the arena is full, the live entries are
+ * copied one by one from the old mapping into a new file of twice the
+ * size, which drops deleted slots and overwritten strings. The new file is
+ * written next to the old one and moved over it only once complete, so a
+ * failed or interrupted grow leaves the old file as it was.
+ */
+final class MappedHashMap extends AbstractMap<Object, Object> {
+
+    private static final long MAGIC = 0x5442444d42465550L; // "PUFBMDBT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long INITIAL_ARENA_BYTES = 1 << 16;
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = 1;
+
+    private static final int SIZE_OFFSET = 32;
+    private static final int DELETED_OFFSET = 40;
+    private static final int ARENA_USED_OFFSET = 48;
+
+    private final Path path;
+    private final PuffinBasicAtomTypeId keyType;
+    private final PuffinBasicAtomTypeId valueType;
+
+    private Table table;
+
+    MappedHashMap(PuffinBasicAtomTypeId keyType, PuffinBasicAtomTypeId valueType, String path) {
+        this.path = Paths.get(path);
+        this.keyType = keyType;
+        this.valueType = valueType;
+        try {
+            if (!Files.exists(this.path) || Files.size(this.path) == 0) {
+                create(this.path, INITIAL_CAPACITY, INITIAL_ARENA_BYTES);
+            }
+            this.table = new Table(this.path);
+        } catch (IOException e) {
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    public int size() {
+        return table.size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return table.find(key, hash(key)) >= 0;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = table.find(key, hash(key));
+        return slot >= 0 ? table.readValue(slot) : null;
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        var t = table;
+        int hash = hash(key);
+        int slot = t.find(key, hash);
+        if (slot >= 0) {
+            long needed = arenaNeeded(valueType, value);
+            if (!t.hasArena(needed)) {
+                rebuild(t.capacity, t.growArena(needed));
+                return put(key, value);
+            }
+            var old = t.readValue(slot);
+            t.writeValue(slot, value);
+            t.writeCounts();
+            return old;
+        }
+        long needed = arenaNeeded(keyType, key) + arenaNeeded(valueType, value);
+        if (2L * (t.size + t.deleted + 1) > t.capacity || !t.hasArena(needed)) {
+            rebuild(2L * (t.size + 1) > t.capacity ? t.capacity * 2 : t.capacity,
+                    t.hasArena(needed) ? t.arenaBytes : t.growArena(needed));
+            return put(key, value);
+        }
+        t.insert(hash, key, value);
+        t.writeCounts();
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        var t = table;
+        int slot = t.find(key, hash(key));
+        if (slot < 0) {
+            return null;
+        }
+        var old = t.readValue(slot);
+        t.putInt(t.tagPos(slot), DELETED);
+        t.size--;
+        t.deleted++;
+        t.writeCounts();
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        var tmp = tmpPath();
+        try {
+            create(tmp, INITIAL_CAPACITY, INITIAL_ARENA_BYTES);
+            replaceWith(tmp);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw ioError(e);
+        }
+    }
+
+    @Override
+    public Set<Entry<Object, Object>> entrySet() {
+        return new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<Object, Object>> iterator() {
+                return new Iterator<>() {
+                    private int slot = table.nextFull(0);
+
+                    @Override
+                    public boolean hasNext() {
+                        return slot < table.capacity;
+                    }
+
+                    @Override
+                    public Entry<Object, Object> next() {
+                        if (slot >= table.capacity) {
+                            throw new NoSuchElementException();
+                        }
+                        var entry = new SimpleImmutableEntry<>(table.readKey(slot), table.readValue(slot));
+                        slot = table.nextFull(slot + 1);
+                        return entry;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return table.size;
+            }
+        };
+    }
+
+    private int hash(Object key) {
+        if (key == null) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Dict key can't be null"
+            );
+        }
+        if (keyType == PuffinBasicAtomTypeId.STRING) {
+            return HashCommon.mix(key.hashCode());
+        }
+        return (int) HashCommon.mix(encodeNumber(keyType, key));
+    }
+
+    private static int tag(int hash) {
+        return hash | 2;
+    }
+
+    private static boolean isFree(int tag) {
+        return tag == EMPTY || tag == DELETED;
+    }
+
+    private static long encodeNumber(PuffinBasicAtomTypeId type, Object value) {
+        switch (type) {
+            case INT32:
+                return (Integer) value;
+            case INT64:
+                return (Long) value;
+            case FLOAT:
+                return Float.floatToIntBits((Float) value);
+            default:
+                return Double.doubleToLongBits((Double) value);
+        }
+    }
+
+    private static Object decodeNumber(PuffinBasicAtomTypeId type, long bits) {
+        switch (type) {
+            case INT32:
+                return (int) bits;
+            case INT64:
+                return bits;
+            case FLOAT:
+                return Float.intBitsToFloat((int) bits);
+            default:
+                return Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static int arenaNeeded(PuffinBasicAtomTypeId type, Object value) {
+        if (type != PuffinBasicAtomTypeId.STRING) {
+            return 0;
+        }
+        // Upper bound of the UTF-8 length, plus the length prefix and alignment.
+        return Integer.BYTES + 3 * ((String) value).length() + Long.BYTES;
+    }
+
+    /**
+     * Copies the live entries into a new file with the given number of
+     * slots and arena size, and swaps it in. Entries are streamed from the
+     * old mapping into the new one, so a grow needs no heap per entry.
+     */
+    private void rebuild(int newCapacity, long newArenaBytes) {
+        var old = table;
+        long liveArena = 0;
+        for (int slot = old.nextFull(0); slot < old.capacity; slot = old.nextFull(slot + 1)) {
+            liveArena += old.arenaUsedBy(keyType, old.slotPos(slot))
+                    + old.arenaUsedBy(valueType, old.slotPos(slot) + Long.BYTES);
+        }
+        var tmp = tmpPath();
+        try {
+            create(tmp, newCapacity, Math.max(newArenaBytes, 2 * liveArena));
+            var fresh = new Table(tmp);
+            for (int slot = old.nextFull(0); slot < old.capacity; slot = old.nextFull(slot + 1)) {
+                var key = old.readKey(slot);
+                fresh.insert(hash(key), key, old.readValue(slot));
+            }
+            fresh.writeCounts();
+            fresh.force();
+            replaceWith(tmp);
+        } catch (IOException e) {
+            deleteQuietly(tmp);
+            throw ioError(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(tmp);
+            throw e;
+        }
+    }
+
+    private Path tmpPath() {
+        return path.resolveSibling(path.getFileName() + ".tmp");
+    }
+
+    /**
+     * Moves the complete file tmp over the dict file and maps it.
+     */
+    private void replaceWith(Path tmp) throws IOException {
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        table = new Table(path);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Best effort, the dict file itself is untouched
+        }
+    }
+
+    private void create(Path file, int numSlots, long numArenaBytes) throws IOException {
+        try (var channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(keyType.ordinal())
+                    .putInt(valueType.ordinal())
+                    .putInt(numSlots)
+                    .putLong(numArenaBytes)
+                    .putLong(0)
+                    .putLong(0)
+                    .putLong(0);
+            header.clear();
+            channel.write(header, 0);
+            long fileBytes = layoutEnd(numSlots, numArenaBytes);
+            channel.write(ByteBuffer.allocate(1), fileBytes - 1);
+        }
+    }
+
+    private static long layoutEnd(int numSlots, long numArenaBytes) {
+        return align8(HEADER_BYTES + (long) numSlots * Integer.BYTES)
+                + (long) numSlots * 2 * Long.BYTES + numArenaBytes;
+    }
+
+    private static long align8(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    private PuffinBasicRuntimeError ioError(IOException e) {
+        return new PuffinBasicRuntimeError(
+                IO_ERROR,
+                "Failed to map dict file '" + path + "', error: " + e.getMessage()
+        );
+    }
+
+    /**
+     * One mapped table file: its layout, counts and segments.
+     */
+    private final class Table {
+        private final MappedByteBuffer[] segments;
+        private final int capacity;
+        private final int mask;
+        private final long tagsStart;
+        private final long slotsStart;
+        private final long arenaStart;
+        private final long arenaBytes;
+        private int size;
+        private int deleted;
+        private long arenaUsed;
+
+        Table(Path file) throws IOException {
+            try (var channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                var header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                while (header.hasRemaining()) {
+                    if (channel.read(header, header.position()) < 0) {
+                        break;
+                    }
+                }
+                header.flip();
+                if (header.remaining() < HEADER_BYTES
+                        || header.getLong() != MAGIC
+                        || header.getInt() != VERSION)
+                {
+                    throw new PuffinBasicRuntimeError(
+                            IO_ERROR,
+                            "'" + file + "' is not a mapped dict file"
+                    );
+                }
+                int fileKeyType = header.getInt();
+                int fileValueType = header.getInt();
+                if (fileKeyType != keyType.ordinal() || fileValueType != valueType.ordinal()) {
+                    throw new PuffinBasicRuntimeError(
+                            DATA_TYPE_MISMATCH,
+                            "Mapped dict file '" + file + "' has different key/value types"
+                    );
+                }
+                capacity = header.getInt();
+                arenaBytes = header.getLong();
+                size = (int) header.getLong();
+                deleted = (int) header.getLong();
+                arenaUsed = header.getLong();
+                mask = capacity - 1;
+                tagsStart = HEADER_BYTES;
+                slotsStart = align8(tagsStart + (long) capacity * Integer.BYTES);
+                arenaStart = slotsStart + (long) capacity * 2 * Long.BYTES;
+
+                long fileBytes = layoutEnd(capacity, arenaBytes);
+                if (channel.size() != fileBytes) {
+                    throw new PuffinBasicRuntimeError(
+                            IO_ERROR,
+                            "Mapped dict file '" + file + "' is truncated"
+                    );
+                }
+                int numSegments = (int) ((fileBytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+                segments = new MappedByteBuffer[numSegments];
+                for (int i = 0; i < numSegments; i++) {
+                    long offset = (long) i << SEGMENT_SHIFT;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            offset, Math.min(SEGMENT_MASK + 1, fileBytes - offset));
+                    segments[i].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            }
+        }
+
+        /**
+         * Returns the slot holding the key, or -1.
+         */
+        int find(Object key, int hash) {
+            int expected = tag(hash);
+            long bits = keyType == PuffinBasicAtomTypeId.STRING ? 0 : encodeNumber(keyType, key);
+            int slot = hash & mask;
+            int tag;
+            while ((tag = getInt(tagPos(slot))) != EMPTY) {
+                if (tag == expected) {
+                    long stored = getLong(slotPos(slot));
+                    if (keyType == PuffinBasicAtomTypeId.STRING
+                            ? key.equals(readString(stored))
+                            : stored == bits)
+                    {
+                        return slot;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Adds a key that is not in the table. The caller makes sure there
+         * is a free slot and arena space.
+         */
+        void insert(int hash, Object key, Object value) {
+            int slot = hash & mask;
+            int tag;
+            while (!isFree(tag = getInt(tagPos(slot)))) {
+                slot = (slot + 1) & mask;
+            }
+            if (tag == DELETED) {
+                deleted--;
+            }
+            putLong(slotPos(slot), encode(keyType, key));
+            writeValue(slot, value);
+            putInt(tagPos(slot), tag(hash));
+            size++;
+        }
+
+        int nextFull(int slot) {
+            while (slot < capacity && isFree(getInt(tagPos(slot)))) {
+                slot++;
+            }
+            return slot;
+        }
+
+        Object readKey(int slot) {
+            return decode(keyType, getLong(slotPos(slot)));
+        }
+
+        Object readValue(int slot) {
+            return decode(valueType, getLong(slotPos(slot) + Long.BYTES));
+        }
+
+        void writeValue(int slot, Object value) {
+            putLong(slotPos(slot) + Long.BYTES, encode(valueType, value));
+        }
+
+        private long encode(PuffinBasicAtomTypeId type, Object value) {
+            return type == PuffinBasicAtomTypeId.STRING ? writeString((String) value) : encodeNumber(type, value);
+        }
+
+        private Object decode(PuffinBasicAtomTypeId type, long bits) {
+            return type == PuffinBasicAtomTypeId.STRING ? readString(bits) : decodeNumber(type, bits);
+        }
+
+        boolean hasArena(long needed) {
+            return arenaUsed + needed <= arenaBytes;
+        }
+
+        long growArena(long needed) {
+            return Math.max(arenaBytes * 2, arenaBytes + needed);
+        }
+
+        /**
+         * Returns the arena bytes used by the string of the key or value
+         * word at pos, or 0 for a number.
+         */
+        long arenaUsedBy(PuffinBasicAtomTypeId type, long pos) {
+            if (type != PuffinBasicAtomTypeId.STRING) {
+                return 0;
+            }
+            return align8(Integer.BYTES + getInt(arenaStart + getLong(pos)));
+        }
+
+        private long writeString(String value) {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            long offset = arenaUsed;
+            putInt(arenaStart + offset, bytes.length);
+            putBytes(arenaStart + offset + Integer.BYTES, bytes);
+            arenaUsed = align8(offset + Integer.BYTES + bytes.length);
+            return offset;
+        }
+
+        private String readString(long offset) {
+            var bytes = new byte[getInt(arenaStart + offset)];
+            getBytes(arenaStart + offset + Integer.BYTES, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void writeCounts() {
+            putLong(SIZE_OFFSET, size);
+            putLong(DELETED_OFFSET, deleted);
+            putLong(ARENA_USED_OFFSET, arenaUsed);
+        }
+
+        void force() {
+            for (var segment : segments) {
+                segment.force();
+            }
+        }
+
+        long tagPos(int slot) {
+            return tagsStart + (long) slot * Integer.BYTES;
+        }
+
+        long slotPos(int slot) {
+            return slotsStart + (long) slot * 2 * Long.BYTES;
+        }
+
+        // Ints and longs are aligned, so they never straddle two segments.
+
+        private int getInt(long pos) {
+            return segments[(int) (pos >>> SEGMENT_SHIFT)].getInt((int) (pos & SEGMENT_MASK));
+        }
+
+        void putInt(long pos, int value) {
+            segments[(int) (pos >>> SEGMENT_SHIFT)].putInt((int) (pos & SEGMENT_MASK), value);
+        }
+
+        private long getLong(long pos) {
+            return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK));
+        }
+
+        private void putLong(long pos, long value) {
+            segments[(int) (pos >>> SEGMENT_SHIFT)].putLong((int) (pos & SEGMENT_MASK), value);
+        }
+
+        private void getBytes(long pos, byte[] dst) {
+            for (int i = 0; i < dst.length; ) {
+                var segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+                int offset = (int) (pos & SEGMENT_MASK);
+                int len = Math.min(dst.length - i, segment.capacity() - offset);
+                segment.duplicate().position(offset).get(dst, i, len);
+                i += len;
+                pos += len;
+            }
+        }
+
+        private void putBytes(long pos, byte[] src) {
+            for (int i = 0; i < src.length; ) {
+                var segment = segments[(int) (pos >>> SEGMENT_SHIFT)];
+                int offset = (int) (pos & SEGMENT_MASK);
+                int len = Math.min(src.length - i, segment.capacity() - offset);
+                segment.duplicate().position(offset).put(src, i, len);
+                i += len;
+                pos += len;
+            }
+        }
+    }
+}
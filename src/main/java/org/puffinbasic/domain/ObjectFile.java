@@ -0,0 +1,603 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.puffinbasic.domain.STObjects.AbstractSTArrayValue;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.PuffinBasicType;
+import org.puffinbasic.domain.STObjects.STCompositeValue;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+
+/**
+ * SAVEOBJ/LOADOBJ binary files: a little-endian header (magic, version,
+ * type signature) followed by the value. The signature spells out the
+ * whole type, including struct fields, and must match the type of the
+ * variable being loaded, so the value itself carries no type tags.
+ * Scalars are written as is, strings as UTF-8 bytes with an int length
+ * prefix, arrays as #dims, dims and the elements, and composites as a
+ * count followed by their elements, primitive runs in bulk.
+ * The Encoder and Decoder are also used by the compiled program cache.
+ */
+public final class ObjectFile {
+
+    static final int MAGIC = 0x424f4250; // "PBOB"
+    static final int VERSION = 2;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private ObjectFile() {}
+
+    public static void save(PuffinBasicSymbolTable symbolTable, String path, STEntry entry) {
+        var type = entry.getType();
+        var signature = type.signature();
+        try (var channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            var encoder = new Encoder(symbolTable, channel);
+            encoder.writeInt(MAGIC);
+            encoder.writeInt(VERSION);
+            encoder.writeString(signature);
+            encoder.writeValue(type, entry.getValue());
+            encoder.flush();
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to save object to '" + path + "', error: " + e.getMessage()
+            );
+        }
+    }
+
+    public static void load(PuffinBasicSymbolTable symbolTable, String path, STEntry entry) {
+        var type = entry.getType();
+        var signature = type.signature();
+        try (var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            var decoder = new Decoder(symbolTable, channel, path);
+            if (decoder.readInt() != MAGIC || decoder.readInt() != VERSION) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "'" + path + "' is not a SAVEOBJ file"
+                );
+            }
+            var fileSignature = decoder.readString();
+            if (!fileSignature.equals(signature)) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "'" + path + "' holds " + fileSignature + ", can't load it into " + signature
+                );
+            }
+            decoder.readValue(type, entry.getValue());
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to load object from '" + path + "', error: " + e.getMessage()
+            );
+        }
+    }
+
+    public static final class Encoder {
+        private final PuffinBasicSymbolTable symbolTable;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+
+        public Encoder(PuffinBasicSymbolTable symbolTable, FileChannel channel) {
+            this.symbolTable = symbolTable;
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        PuffinBasicSymbolTable symbolTable() {
+            return symbolTable;
+        }
+
+        public void writeInt(int value) throws IOException {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        public void writeLong(long value) throws IOException {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void writeDouble(double value) throws IOException {
+            ensure(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        public void writeString(String value) throws IOException {
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            for (int i = 0; i < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(bytes.length - i, buffer.remaining());
+                buffer.put(bytes, i, n);
+                i += n;
+            }
+        }
+
+        public void writeInts(int[] src, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Integer.BYTES);
+                int n = Math.min(length, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(src, offset, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void writeLongs(long[] src, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Long.BYTES);
+                int n = Math.min(length, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().put(src, offset, n);
+                buffer.position(buffer.position() + n * Long.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void writeFloats(float[] src, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Float.BYTES);
+                int n = Math.min(length, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().put(src, offset, n);
+                buffer.position(buffer.position() + n * Float.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void writeDoubles(double[] src, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensure(Double.BYTES);
+                int n = Math.min(length, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().put(src, offset, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void writeStrings(Object[] src, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                writeString((String) src[i]);
+            }
+        }
+
+        void writeScalar(PuffinBasicAtomTypeId type, STValue value) throws IOException {
+            switch (type) {
+                case INT32:
+                    writeInt(value.getInt32());
+                    break;
+                case INT64:
+                    writeLong(value.getInt64());
+                    break;
+                case FLOAT:
+                    ensure(Float.BYTES);
+                    buffer.putFloat(value.getFloat32());
+                    break;
+                case DOUBLE:
+                    writeDouble(value.getFloat64());
+                    break;
+                default:
+                    writeString(value.getString());
+            }
+        }
+
+        void writeValue(PuffinBasicType type, STValue value) throws IOException {
+            switch (type.getTypeId()) {
+                case SCALAR:
+                    writeScalar(type.getAtomTypeId(), value);
+                    break;
+                case ARRAY:
+                    writeArray(type.getAtomTypeId(), value);
+                    break;
+                default:
+                    ((STCompositeValue) value).encode(this);
+            }
+        }
+
+        /**
+         * Writes the elements of a collection: boxed scalars (as stored by
+         * LIST, SET, DICT etc.) in one bulk run, else value by value.
+         */
+        void writeElements(PuffinBasicType type, Collection<?> elements) throws IOException {
+            int n = elements.size();
+            if (type.getTypeId() != STObjects.PuffinBasicTypeId.SCALAR) {
+                for (var element : elements) {
+                    writeValue(type, (STValue) element);
+                }
+                return;
+            }
+            switch (type.getAtomTypeId()) {
+                case INT32: {
+                    int[] values = new int[n];
+                    int i = 0;
+                    for (var element : elements) {
+                        values[i++] = (Integer) element;
+                    }
+                    writeInts(values, 0, n);
+                }
+                    break;
+                case INT64: {
+                    long[] values = new long[n];
+                    int i = 0;
+                    for (var element : elements) {
+                        values[i++] = (Long) element;
+                    }
+                    writeLongs(values, 0, n);
+                }
+                    break;
+                case FLOAT: {
+                    float[] values = new float[n];
+                    int i = 0;
+                    for (var element : elements) {
+                        values[i++] = (Float) element;
+                    }
+                    writeFloats(values, 0, n);
+                }
+                    break;
+                case DOUBLE: {
+                    double[] values = new double[n];
+                    int i = 0;
+                    for (var element : elements) {
+                        values[i++] = (Double) element;
+                    }
+                    writeDoubles(values, 0, n);
+                }
+                    break;
+                default:
+                    for (var element : elements) {
+                        writeString((String) element);
+                    }
+            }
+        }
+
+        void writeArray(PuffinBasicAtomTypeId type, STValue value) throws IOException {
+            var dims = value.getArrayDimensions();
+            writeInt(dims.size());
+            for (int i = 0; i < dims.size(); i++) {
+                writeInt(dims.getInt(i));
+            }
+            int n = value.getTotalLength();
+            if (value instanceof STInt32ArrayValue) {
+                writeInts(((STInt32ArrayValue) value).getValue(), 0, n);
+            } else if (value instanceof STInt64ArrayValue) {
+                writeLongs(((STInt64ArrayValue) value).getValue(), 0, n);
+            } else if (value instanceof STFloat32ArrayValue) {
+                writeFloats(((STFloat32ArrayValue) value).getValue(), 0, n);
+            } else if (value instanceof STFloat64ArrayValue) {
+                writeDoubles(((STFloat64ArrayValue) value).getValue(), 0, n);
+            } else if (value instanceof STStringArrayValue) {
+                writeStrings(((STStringArrayValue) value).getValue(), 0, n);
+            } else {
+                // Mapped arrays
+                var array = (AbstractSTArrayValue) value;
+                for (int i = 0; i < n; i++) {
+                    array.setArrayIndexID(i);
+                    writeScalar(type, array);
+                }
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        public void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    public static final class Decoder {
+        private final PuffinBasicSymbolTable symbolTable;
+        private final FileChannel channel;
+        private final String path;
+        private final ByteBuffer buffer;
+
+        public Decoder(PuffinBasicSymbolTable symbolTable, FileChannel channel, String path) {
+            this.symbolTable = symbolTable;
+            this.channel = channel;
+            this.path = path;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            this.buffer.flip();
+        }
+
+        PuffinBasicSymbolTable symbolTable() {
+            return symbolTable;
+        }
+
+        public int readInt() throws IOException {
+            fill(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        public long readLong() throws IOException {
+            fill(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        double readDouble() throws IOException {
+            fill(Double.BYTES);
+            return buffer.getDouble();
+        }
+
+        public int readCount() throws IOException {
+            int n = readInt();
+            if (n < 0) {
+                throw corrupt();
+            }
+            return n;
+        }
+
+        /**
+         * Reads a count of items taking at least itemBytes each in the file,
+         * so a damaged count fails as corrupt instead of allocating a huge array.
+         */
+        public int readCount(int itemBytes) throws IOException {
+            int n = readCount();
+            checkRemaining(n, itemBytes);
+            return n;
+        }
+
+        public void checkRemaining(long n, int itemBytes) throws IOException {
+            if (n * itemBytes > buffer.remaining() + channel.size() - channel.position()) {
+                throw corrupt();
+            }
+        }
+
+        public String readString() throws IOException {
+            var bytes = new byte[readCount(1)];
+            for (int i = 0; i < bytes.length; ) {
+                fill(1);
+                int n = Math.min(bytes.length - i, buffer.remaining());
+                buffer.get(bytes, i, n);
+                i += n;
+            }
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public void readInts(int[] dst, int offset, int length) throws IOException {
+            while (length > 0) {
+                fill(Integer.BYTES);
+                int n = Math.min(length, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(dst, offset, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void readLongs(long[] dst, int offset, int length) throws IOException {
+            while (length > 0) {
+                fill(Long.BYTES);
+                int n = Math.min(length, buffer.remaining() / Long.BYTES);
+                buffer.asLongBuffer().get(dst, offset, n);
+                buffer.position(buffer.position() + n * Long.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void readFloats(float[] dst, int offset, int length) throws IOException {
+            while (length > 0) {
+                fill(Float.BYTES);
+                int n = Math.min(length, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().get(dst, offset, n);
+                buffer.position(buffer.position() + n * Float.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void readDoubles(double[] dst, int offset, int length) throws IOException {
+            while (length > 0) {
+                fill(Double.BYTES);
+                int n = Math.min(length, buffer.remaining() / Double.BYTES);
+                buffer.asDoubleBuffer().get(dst, offset, n);
+                buffer.position(buffer.position() + n * Double.BYTES);
+                offset += n;
+                length -= n;
+            }
+        }
+
+        void readStrings(Object[] dst, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                dst[i] = readString();
+            }
+        }
+
+        void readScalar(PuffinBasicAtomTypeId type, STValue dst) throws IOException {
+            switch (type) {
+                case INT32:
+                    dst.setInt32(readInt());
+                    break;
+                case INT64:
+                    dst.setInt64(readLong());
+                    break;
+                case FLOAT:
+                    fill(Float.BYTES);
+                    dst.setFloat32(buffer.getFloat());
+                    break;
+                case DOUBLE:
+                    dst.setFloat64(readDouble());
+                    break;
+                default:
+                    dst.setString(readString());
+            }
+        }
+
+        /**
+         * Reads the value into dst, which is an instance of the type.
+         */
+        void readValue(PuffinBasicType type, STValue dst) throws IOException {
+            switch (type.getTypeId()) {
+                case SCALAR:
+                    readScalar(type.getAtomTypeId(), dst);
+                    break;
+                case ARRAY:
+                    readArray(type.getAtomTypeId(), dst);
+                    break;
+                default:
+                    ((STCompositeValue) dst).decode(this);
+            }
+        }
+
+        /**
+         * Reads a non scalar value into a new instance of the type.
+         */
+        STValue newValue(PuffinBasicType type) throws IOException {
+            var value = type.newInstance(symbolTable);
+            readValue(type, value);
+            return value;
+        }
+
+        /**
+         * Reads n elements as written by writeElements, boxing scalars the
+         * way the collections store them.
+         */
+        List<Object> readElements(PuffinBasicType type, int n) throws IOException {
+            // Every value takes at least 4 bytes, the 8 byte scalars twice that
+            checkRemaining(n, type.getTypeId() == STObjects.PuffinBasicTypeId.SCALAR
+                    ? elementBytes(type.getAtomTypeId()) : Integer.BYTES);
+            var elements = new ArrayList<>(n);
+            if (type.getTypeId() != STObjects.PuffinBasicTypeId.SCALAR) {
+                for (int i = 0; i < n; i++) {
+                    elements.add(newValue(type));
+                }
+                return elements;
+            }
+            switch (type.getAtomTypeId()) {
+                case INT32: {
+                    int[] values = new int[n];
+                    readInts(values, 0, n);
+                    for (int value : values) {
+                        elements.add(value);
+                    }
+                }
+                    break;
+                case INT64: {
+                    long[] values = new long[n];
+                    readLongs(values, 0, n);
+                    for (long value : values) {
+                        elements.add(value);
+                    }
+                }
+                    break;
+                case FLOAT: {
+                    float[] values = new float[n];
+                    readFloats(values, 0, n);
+                    for (float value : values) {
+                        elements.add(value);
+                    }
+                }
+                    break;
+                case DOUBLE: {
+                    double[] values = new double[n];
+                    readDoubles(values, 0, n);
+                    for (double value : values) {
+                        elements.add(value);
+                    }
+                }
+                    break;
+                default:
+                    for (int i = 0; i < n; i++) {
+                        elements.add(readString());
+                    }
+            }
+            return elements;
+        }
+
+        void readArray(PuffinBasicAtomTypeId type, STValue dst) throws IOException {
+            int ndim = readCount(Integer.BYTES);
+            var dims = new IntArrayList(ndim);
+            long total = 1;
+            for (int i = 0; i < ndim; i++) {
+                int dim = readCount();
+                total = Math.min(total * dim, Integer.MAX_VALUE + 1L);
+                dims.add(dim);
+            }
+            if (total > Integer.MAX_VALUE) {
+                throw corrupt();
+            }
+            checkRemaining(total, elementBytes(type));
+            dst.setArrayDimensions(dims);
+            int n = dst.getTotalLength();
+            if (dst instanceof STInt32ArrayValue) {
+                readInts(((STInt32ArrayValue) dst).getValue(), 0, n);
+            } else if (dst instanceof STInt64ArrayValue) {
+                readLongs(((STInt64ArrayValue) dst).getValue(), 0, n);
+            } else if (dst instanceof STFloat32ArrayValue) {
+                readFloats(((STFloat32ArrayValue) dst).getValue(), 0, n);
+            } else if (dst instanceof STFloat64ArrayValue) {
+                readDoubles(((STFloat64ArrayValue) dst).getValue(), 0, n);
+            } else if (dst instanceof STStringArrayValue) {
+                readStrings(((STStringArrayValue) dst).getValue(), 0, n);
+            } else {
+                // Mapped arrays
+                var array = (AbstractSTArrayValue) dst;
+                for (int i = 0; i < n; i++) {
+                    array.setArrayIndexID(i);
+                    readScalar(type, array);
+                }
+            }
+        }
+
+        private static int elementBytes(PuffinBasicAtomTypeId type) {
+            switch (type) {
+                case INT64:
+                case DOUBLE:
+                    return Long.BYTES;
+                default:
+                    return Integer.BYTES;
+            }
+        }
+
+        private void fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    throw corrupt();
+                }
+            }
+            buffer.flip();
+        }
+
+        public PuffinBasicRuntimeError corrupt() {
+            return new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "'" + path + "' is truncated or corrupt"
+            );
+        }
+    }
+}
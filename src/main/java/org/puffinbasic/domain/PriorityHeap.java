@@ -0,0 +1,416 @@
+package org.puffinbasic.domain;
+
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.PuffinBasicType;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INDEX_OUT_OF_BOUNDS;
+
+/**
+ * Binary min-heap over parallel primitive arrays. Each entry lives in a
+ * handle slot (priority, push sequence, payload); the heap only moves
+ * handles, so a queued entry's priority can be decreased by handle.
+ * Floating point priorities are stored as order preserving long bits,
+ * so every priority type shares the same int comparisons.
+ * Equal priorities pop in push order.
+ * Handle slots are reused after a pop, so a handle also carries the slot's
+ * generation in its high bits, which is bumped on every reuse: a stale
+ * handle is rejected unless its slot was reused a multiple of 128 times.
+ */
+final class PriorityHeap {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int SLOT_BITS = 24;
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = Integer.MAX_VALUE >>> SLOT_BITS;
+
+    private final PuffinBasicAtomTypeId priorityType;
+    private final PuffinBasicAtomTypeId valueType;
+    private final boolean objectValues;
+
+    private int[] heap;
+    private int[] positions;
+    private int[] generations;
+    private long[] priorities;
+    private long[] sequences;
+    private long[] longValues;
+    private double[] doubleValues;
+    private Object[] objects;
+    private int[] freeHandles;
+    private int numFree;
+    private int numHandles;
+    private int size;
+    private long nextSequence;
+
+    PriorityHeap(PuffinBasicAtomTypeId priorityType, PuffinBasicAtomTypeId valueType) {
+        this.priorityType = priorityType;
+        this.valueType = valueType;
+        this.objectValues = valueType == PuffinBasicAtomTypeId.STRING
+                || valueType == PuffinBasicAtomTypeId.COMPOSITE;
+        this.heap = new int[INITIAL_CAPACITY];
+        this.positions = new int[INITIAL_CAPACITY];
+        this.generations = new int[INITIAL_CAPACITY];
+        this.priorities = new long[INITIAL_CAPACITY];
+        this.sequences = new long[INITIAL_CAPACITY];
+        this.freeHandles = new int[INITIAL_CAPACITY];
+        switch (valueType) {
+            case INT32:
+            case INT64:
+                longValues = new long[INITIAL_CAPACITY];
+                break;
+            case FLOAT:
+            case DOUBLE:
+                doubleValues = new double[INITIAL_CAPACITY];
+                break;
+            default:
+                objects = new Object[INITIAL_CAPACITY];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int push(STValue priority, STValue value) {
+        int handle = allocate();
+        priorities[handle] = encode(priority);
+        sequences[handle] = nextSequence++;
+        switch (valueType) {
+            case INT32:
+                longValues[handle] = value.getInt32();
+                break;
+            case INT64:
+                longValues[handle] = value.getInt64();
+                break;
+            case FLOAT:
+                doubleValues[handle] = value.getFloat32();
+                break;
+            case DOUBLE:
+                doubleValues[handle] = value.getFloat64();
+                break;
+            case STRING:
+                objects[handle] = value.getString();
+                break;
+            default:
+                objects[handle] = value;
+        }
+        heap[size] = handle;
+        positions[handle] = size;
+        siftUp(size++);
+        return (generations[handle] << SLOT_BITS) | handle;
+    }
+
+    void peek(STValue result) {
+        getValue(top(), result);
+    }
+
+    void peekPriority(STValue result) {
+        long priority = priorities[top()];
+        switch (priorityType) {
+            case INT32:
+                result.setInt32((int) priority);
+                break;
+            case INT64:
+                result.setInt64(priority);
+                break;
+            case FLOAT:
+                result.setFloat32((float) decodeDouble(priority));
+                break;
+            default:
+                result.setFloat64(decodeDouble(priority));
+        }
+    }
+
+    void pop(STValue result) {
+        int handle = top();
+        getValue(handle, result);
+        int last = heap[--size];
+        if (size > 0) {
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        positions[handle] = -1;
+        generations[handle] = (generations[handle] + 1) & GENERATION_MASK;
+        if (objectValues) {
+            objects[handle] = null;
+        }
+        freeHandles[numFree++] = handle;
+    }
+
+    void decreaseKey(int queueHandle, STValue priority) {
+        int handle = queueHandle & SLOT_MASK;
+        if (queueHandle < 0
+                || handle >= numHandles
+                || positions[handle] < 0
+                || generations[handle] != queueHandle >>> SLOT_BITS)
+        {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Handle " + queueHandle + " is not in the priority queue"
+            );
+        }
+        long encoded = encode(priority);
+        if (encoded > priorities[handle]) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "decreaseKey: new priority " + priority.printFormat().trim()
+                            + " is greater than the current priority"
+            );
+        }
+        priorities[handle] = encoded;
+        siftUp(positions[handle]);
+    }
+
+    void clear() {
+        Arrays.fill(positions, 0, numHandles, -1);
+        for (int handle = 0; handle < numHandles; handle++) {
+            generations[handle] = (generations[handle] + 1) & GENERATION_MASK;
+        }
+        if (objectValues) {
+            Arrays.fill(objects, 0, numHandles, null);
+        }
+        size = 0;
+        numFree = 0;
+        numHandles = 0;
+    }
+
+    /**
+     * Writes the queued entries in heap order along with their handles and
+     * the slot generations, so that decode restores the same heap and handles.
+     */
+    void encode(ObjectFile.Encoder encoder, PuffinBasicType type) throws IOException {
+        encoder.writeInt(numHandles);
+        encoder.writeInt(size);
+        encoder.writeLong(nextSequence);
+        encoder.writeInts(generations, 0, numHandles);
+        encoder.writeInts(heap, 0, size);
+        long[] live = new long[size];
+        for (int i = 0; i < size; i++) {
+            live[i] = priorities[heap[i]];
+        }
+        encoder.writeLongs(live, 0, size);
+        for (int i = 0; i < size; i++) {
+            live[i] = sequences[heap[i]];
+        }
+        encoder.writeLongs(live, 0, size);
+        if (longValues != null) {
+            for (int i = 0; i < size; i++) {
+                live[i] = longValues[heap[i]];
+            }
+            encoder.writeLongs(live, 0, size);
+        } else if (doubleValues != null) {
+            double[] values = new double[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = doubleValues[heap[i]];
+            }
+            encoder.writeDoubles(values, 0, size);
+        } else {
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = objects[heap[i]];
+            }
+            encoder.writeElements(type, Arrays.asList(values));
+        }
+    }
+
+    void decode(ObjectFile.Decoder decoder, PuffinBasicType type) throws IOException {
+        int handles = decoder.readCount(Integer.BYTES);
+        int n = decoder.readCount();
+        long sequence = decoder.readLong();
+        if (n > handles || handles > SLOT_MASK + 1) {
+            throw decoder.corrupt();
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, handles);
+        int[] newGenerations = new int[capacity];
+        decoder.readInts(newGenerations, 0, handles);
+        for (int i = 0; i < handles; i++) {
+            if ((newGenerations[i] & ~GENERATION_MASK) != 0) {
+                throw decoder.corrupt();
+            }
+        }
+        int[] newHeap = new int[capacity];
+        int[] newPositions = new int[capacity];
+        Arrays.fill(newPositions, -1);
+        decoder.readInts(newHeap, 0, n);
+        for (int i = 0; i < n; i++) {
+            int handle = newHeap[i];
+            if (handle < 0 || handle >= handles || newPositions[handle] >= 0) {
+                throw decoder.corrupt();
+            }
+            newPositions[handle] = i;
+        }
+        long[] live = new long[n];
+        priorities = new long[capacity];
+        decoder.readLongs(live, 0, n);
+        for (int i = 0; i < n; i++) {
+            priorities[newHeap[i]] = live[i];
+        }
+        sequences = new long[capacity];
+        decoder.readLongs(live, 0, n);
+        for (int i = 0; i < n; i++) {
+            sequences[newHeap[i]] = live[i];
+        }
+        if (longValues != null) {
+            longValues = new long[capacity];
+            decoder.readLongs(live, 0, n);
+            for (int i = 0; i < n; i++) {
+                longValues[newHeap[i]] = live[i];
+            }
+        } else if (doubleValues != null) {
+            doubleValues = new double[capacity];
+            double[] values = new double[n];
+            decoder.readDoubles(values, 0, n);
+            for (int i = 0; i < n; i++) {
+                doubleValues[newHeap[i]] = values[i];
+            }
+        } else {
+            objects = new Object[capacity];
+            var values = decoder.readElements(type, n);
+            for (int i = 0; i < n; i++) {
+                objects[newHeap[i]] = values.get(i);
+            }
+        }
+        heap = newHeap;
+        positions = newPositions;
+        generations = newGenerations;
+        freeHandles = new int[capacity];
+        numFree = 0;
+        for (int handle = handles - 1; handle >= 0; handle--) {
+            if (positions[handle] < 0) {
+                freeHandles[numFree++] = handle;
+            }
+        }
+        numHandles = handles;
+        size = n;
+        nextSequence = sequence;
+    }
+
+    private int top() {
+        if (size == 0) {
+            throw new PuffinBasicRuntimeError(
+                    INDEX_OUT_OF_BOUNDS,
+                    "Priority queue is empty"
+            );
+        }
+        return heap[0];
+    }
+
+    private void getValue(int handle, STValue result) {
+        switch (valueType) {
+            case INT32:
+                result.setInt32((int) longValues[handle]);
+                break;
+            case INT64:
+                result.setInt64(longValues[handle]);
+                break;
+            case FLOAT:
+                result.setFloat32((float) doubleValues[handle]);
+                break;
+            case DOUBLE:
+                result.setFloat64(doubleValues[handle]);
+                break;
+            case STRING:
+                result.setString((String) objects[handle]);
+                break;
+            default:
+                result.replace((STValue) objects[handle]);
+        }
+    }
+
+    private int allocate() {
+        if (numFree > 0) {
+            return freeHandles[--numFree];
+        }
+        if (numHandles == heap.length) {
+            if (numHandles > SLOT_MASK) {
+                throw new PuffinBasicRuntimeError(
+                        INDEX_OUT_OF_BOUNDS,
+                        "Priority queue is full, max size: " + (SLOT_MASK + 1)
+                );
+            }
+            int capacity = heap.length * 2;
+            heap = Arrays.copyOf(heap, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            generations = Arrays.copyOf(generations, capacity);
+            priorities = Arrays.copyOf(priorities, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            freeHandles = Arrays.copyOf(freeHandles, capacity);
+            if (longValues != null) {
+                longValues = Arrays.copyOf(longValues, capacity);
+            }
+            if (doubleValues != null) {
+                doubleValues = Arrays.copyOf(doubleValues, capacity);
+            }
+            if (objects != null) {
+                objects = Arrays.copyOf(objects, capacity);
+            }
+        }
+        return numHandles++;
+    }
+
+    private boolean less(int h1, int h2) {
+        long p1 = priorities[h1];
+        long p2 = priorities[h2];
+        return p1 < p2 || (p1 == p2 && sequences[h1] < sequences[h2]);
+    }
+
+    private void siftUp(int pos) {
+        int handle = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parent = heap[parentPos];
+            if (!less(handle, parent)) {
+                break;
+            }
+            heap[pos] = parent;
+            positions[parent] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = handle;
+        positions[handle] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int handle = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int childPos = 2 * pos + 1;
+            int child = heap[childPos];
+            int rightPos = childPos + 1;
+            if (rightPos < size && less(heap[rightPos], child)) {
+                childPos = rightPos;
+                child = heap[rightPos];
+            }
+            if (!less(child, handle)) {
+                break;
+            }
+            heap[pos] = child;
+            positions[child] = pos;
+            pos = childPos;
+        }
+        heap[pos] = handle;
+        positions[handle] = pos;
+    }
+
+    private long encode(STValue priority) {
+        switch (priorityType) {
+            case INT32:
+                return priority.getInt32();
+            case INT64:
+                return priority.getInt64();
+            default:
+                long bits = Double.doubleToLongBits(priority.getFloat64());
+                return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+    }
+
+    private static double decodeDouble(long encoded) {
+        return Double.longBitsToDouble(encoded ^ ((encoded >> 63) & Long.MAX_VALUE));
+    }
+}
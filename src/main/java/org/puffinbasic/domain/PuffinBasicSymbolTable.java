@@ -6,7 +6,10 @@ import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.puffinbasic.domain.STObjects.AbstractSTEntry;
 import org.puffinbasic.domain.STObjects.ArrayReferenceValue;
+import org.puffinbasic.domain.STObjects.EntryReader;
+import org.puffinbasic.domain.STObjects.EntryWriter;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.domain.STObjects.PuffinBasicType;
 import org.puffinbasic.domain.STObjects.STEntry;
@@ -16,19 +19,25 @@ import org.puffinbasic.domain.STObjects.STTmp;
 import org.puffinbasic.domain.STObjects.STVariable;
 import org.puffinbasic.domain.STObjects.StructType;
 import org.puffinbasic.domain.Scope.GlobalScope;
+import org.puffinbasic.domain.Variable.VariableKindHint;
 import org.puffinbasic.domain.Variable.VariableName;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 
+import java.io.IOException;
+import java.util.IdentityHashMap;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.COMPOSITE;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.DOUBLE;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FIELD;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.MISSING_STRUCT;
 
@@ -59,6 +68,115 @@ public class PuffinBasicSymbolTable {
         this.lastId = this.lastLastId = -1;
     }
 
+    private PuffinBasicSymbolTable(PuffinBasicSymbolTable from) {
+        this.defaultDataTypes = new Char2ObjectOpenHashMap<>(from.defaultDataTypes);
+        this.userDefinedTypes = new Object2ObjectOpenHashMap<>(from.userDefinedTypes);
+        this.labelNameToId = new Object2IntOpenHashMap<>(from.labelNameToId);
+        this.idmaker = new AtomicInteger(from.idmaker.get());
+        this.lastId = this.lastLastId = -1;
+        var copies = new IdentityHashMap<STEntry, STEntry>();
+        UnaryOperator<STEntry> copier = new UnaryOperator<>() {
+            @Override
+            public STEntry apply(STEntry entry) {
+                var copy = copies.get(entry);
+                if (copy == null) {
+                    copy = ((AbstractSTEntry) entry).copy(PuffinBasicSymbolTable.this, this);
+                    copies.put(entry, copy);
+                }
+                return copy;
+            }
+        };
+        this.currentScope = from.currentScope.copy(null, copier);
+    }
+
+    /**
+     * Returns a copy with the same ids, types and scopes and with fresh
+     * copies of the values, for one execution of a compiled program.
+     * Only reads this table (it must be at the global scope), so several
+     * threads can copy the same table.
+     */
+    public PuffinBasicSymbolTable copy() {
+        if (currentScope.getParent() != null) {
+            throw new PuffinBasicInternalError("Can't copy symbol table inside a function scope");
+        }
+        return new PuffinBasicSymbolTable(this);
+    }
+
+    /**
+     * Writes the table as left by the compiler (ids, types, scopes and
+     * constant values) for the compiled program cache.
+     */
+    public void encode(ObjectFile.Encoder encoder) throws IOException {
+        if (currentScope.getParent() != null) {
+            throw new PuffinBasicInternalError("Can't encode symbol table inside a function scope");
+        }
+        var writer = new EntryWriter(encoder);
+        encoder.writeInt(defaultDataTypes.size());
+        for (var defaultDataType : defaultDataTypes.char2ObjectEntrySet()) {
+            encoder.writeInt(defaultDataType.getCharKey());
+            encoder.writeInt(defaultDataType.getValue().ordinal());
+        }
+        encoder.writeInt(userDefinedTypes.size());
+        for (var userDefinedType : userDefinedTypes.entrySet()) {
+            encoder.writeString(userDefinedType.getKey());
+            writer.writeType(userDefinedType.getValue());
+        }
+        encoder.writeInt(labelNameToId.size());
+        for (var label : labelNameToId.object2IntEntrySet()) {
+            encoder.writeString(label.getKey());
+            encoder.writeInt(label.getIntValue());
+        }
+        encoder.writeInt(idmaker.get());
+        currentScope.encode(writer);
+    }
+
+    /**
+     * Reads a table written by encode.
+     */
+    public static PuffinBasicSymbolTable decode(ObjectFile.Decoder decoder) throws IOException {
+        var symbolTable = new PuffinBasicSymbolTable();
+        var reader = new EntryReader(decoder, symbolTable);
+        var dataTypes = PuffinBasicAtomTypeId.values();
+        int numDefaultDataTypes = decoder.readCount();
+        for (int i = 0; i < numDefaultDataTypes; i++) {
+            char c = (char) decoder.readInt();
+            int dataType = decoder.readCount();
+            if (dataType >= dataTypes.length) {
+                throw decoder.corrupt();
+            }
+            symbolTable.defaultDataTypes.put(c, dataTypes[dataType]);
+        }
+        int numUserDefinedTypes = decoder.readCount();
+        for (int i = 0; i < numUserDefinedTypes; i++) {
+            var name = decoder.readString();
+            var type = reader.readType();
+            if (!(type instanceof StructType)) {
+                throw decoder.corrupt();
+            }
+            symbolTable.userDefinedTypes.put(name, (StructType) type);
+        }
+        int numLabels = decoder.readCount();
+        for (int i = 0; i < numLabels; i++) {
+            var label = decoder.readString();
+            symbolTable.labelNameToId.put(label, decoder.readInt());
+        }
+        symbolTable.idmaker.set(decoder.readInt());
+        Scope.decode(reader, symbolTable.currentScope);
+        return symbolTable;
+    }
+
+    /**
+     * Calls consumer with the name and entry of each global variable.
+     */
+    public void forEachGlobalVariable(BiConsumer<VariableName, STEntry> consumer) {
+        var scope = currentScope;
+        while (scope.getParent() != null) {
+            scope = scope.getParent();
+        }
+        var global = scope;
+        global.forEachVariable((variableName, id) -> consumer.accept(variableName, global.getEntry(id)));
+    }
+
     private int generateNextId() {
         return idmaker.incrementAndGet();
     }
@@ -153,6 +271,36 @@ public class PuffinBasicSymbolTable {
         return id;
     }
 
+    /**
+     * Declares a global array variable, named with its type suffix,
+     * e.g. "A%", whose value the host sets before a run, so that the
+     * program can use it without DIM.
+     */
+    public int addHostArray(String name) {
+        int last = name.length() - 1;
+        final String varname;
+        final String suffix;
+        if (last > 0 && PuffinBasicAtomTypeId.isSuffix(name.charAt(last))) {
+            varname = name.substring(0, last);
+            suffix = name.substring(last);
+        } else {
+            varname = name;
+            suffix = null;
+        }
+        var dataType = getDataTypeFor(varname, suffix);
+        return addVariableOrUDF(
+                new VariableName(varname, dataType.getRepr(), dataType),
+                variableName -> Variable.of(variableName, VariableKindHint.ARRAY, () -> name),
+                (id, entry, variable) -> {
+                    if (!variable.isArray()) {
+                        throw new PuffinBasicRuntimeError(
+                                DATA_TYPE_MISMATCH,
+                                "Host array " + name + " is already declared as " + variable
+                        );
+                    }
+                });
+    }
+
     public int addCompositeVariable(
             VariableName variableName,
             STVariable variable)
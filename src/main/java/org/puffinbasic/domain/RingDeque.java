@@ -0,0 +1,303 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ARRAY_INDEX_OUT_OF_BOUNDS;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INDEX_OUT_OF_BOUNDS;
+
+/**
+ * Growable circular buffer of scalar values, stored in a primitive array of
+ * the element type (strings in an Object[]); the capacity is a power of two
+ * so that wrapping around is a mask.
+ */
+final class RingDeque {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private final PuffinBasicAtomTypeId type;
+    private int[] intValues;
+    private long[] longValues;
+    private float[] floatValues;
+    private double[] doubleValues;
+    private Object[] objects;
+    private int mask;
+    private int head;
+    private int size;
+
+    RingDeque(PuffinBasicAtomTypeId type) {
+        this.type = type;
+        this.mask = INITIAL_CAPACITY - 1;
+        switch (type) {
+            case INT32:
+                intValues = new int[INITIAL_CAPACITY];
+                break;
+            case INT64:
+                longValues = new long[INITIAL_CAPACITY];
+                break;
+            case FLOAT:
+                floatValues = new float[INITIAL_CAPACITY];
+                break;
+            case DOUBLE:
+                doubleValues = new double[INITIAL_CAPACITY];
+                break;
+            default:
+                objects = new Object[INITIAL_CAPACITY];
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void pushFront(STValue value) {
+        ensureCapacity();
+        head = (head - 1) & mask;
+        store(head, value);
+        size++;
+    }
+
+    void pushBack(STValue value) {
+        ensureCapacity();
+        store((head + size) & mask, value);
+        size++;
+    }
+
+    void popFront(STValue result) {
+        checkNotEmpty();
+        load(head, result);
+        release(head);
+        head = (head + 1) & mask;
+        size--;
+    }
+
+    void popBack(STValue result) {
+        checkNotEmpty();
+        int slot = (head + size - 1) & mask;
+        load(slot, result);
+        release(slot);
+        size--;
+    }
+
+    void peekFront(STValue result) {
+        checkNotEmpty();
+        load(head, result);
+    }
+
+    void peekBack(STValue result) {
+        checkNotEmpty();
+        load((head + size - 1) & mask, result);
+    }
+
+    void get(int index, STValue result) {
+        load(slot(index), result);
+    }
+
+    void set(int index, STValue value) {
+        store(slot(index), value);
+    }
+
+    void clear() {
+        if (objects != null) {
+            Arrays.fill(objects, null);
+        }
+        head = 0;
+        size = 0;
+    }
+
+    void values(STValue result) {
+        var dims = new IntArrayList(1);
+        dims.add(size);
+        result.setArrayDimensions(dims);
+        switch (type) {
+            case INT32:
+                copyOut(intValues, ((STInt32ArrayValue) result).getValue());
+                break;
+            case INT64:
+                copyOut(longValues, ((STInt64ArrayValue) result).getValue());
+                break;
+            case FLOAT:
+                copyOut(floatValues, ((STFloat32ArrayValue) result).getValue());
+                break;
+            case DOUBLE:
+                copyOut(doubleValues, ((STFloat64ArrayValue) result).getValue());
+                break;
+            default: {
+                String[] dst = ((STStringArrayValue) result).getValue();
+                for (int i = 0; i < size; i++) {
+                    dst[i] = (String) objects[(head + i) & mask];
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the size and the elements front to back, in the storage type.
+     */
+    void encode(ObjectFile.Encoder encoder) throws IOException {
+        encoder.writeInt(size);
+        int first = Math.min(size, mask + 1 - head);
+        if (intValues != null) {
+            encoder.writeInts(intValues, head, first);
+            encoder.writeInts(intValues, 0, size - first);
+        } else if (longValues != null) {
+            encoder.writeLongs(longValues, head, first);
+            encoder.writeLongs(longValues, 0, size - first);
+        } else if (floatValues != null) {
+            encoder.writeFloats(floatValues, head, first);
+            encoder.writeFloats(floatValues, 0, size - first);
+        } else if (doubleValues != null) {
+            encoder.writeDoubles(doubleValues, head, first);
+            encoder.writeDoubles(doubleValues, 0, size - first);
+        } else {
+            encoder.writeStrings(objects, head, first);
+            encoder.writeStrings(objects, 0, size - first);
+        }
+    }
+
+    void decode(ObjectFile.Decoder decoder) throws IOException {
+        int n = decoder.readCount(longValues != null || doubleValues != null ? Long.BYTES : Integer.BYTES);
+        if (n > MAX_CAPACITY) {
+            throw decoder.corrupt();
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1);
+        if (intValues != null) {
+            intValues = new int[capacity];
+            decoder.readInts(intValues, 0, n);
+        } else if (longValues != null) {
+            longValues = new long[capacity];
+            decoder.readLongs(longValues, 0, n);
+        } else if (floatValues != null) {
+            floatValues = new float[capacity];
+            decoder.readFloats(floatValues, 0, n);
+        } else if (doubleValues != null) {
+            doubleValues = new double[capacity];
+            decoder.readDoubles(doubleValues, 0, n);
+        } else {
+            objects = new Object[capacity];
+            decoder.readStrings(objects, 0, n);
+        }
+        mask = capacity - 1;
+        head = 0;
+        size = n;
+    }
+
+    /**
+     * Copies the elements in order with at most two System.arraycopy calls.
+     */
+    private void copyOut(Object src, Object dst) {
+        int first = Math.min(size, mask + 1 - head);
+        System.arraycopy(src, head, dst, 0, first);
+        System.arraycopy(src, 0, dst, first, size - first);
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) {
+            throw new PuffinBasicRuntimeError(
+                    ARRAY_INDEX_OUT_OF_BOUNDS,
+                    "Deque index: " + index + " is out of bounds, deque size: " + size
+            );
+        }
+        return (head + index) & mask;
+    }
+
+    private void checkNotEmpty() {
+        if (size == 0) {
+            throw new PuffinBasicRuntimeError(
+                    INDEX_OUT_OF_BOUNDS,
+                    "Deque is empty"
+            );
+        }
+    }
+
+    private void store(int slot, STValue value) {
+        switch (type) {
+            case INT32:
+                intValues[slot] = value.getInt32();
+                break;
+            case INT64:
+                longValues[slot] = value.getInt64();
+                break;
+            case FLOAT:
+                floatValues[slot] = value.getFloat32();
+                break;
+            case DOUBLE:
+                doubleValues[slot] = value.getFloat64();
+                break;
+            default:
+                objects[slot] = value.getString();
+        }
+    }
+
+    private void load(int slot, STValue result) {
+        switch (type) {
+            case INT32:
+                result.setInt32(intValues[slot]);
+                break;
+            case INT64:
+                result.setInt64(longValues[slot]);
+                break;
+            case FLOAT:
+                result.setFloat32(floatValues[slot]);
+                break;
+            case DOUBLE:
+                result.setFloat64(doubleValues[slot]);
+                break;
+            default:
+                result.setString((String) objects[slot]);
+        }
+    }
+
+    private void release(int slot) {
+        if (objects != null) {
+            objects[slot] = null;
+        }
+    }
+
+    private void ensureCapacity() {
+        int capacity = mask + 1;
+        if (size < capacity) {
+            return;
+        }
+        if (capacity == MAX_CAPACITY) {
+            throw new PuffinBasicRuntimeError(
+                    INDEX_OUT_OF_BOUNDS,
+                    "Deque is full, max size: " + MAX_CAPACITY
+            );
+        }
+        int newCapacity = capacity * 2;
+        if (intValues != null) {
+            intValues = grow(intValues, new int[newCapacity]);
+        }
+        if (longValues != null) {
+            longValues = grow(longValues, new long[newCapacity]);
+        }
+        if (floatValues != null) {
+            floatValues = grow(floatValues, new float[newCapacity]);
+        }
+        if (doubleValues != null) {
+            doubleValues = grow(doubleValues, new double[newCapacity]);
+        }
+        if (objects != null) {
+            objects = grow(objects, new Object[newCapacity]);
+        }
+        head = 0;
+        mask = newCapacity - 1;
+    }
+
+    private <T> T grow(T src, T dst) {
+        copyOut(src, dst);
+        return dst;
+    }
+}
@@ -9,26 +9,37 @@ import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import it.unimi.dsi.fastutil.objects.ObjectSet;
 import org.puffinbasic.domain.Variable.VariableName;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.runtime.ArrayFileUtil;
 import org.puffinbasic.runtime.Formatter;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.COMPOSITE;
@@ -37,8 +48,10 @@ import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ARRAY_INDEX_OUT_OF_BOUNDS;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FIELD;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FUNCTION_CALL;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_OUT_OF_RANGE;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.NOT_INITIALIZED;
 
 public class STObjects {
@@ -51,6 +64,12 @@ public class STObjects {
         LIST,
         SET,
         DICT,
+        BITSET,
+        PQUEUE,
+        DEQUE,
+        SORTEDDICT,
+        SPATIALGRID,
+        COLUMNLIST,
     }
 
     public enum PuffinBasicAtomTypeId {
@@ -494,6 +513,10 @@ public class STObjects {
 
         public abstract void copyArray(Object[] src, STValue dst);
 
+        public static boolean isSuffix(char c) {
+            return mapping.containsKey(c);
+        }
+
         public static PuffinBasicAtomTypeId lookup(String repr) {
             if (repr == null || repr.length() != 1) {
                 throw new PuffinBasicInternalError(
@@ -534,6 +557,17 @@ public class STObjects {
             return this.equals(other);
         }
 
+        /**
+         * Describes the type, including element and struct field types,
+         * for SAVEOBJ/LOADOBJ files.
+         */
+        default String signature() {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Type: " + this + " can't be saved or loaded"
+            );
+        }
+
         default StructType asStruct() {
             if (getTypeId() != PuffinBasicTypeId.STRUCT) {
                 throw new PuffinBasicRuntimeError(
@@ -573,6 +607,11 @@ public class STObjects {
             return atomType.createValue();
         }
 
+        @Override
+        public String signature() {
+            return atomType.name();
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -623,6 +662,14 @@ public class STObjects {
             return dims != null && dims.size() == n;
         }
 
+        /**
+         * The dims of tmp arrays are set at runtime, so each execution
+         * needs its own copy of the type.
+         */
+        ArrayType copy() {
+            return new ArrayType(atomType, dims == null ? null : new IntArrayList(dims), canBeLValue);
+        }
+
         @Override
         public boolean canBeLValue() {
             return canBeLValue;
@@ -648,6 +695,11 @@ public class STObjects {
             return value;
         }
 
+        @Override
+        public String signature() {
+            return "ARRAY(" + atomType.name() + ")";
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -775,6 +827,22 @@ public class STObjects {
             return new STStruct(symbolTable, this);
         }
 
+        @Override
+        public String signature() {
+            var names = new VariableName[counter];
+            for (var entry : nameToRefIdMap.object2IntEntrySet()) {
+                names[entry.getIntValue()] = entry.getKey();
+            }
+            var signature = new StringBuilder("STRUCT ").append(typeName).append('{');
+            for (int refId = 0; refId < counter; refId++) {
+                if (refId > 0) {
+                    signature.append(',');
+                }
+                signature.append(names[refId]).append(' ').append(refIdToTypeMap.get(refId).signature());
+            }
+            return signature.append('}').toString();
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -962,6 +1030,11 @@ public class STObjects {
             return new STList(type, memberFunctions);
         }
 
+        @Override
+        public String signature() {
+            return "LIST<" + type.signature() + ">";
+        }
+
         @Override
         public PuffinBasicType getFuncCallReturnType(String funcName) {
             return memberFunctions.get(funcName).returnType;
@@ -1061,6 +1134,11 @@ public class STObjects {
             return new STSet(type, memberFunctions);
         }
 
+        @Override
+        public String signature() {
+            return "SET<" + type.signature() + ">";
+        }
+
         @Override
         public PuffinBasicType getFuncCallReturnType(String funcName) {
             return memberFunctions.get(funcName).returnType;
@@ -1170,7 +1248,21 @@ public class STObjects {
 
         @Override
         public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
-            return new STDict(valueType, memberFunctions);
+            return new STDict(keyType, valueType, memberFunctions);
+        }
+
+        @Override
+        public String signature() {
+            return "DICT<" + keyType.signature() + "," + valueType.signature() + ">";
+        }
+
+        /**
+         * Opens (or creates) a dict stored in the given file. Only scalar
+         * values are supported.
+         */
+        public STValue newMappedInstance(String path) {
+            return new STDict(keyType, valueType, memberFunctions,
+                    new MappedHashMap(keyType.getAtomTypeId(), valueType.getAtomTypeId(), path));
         }
 
         @Override
@@ -1203,143 +1295,1506 @@ public class STObjects {
         }
     }
 
-    public interface STEntry {
-        default boolean isLValue() {
-            return false;
-        }
-        STValue getValue();
-        PuffinBasicType getType();
-    }
+    public static final class BitsetType implements PuffinBasicType {
 
-    public static abstract class AbstractSTEntry implements STEntry {
-        private final PuffinBasicType type;
-        private STValue value;
+        private final MemberFunctions memberFunctions;
 
-        AbstractSTEntry(STValue value, PuffinBasicType type) {
-            this.value = value;
-            this.type = type;
+        public BitsetType() {
+            ArrayType valuesType = new ArrayType(PuffinBasicAtomTypeId.INT32);
+            this.memberFunctions = new MemberFunctions(
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "set", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.set(bitIndex(params[0]));
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "setRange", new PuffinBasicType[] {ScalarType.INT32, ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        int from = bitIndex(params[0]);
+                                        int to = bitIndex(params[1]);
+                                        if (from < to) {
+                                            bitset.set(from, to);
+                                        }
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.clear(bitIndex(params[0]));
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "get", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        result.setInt32(bitset.get(bitIndex(params[0])) ? -1 : 0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "flip", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.flip(bitIndex(params[0]));
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "cardinality", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        result.setInt32(bitset.cardinality());
+                                    }))
+                            .add(new MemberFunction(
+                                    "nextSetBit", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        result.setInt32(bitset.nextSetBit(bitIndex(params[0])));
+                                    }))
+                            .add(new MemberFunction(
+                                    "nextClearBit", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        result.setInt32(bitset.nextClearBit(bitIndex(params[0])));
+                                    }))
+                            .add(new MemberFunction(
+                                    "and", new PuffinBasicType[] {this}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.and(((STBitset) params[0]).bitset);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "or", new PuffinBasicType[] {this}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.or(((STBitset) params[0]).bitset);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "xor", new PuffinBasicType[] {this}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.xor(((STBitset) params[0]).bitset);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "andNot", new PuffinBasicType[] {this}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.andNot(((STBitset) params[0]).bitset);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "values", new PuffinBasicType[] {}, valuesType,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        var dims = new IntArrayList(1);
+                                        dims.add(bitset.cardinality());
+                                        result.setArrayDimensions(dims);
+                                        int[] values = ((STInt32ArrayValue) result).getValue();
+                                        int i = 0;
+                                        for (int b = bitset.nextSetBit(0); b >= 0; b = bitset.nextSetBit(b + 1)) {
+                                            values[i++] = b;
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "clearAll", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var bitset = (BitSet) obj;
+                                        bitset.clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
         }
 
-        @Override
-        public PuffinBasicType getType() {
-            return type;
+        private static int bitIndex(STValue value) {
+            int index = value.getInt32();
+            if (index < 0) {
+                throw new PuffinBasicRuntimeError(
+                        ARRAY_INDEX_OUT_OF_BOUNDS,
+                        "Bitset index: " + index + " is negative"
+                );
+            }
+            return index;
         }
 
-        public void setValue(STValue value) {
-            this.value = value;
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.BITSET;
         }
 
         @Override
-        public STValue getValue() {
-            if (value == null) {
-                throw new PuffinBasicInternalError("Value is not set for type: " + getType());
-            }
-            return value;
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
         }
 
-        public void createAndSetInstance(PuffinBasicSymbolTable symbolTable) {
-            setValue(getType().newInstance(symbolTable));
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STBitset(memberFunctions);
         }
-    }
 
-    public static class STLValue extends AbstractSTEntry {
-        STLValue(STValue value, PuffinBasicType type) {
-            super(value, type);
+        @Override
+        public String signature() {
+            return "BITSET";
         }
 
         @Override
-        public boolean isLValue() {
-            return true;
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
         }
-    }
 
-    public static class STVariable extends STLValue {
-        private final Variable variable;
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
 
-        public STVariable(STValue value, Variable variable) {
-            super(value, variable.getType());
-            this.variable = variable;
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != BitsetType.class) {
+                return false;
+            }
+            BitsetType o = (BitsetType) obj;
+            return getTypeId() == o.getTypeId();
         }
 
-        public Variable getVariable() {
-            return variable;
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId());
         }
     }
 
-    public static class STRef extends STLValue {
-        private STEntry ref;
-
-        STRef(PuffinBasicType type) {
-            super(null, type);
-        }
+    public static final class PQueueType implements PuffinBasicType {
 
-        public void setRef(STEntry ref) {
-            if (!ref.getType().equals(getType())) {
-                throw new PuffinBasicRuntimeError(
-                        DATA_TYPE_MISMATCH,
-                        "Expected " + getType() + " got " + ref.getType()
-                );
-            }
-            this.ref = ref;
-        }
+        private final PuffinBasicType priorityType;
+        private final PuffinBasicType valueType;
+        private final MemberFunctions memberFunctions;
 
-        private STEntry getRef() {
-            if (ref == null) {
-                throw new PuffinBasicInternalError("Ref is null");
-            }
-            return ref;
+        public PQueueType(PuffinBasicType priorityType, PuffinBasicType valueType) {
+            this.priorityType = priorityType;
+            this.valueType = valueType;
+            this.memberFunctions = new MemberFunctions(
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "push", new PuffinBasicType[] {priorityType, valueType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        result.setInt32(heap.push(params[0], params[1]));
+                                    }))
+                            .add(new MemberFunction(
+                                    "pop", new PuffinBasicType[] {}, valueType,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        heap.pop(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "peek", new PuffinBasicType[] {}, valueType,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        heap.peek(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "peekPriority", new PuffinBasicType[] {}, priorityType,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        heap.peekPriority(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "decreaseKey", new PuffinBasicType[] {ScalarType.INT32, priorityType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        heap.decreaseKey(params[0].getInt32(), params[1]);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var heap = (PriorityHeap) obj;
+                                        heap.clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
         }
 
         @Override
-        public STValue getValue() {
-            return getRef().getValue();
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.PQUEUE;
         }
-    }
 
-    static final class STTmp extends AbstractSTEntry {
-        STTmp(STValue value, PuffinBasicType type) {
-            super(value, type);
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
         }
-    }
-
-    public static final class STUDF extends STVariable {
 
-        private final IntList paramIds;
-
-        STUDF(STValue value, Variable variable) {
-            super(value, variable);
-            this.paramIds = new IntArrayList();
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STPQueue(priorityType, valueType, memberFunctions);
         }
 
-        public void declareParam(int paramId) {
-            paramIds.add(paramId);
+        @Override
+        public String signature() {
+            return "PQUEUE<" + priorityType.signature() + "," + valueType.signature() + ">";
         }
 
-        public int getNumDeclaredParams() {
-            return paramIds.size();
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
         }
 
-        public int getDeclaredParam(int i) {
-            return paramIds.getInt(i);
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
         }
-    }
 
-    static final class STLabel extends AbstractSTEntry {
-        STLabel() {
-            super(new STInt32ScalarValue(), null);
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != PQueueType.class) {
+                return false;
+            }
+            PQueueType o = (PQueueType) obj;
+            return getTypeId() == o.getTypeId()
+                    && priorityType.equals(o.priorityType)
+                    && valueType.equals(o.valueType);
         }
 
         @Override
-        public PuffinBasicType getType() {
-            throw new PuffinBasicInternalError("Labels don't have a type!");
+        public int hashCode() {
+            return Objects.hash(getTypeId(), priorityType, valueType);
         }
     }
 
-    public interface STValue {
-        String printFormat();
-        String writeFormat();
-        void assign(STValue entry);
-        default void replace(STValue entry) {
+    public static final class DequeType implements PuffinBasicType {
+
+        private final PuffinBasicType type;
+        private final MemberFunctions memberFunctions;
+
+        public DequeType(PuffinBasicType type) {
+            this.type = type;
+            ArrayType valuesType = new ArrayType(type.getAtomTypeId());
+            this.memberFunctions = new MemberFunctions(
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "pushFront", new PuffinBasicType[] {type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.pushFront(params[0]);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "pushBack", new PuffinBasicType[] {type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.pushBack(params[0]);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "popFront", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.popFront(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "popBack", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.popBack(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "peekFront", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.peekFront(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "peekBack", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.peekBack(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "get", new PuffinBasicType[] {ScalarType.INT32}, type,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.get(params[0].getInt32(), result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "set", new PuffinBasicType[] {ScalarType.INT32, type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.set(params[0].getInt32(), params[1]);
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "values", new PuffinBasicType[] {}, valuesType,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.values(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var deque = (RingDeque) obj;
+                                        deque.clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.DEQUE;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STDeque(type, memberFunctions);
+        }
+
+        @Override
+        public String signature() {
+            return "DEQUE<" + type.signature() + ">";
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != DequeType.class) {
+                return false;
+            }
+            DequeType o = (DequeType) obj;
+            return getTypeId() == o.getTypeId()
+                    && type.equals(o.type);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId(), type);
+        }
+    }
+
+    public static final class SortedDictType implements PuffinBasicType {
+
+        private final PuffinBasicType keyType;
+        private final PuffinBasicType valueType;
+        private final MemberFunctions memberFunctions;
+
+        public SortedDictType(PuffinBasicType keyType, PuffinBasicType valueType) {
+            this.keyType = keyType;
+            this.valueType = valueType;
+            ArrayType keysType = new ArrayType(keyType.getAtomTypeId());
+            ArrayType valuesType = new ArrayType(valueType.getAtomTypeId());
+            this.memberFunctions = new MemberFunctions(
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "put", new PuffinBasicType[] {keyType, valueType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.put(params[0], toValue(params[1]));
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "getOrDefault", new PuffinBasicType[] {keyType, valueType}, valueType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        var value = dict.get(params[0]);
+                                        if (value == null) {
+                                            value = toValue(params[1]);
+                                        }
+                                        setValue(value, result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "containsKey", new PuffinBasicType[] {keyType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        result.setInt32(dict.containsKey(params[0]) ? -1 : 0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "removeKey", new PuffinBasicType[] {keyType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        result.setInt32(dict.remove(params[0]) ? -1 : 0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "firstKey", new PuffinBasicType[] {}, keyType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.firstKey(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "lastKey", new PuffinBasicType[] {}, keyType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.lastKey(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "floorKey", new PuffinBasicType[] {keyType, keyType}, keyType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.floorKey(params[0], params[1], result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "ceilingKey", new PuffinBasicType[] {keyType, keyType}, keyType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.ceilingKey(params[0], params[1], result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "keys", new PuffinBasicType[] {}, keysType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.keys(result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "firstKeys", new PuffinBasicType[] {ScalarType.INT32}, keysType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.firstKeys(params[0].getInt32(), result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "rangeKeys", new PuffinBasicType[] {keyType, keyType}, keysType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.rangeKeys(params[0], params[1], result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "values", new PuffinBasicType[] {}, valuesType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        copyValues(dict.values(), result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "rangeValues", new PuffinBasicType[] {keyType, keyType}, valuesType,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        copyValues(dict.rangeValues(params[0], params[1]), result);
+                                    }))
+                            .add(new MemberFunction(
+                                    "removeRange", new PuffinBasicType[] {keyType, keyType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        result.setInt32(dict.removeRange(params[0], params[1]));
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var dict = (SortedKeyMap) obj;
+                                        dict.clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
+        }
+
+        private Object toValue(STValue value) {
+            if (valueType.getTypeId() == PuffinBasicTypeId.SCALAR) {
+                return valueType.getAtomTypeId().getValueFrom(value);
+            } else {
+                return value;
+            }
+        }
+
+        private void setValue(Object value, STValue result) {
+            if (valueType.getTypeId() == PuffinBasicTypeId.SCALAR) {
+                valueType.getAtomTypeId().setValueIn(value, result);
+            } else {
+                result.replace((STValue) value);
+            }
+        }
+
+        private void copyValues(Collection<Object> values, STValue result) {
+            if (valueType.getTypeId() != PuffinBasicTypeId.SCALAR) {
+                throw new PuffinBasicRuntimeError(
+                        BAD_FUNCTION_CALL,
+                        "values() not supported for non-scalar type!"
+                );
+            }
+            valueType.getAtomTypeId().copyArray(values, result);
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.SORTEDDICT;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STSortedDict(keyType, valueType, memberFunctions);
+        }
+
+        @Override
+        public String signature() {
+            return "SORTEDDICT<" + keyType.signature() + "," + valueType.signature() + ">";
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != SortedDictType.class) {
+                return false;
+            }
+            SortedDictType o = (SortedDictType) obj;
+            return getTypeId() == o.getTypeId()
+                    && keyType.equals(o.keyType)
+                    && valueType.equals(o.valueType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId(), keyType, valueType);
+        }
+    }
+
+    public static final class SpatialGridType implements PuffinBasicType {
+
+        private final MemberFunctions memberFunctions;
+
+        public SpatialGridType() {
+            ArrayType idsType = new ArrayType(PuffinBasicAtomTypeId.INT32);
+            this.memberFunctions = new MemberFunctions(
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "insert", new PuffinBasicType[] {ScalarType.INT32, ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        grid.insert(params[0].getInt32(), params[1].getFloat64(), params[2].getFloat64(),
+                                                params[3].getFloat64(), params[4].getFloat64());
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "move", new PuffinBasicType[] {ScalarType.INT32, ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        grid.move(params[0].getInt32(), params[1].getFloat64(), params[2].getFloat64(),
+                                                params[3].getFloat64(), params[4].getFloat64());
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "remove", new PuffinBasicType[] {ScalarType.INT32}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        result.setInt32(grid.remove(params[0].getInt32()) ? -1 : 0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "query", new PuffinBasicType[] {ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64, ScalarType.FLOAT64, idsType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        result.setInt32(grid.query(params[0].getFloat64(), params[1].getFloat64(),
+                                                params[2].getFloat64(), params[3].getFloat64(), params[4]));
+                                    }))
+                            .add(new MemberFunction(
+                                    "overlaps", new PuffinBasicType[] {idsType, idsType}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        result.setInt32(grid.overlaps(params[0], params[1]));
+                                    }))
+                            .add(new MemberFunction(
+                                    "setCellSize", new PuffinBasicType[] {ScalarType.FLOAT64}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        grid.setCellSize(params[0].getFloat64());
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        var grid = (SpatialHashGrid) obj;
+                                        grid.clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.SPATIALGRID;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STSpatialGrid(memberFunctions);
+        }
+
+        @Override
+        public String signature() {
+            return "SPATIALGRID";
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != SpatialGridType.class) {
+                return false;
+            }
+            SpatialGridType o = (SpatialGridType) obj;
+            return getTypeId() == o.getTypeId();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId());
+        }
+    }
+
+    public static final class ColumnListType implements PuffinBasicType {
+
+        private final StructType structType;
+        private final PuffinBasicAtomTypeId[] fieldTypes;
+        private final MemberFunctions memberFunctions;
+
+        public ColumnListType(StructType structType) {
+            this.structType = structType;
+            int numFields = structType.refIdToTypeMap.size();
+            this.fieldTypes = new PuffinBasicAtomTypeId[numFields];
+            var fieldNames = new String[numFields];
+            for (var entry : structType.nameToRefIdMap.object2IntEntrySet()) {
+                var memberRefId = entry.getIntValue();
+                var memberType = structType.refIdToTypeMap.get(memberRefId);
+                if (memberType.getTypeId() != PuffinBasicTypeId.SCALAR) {
+                    throw new PuffinBasicRuntimeError(
+                            DATA_TYPE_MISMATCH,
+                            "COLUMNLIST needs a struct of scalar fields, "
+                                    + structType.getTypeName() + "." + entry.getKey().getVarname()
+                                    + " is not a scalar"
+                    );
+                }
+                fieldTypes[memberRefId] = memberType.getAtomTypeId();
+                fieldNames[memberRefId] = entry.getKey().getVarname();
+            }
+
+            var builder = ImmutableList.<MemberFunction>builder()
+                    .add(new MemberFunction(
+                            "append", new PuffinBasicType[] {structType}, ScalarType.INT32,
+                            (obj, params, result) -> {
+                                var list = (STColumnList) obj;
+                                int row = list.table.appendRow();
+                                list.copyFromStruct(params[0], row);
+                                result.setInt32(row);
+                            }))
+                    .add(new MemberFunction(
+                            "get", new PuffinBasicType[] {ScalarType.INT32, structType}, ScalarType.INT32,
+                            (obj, params, result) -> {
+                                var list = (STColumnList) obj;
+                                list.copyToStruct(params[0].getInt32(), params[1]);
+                                result.setInt32(0);
+                            }))
+                    .add(new MemberFunction(
+                            "set", new PuffinBasicType[] {ScalarType.INT32, structType}, ScalarType.INT32,
+                            (obj, params, result) -> {
+                                var list = (STColumnList) obj;
+                                list.copyFromStruct(params[1], params[0].getInt32());
+                                result.setInt32(0);
+                            }))
+                    .add(new MemberFunction(
+                            "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                            (obj, params, result) -> {
+                                var list = (STColumnList) obj;
+                                list.table.clear();
+                                result.setInt32(0);
+                            }));
+            var reserved = new HashSet<String>();
+            reserved.add("append");
+            reserved.add("get");
+            reserved.add("set");
+            reserved.add("clear");
+            for (int i = 0; i < numFields; i++) {
+                final int column = i;
+                var fieldType = new ScalarType(fieldTypes[i]);
+                var name = fieldNames[i];
+                for (var funcName : new String[] {name, "set" + name, "column" + name}) {
+                    if (!reserved.add(funcName)) {
+                        throw new PuffinBasicRuntimeError(
+                                BAD_FIELD,
+                                "COLUMNLIST member function " + funcName + " of struct "
+                                        + structType.getTypeName() + " is defined twice"
+                        );
+                    }
+                }
+                builder.add(new MemberFunction(
+                                name, new PuffinBasicType[] {ScalarType.INT32}, fieldType,
+                                (obj, params, result) -> {
+                                    var list = (STColumnList) obj;
+                                    list.table.get(column, params[0].getInt32(), result);
+                                }))
+                        .add(new MemberFunction(
+                                "set" + name, new PuffinBasicType[] {ScalarType.INT32, fieldType}, ScalarType.INT32,
+                                (obj, params, result) -> {
+                                    var list = (STColumnList) obj;
+                                    list.table.set(column, params[0].getInt32(), params[1]);
+                                    result.setInt32(0);
+                                }))
+                        .add(new MemberFunction(
+                                "column" + name, new PuffinBasicType[] {}, new ArrayType(fieldTypes[i]),
+                                (obj, params, result) -> {
+                                    var list = (STColumnList) obj;
+                                    list.table.column(column, result);
+                                }));
+            }
+            this.memberFunctions = new MemberFunctions(builder.build());
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.COLUMNLIST;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STColumnList(symbolTable, structType, fieldTypes, memberFunctions);
+        }
+
+        @Override
+        public String signature() {
+            return "COLUMNLIST<" + structType.signature() + ">";
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != ColumnListType.class) {
+                return false;
+            }
+            ColumnListType o = (ColumnListType) obj;
+            return getTypeId() == o.getTypeId()
+                    && structType.equals(o.structType);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId(), structType);
+        }
+    }
+
+    public interface STEntry {
+        default boolean isLValue() {
+            return false;
+        }
+        STValue getValue();
+        PuffinBasicType getType();
+    }
+
+    public static abstract class AbstractSTEntry implements STEntry {
+        private final PuffinBasicType type;
+        private STValue value;
+
+        AbstractSTEntry(STValue value, PuffinBasicType type) {
+            this.value = value;
+            this.type = type;
+        }
+
+        @Override
+        public PuffinBasicType getType() {
+            return type;
+        }
+
+        public void setValue(STValue value) {
+            this.value = value;
+        }
+
+        @Override
+        public STValue getValue() {
+            if (value == null) {
+                throw new PuffinBasicInternalError("Value is not set for type: " + getType());
+            }
+            return value;
+        }
+
+        public void createAndSetInstance(PuffinBasicSymbolTable symbolTable) {
+            setValue(getType().newInstance(symbolTable));
+        }
+
+        /**
+         * Returns a copy of this entry for a new execution of the compiled
+         * program, with its own value (and type, if mutable) in the given
+         * table. Entries referenced by the value are copied with copier.
+         */
+        abstract AbstractSTEntry copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier);
+
+        static PuffinBasicType copyType(PuffinBasicType type) {
+            return type instanceof ArrayType ? ((ArrayType) type).copy() : type;
+        }
+
+        STValue copyValue(PuffinBasicType type, PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            if (value == null) {
+                return null;
+            } else if (value instanceof STStruct) {
+                return ((STStruct) value).copy();
+            } else if (value instanceof STCompositeValue) {
+                // Composites are only filled at runtime
+                return type.newInstance(symbolTable);
+            } else if (value instanceof ArrayReferenceValue) {
+                return new ArrayReferenceValue((STLValue) copier.apply(((ArrayReferenceValue) value).variable));
+            } else if (value instanceof STStringScalarDateValue) {
+                return new STStringScalarDateValue();
+            } else if (value instanceof STStringScalarTimeValue) {
+                return new STStringScalarTimeValue();
+            } else if (value instanceof AbstractSTArrayValue) {
+                var copy = type.getAtomTypeId().createArrayEntry().getValue();
+                if (value.getNumArrayDimensions() > 0) {
+                    copy.setArrayDimensions(value.getArrayDimensions());
+                    int n = value.getTotalLength();
+                    if (value instanceof STInt32ArrayValue) {
+                        System.arraycopy(((STInt32ArrayValue) value).getValue(), 0,
+                                ((STInt32ArrayValue) copy).getValue(), 0, n);
+                    } else if (value instanceof STInt64ArrayValue) {
+                        System.arraycopy(((STInt64ArrayValue) value).getValue(), 0,
+                                ((STInt64ArrayValue) copy).getValue(), 0, n);
+                    } else if (value instanceof STFloat32ArrayValue) {
+                        System.arraycopy(((STFloat32ArrayValue) value).getValue(), 0,
+                                ((STFloat32ArrayValue) copy).getValue(), 0, n);
+                    } else if (value instanceof STFloat64ArrayValue) {
+                        System.arraycopy(((STFloat64ArrayValue) value).getValue(), 0,
+                                ((STFloat64ArrayValue) copy).getValue(), 0, n);
+                    } else if (value instanceof STStringArrayValue) {
+                        System.arraycopy(((STStringArrayValue) value).getValue(), 0,
+                                ((STStringArrayValue) copy).getValue(), 0, n);
+                    }
+                }
+                return copy;
+            } else {
+                var copy = type.getAtomTypeId().createValue();
+                if (value.isInitialized()) {
+                    copy.assign(value);
+                }
+                return copy;
+            }
+        }
+    }
+
+    public static class STLValue extends AbstractSTEntry {
+        STLValue(STValue value, PuffinBasicType type) {
+            super(value, type);
+        }
+
+        @Override
+        STLValue copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            var type = copyType(getType());
+            return new STLValue(copyValue(type, symbolTable, copier), type);
+        }
+
+        @Override
+        public boolean isLValue() {
+            return true;
+        }
+    }
+
+    public static class STVariable extends STLValue {
+        private final Variable variable;
+
+        public STVariable(STValue value, Variable variable) {
+            super(value, variable.getType());
+            this.variable = variable;
+        }
+
+        public Variable getVariable() {
+            return variable;
+        }
+
+        Variable copyVariable() {
+            return new Variable(variable.getVariableName(), copyType(variable.getType()));
+        }
+
+        @Override
+        STVariable copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            var copy = copyVariable();
+            return new STVariable(copyValue(copy.getType(), symbolTable, copier), copy);
+        }
+    }
+
+    public static class STRef extends STLValue {
+        private STEntry ref;
+
+        STRef(PuffinBasicType type) {
+            super(null, type);
+        }
+
+        @Override
+        STRef copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            // Refs are only set at runtime
+            return new STRef(getType());
+        }
+
+        public void setRef(STEntry ref) {
+            if (!ref.getType().equals(getType())) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "Expected " + getType() + " got " + ref.getType()
+                );
+            }
+            this.ref = ref;
+        }
+
+        private STEntry getRef() {
+            if (ref == null) {
+                throw new PuffinBasicInternalError("Ref is null");
+            }
+            return ref;
+        }
+
+        @Override
+        public STValue getValue() {
+            return getRef().getValue();
+        }
+    }
+
+    static final class STTmp extends AbstractSTEntry {
+        STTmp(STValue value, PuffinBasicType type) {
+            super(value, type);
+        }
+
+        @Override
+        STTmp copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            var type = copyType(getType());
+            return new STTmp(copyValue(type, symbolTable, copier), type);
+        }
+    }
+
+    public static final class STUDF extends STVariable {
+
+        private final IntList paramIds;
+
+        STUDF(STValue value, Variable variable) {
+            super(value, variable);
+            this.paramIds = new IntArrayList();
+        }
+
+        @Override
+        STUDF copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            var variable = copyVariable();
+            var copy = new STUDF(copyValue(variable.getType(), symbolTable, copier), variable);
+            copy.paramIds.addAll(paramIds);
+            return copy;
+        }
+
+        public void declareParam(int paramId) {
+            paramIds.add(paramId);
+        }
+
+        public int getNumDeclaredParams() {
+            return paramIds.size();
+        }
+
+        public int getDeclaredParam(int i) {
+            return paramIds.getInt(i);
+        }
+    }
+
+    static final class STLabel extends AbstractSTEntry {
+        STLabel() {
+            super(new STInt32ScalarValue(), null);
+        }
+
+        @Override
+        STLabel copy(PuffinBasicSymbolTable symbolTable, UnaryOperator<STEntry> copier) {
+            var copy = new STLabel();
+            var value = getValue();
+            if (value.isInitialized()) {
+                copy.getValue().assign(value);
+            }
+            return copy;
+        }
+
+        @Override
+        public PuffinBasicType getType() {
+            throw new PuffinBasicInternalError("Labels don't have a type!");
+        }
+    }
+
+    private static final int NEW = -1;
+
+    private enum EntryKind {
+        VARIABLE,
+        UDF,
+        LVALUE,
+        REF,
+        TMP,
+        LABEL
+    }
+
+    private enum ValueKind {
+        NONE,
+        STRUCT,
+        COMPOSITE,
+        ARRAY_REFERENCE,
+        DATE,
+        TIME,
+        ARRAY,
+        SCALAR
+    }
+
+    /**
+     * Writes the entries and types of a compiled symbol table for the
+     * compiled program cache. Values are written the way copy() copies
+     * them: composites other than structs are only filled at runtime, so
+     * just their kind is written. An entry or type is written in full the
+     * first time and by index after that, so entries shared by scopes or
+     * referenced from values, and types compared by identity, are read
+     * back as one object.
+     */
+    static final class EntryWriter {
+        private final ObjectFile.Encoder encoder;
+        private final Map<STEntry, Integer> entries;
+        private final Map<PuffinBasicType, Integer> types;
+
+        EntryWriter(ObjectFile.Encoder encoder) {
+            this.encoder = encoder;
+            this.entries = new IdentityHashMap<>();
+            this.types = new IdentityHashMap<>();
+        }
+
+        ObjectFile.Encoder encoder() {
+            return encoder;
+        }
+
+        void writeType(PuffinBasicType type) throws IOException {
+            var index = types.get(type);
+            if (index != null) {
+                encoder.writeInt(index);
+                return;
+            }
+            encoder.writeInt(NEW);
+            var typeId = type.getTypeId();
+            encoder.writeInt(typeId.ordinal());
+            switch (typeId) {
+                case SCALAR:
+                case UDF:
+                    encoder.writeInt(type.getAtomTypeId().ordinal());
+                    break;
+                case ARRAY: {
+                    var arrayType = (ArrayType) type;
+                    encoder.writeInt(arrayType.atomType.ordinal());
+                    encoder.writeInt(arrayType.canBeLValue ? 1 : 0);
+                    if (arrayType.dims == null) {
+                        encoder.writeInt(NEW);
+                    } else {
+                        encoder.writeInt(arrayType.dims.size());
+                        encoder.writeInts(arrayType.dims.toIntArray(), 0, arrayType.dims.size());
+                    }
+                }
+                    break;
+                case STRUCT: {
+                    // Registered before the fields, as the reader does
+                    types.put(type, types.size());
+                    writeStructFields((StructType) type);
+                }
+                    return;
+                case LIST:
+                    writeType(((ListType) type).type);
+                    break;
+                case SET:
+                    writeType(((SetType) type).type);
+                    break;
+                case DEQUE:
+                    writeType(((DequeType) type).type);
+                    break;
+                case DICT:
+                    writeType(((DictType) type).keyType);
+                    writeType(((DictType) type).valueType);
+                    break;
+                case PQUEUE:
+                    writeType(((PQueueType) type).priorityType);
+                    writeType(((PQueueType) type).valueType);
+                    break;
+                case SORTEDDICT:
+                    writeType(((SortedDictType) type).keyType);
+                    writeType(((SortedDictType) type).valueType);
+                    break;
+                case COLUMNLIST:
+                    writeType(((ColumnListType) type).structType);
+                    break;
+                default:
+                    // BITSET, SPATIALGRID
+            }
+            types.put(type, types.size());
+        }
+
+        private void writeStructFields(StructType type) throws IOException {
+            encoder.writeString(type.typeName);
+            var names = new VariableName[type.counter];
+            for (var entry : type.nameToRefIdMap.object2IntEntrySet()) {
+                names[entry.getIntValue()] = entry.getKey();
+            }
+            encoder.writeInt(type.counter);
+            for (int refId = 0; refId < type.counter; refId++) {
+                names[refId].encode(encoder);
+                writeType(type.refIdToTypeMap.get(refId));
+            }
+        }
+
+        void writeEntry(STEntry entry) throws IOException {
+            var index = entries.get(entry);
+            if (index != null) {
+                encoder.writeInt(index);
+                return;
+            }
+            encoder.writeInt(NEW);
+            var abstractEntry = (AbstractSTEntry) entry;
+            var entryClass = entry.getClass();
+            if (entryClass == STUDF.class) {
+                var udf = (STUDF) entry;
+                encoder.writeInt(EntryKind.UDF.ordinal());
+                udf.getVariable().getVariableName().encode(encoder);
+                writeType(udf.getType());
+                writeValue(udf.getType(), abstractEntry.value);
+                encoder.writeInt(udf.paramIds.size());
+                encoder.writeInts(udf.paramIds.toIntArray(), 0, udf.paramIds.size());
+            } else if (entryClass == STVariable.class) {
+                var variable = (STVariable) entry;
+                encoder.writeInt(EntryKind.VARIABLE.ordinal());
+                variable.getVariable().getVariableName().encode(encoder);
+                writeType(variable.getType());
+                writeValue(variable.getType(), abstractEntry.value);
+            } else if (entryClass == STRef.class) {
+                // Refs are only set at runtime
+                encoder.writeInt(EntryKind.REF.ordinal());
+                writeType(entry.getType());
+            } else if (entryClass == STLValue.class || entryClass == STTmp.class) {
+                encoder.writeInt((entryClass == STLValue.class ? EntryKind.LVALUE : EntryKind.TMP).ordinal());
+                writeType(entry.getType());
+                writeValue(entry.getType(), abstractEntry.value);
+            } else if (entryClass == STLabel.class) {
+                encoder.writeInt(EntryKind.LABEL.ordinal());
+                var value = entry.getValue();
+                encoder.writeInt(value.isInitialized() ? 1 : 0);
+                if (value.isInitialized()) {
+                    encoder.writeInt(value.getInt32());
+                }
+            } else {
+                throw new PuffinBasicInternalError("Can't write entry: " + entryClass);
+            }
+            entries.put(entry, entries.size());
+        }
+
+        private void writeValue(PuffinBasicType type, STValue value) throws IOException {
+            if (value == null) {
+                encoder.writeInt(ValueKind.NONE.ordinal());
+            } else if (value instanceof STStruct) {
+                var members = ((STStruct) value).memberRefIdToValueId;
+                encoder.writeInt(ValueKind.STRUCT.ordinal());
+                encoder.writeInt(members.size());
+                for (var member : members.int2IntEntrySet()) {
+                    encoder.writeInt(member.getIntKey());
+                    encoder.writeInt(member.getIntValue());
+                }
+            } else if (value instanceof STCompositeValue) {
+                encoder.writeInt(ValueKind.COMPOSITE.ordinal());
+            } else if (value instanceof ArrayReferenceValue) {
+                encoder.writeInt(ValueKind.ARRAY_REFERENCE.ordinal());
+                writeEntry(((ArrayReferenceValue) value).variable);
+            } else if (value instanceof STStringScalarDateValue) {
+                encoder.writeInt(ValueKind.DATE.ordinal());
+            } else if (value instanceof STStringScalarTimeValue) {
+                encoder.writeInt(ValueKind.TIME.ordinal());
+            } else if (value instanceof AbstractSTArrayValue) {
+                encoder.writeInt(ValueKind.ARRAY.ordinal());
+                boolean hasDims = value.getNumArrayDimensions() > 0;
+                encoder.writeInt(hasDims ? 1 : 0);
+                if (hasDims) {
+                    encoder.writeArray(type.getAtomTypeId(), value);
+                }
+            } else {
+                encoder.writeInt(ValueKind.SCALAR.ordinal());
+                encoder.writeInt(value.isInitialized() ? 1 : 0);
+                if (value.isInitialized()) {
+                    encoder.writeScalar(type.getAtomTypeId(), value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads what EntryWriter writes, creating values in the given table.
+     */
+    static final class EntryReader {
+        private final ObjectFile.Decoder decoder;
+        private final PuffinBasicSymbolTable symbolTable;
+        private final List<STEntry> entries;
+        private final List<PuffinBasicType> types;
+
+        EntryReader(ObjectFile.Decoder decoder, PuffinBasicSymbolTable symbolTable) {
+            this.decoder = decoder;
+            this.symbolTable = symbolTable;
+            this.entries = new ArrayList<>();
+            this.types = new ArrayList<>();
+        }
+
+        ObjectFile.Decoder decoder() {
+            return decoder;
+        }
+
+        private <E extends Enum<E>> E readTag(E[] values) throws IOException {
+            int ordinal = decoder.readCount();
+            if (ordinal >= values.length) {
+                throw decoder.corrupt();
+            }
+            return values[ordinal];
+        }
+
+        private PuffinBasicAtomTypeId readAtomType() throws IOException {
+            return readTag(PuffinBasicAtomTypeId.values());
+        }
+
+        PuffinBasicType readType() throws IOException {
+            int index = decoder.readInt();
+            if (index != NEW) {
+                if (index < 0 || index >= types.size()) {
+                    throw decoder.corrupt();
+                }
+                return types.get(index);
+            }
+            var typeId = readTag(PuffinBasicTypeId.values());
+            if (typeId == PuffinBasicTypeId.STRUCT) {
+                var type = new StructType(decoder.readString());
+                types.add(type);
+                int n = decoder.readCount(Integer.BYTES);
+                for (int refId = 0; refId < n; refId++) {
+                    var name = VariableName.decode(decoder);
+                    type.declareField(name, readType());
+                }
+                return type;
+            }
+            var type = newType(typeId);
+            types.add(type);
+            return type;
+        }
+
+        private PuffinBasicType newType(PuffinBasicTypeId typeId) throws IOException {
+            switch (typeId) {
+                case SCALAR:
+                    return new ScalarType(readAtomType());
+                case UDF:
+                    return new UDFType(readAtomType());
+                case ARRAY: {
+                    var atomType = readAtomType();
+                    boolean canBeLValue = decoder.readInt() != 0;
+                    int ndim = decoder.readInt();
+                    IntList dims = null;
+                    if (ndim != NEW) {
+                        if (ndim < 0) {
+                            throw decoder.corrupt();
+                        }
+                        var values = new int[ndim];
+                        decoder.readInts(values, 0, ndim);
+                        dims = new IntArrayList(values);
+                    }
+                    return new ArrayType(atomType, dims, canBeLValue);
+                }
+                case LIST:
+                    return new ListType(readType());
+                case SET:
+                    return new SetType(readType());
+                case DEQUE:
+                    return new DequeType(readType());
+                case DICT:
+                    return new DictType(readType(), readType());
+                case PQUEUE:
+                    return new PQueueType(readType(), readType());
+                case SORTEDDICT:
+                    return new SortedDictType(readType(), readType());
+                case COLUMNLIST: {
+                    var structType = readType();
+                    if (structType.getTypeId() != PuffinBasicTypeId.STRUCT) {
+                        throw decoder.corrupt();
+                    }
+                    return new ColumnListType((StructType) structType);
+                }
+                case BITSET:
+                    return new BitsetType();
+                case SPATIALGRID:
+                    return new SpatialGridType();
+                default:
+                    throw decoder.corrupt();
+            }
+        }
+
+        STEntry readEntry() throws IOException {
+            int index = decoder.readInt();
+            if (index != NEW) {
+                if (index < 0 || index >= entries.size()) {
+                    throw decoder.corrupt();
+                }
+                return entries.get(index);
+            }
+            final STEntry entry;
+            switch (readTag(EntryKind.values())) {
+                case UDF: {
+                    var name = VariableName.decode(decoder);
+                    var type = readType();
+                    var udf = new STUDF(readValue(type), new Variable(name, type));
+                    int n = decoder.readCount(Integer.BYTES);
+                    var paramIds = new int[n];
+                    decoder.readInts(paramIds, 0, n);
+                    udf.paramIds.addElements(0, paramIds);
+                    entry = udf;
+                }
+                    break;
+                case VARIABLE: {
+                    var name = VariableName.decode(decoder);
+                    var type = readType();
+                    entry = new STVariable(readValue(type), new Variable(name, type));
+                }
+                    break;
+                case REF:
+                    entry = new STRef(readType());
+                    break;
+                case LVALUE: {
+                    var type = readType();
+                    entry = new STLValue(readValue(type), type);
+                }
+                    break;
+                case TMP: {
+                    var type = readType();
+                    entry = new STTmp(readValue(type), type);
+                }
+                    break;
+                case LABEL: {
+                    var label = new STLabel();
+                    if (decoder.readInt() != 0) {
+                        label.getValue().setInt32(decoder.readInt());
+                    }
+                    entry = label;
+                }
+                    break;
+                default:
+                    throw decoder.corrupt();
+            }
+            entries.add(entry);
+            return entry;
+        }
+
+        private STValue readValue(PuffinBasicType type) throws IOException {
+            switch (readTag(ValueKind.values())) {
+                case NONE:
+                    return null;
+                case STRUCT: {
+                    if (type.getTypeId() != PuffinBasicTypeId.STRUCT) {
+                        throw decoder.corrupt();
+                    }
+                    int n = decoder.readCount(2 * Integer.BYTES);
+                    var members = new Int2IntOpenHashMap(n);
+                    for (int i = 0; i < n; i++) {
+                        int refId = decoder.readInt();
+                        members.put(refId, decoder.readInt());
+                    }
+                    return new STStruct((StructType) type, members);
+                }
+                case COMPOSITE:
+                    return type.newInstance(symbolTable);
+                case ARRAY_REFERENCE: {
+                    var variable = readEntry();
+                    if (!(variable instanceof STLValue)) {
+                        throw decoder.corrupt();
+                    }
+                    return new ArrayReferenceValue((STLValue) variable);
+                }
+                case DATE:
+                    return new STStringScalarDateValue();
+                case TIME:
+                    return new STStringScalarTimeValue();
+                case ARRAY: {
+                    var value = type.getAtomTypeId().createArrayEntry().getValue();
+                    if (decoder.readInt() != 0) {
+                        decoder.readArray(type.getAtomTypeId(), value);
+                    }
+                    return value;
+                }
+                case SCALAR: {
+                    var value = type.getAtomTypeId().createValue();
+                    if (decoder.readInt() != 0) {
+                        decoder.readScalar(type.getAtomTypeId(), value);
+                    }
+                    return value;
+                }
+                default:
+                    throw decoder.corrupt();
+            }
+        }
+    }
+
+    public interface STValue {
+        String printFormat();
+        String writeFormat();
+        void assign(STValue entry);
+        default void replace(STValue entry) {
             assign(entry);
         }
         int getInt32();
@@ -1373,7 +2828,10 @@ public class STObjects {
         default int getArrayIndex1D() {
             return 0;
         }
-        default void setArrayReferenceIndex1D(int index1d) {
+        default long getArrayIndex1D64() {
+            return getArrayIndex1D();
+        }
+        default void setArrayReferenceIndex1D(long index1d) {
             throw new PuffinBasicInternalError("Unsupported");
         }
         default int[] getInt32Array1D() {
@@ -2143,7 +3601,7 @@ public class STObjects {
     static class ArrayReferenceValue implements STValue {
 
         private final STLValue variable;
-        private int index1d;
+        private long index1d;
 
         ArrayReferenceValue(STLValue variable) {
             this.variable = variable;
@@ -2154,7 +3612,7 @@ public class STObjects {
         }
 
         @Override
-        public void setArrayReferenceIndex1D(int index1d) {
+        public void setArrayReferenceIndex1D(long index1d) {
             this.index1d = index1d;
         }
 
@@ -2267,8 +3725,8 @@ public class STObjects {
     static abstract class AbstractSTArrayValue implements STValue {
 
         private IntList dimensions;
-        private int totalLength;
-        private int index1d;
+        private long totalLength;
+        private long index1d;
         private int ndim;
 
         @Override
@@ -2281,6 +3739,16 @@ public class STObjects {
 
         @Override
         public int getTotalLength() {
+            if (totalLength > Integer.MAX_VALUE) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_OUT_OF_RANGE,
+                        "Array has " + totalLength + " elements, too many for this operation"
+                );
+            }
+            return (int) totalLength;
+        }
+
+        public long getTotalLength64() {
             return totalLength;
         }
 
@@ -2293,9 +3761,9 @@ public class STObjects {
         public void setArrayDimensions(IntList dims) {
             this.dimensions = new IntArrayList(dims);
             this.ndim = dimensions.size();
-            int totalLen = 1;
+            long totalLen = 1;
             for (int i = 0; i < ndim; i++) {
-                totalLen *= dimensions.getInt(i);
+                totalLen = Math.multiplyExact(totalLen, dimensions.getInt(i));
             }
             totalLength = totalLen;
         }
@@ -2325,16 +3793,21 @@ public class STObjects {
                                 + dim + "]=" + dimensions.getInt(dim)
                 );
             }
-            int dIplus1 = dim + 1 < ndim ? dimensions.getInt(dim + 1) : 1;
+            long dIplus1 = dim + 1 < ndim ? dimensions.getInt(dim + 1) : 1;
             this.index1d = (this.index1d + index) * dIplus1;
         }
 
         @Override
         public int getArrayIndex1D() {
+            return (int) index1d;
+        }
+
+        @Override
+        public long getArrayIndex1D64() {
             return index1d;
         }
 
-        public void setArrayIndexID(int index1d) {
+        public void setArrayIndexID(long index1d) {
             this.index1d = index1d;
         }
     }
@@ -2450,6 +3923,13 @@ public class STObjects {
 
         private long[] value;
 
+        @Override
+        public void replace(STValue entry) {
+            super.replace(entry);
+            var from = (STInt64ArrayValue) entry;
+            value = from.value;
+        }
+
         @Override
         public void fill(Number fill) {
             Arrays.fill(value, fill.longValue());
@@ -2545,6 +4025,13 @@ public class STObjects {
 
         private float[] value;
 
+        @Override
+        public void replace(STValue entry) {
+            super.replace(entry);
+            var from = (STFloat32ArrayValue) entry;
+            value = from.value;
+        }
+
         @Override
         public void fill(Number fill) {
             Arrays.fill(value, fill.floatValue());
@@ -2640,6 +4127,13 @@ public class STObjects {
 
         private double[] value;
 
+        @Override
+        public void replace(STValue entry) {
+            super.replace(entry);
+            var from = (STFloat64ArrayValue) entry;
+            value = from.value;
+        }
+
         @Override
         public void fill(Number fill) {
             Arrays.fill(value, fill.doubleValue());
@@ -2729,101 +4223,417 @@ public class STObjects {
         public void setString(String value) {
             throw new PuffinBasicInternalError("Can't cast String to int32: '" + value + "'");
         }
-    }
+    }
+
+    public static final class STStringArrayValue extends AbstractSTArrayValue {
+
+        private String[] value;
+
+        @Override
+        public void replace(STValue entry) {
+            super.replace(entry);
+            var from = (STStringArrayValue) entry;
+            value = from.value;
+        }
+
+        @Override
+        public void fillString(String fill) {
+            Arrays.fill(value, fill);
+        }
+
+        public String[] getValue() {
+            return value;
+        }
+
+        @Override
+        public void setArrayDimensions(IntList dims) {
+            super.setArrayDimensions(dims);
+            this.value = new String[getTotalLength()];
+            Arrays.fill(value, 0, value.length, "");
+        }
+
+        @Override
+        public String printFormat() {
+            return Formatter.printFormatString(value[getArrayIndex1D()]);
+        }
+
+        @Override
+        public String writeFormat() {
+            return Formatter.writeFormatString(value[getArrayIndex1D()]);
+        }
+
+        @Override
+        public void assign(STValue entry) {
+            value[getArrayIndex1D()] = entry.getString();
+        }
+
+        @Override
+        public int getInt32() {
+            throw new PuffinBasicInternalError("Can't cast String to int32");
+        }
+
+        @Override
+        public long getInt64() {
+            throw new PuffinBasicInternalError("Can't cast String to int64");
+        }
+
+        @Override
+        public float getFloat32() {
+            throw new PuffinBasicInternalError("Can't cast String to float32");
+        }
+
+        @Override
+        public double getFloat64() {
+            throw new PuffinBasicInternalError("Can't cast String to float64");
+        }
+
+        @Override
+        public int getRoundedInt32() {
+            throw new PuffinBasicInternalError("Can't cast String to int32");
+        }
+
+        @Override
+        public long getRoundedInt64() {
+            throw new PuffinBasicInternalError("Can't cast String to int64");
+        }
+
+        @Override
+        public String getString() {
+            return value[getArrayIndex1D()];
+        }
+
+        @Override
+        public void setInt32(int value) {
+            throw new PuffinBasicInternalError("Can't cast int32 to String");
+        }
+
+        @Override
+        public void setInt64(long value) {
+            throw new PuffinBasicInternalError("Can't cast int64 to String");
+        }
+
+        @Override
+        public void setFloat32(float value) {
+            throw new PuffinBasicInternalError("Can't cast float32 to String");
+        }
+
+        @Override
+        public void setFloat64(double value) {
+            throw new PuffinBasicInternalError("Can't cast float64 to String");
+        }
+
+        @Override
+        public void setString(String value) {
+            this.value[getArrayIndex1D()] = value;
+        }
+    }
+
+    /**
+     * Numeric array backed by a memory-mapped array file (the ARRAYSAVE
+     * format), split into 1GB segments so that it can hold more than 2^31
+     * elements without using heap. Existing data is kept when the file
+     * matches the array's type and dimensions.
+     */
+    public static final class STMappedArrayValue extends AbstractSTArrayValue {
+
+        private static final int SEGMENT_SHIFT = 30;
+        private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+        private PuffinBasicAtomTypeId type;
+        private String path;
+        private int elementShift;
+        private MappedByteBuffer[] segments;
+
+        public STMappedArrayValue(PuffinBasicAtomTypeId type, String path) {
+            this.type = type;
+            this.path = path;
+            this.elementShift = Integer.numberOfTrailingZeros(ArrayFileUtil.elementBytes(type));
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public void replace(STValue entry) {
+            super.replace(entry);
+            var from = (STMappedArrayValue) entry;
+            type = from.type;
+            path = from.path;
+            elementShift = from.elementShift;
+            segments = from.segments;
+        }
+
+        /**
+         * Maps the array file, creating it zero-filled when it's new or empty.
+         * An existing file must hold an array of the same type and dims,
+         * it is never resized.
+         */
+        @Override
+        public void setArrayDimensions(IntList dims) {
+            try (var channel = FileChannel.open(Paths.get(path),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE))
+            {
+                long dataStart = Integer.BYTES * (4L + dims.size());
+                long numElements = 1;
+                for (int i = 0; i < dims.size(); i++) {
+                    numElements = Math.multiplyExact(numElements, dims.getInt(i));
+                }
+                long dataBytes = numElements << elementShift;
+                if (channel.size() == 0) {
+                    var header = ByteBuffer.allocate((int) dataStart).order(ByteOrder.LITTLE_ENDIAN);
+                    ArrayFileUtil.writeHeader(header, type, dims);
+                    header.flip();
+                    channel.write(header, 0);
+                    if (dataBytes > 0) {
+                        channel.write(ByteBuffer.allocate(1), dataStart + dataBytes - 1);
+                    }
+                } else {
+                    checkStoredArray(channel, dims);
+                    if (channel.size() != dataStart + dataBytes) {
+                        throw new PuffinBasicRuntimeError(
+                                IO_ERROR,
+                                "Array file '" + path + "' is truncated or corrupt"
+                        );
+                    }
+                }
+                super.setArrayDimensions(dims);
+                int numSegments = (int) ((dataBytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+                segments = new MappedByteBuffer[numSegments];
+                for (int i = 0; i < numSegments; i++) {
+                    long offset = (long) i << SEGMENT_SHIFT;
+                    segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                            dataStart + offset, Math.min(SEGMENT_MASK + 1, dataBytes - offset));
+                    segments[i].order(ByteOrder.LITTLE_ENDIAN);
+                }
+            } catch (IOException e) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Failed to map array file '" + path + "', error: " + e.getMessage()
+                );
+            }
+        }
+
+        /**
+         * Writes the changed elements to the file.
+         */
+        public void force() {
+            if (segments != null) {
+                for (var segment : segments) {
+                    segment.force();
+                }
+            }
+        }
+
+        /**
+         * Writes the changed elements to the file and drops the mapping,
+         * which is unmapped once collected. The array can't be used after.
+         */
+        public void release() {
+            force();
+            segments = null;
+        }
+
+        private void checkStoredArray(FileChannel channel, IntList dims) throws IOException {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 4096))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            var storedDims = ArrayFileUtil.readHeader(header, path, type);
+            if (!storedDims.equals(dims)) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Array file '" + path + "' holds an array with dims " + storedDims
+                                + ", can't map it with dims " + dims
+                );
+            }
+        }
+
+        private ByteBuffer segment() {
+            return segments[(int) ((getArrayIndex1D64() << elementShift) >>> SEGMENT_SHIFT)];
+        }
+
+        private int offset() {
+            return (int) ((getArrayIndex1D64() << elementShift) & SEGMENT_MASK);
+        }
+
+        private boolean isIntegral() {
+            return type == PuffinBasicAtomTypeId.INT32 || type == PuffinBasicAtomTypeId.INT64;
+        }
 
-    public static final class STStringArrayValue extends AbstractSTArrayValue {
+        private long loadLong() {
+            switch (type) {
+                case INT32:
+                    return segment().getInt(offset());
+                case INT64:
+                    return segment().getLong(offset());
+                case FLOAT:
+                    return (long) segment().getFloat(offset());
+                default:
+                    return (long) segment().getDouble(offset());
+            }
+        }
 
-        private String[] value;
+        private double loadDouble() {
+            switch (type) {
+                case INT32:
+                    return segment().getInt(offset());
+                case INT64:
+                    return segment().getLong(offset());
+                case FLOAT:
+                    return segment().getFloat(offset());
+                default:
+                    return segment().getDouble(offset());
+            }
+        }
 
-        @Override
-        public void fillString(String fill) {
-            Arrays.fill(value, fill);
+        private void storeLong(long value) {
+            switch (type) {
+                case INT32:
+                    segment().putInt(offset(), (int) value);
+                    break;
+                case INT64:
+                    segment().putLong(offset(), value);
+                    break;
+                case FLOAT:
+                    segment().putFloat(offset(), value);
+                    break;
+                default:
+                    segment().putDouble(offset(), value);
+            }
         }
 
-        public String[] getValue() {
-            return value;
+        private void storeDouble(double value) {
+            switch (type) {
+                case INT32:
+                    segment().putInt(offset(), (int) value);
+                    break;
+                case INT64:
+                    segment().putLong(offset(), (long) value);
+                    break;
+                case FLOAT:
+                    segment().putFloat(offset(), (float) value);
+                    break;
+                default:
+                    segment().putDouble(offset(), value);
+            }
         }
 
         @Override
-        public void setArrayDimensions(IntList dims) {
-            super.setArrayDimensions(dims);
-            this.value = new String[getTotalLength()];
-            Arrays.fill(value, 0, value.length, "");
+        public void fill(Number fill) {
+            long n = getTotalLength64();
+            boolean integral = isIntegral();
+            for (long i = 0; i < n; i++) {
+                setArrayIndexID(i);
+                if (integral) {
+                    storeLong(fill.longValue());
+                } else {
+                    storeDouble(fill.doubleValue());
+                }
+            }
         }
 
         @Override
         public String printFormat() {
-            return Formatter.printFormatString(value[getArrayIndex1D()]);
+            switch (type) {
+                case INT32:
+                    return Formatter.printFormatInt32(getInt32());
+                case INT64:
+                    return Formatter.printFormatInt64(getInt64());
+                case FLOAT:
+                    return Formatter.printFormatFloat32(getFloat32());
+                default:
+                    return Formatter.printFormatFloat64(getFloat64());
+            }
         }
 
         @Override
         public String writeFormat() {
-            return Formatter.writeFormatString(value[getArrayIndex1D()]);
+            switch (type) {
+                case INT32:
+                    return Formatter.writeFormatInt32(getInt32());
+                case INT64:
+                    return Formatter.writeFormatInt64(getInt64());
+                case FLOAT:
+                    return Formatter.writeFormatFloat32(getFloat32());
+                default:
+                    return Formatter.writeFormatFloat64(getFloat64());
+            }
         }
 
         @Override
         public void assign(STValue entry) {
-            value[getArrayIndex1D()] = entry.getString();
+            switch (type) {
+                case INT32:
+                    setInt32(entry.getInt32());
+                    break;
+                case INT64:
+                    setInt64(entry.getInt64());
+                    break;
+                case FLOAT:
+                    setFloat32(entry.getFloat32());
+                    break;
+                default:
+                    setFloat64(entry.getFloat64());
+            }
         }
 
         @Override
         public int getInt32() {
-            throw new PuffinBasicInternalError("Can't cast String to int32");
+            return isIntegral() ? (int) loadLong() : (int) loadDouble();
         }
 
         @Override
         public long getInt64() {
-            throw new PuffinBasicInternalError("Can't cast String to int64");
+            return loadLong();
         }
 
         @Override
         public float getFloat32() {
-            throw new PuffinBasicInternalError("Can't cast String to float32");
+            return isIntegral() ? (float) loadLong() : (float) loadDouble();
         }
 
         @Override
         public double getFloat64() {
-            throw new PuffinBasicInternalError("Can't cast String to float64");
+            return loadDouble();
         }
 
         @Override
         public int getRoundedInt32() {
-            throw new PuffinBasicInternalError("Can't cast String to int32");
+            return isIntegral() ? (int) loadLong() : (int) Math.round(loadDouble());
         }
 
         @Override
         public long getRoundedInt64() {
-            throw new PuffinBasicInternalError("Can't cast String to int64");
+            return isIntegral() ? loadLong() : Math.round(loadDouble());
         }
 
         @Override
         public String getString() {
-            return value[getArrayIndex1D()];
+            throw new PuffinBasicInternalError("Can't cast " + type + " to String");
         }
 
         @Override
         public void setInt32(int value) {
-            throw new PuffinBasicInternalError("Can't cast int32 to String");
+            storeLong(value);
         }
 
         @Override
         public void setInt64(long value) {
-            throw new PuffinBasicInternalError("Can't cast int64 to String");
+            storeLong(value);
         }
 
         @Override
         public void setFloat32(float value) {
-            throw new PuffinBasicInternalError("Can't cast float32 to String");
+            storeDouble(value);
         }
 
         @Override
         public void setFloat64(double value) {
-            throw new PuffinBasicInternalError("Can't cast float64 to String");
+            storeDouble(value);
         }
 
         @Override
         public void setString(String value) {
-            this.value[getArrayIndex1D()] = value;
+            throw new PuffinBasicInternalError("Can't cast String to " + type + ": '" + value + "'");
         }
     }
 
@@ -2913,14 +4723,27 @@ public class STObjects {
         public void setString(String value) {
             throw new PuffinBasicInternalError("Not implemented");
         }
+
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
+
+        /**
+         * Replaces the contents with the value read from the decoder.
+         */
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
     }
 
     static final class STList extends STCompositeValue {
+        private final PuffinBasicType type;
         private final List<Object> list;
         private final MemberFunctions memberFunctions;
 
         STList(PuffinBasicType type, MemberFunctions memberFunctions) {
             super(PuffinBasicTypeId.LIST, type.getAtomTypeId());
+            this.type = type;
             this.memberFunctions = memberFunctions;
             this.list = new ArrayList<>();
         }
@@ -2929,6 +4752,19 @@ public class STObjects {
             memberFunctions.get(funcName).callHandler.call(list, params, result);
         }
 
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            encoder.writeInt(list.size());
+            encoder.writeElements(type, list);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            int n = decoder.readCount();
+            list.clear();
+            list.addAll(decoder.readElements(type, n));
+        }
+
         @Override
         public boolean hasLen() {
             return true;
@@ -2941,11 +4777,13 @@ public class STObjects {
     }
 
     static final class STSet extends STCompositeValue {
+        private final PuffinBasicType type;
         private final ObjectSet<Object> set;
         private final MemberFunctions memberFunctions;
 
         STSet(PuffinBasicType type, MemberFunctions memberFunctions) {
             super(PuffinBasicTypeId.SET, type.getAtomTypeId());
+            this.type = type;
             this.memberFunctions = memberFunctions;
             this.set = new ObjectOpenHashSet<>();
         }
@@ -2954,6 +4792,19 @@ public class STObjects {
             memberFunctions.get(funcName).callHandler.call(set, params, result);
         }
 
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            encoder.writeInt(set.size());
+            encoder.writeElements(type, set);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            int n = decoder.readCount();
+            set.clear();
+            set.addAll(decoder.readElements(type, n));
+        }
+
         @Override
         public boolean hasLen() {
             return true;
@@ -2966,19 +4817,210 @@ public class STObjects {
     }
 
     static final class STDict extends STCompositeValue {
-        private final Object2ObjectMap<Object, Object> dict;
+        private final PuffinBasicType keyType;
+        private final PuffinBasicType valueType;
+        private final Map<Object, Object> dict;
         private final MemberFunctions memberFunctions;
 
-        STDict(PuffinBasicType valueType, MemberFunctions memberFunctions) {
+        STDict(PuffinBasicType keyType, PuffinBasicType valueType, MemberFunctions memberFunctions) {
+            this(keyType, valueType, memberFunctions, new Object2ObjectOpenHashMap<>());
+        }
+
+        STDict(
+                PuffinBasicType keyType,
+                PuffinBasicType valueType,
+                MemberFunctions memberFunctions,
+                Map<Object, Object> dict)
+        {
             super(PuffinBasicTypeId.DICT, valueType.getAtomTypeId());
+            this.keyType = keyType;
+            this.valueType = valueType;
+            this.memberFunctions = memberFunctions;
+            this.dict = dict;
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(dict, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            int n = dict.size();
+            var keys = new ArrayList<>(n);
+            var values = new ArrayList<>(n);
+            for (var entry : dict.entrySet()) {
+                keys.add(entry.getKey());
+                values.add(entry.getValue());
+            }
+            encoder.writeInt(n);
+            encoder.writeElements(keyType, keys);
+            encoder.writeElements(valueType, values);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            int n = decoder.readCount();
+            var keys = decoder.readElements(keyType, n);
+            var values = decoder.readElements(valueType, n);
+            dict.clear();
+            for (int i = 0; i < n; i++) {
+                dict.put(keys.get(i), values.get(i));
+            }
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return dict.size();
+        }
+    }
+
+    /**
+     * Dense set of non-negative ints, one bit per member in long words,
+     * so that and/or/xor/andNot work 64 members at a time.
+     */
+    static final class STBitset extends STCompositeValue {
+        private final BitSet bitset;
+        private final MemberFunctions memberFunctions;
+
+        STBitset(MemberFunctions memberFunctions) {
+            super(PuffinBasicTypeId.BITSET, PuffinBasicAtomTypeId.INT32);
+            this.memberFunctions = memberFunctions;
+            this.bitset = new BitSet();
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(bitset, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            long[] words = bitset.toLongArray();
+            encoder.writeInt(words.length);
+            encoder.writeLongs(words, 0, words.length);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            long[] words = new long[decoder.readCount(Long.BYTES)];
+            decoder.readLongs(words, 0, words.length);
+            bitset.clear();
+            bitset.or(BitSet.valueOf(words));
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return bitset.cardinality();
+        }
+    }
+
+    static final class STPQueue extends STCompositeValue {
+        private final PuffinBasicType valueType;
+        private final PriorityHeap heap;
+        private final MemberFunctions memberFunctions;
+
+        STPQueue(PuffinBasicType priorityType, PuffinBasicType valueType, MemberFunctions memberFunctions) {
+            super(PuffinBasicTypeId.PQUEUE, valueType.getAtomTypeId());
+            this.valueType = valueType;
+            this.memberFunctions = memberFunctions;
+            this.heap = new PriorityHeap(priorityType.getAtomTypeId(), valueType.getAtomTypeId());
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(heap, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            heap.encode(encoder, valueType);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            heap.decode(decoder, valueType);
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return heap.size();
+        }
+    }
+
+    static final class STDeque extends STCompositeValue {
+        private final RingDeque deque;
+        private final MemberFunctions memberFunctions;
+
+        STDeque(PuffinBasicType type, MemberFunctions memberFunctions) {
+            super(PuffinBasicTypeId.DEQUE, type.getAtomTypeId());
+            this.memberFunctions = memberFunctions;
+            this.deque = new RingDeque(type.getAtomTypeId());
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(deque, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            deque.encode(encoder);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            deque.decode(decoder);
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return deque.size();
+        }
+    }
+
+    static final class STSortedDict extends STCompositeValue {
+        private final PuffinBasicType valueType;
+        private final SortedKeyMap dict;
+        private final MemberFunctions memberFunctions;
+
+        STSortedDict(PuffinBasicType keyType, PuffinBasicType valueType, MemberFunctions memberFunctions) {
+            super(PuffinBasicTypeId.SORTEDDICT, valueType.getAtomTypeId());
+            this.valueType = valueType;
             this.memberFunctions = memberFunctions;
-            this.dict = new Object2ObjectOpenHashMap<>();
+            this.dict = SortedKeyMap.create(keyType.getAtomTypeId());
         }
 
         public void call(String funcName, STValue[] params, STValue result) {
             memberFunctions.get(funcName).callHandler.call(dict, params, result);
         }
 
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            dict.encode(encoder, valueType);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            dict.decode(decoder, valueType);
+        }
+
         @Override
         public boolean hasLen() {
             return true;
@@ -2990,10 +5032,127 @@ public class STObjects {
         }
     }
 
+    static final class STSpatialGrid extends STCompositeValue {
+        private final SpatialHashGrid grid;
+        private final MemberFunctions memberFunctions;
+
+        STSpatialGrid(MemberFunctions memberFunctions) {
+            super(PuffinBasicTypeId.SPATIALGRID, PuffinBasicAtomTypeId.INT32);
+            this.memberFunctions = memberFunctions;
+            this.grid = new SpatialHashGrid();
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(grid, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            grid.encode(encoder);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            grid.decode(decoder);
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return grid.size();
+        }
+    }
+
+    static final class STColumnList extends STCompositeValue {
+        private final PuffinBasicSymbolTable symbolTable;
+        private final StructType structType;
+        private final ColumnTable table;
+        private final MemberFunctions memberFunctions;
+
+        STColumnList(
+                PuffinBasicSymbolTable symbolTable,
+                StructType structType,
+                PuffinBasicAtomTypeId[] fieldTypes,
+                MemberFunctions memberFunctions)
+        {
+            super(PuffinBasicTypeId.COLUMNLIST, PuffinBasicAtomTypeId.COMPOSITE);
+            this.symbolTable = symbolTable;
+            this.structType = structType;
+            this.memberFunctions = memberFunctions;
+            this.table = new ColumnTable(fieldTypes);
+        }
+
+        public void call(String funcName, STValue[] params, STValue result) {
+            memberFunctions.get(funcName).callHandler.call(this, params, result);
+        }
+
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            table.encode(encoder);
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            table.decode(decoder);
+        }
+
+        void copyFromStruct(STValue struct, int row) {
+            var from = checkStruct(struct);
+            for (int i = 0; i < table.numColumns(); i++) {
+                table.set(i, row, symbolTable.get(from.getMember(i)).getValue());
+            }
+        }
+
+        void copyToStruct(int row, STValue struct) {
+            var to = checkStruct(struct);
+            for (int i = 0; i < table.numColumns(); i++) {
+                table.get(i, row, symbolTable.get(to.getMember(i)).getValue());
+            }
+        }
+
+        private STStruct checkStruct(STValue value) {
+            if (!(value instanceof STStruct) || !structType.equals(((STStruct) value).structType)) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "Expected struct " + structType.getTypeName()
+                );
+            }
+            return (STStruct) value;
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return table.size();
+        }
+    }
+
     public static final class STStruct extends STCompositeValue {
         private final StructType structType;
         private final Int2IntMap memberRefIdToValueId;
 
+        private STStruct(StructType type, Int2IntMap memberRefIdToValueId) {
+            super(PuffinBasicTypeId.STRUCT, PuffinBasicAtomTypeId.COMPOSITE);
+            this.structType = type;
+            this.memberRefIdToValueId = memberRefIdToValueId;
+        }
+
+        /**
+         * The member entries keep their ids in a copied symbol table, so
+         * the copy refers to the same ids.
+         */
+        STStruct copy() {
+            return new STStruct(structType, new Int2IntOpenHashMap(memberRefIdToValueId));
+        }
+
         STStruct(PuffinBasicSymbolTable symbolTable, StructType type) {
             super(PuffinBasicTypeId.STRUCT, PuffinBasicAtomTypeId.COMPOSITE);
             this.structType = type;
@@ -3010,6 +5169,24 @@ public class STObjects {
             return memberRefIdToValueId.getOrDefault(memberRefId, NULL_ID);
         }
 
+        @Override
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            var symbolTable = encoder.symbolTable();
+            for (int refId = 0; refId < structType.counter; refId++) {
+                var member = symbolTable.get(getMember(refId)).getValue();
+                encoder.writeValue(structType.refIdToTypeMap.get(refId), member);
+            }
+        }
+
+        @Override
+        void decode(ObjectFile.Decoder decoder) throws IOException {
+            var symbolTable = decoder.symbolTable();
+            for (int refId = 0; refId < structType.counter; refId++) {
+                var member = symbolTable.get(getMember(refId)).getValue();
+                decoder.readValue(structType.refIdToTypeMap.get(refId), member);
+            }
+        }
+
         @Override
         public void assign(STValue entry) {
             if (!(entry instanceof STStruct)) {
@@ -4,9 +4,15 @@ import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.puffinbasic.domain.STObjects.EntryReader;
+import org.puffinbasic.domain.STObjects.EntryWriter;
 import org.puffinbasic.domain.STObjects.STEntry;
 import org.puffinbasic.domain.Variable.VariableName;
 
+import java.io.IOException;
+import java.util.function.ObjIntConsumer;
+import java.util.function.UnaryOperator;
+
 import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 
 public interface Scope {
@@ -23,6 +29,97 @@ public interface Scope {
     void putEntry(int id, STEntry entry);
     STEntry getEntry(int id);
     STEntry getNullableEntry(int id);
+    void forEachVariable(ObjIntConsumer<VariableName> consumer);
+
+    /**
+     * Copies this declaration scope and its children, copying each entry
+     * with copier, for a new execution of a compiled program.
+     */
+    Scope copy(Scope parent, UnaryOperator<STEntry> copier);
+
+    /**
+     * Writes this declaration scope and its children for the compiled
+     * program cache, see decode.
+     */
+    void encode(EntryWriter writer) throws IOException;
+
+    /**
+     * Reads the entries, variables and children written by encode into
+     * an empty scope.
+     */
+    static void decode(EntryReader reader, Scope scope) throws IOException {
+        var decoder = reader.decoder();
+        int numEntries = decoder.readCount();
+        for (int i = 0; i < numEntries; i++) {
+            int id = decoder.readCount();
+            scope.putEntry(id, reader.readEntry());
+        }
+        int numVariables = decoder.readCount();
+        for (int i = 0; i < numVariables; i++) {
+            var variableName = VariableName.decode(decoder);
+            scope.putVariable(variableName, decoder.readCount());
+        }
+        int numChildren = decoder.readCount();
+        for (int i = 0; i < numChildren; i++) {
+            int funcId = decoder.readInt();
+            boolean localScope = decoder.readInt() != 0;
+            decode(reader, scope.createChild(funcId, localScope));
+        }
+    }
+
+    static void encodeEntries(Int2ObjectMap<STEntry> entryMap, EntryWriter writer) throws IOException {
+        var encoder = writer.encoder();
+        encoder.writeInt(entryMap.size());
+        for (var entry : entryMap.int2ObjectEntrySet()) {
+            encoder.writeInt(entry.getIntKey());
+            writer.writeEntry(entry.getValue());
+        }
+    }
+
+    static void encodeVariablesAndChildren(
+            Object2IntMap<VariableName> variableNameToEntry,
+            Int2ObjectMap<Scope> funcIdToScope,
+            EntryWriter writer) throws IOException
+    {
+        var encoder = writer.encoder();
+        encoder.writeInt(variableNameToEntry.size());
+        for (var variable : variableNameToEntry.object2IntEntrySet()) {
+            variable.getKey().encode(encoder);
+            encoder.writeInt(variable.getIntValue());
+        }
+        encoder.writeInt(funcIdToScope.size());
+        for (var child : funcIdToScope.int2ObjectEntrySet()) {
+            encoder.writeInt(child.getIntKey());
+            encoder.writeInt(child.getValue() instanceof LocalScope ? 1 : 0);
+            child.getValue().encode(writer);
+        }
+    }
+
+    static void forEachVariable(
+            Object2IntMap<VariableName> variableNameToEntry, ObjIntConsumer<VariableName> consumer)
+    {
+        for (var variable : variableNameToEntry.object2IntEntrySet()) {
+            consumer.accept(variable.getKey(), variable.getIntValue());
+        }
+    }
+
+    static Int2ObjectMap<Scope> copyChildren(
+            Int2ObjectMap<Scope> funcIdToScope, Scope parent, UnaryOperator<STEntry> copier)
+    {
+        var copy = new Int2ObjectOpenHashMap<Scope>(funcIdToScope.size());
+        for (var child : funcIdToScope.int2ObjectEntrySet()) {
+            copy.put(child.getIntKey(), child.getValue().copy(parent, copier));
+        }
+        return copy;
+    }
+
+    static Int2ObjectMap<STEntry> copyEntries(Int2ObjectMap<STEntry> entryMap, UnaryOperator<STEntry> copier) {
+        var copy = new Int2ObjectOpenHashMap<STEntry>(entryMap.size());
+        for (var entry : entryMap.int2ObjectEntrySet()) {
+            copy.put(entry.getIntKey(), copier.apply(entry.getValue()));
+        }
+        return copy;
+    }
 
     final class GlobalScope implements Scope {
         private static final int INITIAL_ENTRY_TABLE_SIZE = 1024;
@@ -61,6 +158,42 @@ public interface Scope {
                     variableNameToEntry);
         }
 
+        @Override
+        public Scope copy(Scope parent, UnaryOperator<STEntry> copier) {
+            var entries = new STEntry[entryMap.length];
+            for (int i = 0; i < entries.length; i++) {
+                if (entryMap[i] != null) {
+                    entries[i] = copier.apply(entryMap[i]);
+                }
+            }
+            var copy = new GlobalScope(
+                    callerInstrId,
+                    new Int2ObjectOpenHashMap<>(),
+                    entries,
+                    new Object2IntOpenHashMap<>(variableNameToEntry));
+            copy.funcIdToScope.putAll(Scope.copyChildren(funcIdToScope, copy, copier));
+            return copy;
+        }
+
+        @Override
+        public void encode(EntryWriter writer) throws IOException {
+            var encoder = writer.encoder();
+            int numEntries = 0;
+            for (var entry : entryMap) {
+                if (entry != null) {
+                    numEntries++;
+                }
+            }
+            encoder.writeInt(numEntries);
+            for (int id = 0; id < entryMap.length; id++) {
+                if (entryMap[id] != null) {
+                    encoder.writeInt(id);
+                    writer.writeEntry(entryMap[id]);
+                }
+            }
+            Scope.encodeVariablesAndChildren(variableNameToEntry, funcIdToScope, writer);
+        }
+
         @Override
         public int getCallerInstrId() {
             return callerInstrId;
@@ -132,6 +265,11 @@ public interface Scope {
             return entryMap[id];
         }
 
+        @Override
+        public void forEachVariable(ObjIntConsumer<VariableName> consumer) {
+            Scope.forEachVariable(variableNameToEntry, consumer);
+        }
+
         @Override
         public STEntry getNullableEntry(int id) {
             if (id >= 0 && id < entryMap.length) {
@@ -181,6 +319,25 @@ public interface Scope {
             );
         }
 
+        @Override
+        public Scope copy(Scope parent, UnaryOperator<STEntry> copier) {
+            var copy = new ChildScope(
+                    parent,
+                    callerInstrId,
+                    new Int2ObjectOpenHashMap<>(),
+                    Scope.copyEntries(entryMap, copier),
+                    new Object2IntOpenHashMap<>(variableNameToEntry)
+            );
+            copy.funcIdToScope.putAll(Scope.copyChildren(funcIdToScope, copy, copier));
+            return copy;
+        }
+
+        @Override
+        public void encode(EntryWriter writer) throws IOException {
+            Scope.encodeEntries(entryMap, writer);
+            Scope.encodeVariablesAndChildren(variableNameToEntry, funcIdToScope, writer);
+        }
+
         @Override
         public int getCallerInstrId() {
             return callerInstrId;
@@ -236,6 +393,11 @@ public interface Scope {
             return entryMap.get(id);
         }
 
+        @Override
+        public void forEachVariable(ObjIntConsumer<VariableName> consumer) {
+            Scope.forEachVariable(variableNameToEntry, consumer);
+        }
+
         @Override
         public STEntry getNullableEntry(int id) {
             return entryMap.get(id);
@@ -282,6 +444,25 @@ public interface Scope {
             );
         }
 
+        @Override
+        public Scope copy(Scope parent, UnaryOperator<STEntry> copier) {
+            var copy = new LocalScope(
+                    parent,
+                    callerInstrId,
+                    new Int2ObjectOpenHashMap<>(),
+                    Scope.copyEntries(entryMap, copier),
+                    new Object2IntOpenHashMap<>(variableNameToEntry)
+            );
+            copy.funcIdToScope.putAll(Scope.copyChildren(funcIdToScope, copy, copier));
+            return copy;
+        }
+
+        @Override
+        public void encode(EntryWriter writer) throws IOException {
+            Scope.encodeEntries(entryMap, writer);
+            Scope.encodeVariablesAndChildren(variableNameToEntry, funcIdToScope, writer);
+        }
+
         @Override
         public int getCallerInstrId() {
             return callerInstrId;
@@ -337,6 +518,11 @@ public interface Scope {
             return entryMap.get(id);
         }
 
+        @Override
+        public void forEachVariable(ObjIntConsumer<VariableName> consumer) {
+            Scope.forEachVariable(variableNameToEntry, consumer);
+        }
+
         @Override
         public STEntry getNullableEntry(int id) {
             return entryMap.get(id);
@@ -0,0 +1,569 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.doubles.Double2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.doubles.Double2ObjectSortedMap;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectSortedMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2ObjectRBTreeMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectSortedMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.PuffinBasicType;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INDEX_OUT_OF_BOUNDS;
+
+/**
+ * Ordered map for SORTEDDICT, backed by a red-black tree keyed by the
+ * primitive key: INT32 and INT64 keys use a long tree, FLOAT and DOUBLE
+ * keys a double tree, so keys are never boxed. Range queries walk
+ * sub-map views of the tree instead of copying and sorting all the keys.
+ * Range bounds are from inclusive, to exclusive.
+ */
+abstract class SortedKeyMap {
+
+    static SortedKeyMap create(PuffinBasicAtomTypeId keyType) {
+        switch (keyType) {
+            case INT32:
+            case INT64:
+                return new LongKeys(keyType);
+            case FLOAT:
+            case DOUBLE:
+                return new DoubleKeys(keyType);
+            default:
+                return new StringKeys();
+        }
+    }
+
+    abstract int size();
+
+    abstract void clear();
+
+    abstract void put(STValue key, Object value);
+
+    abstract Object get(STValue key);
+
+    abstract boolean remove(STValue key);
+
+    abstract boolean containsKey(STValue key);
+
+    abstract void firstKey(STValue result);
+
+    abstract void lastKey(STValue result);
+
+    /**
+     * Sets result to the greatest key <= key, or to the default if none.
+     */
+    abstract void floorKey(STValue key, STValue defaultKey, STValue result);
+
+    /**
+     * Sets result to the smallest key >= key, or to the default if none.
+     */
+    abstract void ceilingKey(STValue key, STValue defaultKey, STValue result);
+
+    abstract void keys(STValue result);
+
+    abstract void rangeKeys(STValue from, STValue to, STValue result);
+
+    abstract void firstKeys(int n, STValue result);
+
+    abstract Collection<Object> values();
+
+    abstract Collection<Object> rangeValues(STValue from, STValue to);
+
+    abstract int removeRange(STValue from, STValue to);
+
+    /**
+     * Writes the entries in key order: the values, then the keys.
+     */
+    void encode(ObjectFile.Encoder encoder, PuffinBasicType valueType) throws IOException {
+        encoder.writeInt(size());
+        encoder.writeElements(valueType, values());
+        encodeKeys(encoder);
+    }
+
+    void decode(ObjectFile.Decoder decoder, PuffinBasicType valueType) throws IOException {
+        int n = decoder.readCount();
+        var values = decoder.readElements(valueType, n);
+        clear();
+        decodeKeys(decoder, values);
+    }
+
+    abstract void encodeKeys(ObjectFile.Encoder encoder) throws IOException;
+
+    abstract void decodeKeys(ObjectFile.Decoder decoder, List<Object> values) throws IOException;
+
+    static void checkNotEmpty(Map<?, ?> map) {
+        if (map.isEmpty()) {
+            throw new PuffinBasicRuntimeError(
+                    INDEX_OUT_OF_BOUNDS,
+                    "Sorted dict is empty"
+            );
+        }
+    }
+
+    private static void resize(STValue result, int n) {
+        var dims = new IntArrayList(1);
+        dims.add(n);
+        result.setArrayDimensions(dims);
+    }
+
+    private static final class LongKeys extends SortedKeyMap {
+        private final PuffinBasicAtomTypeId keyType;
+        private final Long2ObjectRBTreeMap<Object> map = new Long2ObjectRBTreeMap<>();
+
+        LongKeys(PuffinBasicAtomTypeId keyType) {
+            this.keyType = keyType;
+        }
+
+        private long key(STValue key) {
+            return keyType == PuffinBasicAtomTypeId.INT32 ? key.getInt32() : key.getInt64();
+        }
+
+        private void set(STValue result, long key) {
+            if (keyType == PuffinBasicAtomTypeId.INT32) {
+                result.setInt32((int) key);
+            } else {
+                result.setInt64(key);
+            }
+        }
+
+        private Long2ObjectSortedMap<Object> range(STValue from, STValue to) {
+            long lo = key(from);
+            long hi = key(to);
+            return lo < hi ? map.subMap(lo, hi) : map.subMap(lo, lo);
+        }
+
+        private void write(Long2ObjectSortedMap<Object> view, int limit, STValue result) {
+            var keys = new LongArrayList();
+            var it = view.keySet().iterator();
+            while (keys.size() < limit && it.hasNext()) {
+                keys.add(it.nextLong());
+            }
+            int n = keys.size();
+            resize(result, n);
+            long[] src = keys.elements();
+            if (keyType == PuffinBasicAtomTypeId.INT32) {
+                int[] dst = ((STInt32ArrayValue) result).getValue();
+                for (int i = 0; i < n; i++) {
+                    dst[i] = (int) src[i];
+                }
+            } else {
+                System.arraycopy(src, 0, ((STInt64ArrayValue) result).getValue(), 0, n);
+            }
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+
+        @Override
+        void clear() {
+            map.clear();
+        }
+
+        @Override
+        void put(STValue key, Object value) {
+            map.put(key(key), value);
+        }
+
+        @Override
+        Object get(STValue key) {
+            return map.get(key(key));
+        }
+
+        @Override
+        boolean remove(STValue key) {
+            long k = key(key);
+            if (map.containsKey(k)) {
+                map.remove(k);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        boolean containsKey(STValue key) {
+            return map.containsKey(key(key));
+        }
+
+        @Override
+        void firstKey(STValue result) {
+            checkNotEmpty(map);
+            set(result, map.firstLongKey());
+        }
+
+        @Override
+        void lastKey(STValue result) {
+            checkNotEmpty(map);
+            set(result, map.lastLongKey());
+        }
+
+        @Override
+        void floorKey(STValue key, STValue defaultKey, STValue result) {
+            long k = key(key);
+            if (map.containsKey(k)) {
+                set(result, k);
+                return;
+            }
+            var head = map.headMap(k);
+            set(result, head.isEmpty() ? key(defaultKey) : head.lastLongKey());
+        }
+
+        @Override
+        void ceilingKey(STValue key, STValue defaultKey, STValue result) {
+            var tail = map.tailMap(key(key));
+            set(result, tail.isEmpty() ? key(defaultKey) : tail.firstLongKey());
+        }
+
+        @Override
+        void keys(STValue result) {
+            write(map, Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void rangeKeys(STValue from, STValue to, STValue result) {
+            write(range(from, to), Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void firstKeys(int n, STValue result) {
+            write(map, Math.max(0, n), result);
+        }
+
+        @Override
+        Collection<Object> values() {
+            return map.values();
+        }
+
+        @Override
+        Collection<Object> rangeValues(STValue from, STValue to) {
+            return range(from, to).values();
+        }
+
+        @Override
+        int removeRange(STValue from, STValue to) {
+            var view = range(from, to);
+            int n = view.size();
+            view.clear();
+            return n;
+        }
+
+        @Override
+        void encodeKeys(ObjectFile.Encoder encoder) throws IOException {
+            long[] keys = map.keySet().toLongArray();
+            encoder.writeLongs(keys, 0, keys.length);
+        }
+
+        @Override
+        void decodeKeys(ObjectFile.Decoder decoder, List<Object> values) throws IOException {
+            long[] keys = new long[values.size()];
+            decoder.readLongs(keys, 0, keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], values.get(i));
+            }
+        }
+    }
+
+    private static final class DoubleKeys extends SortedKeyMap {
+        private final PuffinBasicAtomTypeId keyType;
+        private final Double2ObjectRBTreeMap<Object> map = new Double2ObjectRBTreeMap<>();
+
+        DoubleKeys(PuffinBasicAtomTypeId keyType) {
+            this.keyType = keyType;
+        }
+
+        private double key(STValue key) {
+            return keyType == PuffinBasicAtomTypeId.FLOAT ? key.getFloat32() : key.getFloat64();
+        }
+
+        private void set(STValue result, double key) {
+            if (keyType == PuffinBasicAtomTypeId.FLOAT) {
+                result.setFloat32((float) key);
+            } else {
+                result.setFloat64(key);
+            }
+        }
+
+        private Double2ObjectSortedMap<Object> range(STValue from, STValue to) {
+            double lo = key(from);
+            double hi = key(to);
+            return lo < hi ? map.subMap(lo, hi) : map.subMap(lo, lo);
+        }
+
+        private void write(Double2ObjectSortedMap<Object> view, int limit, STValue result) {
+            var keys = new DoubleArrayList();
+            var it = view.keySet().iterator();
+            while (keys.size() < limit && it.hasNext()) {
+                keys.add(it.nextDouble());
+            }
+            int n = keys.size();
+            resize(result, n);
+            double[] src = keys.elements();
+            if (keyType == PuffinBasicAtomTypeId.FLOAT) {
+                float[] dst = ((STFloat32ArrayValue) result).getValue();
+                for (int i = 0; i < n; i++) {
+                    dst[i] = (float) src[i];
+                }
+            } else {
+                System.arraycopy(src, 0, ((STFloat64ArrayValue) result).getValue(), 0, n);
+            }
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+
+        @Override
+        void clear() {
+            map.clear();
+        }
+
+        @Override
+        void put(STValue key, Object value) {
+            map.put(key(key), value);
+        }
+
+        @Override
+        Object get(STValue key) {
+            return map.get(key(key));
+        }
+
+        @Override
+        boolean remove(STValue key) {
+            double k = key(key);
+            if (map.containsKey(k)) {
+                map.remove(k);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        boolean containsKey(STValue key) {
+            return map.containsKey(key(key));
+        }
+
+        @Override
+        void firstKey(STValue result) {
+            checkNotEmpty(map);
+            set(result, map.firstDoubleKey());
+        }
+
+        @Override
+        void lastKey(STValue result) {
+            checkNotEmpty(map);
+            set(result, map.lastDoubleKey());
+        }
+
+        @Override
+        void floorKey(STValue key, STValue defaultKey, STValue result) {
+            double k = key(key);
+            if (map.containsKey(k)) {
+                set(result, k);
+                return;
+            }
+            var head = map.headMap(k);
+            set(result, head.isEmpty() ? key(defaultKey) : head.lastDoubleKey());
+        }
+
+        @Override
+        void ceilingKey(STValue key, STValue defaultKey, STValue result) {
+            var tail = map.tailMap(key(key));
+            set(result, tail.isEmpty() ? key(defaultKey) : tail.firstDoubleKey());
+        }
+
+        @Override
+        void keys(STValue result) {
+            write(map, Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void rangeKeys(STValue from, STValue to, STValue result) {
+            write(range(from, to), Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void firstKeys(int n, STValue result) {
+            write(map, Math.max(0, n), result);
+        }
+
+        @Override
+        Collection<Object> values() {
+            return map.values();
+        }
+
+        @Override
+        Collection<Object> rangeValues(STValue from, STValue to) {
+            return range(from, to).values();
+        }
+
+        @Override
+        int removeRange(STValue from, STValue to) {
+            var view = range(from, to);
+            int n = view.size();
+            view.clear();
+            return n;
+        }
+
+        @Override
+        void encodeKeys(ObjectFile.Encoder encoder) throws IOException {
+            double[] keys = map.keySet().toDoubleArray();
+            encoder.writeDoubles(keys, 0, keys.length);
+        }
+
+        @Override
+        void decodeKeys(ObjectFile.Decoder decoder, List<Object> values) throws IOException {
+            double[] keys = new double[values.size()];
+            decoder.readDoubles(keys, 0, keys.length);
+            for (int i = 0; i < keys.length; i++) {
+                map.put(keys[i], values.get(i));
+            }
+        }
+    }
+
+    private static final class StringKeys extends SortedKeyMap {
+        private final Object2ObjectRBTreeMap<String, Object> map = new Object2ObjectRBTreeMap<>();
+
+        private Object2ObjectSortedMap<String, Object> range(STValue from, STValue to) {
+            var lo = from.getString();
+            var hi = to.getString();
+            return lo.compareTo(hi) < 0 ? map.subMap(lo, hi) : map.subMap(lo, lo);
+        }
+
+        private static void write(Object2ObjectSortedMap<String, Object> view, int limit, STValue result) {
+            var keys = new ObjectArrayList<String>();
+            var it = view.keySet().iterator();
+            while (keys.size() < limit && it.hasNext()) {
+                keys.add(it.next());
+            }
+            PuffinBasicAtomTypeId.STRING.copyArray(keys, result);
+        }
+
+        @Override
+        int size() {
+            return map.size();
+        }
+
+        @Override
+        void clear() {
+            map.clear();
+        }
+
+        @Override
+        void put(STValue key, Object value) {
+            map.put(key.getString(), value);
+        }
+
+        @Override
+        Object get(STValue key) {
+            return map.get(key.getString());
+        }
+
+        @Override
+        boolean remove(STValue key) {
+            var k = key.getString();
+            if (map.containsKey(k)) {
+                map.remove(k);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        boolean containsKey(STValue key) {
+            return map.containsKey(key.getString());
+        }
+
+        @Override
+        void firstKey(STValue result) {
+            checkNotEmpty(map);
+            result.setString(map.firstKey());
+        }
+
+        @Override
+        void lastKey(STValue result) {
+            checkNotEmpty(map);
+            result.setString(map.lastKey());
+        }
+
+        @Override
+        void floorKey(STValue key, STValue defaultKey, STValue result) {
+            var k = key.getString();
+            if (map.containsKey(k)) {
+                result.setString(k);
+                return;
+            }
+            var head = map.headMap(k);
+            result.setString(head.isEmpty() ? defaultKey.getString() : head.lastKey());
+        }
+
+        @Override
+        void ceilingKey(STValue key, STValue defaultKey, STValue result) {
+            var tail = map.tailMap(key.getString());
+            result.setString(tail.isEmpty() ? defaultKey.getString() : tail.firstKey());
+        }
+
+        @Override
+        void keys(STValue result) {
+            write(map, Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void rangeKeys(STValue from, STValue to, STValue result) {
+            write(range(from, to), Integer.MAX_VALUE, result);
+        }
+
+        @Override
+        void firstKeys(int n, STValue result) {
+            write(map, Math.max(0, n), result);
+        }
+
+        @Override
+        Collection<Object> values() {
+            return map.values();
+        }
+
+        @Override
+        Collection<Object> rangeValues(STValue from, STValue to) {
+            return range(from, to).values();
+        }
+
+        @Override
+        int removeRange(STValue from, STValue to) {
+            var view = range(from, to);
+            int n = view.size();
+            view.clear();
+            return n;
+        }
+
+        @Override
+        void encodeKeys(ObjectFile.Encoder encoder) throws IOException {
+            for (var key : map.keySet()) {
+                encoder.writeString(key);
+            }
+        }
+
+        @Override
+        void decodeKeys(ObjectFile.Decoder decoder, List<Object> values) throws IOException {
+            for (var value : values) {
+                map.put(decoder.readString(), value);
+            }
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+
+/**
+ * Uniform grid of square cells, hashed by cell coordinates, holding
+ * entity ids with axis aligned boxes [x1, x2) x [y1, y2). An entity is
+ * listed in every cell its box touches. Entity boxes live in parallel
+ * arrays indexed by slot, and cells hold slots.
+ * Query results are sorted by id, overlap pairs by (id1, id2) with
+ * id1 < id2, so the output doesn't depend on hashing order.
+ * Boxes spanning more than MAX_ENTITY_CELLS cells are kept in a separate
+ * list that every query checks, and a query rectangle spanning more cells
+ * than are occupied scans the entities instead, so the work never depends
+ * on the size of a box in cells.
+ */
+final class SpatialHashGrid {
+
+    static final double DEFAULT_CELL_SIZE = 64;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MAX_ENTITY_CELLS = 256;
+
+    private double cellSize = DEFAULT_CELL_SIZE;
+    private final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final Int2IntOpenHashMap idToSlot = new Int2IntOpenHashMap();
+    private final IntArrayList largeSlots = new IntArrayList();
+    private final IntArrayList found = new IntArrayList();
+    private final LongArrayList pairs = new LongArrayList();
+    private int[] ids = new int[INITIAL_CAPACITY];
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] minY = new double[INITIAL_CAPACITY];
+    private double[] maxX = new double[INITIAL_CAPACITY];
+    private double[] maxY = new double[INITIAL_CAPACITY];
+    private int[] stamps = new int[INITIAL_CAPACITY];
+    private boolean[] large = new boolean[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int numFree;
+    private int numSlots;
+    private int stamp;
+
+    SpatialHashGrid() {
+        idToSlot.defaultReturnValue(-1);
+    }
+
+    int size() {
+        return idToSlot.size();
+    }
+
+    void setCellSize(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Cell size must be > 0, actual: " + cellSize
+            );
+        }
+        this.cellSize = cellSize;
+        cells.clear();
+        largeSlots.clear();
+        for (int slot : idToSlot.values()) {
+            addToCells(slot);
+        }
+    }
+
+    /**
+     * Inserts the entity, or moves it if the id is already in the grid.
+     */
+    void insert(int id, double x1, double y1, double x2, double y2) {
+        checkFinite(x1, y1, x2, y2);
+        int slot = idToSlot.get(id);
+        if (slot >= 0) {
+            moveSlot(slot, x1, y1, x2, y2);
+            return;
+        }
+        slot = allocate();
+        idToSlot.put(id, slot);
+        ids[slot] = id;
+        setBox(slot, x1, y1, x2, y2);
+        addToCells(slot);
+    }
+
+    void move(int id, double x1, double y1, double x2, double y2) {
+        checkFinite(x1, y1, x2, y2);
+        int slot = idToSlot.get(id);
+        if (slot < 0) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Id " + id + " is not in the spatial grid"
+            );
+        }
+        moveSlot(slot, x1, y1, x2, y2);
+    }
+
+    boolean remove(int id) {
+        int slot = idToSlot.remove(id);
+        if (slot < 0) {
+            return false;
+        }
+        removeFromCells(slot);
+        freeSlots[numFree++] = slot;
+        return true;
+    }
+
+    void clear() {
+        cells.clear();
+        largeSlots.clear();
+        idToSlot.clear();
+        numFree = 0;
+        numSlots = 0;
+    }
+
+    /**
+     * Writes the cell size and the entities; cells are rebuilt on decode.
+     */
+    void encode(ObjectFile.Encoder encoder) throws IOException {
+        int n = size();
+        int[] liveIds = new int[n];
+        double[][] boxes = new double[4][n];
+        int i = 0;
+        for (var entry : idToSlot.int2IntEntrySet()) {
+            int slot = entry.getIntValue();
+            liveIds[i] = entry.getIntKey();
+            boxes[0][i] = minX[slot];
+            boxes[1][i] = minY[slot];
+            boxes[2][i] = maxX[slot];
+            boxes[3][i] = maxY[slot];
+            i++;
+        }
+        encoder.writeDouble(cellSize);
+        encoder.writeInt(n);
+        encoder.writeInts(liveIds, 0, n);
+        for (var coords : boxes) {
+            encoder.writeDoubles(coords, 0, n);
+        }
+    }
+
+    void decode(ObjectFile.Decoder decoder) throws IOException {
+        double newCellSize = decoder.readDouble();
+        int n = decoder.readCount(Integer.BYTES + 4 * Double.BYTES);
+        if (!(newCellSize > 0)) {
+            throw decoder.corrupt();
+        }
+        clear();
+        int capacity = Math.max(INITIAL_CAPACITY, n);
+        ids = new int[capacity];
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        stamps = new int[capacity];
+        large = new boolean[capacity];
+        freeSlots = new int[capacity];
+        decoder.readInts(ids, 0, n);
+        decoder.readDoubles(minX, 0, n);
+        decoder.readDoubles(minY, 0, n);
+        decoder.readDoubles(maxX, 0, n);
+        decoder.readDoubles(maxY, 0, n);
+        cellSize = newCellSize;
+        numSlots = n;
+        for (int slot = 0; slot < n; slot++) {
+            if (!isFinite(minX[slot], minY[slot], maxX[slot], maxY[slot])
+                    || idToSlot.put(ids[slot], slot) >= 0)
+            {
+                throw decoder.corrupt();
+            }
+            addToCells(slot);
+        }
+    }
+
+    /**
+     * Writes the ids of the entities overlapping [x1, x2) x [y1, y2) into
+     * the array, growing it only if it is too small, and returns the count.
+     */
+    int query(double x1, double y1, double x2, double y2, STValue result) {
+        checkFinite(x1, y1, x2, y2);
+        found.clear();
+        int mark = nextStamp();
+        int cx1 = cell(x1);
+        int cy1 = cell(y1);
+        int cx2 = cell(x2);
+        int cy2 = cell(y2);
+        if (numCells(cx1, cy1, cx2, cy2) > cells.size()) {
+            for (int slot = 0; slot < numSlots; slot++) {
+                if (!large[slot] && idToSlot.get(ids[slot]) == slot) {
+                    checkSlot(slot, mark, x1, y1, x2, y2);
+                }
+            }
+        } else {
+            for (long cy = cy1; cy <= cy2; cy++) {
+                for (long cx = cx1; cx <= cx2; cx++) {
+                    var slots = cells.get(key((int) cx, (int) cy));
+                    if (slots == null) {
+                        continue;
+                    }
+                    int[] elements = slots.elements();
+                    for (int i = 0; i < slots.size(); i++) {
+                        checkSlot(elements[i], mark, x1, y1, x2, y2);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < largeSlots.size(); i++) {
+            checkSlot(largeSlots.getInt(i), mark, x1, y1, x2, y2);
+        }
+        int n = found.size();
+        int[] sorted = found.elements();
+        Arrays.sort(sorted, 0, n);
+        System.arraycopy(sorted, 0, output(result, n), 0, n);
+        return n;
+    }
+
+    private void checkSlot(int slot, int mark, double x1, double y1, double x2, double y2) {
+        if (stamps[slot] != mark) {
+            stamps[slot] = mark;
+            if (minX[slot] < x2 && x1 < maxX[slot] && minY[slot] < y2 && y1 < maxY[slot]) {
+                found.add(ids[slot]);
+            }
+        }
+    }
+
+    /**
+     * Writes every pair of overlapping entities into the two arrays and
+     * returns the number of pairs. A pair sharing several cells is only
+     * reported by the cell holding the top-left corner of the overlap;
+     * pairs with a large entity are found by checking it against all others.
+     */
+    int overlaps(STValue result1, STValue result2) {
+        pairs.clear();
+        for (var entry : cells.long2ObjectEntrySet()) {
+            long cellKey = entry.getLongKey();
+            var slots = entry.getValue();
+            int[] elements = slots.elements();
+            int n = slots.size();
+            for (int i = 0; i < n; i++) {
+                int a = elements[i];
+                for (int j = i + 1; j < n; j++) {
+                    int b = elements[j];
+                    if (overlap(a, b)
+                            && key(cell(Math.max(minX[a], minX[b])), cell(Math.max(minY[a], minY[b]))) == cellKey)
+                    {
+                        addPair(a, b);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < largeSlots.size(); i++) {
+            int a = largeSlots.getInt(i);
+            for (int b = 0; b < numSlots; b++) {
+                // Each pair of large entities is checked once, from the lower slot
+                if (b != a && !(large[b] && b < a) && idToSlot.get(ids[b]) == b && overlap(a, b)) {
+                    addPair(a, b);
+                }
+            }
+        }
+        int n = pairs.size();
+        long[] sorted = pairs.elements();
+        Arrays.sort(sorted, 0, n);
+        int[] out1 = output(result1, n);
+        int[] out2 = output(result2, n);
+        for (int i = 0; i < n; i++) {
+            out1[i] = (int) (sorted[i] >> 32);
+            out2[i] = (int) sorted[i];
+        }
+        return n;
+    }
+
+    private boolean overlap(int a, int b) {
+        return minX[a] < maxX[b] && minX[b] < maxX[a] && minY[a] < maxY[b] && minY[b] < maxY[a];
+    }
+
+    private void addPair(int a, int b) {
+        int id1 = Math.min(ids[a], ids[b]);
+        int id2 = Math.max(ids[a], ids[b]);
+        pairs.add(((long) id1 << 32) | (id2 & 0xFFFFFFFFL));
+    }
+
+    private static int[] output(STValue result, int n) {
+        if (!(result instanceof STInt32ArrayValue) || result.getNumArrayDimensions() != 1) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Expected a 1D INT32 array for the spatial grid results"
+            );
+        }
+        if (result.getTotalLength() < n) {
+            result.setArrayDimensions(IntArrayList.wrap(new int[] {n}));
+        }
+        return ((STInt32ArrayValue) result).getValue();
+    }
+
+    /**
+     * Only touches the cells if the box moved into a different cell range.
+     */
+    private void moveSlot(int slot, double x1, double y1, double x2, double y2) {
+        double nx1 = Math.min(x1, x2);
+        double ny1 = Math.min(y1, y2);
+        double nx2 = Math.max(x1, x2);
+        double ny2 = Math.max(y1, y2);
+        boolean sameCells = cell(nx1) == cell(minX[slot]) && cell(ny1) == cell(minY[slot])
+                && cell(nx2) == cell(maxX[slot]) && cell(ny2) == cell(maxY[slot]);
+        if (!sameCells) {
+            removeFromCells(slot);
+        }
+        setBox(slot, nx1, ny1, nx2, ny2);
+        if (!sameCells) {
+            addToCells(slot);
+        }
+    }
+
+    private void setBox(int slot, double x1, double y1, double x2, double y2) {
+        minX[slot] = Math.min(x1, x2);
+        minY[slot] = Math.min(y1, y2);
+        maxX[slot] = Math.max(x1, x2);
+        maxY[slot] = Math.max(y1, y2);
+    }
+
+    private void addToCells(int slot) {
+        int cx1 = cell(minX[slot]);
+        int cy1 = cell(minY[slot]);
+        int cx2 = cell(maxX[slot]);
+        int cy2 = cell(maxY[slot]);
+        large[slot] = numCells(cx1, cy1, cx2, cy2) > MAX_ENTITY_CELLS;
+        if (large[slot]) {
+            largeSlots.add(slot);
+            return;
+        }
+        // long counters, cell() saturates at Integer.MAX_VALUE
+        for (long cy = cy1; cy <= cy2; cy++) {
+            for (long cx = cx1; cx <= cx2; cx++) {
+                cells.computeIfAbsent(key((int) cx, (int) cy), k -> new IntArrayList(4)).add(slot);
+            }
+        }
+    }
+
+    private void removeFromCells(int slot) {
+        if (large[slot]) {
+            largeSlots.rem(slot);
+            return;
+        }
+        int cx1 = cell(minX[slot]);
+        int cx2 = cell(maxX[slot]);
+        int cy2 = cell(maxY[slot]);
+        for (long cy = cell(minY[slot]); cy <= cy2; cy++) {
+            for (long cx = cx1; cx <= cx2; cx++) {
+                long key = key((int) cx, (int) cy);
+                var slots = cells.get(key);
+                int i = slots.indexOf(slot);
+                int last = slots.size() - 1;
+                slots.set(i, slots.getInt(last));
+                slots.removeInt(last);
+                if (slots.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private int allocate() {
+        if (numFree > 0) {
+            return freeSlots[--numFree];
+        }
+        if (numSlots == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            minX = Arrays.copyOf(minX, capacity);
+            minY = Arrays.copyOf(minY, capacity);
+            maxX = Arrays.copyOf(maxX, capacity);
+            maxY = Arrays.copyOf(maxY, capacity);
+            stamps = Arrays.copyOf(stamps, capacity);
+            large = Arrays.copyOf(large, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+        }
+        return numSlots++;
+    }
+
+    private int nextStamp() {
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Returns the number of cells in the range, saturated so it can't overflow.
+     */
+    private static long numCells(int cx1, int cy1, int cx2, int cy2) {
+        long width = (long) cx2 - cx1 + 1;
+        long height = (long) cy2 - cy1 + 1;
+        if (width > Integer.MAX_VALUE || height > Integer.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return width * height;
+    }
+
+    private static boolean isFinite(double x1, double y1, double x2, double y2) {
+        return Double.isFinite(x1) && Double.isFinite(y1) && Double.isFinite(x2) && Double.isFinite(y2);
+    }
+
+    private static void checkFinite(double x1, double y1, double x2, double y2) {
+        if (!isFinite(x1, y1, x2, y2)) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Spatial grid coordinates must be finite, actual: ("
+                            + x1 + ", " + y1 + ", " + x2 + ", " + y2 + ")"
+            );
+        }
+    }
+
+    private int cell(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
@@ -9,6 +9,7 @@ import org.puffinbasic.domain.STObjects.ScalarType;
 import org.puffinbasic.domain.STObjects.UDFType;
 import org.puffinbasic.error.PuffinBasicSemanticError;
 
+import java.io.IOException;
 import java.util.Objects;
 import java.util.function.Supplier;
 
@@ -37,10 +38,31 @@ public class Variable {
             return varname;
         }
 
+        public String getSuffix() {
+            return suffix;
+        }
+
         public PuffinBasicAtomTypeId getDataType() {
             return dataType;
         }
 
+        void encode(ObjectFile.Encoder encoder) throws IOException {
+            encoder.writeString(varname);
+            encoder.writeString(suffix);
+            encoder.writeInt(dataType.ordinal());
+        }
+
+        static VariableName decode(ObjectFile.Decoder decoder) throws IOException {
+            var varname = decoder.readString();
+            var suffix = decoder.readString();
+            var dataTypes = PuffinBasicAtomTypeId.values();
+            int dataType = decoder.readCount();
+            if (dataType >= dataTypes.length) {
+                throw decoder.corrupt();
+            }
+            return new VariableName(varname, suffix, dataTypes[dataType]);
+        }
+
         @Override
         public String toString() {
             return varname  + ":" + suffix + ":" + dataType;
@@ -1,29 +1,56 @@
 package org.puffinbasic.file;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import it.unimi.dsi.fastutil.ints.IntList;
 import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FILE_ACCESS;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INTERRUPTED_ERROR;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
 
+/**
+ * Reads lines from two direct buffers: while one is being consumed
+ * the next chunk is read into the other on a background thread.
+ * Lines are split on CR, LF or CRLF bytes and decoded with the default
+ * charset, as FileReader did.
+ */
 public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
 
+    private static final int CHUNK_SIZE = 1 << 20;
+    private static final int INITIAL_LINE_SIZE = 256;
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("puffin-file-prefetch-%d")
+                    .build());
+
     private final String filename;
-    private final BufferedReader in;
+    private final FileChannel channel;
+    private final long fileSize;
+    private ByteBuffer current;
+    private ByteBuffer spare;
+    private Future<ByteBuffer> prefetch;
+    private boolean channelDrained;
+    private boolean skipLF;
+    private byte[] lineBuffer;
     private long bytesAccessed;
     private FileState fileState;
-    private String lastLine;
 
     public PuffinBasicSequentialAccessInputFile(
             @NotNull String filename)
@@ -34,8 +61,9 @@ public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
         this.bytesAccessed = 0;
 
         try {
-            this.in = new BufferedReader(new FileReader(filename));
-        } catch (FileNotFoundException e) {
+            this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+            this.fileSize = channel.size();
+        } catch (IOException e) {
             throw new PuffinBasicRuntimeError(
                     IO_ERROR,
                     "Failed to open file '" + filename + "' for reading, error: "
@@ -43,9 +71,73 @@ public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
             );
         }
 
+        this.current = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        this.current.limit(0);
+        var first = ByteBuffer.allocateDirect(CHUNK_SIZE);
+        this.spare = first;
+        this.lineBuffer = new byte[INITIAL_LINE_SIZE];
+        this.prefetch = PREFETCH_EXECUTOR.submit(() -> fill(first));
         this.fileState = FileState.OPEN;
     }
 
+    private ByteBuffer fill(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Swaps in the prefetched chunk and starts reading the following one.
+     * Returns false once the file is exhausted.
+     */
+    private boolean nextChunk() {
+        if (current.hasRemaining()) {
+            return true;
+        }
+        if (channelDrained) {
+            return false;
+        }
+        final ByteBuffer next;
+        try {
+            next = prefetch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PuffinBasicRuntimeError(
+                    INTERRUPTED_ERROR,
+                    "Interrupted while reading file '" + filename + "'"
+            );
+        } catch (ExecutionException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to read line!, error: " + e.getCause().getMessage()
+            );
+        }
+        spare = current;
+        current = next;
+        if (current.limit() < CHUNK_SIZE) {
+            channelDrained = true;
+            prefetch = null;
+        } else {
+            var buffer = spare;
+            prefetch = PREFETCH_EXECUTOR.submit(() -> fill(buffer));
+        }
+        return current.hasRemaining();
+    }
+
+    private void consumePendingLF() {
+        if (skipLF && nextChunk()) {
+            if (current.get(current.position()) == '\n') {
+                current.position(current.position() + 1);
+            }
+            skipLF = false;
+        }
+    }
+
     @Override
     public void setFieldParams(PuffinBasicSymbolTable symbolTable, IntList recordParts) {
         throwIllegalAccess();
@@ -60,26 +152,49 @@ public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
     @Override
     public long getFileSizeInBytes() {
         assertOpen();
-        return new File(filename).length();
+        return fileSize;
     }
 
     @Override
     public String readLine() {
         assertOpen();
-        try {
-            if (lastLine == null) {
-                lastLine = in.readLine();
-            }
-            bytesAccessed += lastLine.length();
-            var result = lastLine.stripTrailing();
-            lastLine = null;
-            return result;
-        } catch (IOException e) {
+        consumePendingLF();
+        if (!nextChunk()) {
             throw new PuffinBasicRuntimeError(
                     IO_ERROR,
-                    "Failed to read line!, error: " + e.getMessage()
+                    "Input past end of file '" + filename + "'"
             );
         }
+
+        int len = 0;
+        boolean terminated = false;
+        while (!terminated && nextChunk()) {
+            int start = current.position();
+            int limit = current.limit();
+            int i = start;
+            while (i < limit) {
+                byte b = current.get(i);
+                if (b == '\n' || b == '\r') {
+                    skipLF = b == '\r';
+                    terminated = true;
+                    break;
+                }
+                i++;
+            }
+            int n = i - start;
+            if (len + n > lineBuffer.length) {
+                var grown = new byte[Math.max(lineBuffer.length * 2, len + n)];
+                System.arraycopy(lineBuffer, 0, grown, 0, len);
+                lineBuffer = grown;
+            }
+            current.get(lineBuffer, len, n);
+            len += n;
+            if (terminated) {
+                current.position(current.position() + 1);
+            }
+        }
+        bytesAccessed += len;
+        return new String(lineBuffer, 0, len, Charset.defaultCharset()).stripTrailing();
     }
 
     @Override
@@ -107,15 +222,8 @@ public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
     @Override
     public boolean eof() {
         assertOpen();
-        try {
-            this.lastLine = in.readLine();
-        } catch (IOException e) {
-            throw new PuffinBasicRuntimeError(
-                    IO_ERROR,
-                    "Failed to read line!, error: " + e.getMessage()
-            );
-        }
-        return lastLine == null;
+        consumePendingLF();
+        return !nextChunk();
     }
 
     @Override
@@ -144,7 +252,11 @@ public class PuffinBasicSequentialAccessInputFile implements PuffinBasicFile {
     public void close() {
         assertOpen();
         try {
-            this.in.close();
+            if (prefetch != null) {
+                prefetch.cancel(true);
+                prefetch = null;
+            }
+            this.channel.close();
         } catch (Exception e) {
             throw new PuffinBasicRuntimeError(
                     IO_ERROR,
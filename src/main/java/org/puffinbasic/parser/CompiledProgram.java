@@ -0,0 +1,98 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.error.PuffinBasicInternalError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.util.List;
+
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.LABEL;
+
+/**
+ * The result of compiling a program: the instructions, the label and
+ * line number jump tables, and the symbol table as left by the compiler,
+ * which holds the types and the id (slot) of every entry.
+ * None of it changes after construction. Each execution runs against its
+ * own copy of the symbol table (see newSymbolTable), so one compiled
+ * program can be run any number of times, from any number of threads.
+ */
+public final class CompiledProgram {
+
+    private final PuffinBasicIR ir;
+    private final List<Instruction> instructions;
+    private final Int2IntMap labelToInstrNum;
+    private final Int2IntMap lineNumToInstrNum;
+
+    public CompiledProgram(PuffinBasicIR ir) {
+        this.ir = ir;
+        this.instructions = List.copyOf(ir.getInstructions());
+        this.labelToInstrNum = Int2IntMaps.unmodifiable(computeLabelToInstructionNumber(instructions));
+        this.lineNumToInstrNum = Int2IntMaps.unmodifiable(computeLineNumberToInstructionNumber(instructions));
+    }
+
+    private static Int2IntMap computeLabelToInstructionNumber(List<Instruction> instructions) {
+        Int2IntMap labelToInstrNum = new Int2IntOpenHashMap();
+        for (int i = 0; i < instructions.size(); i++) {
+            var instr = instructions.get(i);
+            if (instr.opCode == LABEL) {
+                labelToInstrNum.put(instr.op1, i);
+            }
+        }
+        return labelToInstrNum;
+    }
+
+    private static Int2IntMap computeLineNumberToInstructionNumber(List<Instruction> instructions) {
+        var linenumToInstrNum = new Int2IntOpenHashMap();
+        int instrNum = 0;
+        for (var instruction : instructions) {
+            int lineNumber = instruction.getInputRef().lineNumber;
+            if (lineNumber >= 0) {
+                linenumToInstrNum.putIfAbsent(lineNumber, instrNum);
+            }
+            ++instrNum;
+        }
+        return linenumToInstrNum;
+    }
+
+    public List<Instruction> getInstructions() {
+        return instructions;
+    }
+
+    public int getInstrNumForLabel(int id) {
+        var instrNum = labelToInstrNum.getOrDefault(id, -1);
+        if (instrNum == -1) {
+            throw new PuffinBasicInternalError("Failed to find instruction# for label: " + id);
+        }
+        return instrNum;
+    }
+
+    public int getInstrNumForLineNumber(int lineNumber) {
+        var instrNum = lineNumToInstrNum.getOrDefault(lineNumber, -1);
+        if (instrNum == -1) {
+            throw new PuffinBasicInternalError("Failed to find instruction# for line#: " + lineNumber);
+        }
+        return instrNum;
+    }
+
+    public String getCodeStreamFor(Instruction instruction) {
+        return ir.getCodeStreamFor(instruction);
+    }
+
+    /**
+     * Returns the symbol table as left by the compiler, for looking up
+     * types and names. It must not be modified or run against.
+     */
+    public PuffinBasicSymbolTable getSymbolTable() {
+        return ir.getSymbolTable();
+    }
+
+    /**
+     * Returns a new symbol table for one execution of the program.
+     */
+    public PuffinBasicSymbolTable newSymbolTable() {
+        return ir.getSymbolTable().copy();
+    }
+}
@@ -0,0 +1,271 @@
+package org.puffinbasic.parser;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.antlr.v4.runtime.CharStreams;
+import org.puffinbasic.domain.ObjectFile;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Keeps compiled programs in a directory, so that running an unchanged
+ * program again skips parsing and IR generation.
+ * An entry is named by a hash of the source code and the options that
+ * change the IR, and holds the hashes of the imported files, the source
+ * code of each file (for error messages), the instructions and the
+ * symbol table. An entry is only used if every import still resolves to
+ * the same file with the same content; otherwise the program is compiled
+ * again and the entry replaced. The key also covers the interpreter build,
+ * so entries written by another build are never used.
+ * The cache is only an optimization: failing to read or write an entry
+ * never fails the run.
+ */
+public final class CompiledProgramCache {
+
+    private static final int MAGIC = 0x43524250; // "PBRC"
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".pbc";
+
+    private final Path directory;
+
+    public CompiledProgramCache(String directory) {
+        this.directory = Paths.get(directory);
+    }
+
+    public static String key(
+            String sourceFilename,
+            String sourceCode,
+            boolean graphics,
+            boolean logOnDuplicate,
+            Collection<String> hostArrays)
+    {
+        var hasher = Hashing.sha256().newHasher();
+        hasher.putInt(VERSION);
+        putString(hasher, Build.ID);
+        for (var opCode : OpCode.values()) {
+            putString(hasher, opCode.name());
+        }
+        putString(hasher, sourceFilename);
+        hasher.putBoolean(graphics);
+        hasher.putBoolean(logOnDuplicate);
+        hasher.putInt(hostArrays.size());
+        for (var hostArray : hostArrays) {
+            putString(hasher, hostArray);
+        }
+        putString(hasher, sourceCode);
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Identifies the interpreter build by its implementation version and the
+     * size and modification time of the jar, or of each class file when
+     * running from a classes directory.
+     */
+    private static final class Build {
+
+        static final String ID = buildId();
+
+        private static String buildId() {
+            var hasher = Hashing.sha256().newHasher();
+            var version = CompiledProgramCache.class.getPackage().getImplementationVersion();
+            putString(hasher, version != null ? version : "");
+            try {
+                var location = Paths.get(
+                        CompiledProgramCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+                if (Files.isDirectory(location)) {
+                    try (var files = Files.walk(location)) {
+                        for (var file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                            putString(hasher, location.relativize(file).toString());
+                            putFileStamp(hasher, file);
+                        }
+                    }
+                } else {
+                    putFileStamp(hasher, location);
+                }
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                // Unknown location, fall back to the version alone
+            }
+            return hasher.hash().toString();
+        }
+
+        private static void putFileStamp(Hasher hasher, Path path) throws IOException {
+            hasher.putLong(Files.size(path));
+            hasher.putLong(Files.getLastModifiedTime(path).toMillis());
+        }
+    }
+
+    private static void putString(Hasher hasher, String value) {
+        hasher.putInt(value.length());
+        hasher.putString(value, StandardCharsets.UTF_8);
+    }
+
+    private static String hashFile(String path) throws IOException {
+        return Hashing.sha256().hashBytes(Files.readAllBytes(Paths.get(path))).toString();
+    }
+
+    private Path path(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /**
+     * Returns the cached program for key, or empty if there is none or it
+     * is stale or unreadable.
+     */
+    public Optional<CompiledProgram> load(String key, PuffinBasicImportPath importPath) {
+        var path = path(key);
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var decoder = new ObjectFile.Decoder(null, channel, path.toString());
+            if (decoder.readInt() != MAGIC || decoder.readInt() != VERSION) {
+                return Optional.empty();
+            }
+
+            // Each import is 3 strings, each source file at least 2 strings and a flag
+            int numImports = decoder.readCount(3 * Integer.BYTES);
+            for (int i = 0; i < numImports; i++) {
+                var relativePath = decoder.readString();
+                var resolvedPath = decoder.readString();
+                var hash = decoder.readString();
+                if (!importPath.find(relativePath).equals(resolvedPath) || !hashFile(resolvedPath).equals(hash)) {
+                    return Optional.empty();
+                }
+            }
+
+            int numSourceFiles = decoder.readCount(3 * Integer.BYTES);
+            var sourceFiles = new ArrayList<PuffinBasicSourceFile>(numSourceFiles);
+            for (int i = 0; i < numSourceFiles; i++) {
+                var relativePath = decoder.readString();
+                var libtag = decoder.readInt() != 0 ? decoder.readString() : null;
+                var sourceCode = decoder.readString();
+                sourceFiles.add(new PuffinBasicSourceFile(
+                        relativePath,
+                        libtag,
+                        sourceCode,
+                        CharStreams.fromString(sourceCode),
+                        List.of(),
+                        new LinkedHashSet<>()));
+            }
+
+            int numInstructions = decoder.readCount();
+            if (numInstructions > Integer.MAX_VALUE / 8) {
+                throw decoder.corrupt();
+            }
+            decoder.checkRemaining(numInstructions, 8 * Integer.BYTES);
+            var fields = new int[numInstructions * 8];
+            decoder.readInts(fields, 0, fields.length);
+
+            var ir = new PuffinBasicIR(PuffinBasicSymbolTable.decode(decoder));
+            var opCodes = OpCode.values();
+            for (int i = 0; i < fields.length; i += 8) {
+                int sourceFile = fields[i];
+                int opCode = fields[i + 4];
+                if (sourceFile < 0 || sourceFile >= sourceFiles.size() || opCode < 0 || opCode >= opCodes.length) {
+                    throw decoder.corrupt();
+                }
+                ir.addInstruction(
+                        sourceFiles.get(sourceFile), fields[i + 1], fields[i + 2], fields[i + 3],
+                        opCodes[opCode], fields[i + 5], fields[i + 6], fields[i + 7]);
+            }
+            return Optional.of(new CompiledProgram(ir));
+        } catch (IOException | PuffinBasicRuntimeError e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores program under key. The entry is written to a temp file and
+     * then moved in place, so concurrent runs never see a partial entry.
+     * Failures are logged to stderr and otherwise ignored.
+     */
+    public void save(
+            String key,
+            PuffinBasicImportPath importPath,
+            PuffinBasicSourceFile sourceFile,
+            CompiledProgram program)
+    {
+        Path tmp = null;
+        try {
+            Files.createDirectories(directory);
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                var symbolTable = program.getSymbolTable();
+                var encoder = new ObjectFile.Encoder(symbolTable, channel);
+                encoder.writeInt(MAGIC);
+                encoder.writeInt(VERSION);
+
+                var importFiles = sourceFile.getImportFiles();
+                encoder.writeInt(importFiles.size());
+                for (var importFile : importFiles) {
+                    var resolvedPath = importPath.find(importFile.getRelativePath());
+                    encoder.writeString(importFile.getRelativePath());
+                    encoder.writeString(resolvedPath);
+                    encoder.writeString(hashFile(resolvedPath));
+                }
+
+                var instructions = program.getInstructions();
+                var sourceFileToIndex = new IdentityHashMap<PuffinBasicSourceFile, Integer>();
+                var fields = new int[instructions.size() * 8];
+                int i = 0;
+                for (var instruction : instructions) {
+                    var inputRef = instruction.getInputRef();
+                    fields[i++] = sourceFileToIndex.computeIfAbsent(
+                            inputRef.sourceFile, f -> sourceFileToIndex.size());
+                    fields[i++] = inputRef.lineNumber;
+                    fields[i++] = inputRef.inputStartIndex;
+                    fields[i++] = inputRef.inputStopIndex;
+                    fields[i++] = instruction.opCode.ordinal();
+                    fields[i++] = instruction.op1;
+                    fields[i++] = instruction.op2;
+                    fields[i++] = instruction.result;
+                }
+
+                var sourceFiles = new PuffinBasicSourceFile[sourceFileToIndex.size()];
+                sourceFileToIndex.forEach((file, index) -> sourceFiles[index] = file);
+                encoder.writeInt(sourceFiles.length);
+                for (var file : sourceFiles) {
+                    encoder.writeString(file.getRelativePath());
+                    encoder.writeInt(file.getLibtag() != null ? 1 : 0);
+                    if (file.getLibtag() != null) {
+                        encoder.writeString(file.getLibtag());
+                    }
+                    encoder.writeString(file.getSourceCode());
+                }
+
+                encoder.writeInt(instructions.size());
+                encoder.writeInts(fields, 0, fields.length);
+                symbolTable.encode(encoder);
+                encoder.flush();
+            }
+            Files.move(tmp, path(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | PuffinBasicRuntimeError e) {
+            System.err.println("Failed to save compiled program to '" + directory + "', error: " + e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // Best effort, the entry itself is written
+                }
+            }
+        }
+    }
+}
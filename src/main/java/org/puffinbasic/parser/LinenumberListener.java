@@ -11,13 +11,20 @@ import org.puffinbasic.antlr4.PuffinBasicParser;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.error.PuffinBasicSyntaxError;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IMPORT_ERROR;
 import static org.puffinbasic.runtime.Types.unquote;
 
+/**
+ * Collects the lines of a parsed source file in line number order (the
+ * last one wins for a duplicate line number), along with its IMPORTs and
+ * LIBTAG. IR is generated by walking the sorted lines of the same tree.
+ */
 public class LinenumberListener extends PuffinBasicBaseListener {
 
     public enum ThrowOnDuplicate {
@@ -28,7 +35,7 @@ public class LinenumberListener extends PuffinBasicBaseListener {
     private final AtomicInteger linenumGenerator;
     private final CharStream input;
     private final ThrowOnDuplicate throwOnDuplicate;
-    private final Int2ObjectSortedMap<String> sortedLines;
+    private final Int2ObjectSortedMap<PuffinBasicParser.LineContext> sortedLines;
     private final Set<String> importFiles;
     private int numLinenum;
     private int numNoLinenum;
@@ -50,9 +57,9 @@ public class LinenumberListener extends PuffinBasicBaseListener {
         return numLinenum > 0;
     }
 
-    public String getSortedCode() {
+    public List<PuffinBasicParser.LineContext> getSortedLines() {
         checkLinenumberMode();
-        return String.join("", sortedLines.values());
+        return new ArrayList<>(sortedLines.values());
     }
 
     public Set<String> getImportFiles() {
@@ -80,8 +87,6 @@ public class LinenumberListener extends PuffinBasicBaseListener {
 
     @Override
     public void exitLine(PuffinBasicParser.LineContext ctx) {
-        final String line = input.getText(new Interval(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
-
         final int linenum;
         if (ctx.linenum() != null) {
             linenum = parseLinenum(ctx.linenum().DECIMAL().getText());
@@ -91,13 +96,13 @@ public class LinenumberListener extends PuffinBasicBaseListener {
             numNoLinenum++;
         }
 
-        var oldLine = sortedLines.put(linenum, line);
+        var oldLine = sortedLines.put(linenum, ctx);
         if (oldLine != null) {
             var message = "Duplicate line number!" + System.lineSeparator() +
                     "OLD:" + System.lineSeparator() +
-                    oldLine +
+                    getText(oldLine) +
                     "NEW:" + System.lineSeparator() +
-                    line;
+                    getText(ctx);
             if (throwOnDuplicate == ThrowOnDuplicate.THROW) {
                 throw new PuffinBasicSyntaxError(message);
             } else {
@@ -106,6 +111,10 @@ public class LinenumberListener extends PuffinBasicBaseListener {
         }
     }
 
+    private String getText(PuffinBasicParser.LineContext ctx) {
+        return input.getText(new Interval(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
+    }
+
     @Override
     public void exitGosubstmt(PuffinBasicParser.GosubstmtContext ctx) {
         numStmtWithLinenum++;
@@ -151,14 +151,38 @@ public class PuffinBasicIR {
         ARRAY1DSTD("array1dstd"),
         ARRAY1DMEDIAN("array1dmedian"),
         ARRAY1DPCT("array1dpct"),
+        ARRAY1DPCTS("array1dpcts"),
+        ARRAYADD("arrayadd"),
+        ARRAYSUB("arraysub"),
+        ARRAYMUL("arraymul"),
+        ARRAYDIV("arraydiv"),
+        ARRAYSCALE("arrayscale"),
+        ARRAYAXPY("arrayaxpy"),
+        ARRAYDOT("arraydot"),
+        ARRAYCLAMP("arrayclamp"),
         ARRAY1DSORT("array1dsort"),
         ARRAY1DBINSEARCH("array1dbinsearch"),
         ARRAY1DCOPY("array1dcopy"),
         ARRAYCOPY("arraycopy"),
         ARRAY2DSHIFTHOR("array2dshifthor"),
         ARRAY2DSHIFTVER("array2dshiftver"),
+        ARRAY2DCONV("array2dconv"),
+        MATMUL("matmul"),
+        MATTRANSPOSE("mattranspose"),
+        ARGSORT("argsort"),
+        PERMUTE("permute"),
+        ARRAY1DMERGE("array1dmerge"),
+        GROUPBY("groupby"),
+        HISTOGRAM("histogram"),
+        HASHJOIN("hashjoin"),
         ARRAY2DFINDROW("array2dFindRow"),
         ARRAY2DFINDCOLUMN("array2sFindColumn"),
+        LOADCSV("loadcsv"),
+        SAVECSV("savecsv"),
+        ARRAYSAVE("arraysave"),
+        ARRAYLOAD("arrayload"),
+        SAVEOBJ("saveobj"),
+        LOADOBJ("loadobj"),
         LEN("len"),
         HEXDLR("hex$"),
         OCTDLR("oct$"),
@@ -168,6 +192,9 @@ public class PuffinBasicIR {
         MIDDLR("mid$"),
         MIDDLR_STMT("mid$_stmt"),
         SPLITDLR("split$"),
+        REGEXMATCH("regexmatch"),
+        REGEXFINDDLR("regexfind$"),
+        REGEXREPLACEDLR("regexreplace$"),
         RND("rnd"),
         SGN("sgn"),
         TIMER("timer"),
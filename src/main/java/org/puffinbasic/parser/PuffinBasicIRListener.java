@@ -17,8 +17,12 @@ import org.puffinbasic.antlr4.PuffinBasicParser;
 import org.puffinbasic.antlr4.PuffinBasicParser.VariableContext;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.domain.STObjects.ArrayType;
+import org.puffinbasic.domain.STObjects.BitsetType;
+import org.puffinbasic.domain.STObjects.ColumnListType;
+import org.puffinbasic.domain.STObjects.DequeType;
 import org.puffinbasic.domain.STObjects.DictType;
 import org.puffinbasic.domain.STObjects.ListType;
+import org.puffinbasic.domain.STObjects.PQueueType;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.domain.STObjects.PuffinBasicType;
 import org.puffinbasic.domain.STObjects.STEntry;
@@ -26,6 +30,8 @@ import org.puffinbasic.domain.STObjects.STUDF;
 import org.puffinbasic.domain.STObjects.STVariable;
 import org.puffinbasic.domain.STObjects.ScalarType;
 import org.puffinbasic.domain.STObjects.SetType;
+import org.puffinbasic.domain.STObjects.SortedDictType;
+import org.puffinbasic.domain.STObjects.SpatialGridType;
 import org.puffinbasic.domain.Variable;
 import org.puffinbasic.domain.Variable.VariableKindHint;
 import org.puffinbasic.domain.Variable.VariableName;
@@ -54,6 +60,7 @@ import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT32;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT64;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.STRING;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
 import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.UDF;
 import static org.puffinbasic.error.PuffinBasicSemanticError.ErrorCode.BAD_ARGUMENT;
 import static org.puffinbasic.error.PuffinBasicSemanticError.ErrorCode.BAD_ASSIGNMENT;
@@ -1570,6 +1577,17 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 ir.getSymbolTable().addTmp(DOUBLE, e -> {})));
     }
 
+    @Override
+    public void exitFuncArrayDot(PuffinBasicParser.FuncArrayDotContext ctx) {
+        var xInstr = getArrayNdVariableInstruction(ctx, ctx.x);
+        var yInstr = getArrayNdVariableInstruction(ctx, ctx.y);
+        assertNumeric(ir.getSymbolTable().get(xInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        nodeToInstruction.put(ctx, ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYDOT, xInstr.result, yInstr.result,
+                ir.getSymbolTable().addTmp(DOUBLE, e -> {})));
+    }
+
     @Override
     public void exitFuncArray2DFindRow(PuffinBasicParser.FuncArray2DFindRowContext ctx) {
         var varInstr = getArray2dVariableInstruction(ctx, ctx.variable());
@@ -1754,6 +1772,54 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 ir.getSymbolTable().addTmp(new ArrayType(STRING), c -> {})));
     }
 
+    @Override
+    public void exitFuncRegexMatch(PuffinBasicParser.FuncRegexMatchContext ctx) {
+        var str = lookupInstruction(ctx.str);
+        var regex = lookupInstruction(ctx.regex);
+        Types.assertString(ir.getSymbolTable().get(str.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        Types.assertString(ir.getSymbolTable().get(regex.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        nodeToInstruction.put(ctx, ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.REGEXMATCH, str.result, regex.result,
+                ir.getSymbolTable().addTmp(INT32, c -> {})));
+    }
+
+    @Override
+    public void exitFuncRegexFindDlr(PuffinBasicParser.FuncRegexFindDlrContext ctx) {
+        var str = lookupInstruction(ctx.str);
+        var regex = lookupInstruction(ctx.regex);
+        Types.assertString(ir.getSymbolTable().get(str.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        Types.assertString(ir.getSymbolTable().get(regex.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        nodeToInstruction.put(ctx, ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.REGEXFINDDLR, str.result, regex.result,
+                ir.getSymbolTable().addTmp(new ArrayType(STRING), c -> {})));
+    }
+
+    @Override
+    public void exitFuncRegexReplaceDlr(PuffinBasicParser.FuncRegexReplaceDlrContext ctx) {
+        var str = lookupInstruction(ctx.str);
+        var regex = lookupInstruction(ctx.regex);
+        var repl = lookupInstruction(ctx.repl);
+        Types.assertString(ir.getSymbolTable().get(str.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        Types.assertString(ir.getSymbolTable().get(regex.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        Types.assertString(ir.getSymbolTable().get(repl.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, str.result, regex.result, NULL_ID);
+        nodeToInstruction.put(ctx, ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.REGEXREPLACEDLR, repl.result, NULL_ID,
+                ir.getSymbolTable().addTmp(STRING, c -> {})));
+    }
+
     @Override
     public void exitFuncAllocArray(PuffinBasicParser.FuncAllocArrayContext ctx) {
         var elementType = PuffinBasicAtomTypeId.lookup(ctx.varsuffix().getText());
@@ -1857,6 +1923,129 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         );
     }
 
+    @Override
+    public void exitBitsetstmt(PuffinBasicParser.BitsetstmtContext ctx) {
+        var instanceName = ctx.setname.VARNAME().getText();
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var bitsetType = new BitsetType();
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, bitsetType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    @Override
+    public void exitDequestmt(PuffinBasicParser.DequestmtContext ctx) {
+        var atomType = PuffinBasicAtomTypeId.lookup(ctx.typesuffix.getText());
+        PuffinBasicType itemType = new ScalarType(atomType);
+        var instanceName = ctx.dequename.VARNAME().getText();
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var dequeType = new DequeType(itemType);
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, dequeType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    @Override
+    public void exitPqueuestmt(PuffinBasicParser.PqueuestmtContext ctx) {
+        var instanceName = ctx.pqueuename.VARNAME().getText();
+        var pqueueType = newPQueueType(ctx, ctx.pqueuek1, ctx.pqueuev1, ctx.pqueuev2);
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, pqueueType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    private PQueueType newPQueueType(
+            ParserRuleContext ctx,
+            PuffinBasicParser.VarsuffixContext priorityCtx,
+            PuffinBasicParser.VarnameContext structValueCtx,
+            PuffinBasicParser.VarsuffixContext scalarValueCtx)
+    {
+        var priorityAtomType = PuffinBasicAtomTypeId.lookup(priorityCtx.getText());
+        Types.assertNumeric(priorityAtomType, () -> getCtxString(ctx));
+        final PuffinBasicType valueType;
+        if (structValueCtx != null) {
+            // struct
+            valueType = ir.getSymbolTable().getStructType(structValueCtx.VARNAME().getText());
+        } else {
+            // scalar data type
+            valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(scalarValueCtx.getText()));
+        }
+        return new PQueueType(new ScalarType(priorityAtomType), valueType);
+    }
+
+    @Override
+    public void exitSpatialgridstmt(PuffinBasicParser.SpatialgridstmtContext ctx) {
+        var instanceName = ctx.gridname.VARNAME().getText();
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var spatialGridType = new SpatialGridType();
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, spatialGridType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    @Override
+    public void exitColumnliststmt(PuffinBasicParser.ColumnliststmtContext ctx) {
+        var typeName = ctx.typename.VARNAME().getText();
+        var instanceName = ctx.listname.VARNAME().getText();
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var columnListType = new ColumnListType(ir.getSymbolTable().getStructType(typeName));
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, columnListType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    @Override
+    public void exitSorteddictstmt(PuffinBasicParser.SorteddictstmtContext ctx) {
+        var instanceName = ctx.dictname.VARNAME().getText();
+        var sortedDictType = newSortedDictType(ctx.dictk1, ctx.dictv1, ctx.dictv2);
+
+        var variableName = new VariableName(instanceName, null, COMPOSITE);
+        var id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, sortedDictType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    private SortedDictType newSortedDictType(
+            PuffinBasicParser.VarsuffixContext keyCtx,
+            PuffinBasicParser.VarnameContext structValueCtx,
+            PuffinBasicParser.VarsuffixContext scalarValueCtx)
+    {
+        var keyType = new ScalarType(PuffinBasicAtomTypeId.lookup(keyCtx.getText()));
+        final PuffinBasicType valueType;
+        if (structValueCtx != null) {
+            // struct
+            valueType = ir.getSymbolTable().getStructType(structValueCtx.VARNAME().getText());
+        } else {
+            // scalar data type
+            valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(scalarValueCtx.getText()));
+        }
+        return new SortedDictType(keyType, valueType);
+    }
+
     @Override
     public void exitDictstmt(PuffinBasicParser.DictstmtContext ctx) {
         var keyAtomType = PuffinBasicAtomTypeId.lookup(ctx.dictk1.getText());
@@ -1875,13 +2064,27 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
 
         var instanceName = ctx.dictname.VARNAME().getText();
 
+        int pathId = NULL_ID;
+        if (ctx.path != null) {
+            if (valueType.getTypeId() != SCALAR) {
+                throw new PuffinBasicSemanticError(
+                        DATA_TYPE_MISMATCH,
+                        getCtxString(ctx),
+                        "MAPPED dicts must have scalar values"
+                );
+            }
+            pathId = lookupInstruction(ctx.path).result;
+            Types.assertString(ir.getSymbolTable().get(pathId).getType().getAtomTypeId(),
+                    () -> getCtxString(ctx));
+        }
+
         var variableName = new VariableName(instanceName, null, COMPOSITE);
         var dictType = new DictType(keyType, valueType);
         var id = ir.getSymbolTable().addCompositeVariable(
                 variableName, new STVariable(null, new Variable(variableName, dictType)));
         ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+                OpCode.CREATE_INSTANCE, id, pathId, id
         );
     }
 
@@ -1954,6 +2157,32 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictv2.getText()));
                 }
                 struct.declareField(name, new DictType(keyType, valueType));
+            } else if (compCtx.BITSET() != null) {
+                // bitset
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new BitsetType());
+            } else if (compCtx.PQUEUE() != null) {
+                // pqueue
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, newPQueueType(
+                        ctx, compCtx.pqueuek1, compCtx.pqueuev1, compCtx.pqueuev2));
+            } else if (compCtx.DEQUE() != null) {
+                // deque
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new DequeType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.deque2.getText()))));
+            } else if (compCtx.SORTEDDICT() != null) {
+                // sorted dict
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, newSortedDictType(compCtx.sdictk1, compCtx.sdictv1, compCtx.sdictv2));
+            } else if (compCtx.SPATIALGRID() != null) {
+                // spatial grid
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new SpatialGridType());
+            } else if (compCtx.COLUMNLIST() != null) {
+                // column list
+                var name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new ColumnListType(
+                        ir.getSymbolTable().getStructType(compCtx.collist1.VARNAME().getText())));
             } else if (compCtx.struct1 != null) {
                 // struct
                 var memberType = compCtx.struct1.VARNAME().getText();
@@ -2133,8 +2362,8 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
 
     @Override
     public void exitDimstmt(PuffinBasicParser.DimstmtContext ctx) {
-        IntList dims = new IntArrayList(ctx.expr().size());
-        for (int i = 0; i < ctx.expr().size(); i++) {
+        IntList dims = new IntArrayList(ctx.dims.size());
+        for (int i = 0; i < ctx.dims.size(); i++) {
             dims.add(0);
         }
 
@@ -2144,7 +2373,21 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 variableName1 -> new Variable(variableName1, new ArrayType(variableName1.getDataType(), dims, true)),
                 (id, entry, v1) -> entry.getValue().setArrayDimensions(dims));
 
-        for (var expr : ctx.expr()) {
+        int pathId = NULL_ID;
+        if (ctx.path != null) {
+            if (variableName.getDataType() == STRING) {
+                throw new PuffinBasicSemanticError(
+                        DATA_TYPE_MISMATCH,
+                        getCtxString(ctx),
+                        "MAPPED arrays must be numeric"
+                );
+            }
+            pathId = lookupInstruction(ctx.path).result;
+            Types.assertString(ir.getSymbolTable().get(pathId).getType().getAtomTypeId(),
+                    () -> getCtxString(ctx));
+        }
+
+        for (var expr : ctx.dims) {
             var dimi = lookupInstruction(expr);
             Types.assertNumeric(ir.getSymbolTable().get(dimi.result).getType().getAtomTypeId(),
                     () -> getCtxString(ctx));
@@ -2155,7 +2398,7 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         }
         ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.DIM, varId, NULL_ID, NULL_ID
+                OpCode.DIM, varId, pathId, NULL_ID
         );
     }
 
@@ -2350,6 +2593,32 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictv2.getText()));
                 }
                 paramType = new DictType(keyType, valueType);
+            } else if (compCtx.BITSET() != null) {
+                // bitset
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new BitsetType();
+            } else if (compCtx.PQUEUE() != null) {
+                // pqueue
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = newPQueueType(
+                        ctx, compCtx.pqueuek1, compCtx.pqueuev1, compCtx.pqueuev2);
+            } else if (compCtx.DEQUE() != null) {
+                // deque
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new DequeType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.deque2.getText())));
+            } else if (compCtx.SORTEDDICT() != null) {
+                // sorted dict
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = newSortedDictType(compCtx.sdictk1, compCtx.sdictv1, compCtx.sdictv2);
+            } else if (compCtx.SPATIALGRID() != null) {
+                // spatial grid
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new SpatialGridType();
+            } else if (compCtx.COLUMNLIST() != null) {
+                // column list
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new ColumnListType(
+                        ir.getSymbolTable().getStructType(compCtx.collist1.VARNAME().getText()));
             } else if (compCtx.struct1 != null) {
                 // struct
                 var memberType = compCtx.struct1.VARNAME().getText();
@@ -4175,6 +4444,359 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 OpCode.ARRAYFILL, varInstr.result, expr.result, NULL_ID);
     }
 
+    @Override
+    public void exitLoadcsvstmt(PuffinBasicParser.LoadcsvstmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var skip = lookupInstruction(ctx.skip);
+        Types.assertNumeric(ir.getSymbolTable().get(skip.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+
+        final int firstId, countId;
+        if (ctx.first != null) {
+            firstId = lookupInstruction(ctx.first).result;
+            countId = lookupInstruction(ctx.count).result;
+            Types.assertNumeric(ir.getSymbolTable().get(firstId).getType().getAtomTypeId(), () -> getCtxString(ctx));
+            Types.assertNumeric(ir.getSymbolTable().get(countId).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        } else {
+            firstId = ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(0));
+            countId = ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(-1));
+        }
+        if (!ctx.cols.isEmpty() && ctx.cols.size() != ctx.variable().size()) {
+            throw new PuffinBasicSemanticError(
+                    BAD_ARGUMENT,
+                    getCtxString(ctx),
+                    "#columns " + ctx.cols.size() + " doesn't match #arrays " + ctx.variable().size()
+            );
+        }
+
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, firstId, countId, NULL_ID);
+        for (int i = 0; i < ctx.variable().size(); i++) {
+            var varInstr = getArray1dVariableInstruction(ctx, ctx.variable(i), false);
+            final int colId;
+            if (ctx.cols.isEmpty()) {
+                final int col = i;
+                colId = ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(col));
+            } else {
+                colId = lookupInstruction(ctx.cols.get(i)).result;
+                Types.assertNumeric(ir.getSymbolTable().get(colId).getType().getAtomTypeId(), () -> getCtxString(ctx));
+            }
+            ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.PARAM2, varInstr.result, colId, NULL_ID);
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.LOADCSV, path.result, skip.result, NULL_ID);
+    }
+
+    @Override
+    public void exitSavecsvstmt(PuffinBasicParser.SavecsvstmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        if (!ctx.headers.isEmpty() && ctx.headers.size() != ctx.variable().size()) {
+            throw new PuffinBasicSemanticError(
+                    BAD_ARGUMENT,
+                    getCtxString(ctx),
+                    "#headers " + ctx.headers.size() + " doesn't match #arrays " + ctx.variable().size()
+            );
+        }
+
+        for (int i = 0; i < ctx.variable().size(); i++) {
+            var varInstr = getArray1dVariableInstruction(ctx, ctx.variable(i), false);
+            final int headerId;
+            if (ctx.headers.isEmpty()) {
+                headerId = NULL_ID;
+            } else {
+                headerId = lookupInstruction(ctx.headers.get(i)).result;
+                Types.assertString(ir.getSymbolTable().get(headerId).getType().getAtomTypeId(), () -> getCtxString(ctx));
+            }
+            ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.PARAM2, varInstr.result, headerId, NULL_ID);
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.SAVECSV, path.result, NULL_ID, NULL_ID);
+    }
+
+    @Override
+    public void exitArraysavestmt(PuffinBasicParser.ArraysavestmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var varInstr = getArrayNdVariableInstruction(ctx, ctx.variable());
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYSAVE, path.result, varInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitArrayloadstmt(PuffinBasicParser.ArrayloadstmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var varInstr = getArrayNdVariableInstruction(ctx, ctx.variable());
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYLOAD, path.result, varInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitSaveobjstmt(PuffinBasicParser.SaveobjstmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var varInstr = lookupInstruction(ctx.variable());
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.SAVEOBJ, path.result, varInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitLoadobjstmt(PuffinBasicParser.LoadobjstmtContext ctx) {
+        var path = lookupInstruction(ctx.path);
+        Types.assertString(ir.getSymbolTable().get(path.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var varInstr = lookupInstruction(ctx.variable());
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.LOADOBJ, path.result, varInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitArray1dpctsstmt(PuffinBasicParser.Array1dpctsstmtContext ctx) {
+        var srcInstr = getArray1dVariableInstruction(ctx, ctx.src, true);
+        var pctsInstr = getArray1dVariableInstruction(ctx, ctx.pcts, true);
+        var dstInstr = getArray1dVariableInstruction(ctx, ctx.dst, true);
+        if (ir.getSymbolTable().get(dstInstr.result).getType().getAtomTypeId() != DOUBLE) {
+            throw new PuffinBasicSemanticError(
+                    DATA_TYPE_MISMATCH,
+                    getCtxString(ctx),
+                    "ARRAY1DPCTS: result array must be a double array"
+            );
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAY1DPCTS, srcInstr.result, pctsInstr.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitArrayarithstmt(PuffinBasicParser.ArrayarithstmtContext ctx) {
+        var src1Instr = getArrayNdVariableInstruction(ctx, ctx.src1);
+        var src2Instr = getArrayNdVariableInstruction(ctx, ctx.src2);
+        var dstInstr = getArrayNdVariableInstruction(ctx, ctx.dst);
+        assertNumeric(ir.getSymbolTable().get(dstInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        final OpCode opCode;
+        switch (ctx.op.getType()) {
+            case PuffinBasicParser.ARRAYADD:
+                opCode = OpCode.ARRAYADD;
+                break;
+            case PuffinBasicParser.ARRAYSUB:
+                opCode = OpCode.ARRAYSUB;
+                break;
+            case PuffinBasicParser.ARRAYMUL:
+                opCode = OpCode.ARRAYMUL;
+                break;
+            default:
+                opCode = OpCode.ARRAYDIV;
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                opCode, src1Instr.result, src2Instr.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitArrayscalestmt(PuffinBasicParser.ArrayscalestmtContext ctx) {
+        var srcInstr = getArrayNdVariableInstruction(ctx, ctx.src);
+        var dstInstr = getArrayNdVariableInstruction(ctx, ctx.dst);
+        assertNumeric(ir.getSymbolTable().get(dstInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var alpha = lookupInstruction(ctx.alpha);
+        assertNumeric(ir.getSymbolTable().get(alpha.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYSCALE, srcInstr.result, alpha.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitArrayaxpystmt(PuffinBasicParser.ArrayaxpystmtContext ctx) {
+        var xInstr = getArrayNdVariableInstruction(ctx, ctx.x);
+        var yInstr = getArrayNdVariableInstruction(ctx, ctx.y);
+        assertNumeric(ir.getSymbolTable().get(yInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var alpha = lookupInstruction(ctx.alpha);
+        assertNumeric(ir.getSymbolTable().get(alpha.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYAXPY, xInstr.result, alpha.result, yInstr.result);
+    }
+
+    @Override
+    public void exitArrayclampstmt(PuffinBasicParser.ArrayclampstmtContext ctx) {
+        var varInstr = getArrayNdVariableInstruction(ctx, ctx.variable());
+        assertNumeric(ir.getSymbolTable().get(varInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var min = lookupInstruction(ctx.min);
+        assertNumeric(ir.getSymbolTable().get(min.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var max = lookupInstruction(ctx.max);
+        assertNumeric(ir.getSymbolTable().get(max.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, min.result, max.result, NULL_ID);
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYCLAMP, varInstr.result, NULL_ID, NULL_ID);
+    }
+
+    @Override
+    public void exitMatmulstmt(PuffinBasicParser.MatmulstmtContext ctx) {
+        var aInstr = getArray2dVariableInstruction(ctx, ctx.a);
+        var bInstr = getArray2dVariableInstruction(ctx, ctx.b);
+        var cInstr = getArray2dVariableInstruction(ctx, ctx.c);
+        assertNumeric(ir.getSymbolTable().get(cInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.MATMUL, aInstr.result, bInstr.result, cInstr.result);
+    }
+
+    @Override
+    public void exitMattransposestmt(PuffinBasicParser.MattransposestmtContext ctx) {
+        var srcInstr = getArray2dVariableInstruction(ctx, ctx.src);
+        var dstInstr = getArray2dVariableInstruction(ctx, ctx.dst);
+        assertNumeric(ir.getSymbolTable().get(dstInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.MATTRANSPOSE, srcInstr.result, dstInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitArray2dconvstmt(PuffinBasicParser.Array2dconvstmtContext ctx) {
+        var srcInstr = getArray2dVariableInstruction(ctx, ctx.src);
+        var kernelInstr = getArray2dVariableInstruction(ctx, ctx.kernel);
+        var dstInstr = getArray2dVariableInstruction(ctx, ctx.dst);
+        assertNumeric(ir.getSymbolTable().get(dstInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAY2DCONV, srcInstr.result, kernelInstr.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitArgsortstmt(PuffinBasicParser.ArgsortstmtContext ctx) {
+        var permInstr = getArray1dVariableInstruction(ctx, ctx.perm, true);
+        assertInt32Array(ctx, permInstr, "ARGSORT: permutation");
+        for (var key : ctx.argsortkey()) {
+            var keyInstr = getArray1dVariableInstruction(ctx, key.variable(), false);
+            boolean descending = key.DESC() != null;
+            ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.PARAM2, keyInstr.result,
+                    ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(descending ? -1 : 0)),
+                    NULL_ID);
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARGSORT, permInstr.result, NULL_ID, NULL_ID);
+    }
+
+    @Override
+    public void exitPermutestmt(PuffinBasicParser.PermutestmtContext ctx) {
+        var srcInstr = getArray1dVariableInstruction(ctx, ctx.src, false);
+        var permInstr = getArray1dVariableInstruction(ctx, ctx.perm, true);
+        assertInt32Array(ctx, permInstr, "PERMUTE: permutation");
+        var dstInstr = getArray1dVariableInstruction(ctx, ctx.dst, false);
+        assertSameArrayType(ctx, srcInstr, dstInstr, "PERMUTE");
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PERMUTE, srcInstr.result, permInstr.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitArray1dmergestmt(PuffinBasicParser.Array1dmergestmtContext ctx) {
+        var src1Instr = getArray1dVariableInstruction(ctx, ctx.src1, false);
+        var src2Instr = getArray1dVariableInstruction(ctx, ctx.src2, false);
+        var dstInstr = getArray1dVariableInstruction(ctx, ctx.dst, false);
+        assertSameArrayType(ctx, src1Instr, src2Instr, "ARRAY1DMERGE");
+        assertSameArrayType(ctx, src1Instr, dstInstr, "ARRAY1DMERGE");
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAY1DMERGE, src1Instr.result, src2Instr.result, dstInstr.result);
+    }
+
+    @Override
+    public void exitGroupbystmt(PuffinBasicParser.GroupbystmtContext ctx) {
+        var keysInstr = getArray1dVariableInstruction(ctx, ctx.keys, false);
+        var valuesInstr = getArray1dVariableInstruction(ctx, ctx.values, true);
+        var outKeysInstr = getArray1dVariableInstruction(ctx, ctx.outkeys, false);
+        assertSameArrayType(ctx, keysInstr, outKeysInstr, "GROUPBY");
+        var statsInstr = getArray2dVariableInstruction(ctx, ctx.stats);
+        if (ir.getSymbolTable().get(statsInstr.result).getType().getAtomTypeId() != DOUBLE) {
+            throw new PuffinBasicSemanticError(
+                    DATA_TYPE_MISMATCH,
+                    getCtxString(ctx),
+                    "GROUPBY: stats array must be a double array"
+            );
+        }
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, keysInstr.result, valuesInstr.result, NULL_ID);
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.GROUPBY, outKeysInstr.result, statsInstr.result, NULL_ID);
+    }
+
+    @Override
+    public void exitHistogramstmt(PuffinBasicParser.HistogramstmtContext ctx) {
+        var valuesInstr = getArray1dVariableInstruction(ctx, ctx.values, true);
+        var lo = lookupInstruction(ctx.lo);
+        assertNumeric(ir.getSymbolTable().get(lo.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var hi = lookupInstruction(ctx.hi);
+        assertNumeric(ir.getSymbolTable().get(hi.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var nbins = lookupInstruction(ctx.nbins);
+        assertNumeric(ir.getSymbolTable().get(nbins.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        var countsInstr = getArray1dVariableInstruction(ctx, ctx.counts, true);
+        Types.assertIntType(ir.getSymbolTable().get(countsInstr.result).getType().getAtomTypeId(), () -> getCtxString(ctx));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, lo.result, hi.result, NULL_ID);
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.HISTOGRAM, valuesInstr.result, nbins.result, countsInstr.result);
+    }
+
+    @Override
+    public void exitHashjoinstmt(PuffinBasicParser.HashjoinstmtContext ctx) {
+        var leftInstr = getArray1dVariableInstruction(ctx, ctx.left, false);
+        var rightInstr = getArray1dVariableInstruction(ctx, ctx.right, false);
+        assertSameArrayType(ctx, leftInstr, rightInstr, "HASHJOIN");
+        var leftIdxInstr = getArray1dVariableInstruction(ctx, ctx.leftidx, true);
+        assertInt32Array(ctx, leftIdxInstr, "HASHJOIN: index");
+        var rightIdxInstr = getArray1dVariableInstruction(ctx, ctx.rightidx, true);
+        assertInt32Array(ctx, rightIdxInstr, "HASHJOIN: index");
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.PARAM2, leftInstr.result, rightInstr.result, NULL_ID);
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.HASHJOIN, leftIdxInstr.result, rightIdxInstr.result, NULL_ID);
+    }
+
+    private void assertInt32Array(ParserRuleContext ctx, Instruction varInstr, String what) {
+        if (ir.getSymbolTable().get(varInstr.result).getType().getAtomTypeId() != INT32) {
+            throw new PuffinBasicSemanticError(
+                    DATA_TYPE_MISMATCH,
+                    getCtxString(ctx),
+                    what + " array must be an int32 array"
+            );
+        }
+    }
+
+    private void assertSameArrayType(ParserRuleContext ctx, Instruction instr1, Instruction instr2, String name) {
+        var type1 = ir.getSymbolTable().get(instr1.result).getType().getAtomTypeId();
+        var type2 = ir.getSymbolTable().get(instr2.result).getType().getAtomTypeId();
+        if (type1 != type2) {
+            throw new PuffinBasicSemanticError(
+                    DATA_TYPE_MISMATCH,
+                    getCtxString(ctx),
+                    name + ": array type mismatch: " + type1 + " vs " + type2
+            );
+        }
+    }
+
     private void assertGraphics() {
         if (!graphics) {
             throw new PuffinBasicInternalError(
@@ -2,8 +2,11 @@ package org.puffinbasic.parser;
 
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.puffinbasic.antlr4.PuffinBasicParser.LineContext;
 
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 
 public class PuffinBasicSourceFile {
@@ -12,6 +15,7 @@ public class PuffinBasicSourceFile {
     private final String libtag;
     private final String sourceCode;
     private final CharStream sourceCodeStream;
+    private List<LineContext> sortedLines;
     private final LinkedHashSet<PuffinBasicSourceFile> importFiles;
 
     public PuffinBasicSourceFile(
@@ -19,11 +23,13 @@ public class PuffinBasicSourceFile {
             String libtag,
             String sourceCode,
             CodePointCharStream sourceCodeStream,
+            List<LineContext> sortedLines,
             LinkedHashSet<PuffinBasicSourceFile> importFiles) {
         this.relativePath = relativePath;
         this.libtag = libtag;
         this.sourceCode = sourceCode;
         this.sourceCodeStream = sourceCodeStream;
+        this.sortedLines = sortedLines;
         this.importFiles = new LinkedHashSet<>(importFiles);
     }
 
@@ -39,6 +45,9 @@ public class PuffinBasicSourceFile {
         return libtag;
     }
 
+    /**
+     * Returns the source code as written, which instructions refer to.
+     */
     public String getSourceCode() {
         return sourceCode;
     }
@@ -47,6 +56,30 @@ public class PuffinBasicSourceFile {
         return sourceCodeStream;
     }
 
+    /**
+     * Returns the parsed lines in line number order, to generate IR from.
+     */
+    public List<LineContext> getSortedLines() {
+        return sortedLines;
+    }
+
+    /**
+     * Drops the parse tree once IR is generated, so that a compiled
+     * program only keeps the source code.
+     */
+    public void discardSortedLines() {
+        sortedLines = List.of();
+    }
+
+    public String getSortedCode() {
+        var sortedCode = new StringBuilder();
+        for (var line : sortedLines) {
+            sortedCode.append(sourceCodeStream.getText(
+                    new Interval(line.start.getStartIndex(), line.stop.getStopIndex())));
+        }
+        return sortedCode.toString();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
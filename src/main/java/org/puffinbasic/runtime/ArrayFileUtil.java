@@ -0,0 +1,316 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+/**
+ * Binary array files: a little-endian header (magic, version, element type,
+ * #dims, dims) followed by the row-major elements. Strings are stored as
+ * UTF-8 bytes with an int length prefix.
+ */
+public final class ArrayFileUtil {
+
+    static final int MAGIC = 0x50424152; // "PBAR"
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final long MAP_WINDOW = 1 << 30;
+
+    static void arraySave(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var path = symbolTable.get(instruction.op1).getValue().getString();
+        var arrayEntry = symbolTable.get(instruction.op2);
+        ArraysUtil.checkNotMapped("ARRAYSAVE", arrayEntry);
+        var type = arrayEntry.getType().getAtomTypeId();
+        var array = arrayEntry.getValue();
+
+        try (var channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            var buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            writeHeader(buffer, type, array.getArrayDimensions());
+            int n = array.getTotalLength();
+            switch (type) {
+                case INT32: {
+                    int[] value = ((STInt32ArrayValue) array).getValue();
+                    for (int i = 0; i < n; ) {
+                        int len = Math.min(n - i, buffer.remaining() / Integer.BYTES);
+                        buffer.asIntBuffer().put(value, i, len);
+                        buffer.position(buffer.position() + len * Integer.BYTES);
+                        i += len;
+                        flush(channel, buffer);
+                    }
+                }
+                    break;
+                case INT64: {
+                    long[] value = ((STInt64ArrayValue) array).getValue();
+                    for (int i = 0; i < n; ) {
+                        int len = Math.min(n - i, buffer.remaining() / Long.BYTES);
+                        buffer.asLongBuffer().put(value, i, len);
+                        buffer.position(buffer.position() + len * Long.BYTES);
+                        i += len;
+                        flush(channel, buffer);
+                    }
+                }
+                    break;
+                case FLOAT: {
+                    float[] value = ((STFloat32ArrayValue) array).getValue();
+                    for (int i = 0; i < n; ) {
+                        int len = Math.min(n - i, buffer.remaining() / Float.BYTES);
+                        buffer.asFloatBuffer().put(value, i, len);
+                        buffer.position(buffer.position() + len * Float.BYTES);
+                        i += len;
+                        flush(channel, buffer);
+                    }
+                }
+                    break;
+                case DOUBLE: {
+                    double[] value = ((STFloat64ArrayValue) array).getValue();
+                    for (int i = 0; i < n; ) {
+                        int len = Math.min(n - i, buffer.remaining() / Double.BYTES);
+                        buffer.asDoubleBuffer().put(value, i, len);
+                        buffer.position(buffer.position() + len * Double.BYTES);
+                        i += len;
+                        flush(channel, buffer);
+                    }
+                }
+                    break;
+                case STRING: {
+                    String[] value = ((STStringArrayValue) array).getValue();
+                    for (int i = 0; i < n; i++) {
+                        var bytes = value[i] == null
+                                ? new byte[0]
+                                : value[i].getBytes(StandardCharsets.UTF_8);
+                        if (buffer.remaining() < Integer.BYTES) {
+                            flush(channel, buffer);
+                        }
+                        buffer.putInt(bytes.length);
+                        for (int off = 0; off < bytes.length; ) {
+                            if (!buffer.hasRemaining()) {
+                                flush(channel, buffer);
+                            }
+                            int len = Math.min(bytes.length - off, buffer.remaining());
+                            buffer.put(bytes, off, len);
+                            off += len;
+                        }
+                    }
+                }
+                    break;
+                default:
+                    throwUnsupportedType(type);
+            }
+            flush(channel, buffer);
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to write array to file '" + path + "', error: " + e.getMessage()
+            );
+        }
+    }
+
+    static void arrayLoad(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var path = symbolTable.get(instruction.op1).getValue().getString();
+        var arrayEntry = symbolTable.get(instruction.op2);
+        ArraysUtil.checkNotMapped("ARRAYLOAD", arrayEntry);
+        var type = arrayEntry.getType().getAtomTypeId();
+        var array = arrayEntry.getValue();
+
+        try (var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            var header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), 4096))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            var dims = readHeader(header, path, type);
+            if (dims.size() != array.getNumArrayDimensions()) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "Array in file '" + path + "' has " + dims.size()
+                                + " dims, expected " + array.getNumArrayDimensions()
+                );
+            }
+            long dataStart = header.position();
+            long dataBytes = channel.size() - dataStart;
+            long n = 1;
+            for (int i = 0; i < dims.size(); i++) {
+                n *= dims.getInt(i);
+                if (n > Integer.MAX_VALUE) {
+                    throw new PuffinBasicRuntimeError(
+                            IO_ERROR,
+                            "Array in file '" + path + "' has dims " + dims + ", too many elements to load"
+                    );
+                }
+            }
+            long elementBytes = type == PuffinBasicAtomTypeId.STRING ? Integer.BYTES : elementBytes(type);
+            if (type == PuffinBasicAtomTypeId.STRING ? dataBytes < n * elementBytes : dataBytes != n * elementBytes) {
+                throw truncated(path);
+            }
+            if (!dims.equals(array.getArrayDimensions())) {
+                array.setArrayDimensions(dims);
+            }
+            if (type == PuffinBasicAtomTypeId.STRING) {
+                loadStrings(channel, path, dataStart, ((STStringArrayValue) array).getValue());
+                return;
+            }
+            long windowElements = MAP_WINDOW / elementBytes;
+            for (long i = 0; i < n; i += windowElements) {
+                int len = (int) Math.min(windowElements, n - i);
+                var window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        dataStart + i * elementBytes, len * elementBytes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                copyFrom(window, type, array, (int) i, len);
+            }
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to read array from file '" + path + "', error: " + e.getMessage()
+            );
+        }
+    }
+
+    private static void copyFrom(ByteBuffer window, PuffinBasicAtomTypeId type, STValue array, int offset, int len) {
+        switch (type) {
+            case INT32:
+                window.asIntBuffer().get(((STInt32ArrayValue) array).getValue(), offset, len);
+                break;
+            case INT64:
+                window.asLongBuffer().get(((STInt64ArrayValue) array).getValue(), offset, len);
+                break;
+            case FLOAT:
+                window.asFloatBuffer().get(((STFloat32ArrayValue) array).getValue(), offset, len);
+                break;
+            case DOUBLE:
+                window.asDoubleBuffer().get(((STFloat64ArrayValue) array).getValue(), offset, len);
+                break;
+            default:
+                throwUnsupportedType(type);
+        }
+    }
+
+    private static void loadStrings(FileChannel channel, String path, long dataStart, String[] value) throws IOException {
+        channel.position(dataStart);
+        var in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+        // Bytes left after the length prefixes of the remaining strings
+        long remaining = channel.size() - dataStart - (long) value.length * Integer.BYTES;
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < value.length; i++) {
+            int len = Integer.reverseBytes(in.readInt());
+            if (len < 0 || len > remaining) {
+                throw truncated(path);
+            }
+            remaining -= len;
+            if (len > bytes.length) {
+                bytes = new byte[Math.max(len, bytes.length * 2)];
+            }
+            in.readFully(bytes, 0, len);
+            value[i] = new String(bytes, 0, len, StandardCharsets.UTF_8);
+        }
+        if (remaining != 0) {
+            throw truncated(path);
+        }
+    }
+
+    private static PuffinBasicRuntimeError truncated(String path) {
+        return new PuffinBasicRuntimeError(
+                IO_ERROR,
+                "Array file '" + path + "' is truncated or corrupt"
+        );
+    }
+
+    public static void writeHeader(ByteBuffer buffer, PuffinBasicAtomTypeId type, IntList dims) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(type.getRepr().charAt(0));
+        buffer.putInt(dims.size());
+        for (int i = 0; i < dims.size(); i++) {
+            buffer.putInt(dims.getInt(i));
+        }
+    }
+
+    public static IntList readHeader(ByteBuffer buffer, String path, PuffinBasicAtomTypeId expectedType) {
+        if (buffer.remaining() < 4 * Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "File '" + path + "' is not an array file"
+            );
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Unsupported array file version " + version + " in '" + path + "'"
+            );
+        }
+        var type = PuffinBasicAtomTypeId.lookup(String.valueOf((char) buffer.getInt()));
+        if (type != expectedType) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Array in file '" + path + "' has type " + type + ", expected " + expectedType
+            );
+        }
+        int ndim = buffer.getInt();
+        if (ndim <= 0 || ndim > buffer.remaining() / Integer.BYTES) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Bad array header in '" + path + "'"
+            );
+        }
+        IntList dims = new IntArrayList(ndim);
+        for (int i = 0; i < ndim; i++) {
+            int dim = buffer.getInt();
+            if (dim < 0) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Bad array header in '" + path + "'"
+                );
+            }
+            dims.add(dim);
+        }
+        return dims;
+    }
+
+    public static int elementBytes(PuffinBasicAtomTypeId type) {
+        switch (type) {
+            case INT32:
+                return Integer.BYTES;
+            case INT64:
+                return Long.BYTES;
+            case FLOAT:
+                return Float.BYTES;
+            case DOUBLE:
+                return Double.BYTES;
+            default:
+                throwUnsupportedType(type);
+                return 0;
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,466 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.HashCommon;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_OUT_OF_RANGE;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+/**
+ * Group-by aggregation, histogram and hash-join over 1D arrays, with
+ * fastutil primitive hash maps. Numeric keys are hashed as longs
+ * (floating point keys by their bits, with -0.0 as 0.0).
+ */
+final class ArrayGroup {
+
+    static final int NUM_STATS = 5;
+    private static final int STAT_COUNT = 0;
+    private static final int STAT_SUM = 1;
+    private static final int STAT_MIN = 2;
+    private static final int STAT_MAX = 3;
+    private static final int STAT_MEAN = 4;
+
+    /**
+     * Aggregates of the groups found by one partition, in the order the
+     * groups first appear.
+     */
+    private static final class Groups {
+        private final IntArrayList first = new IntArrayList();
+        private final LongArrayList count = new LongArrayList();
+        private final DoubleArrayList sum = new DoubleArrayList();
+        private final DoubleArrayList min = new DoubleArrayList();
+        private final DoubleArrayList max = new DoubleArrayList();
+
+        int add(int row) {
+            first.add(row);
+            count.add(0);
+            sum.add(0);
+            min.add(Double.POSITIVE_INFINITY);
+            max.add(Double.NEGATIVE_INFINITY);
+            return first.size() - 1;
+        }
+
+        void update(int g, double v) {
+            count.set(g, count.getLong(g) + 1);
+            sum.set(g, sum.getDouble(g) + v);
+            min.set(g, Math.min(min.getDouble(g), v));
+            max.set(g, Math.max(max.getDouble(g), v));
+        }
+
+        int size() {
+            return first.size();
+        }
+    }
+
+    /**
+     * Computes count, sum, min, max and mean of values per distinct key.
+     * Large inputs are partitioned by key hash: each partition scans all
+     * rows but only aggregates its own keys, so a group's values are still
+     * added in row order and results match the serial pass exactly.
+     */
+    static void groupBy(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var keysEntry = symbolTable.get(params.get(0).op1);
+        var valuesEntry = symbolTable.get(params.get(0).op2);
+        ArraysUtil.checkNotMapped(
+                "GROUPBY", keysEntry, valuesEntry, symbolTable.get(instruction.op1), symbolTable.get(instruction.op2));
+        int n = keysEntry.getValue().getTotalLength();
+        checkLength("GROUPBY", n, valuesEntry.getValue().getTotalLength());
+        double[] values = asDoubles(parallelism, valuesEntry);
+
+        int partitions = parallelism.partitions(n);
+        var groups = new Groups[partitions];
+        if (keysEntry.getType().getAtomTypeId() == PuffinBasicAtomTypeId.STRING) {
+            String[] keys = ((STStringArrayValue) keysEntry.getValue()).getValue();
+            parallelism.forEachPartition(partitions, p -> {
+                var map = new Object2IntOpenHashMap<String>();
+                map.defaultReturnValue(-1);
+                var partition = new Groups();
+                for (int i = 0; i < n; i++) {
+                    var key = keys[i];
+                    if (partitions > 1 && partition(key.hashCode(), partitions) != p) {
+                        continue;
+                    }
+                    int g = map.getInt(key);
+                    if (g == -1) {
+                        g = partition.add(i);
+                        map.put(key, g);
+                    }
+                    partition.update(g, values[i]);
+                }
+                groups[p] = partition;
+            });
+        } else {
+            long[] keys = asLongKeys(parallelism, keysEntry);
+            parallelism.forEachPartition(partitions, p -> {
+                var map = new Long2IntOpenHashMap();
+                map.defaultReturnValue(-1);
+                var partition = new Groups();
+                for (int i = 0; i < n; i++) {
+                    long key = keys[i];
+                    if (partitions > 1 && partition(HashCommon.mix(key), partitions) != p) {
+                        continue;
+                    }
+                    int g = map.get(key);
+                    if (g == -1) {
+                        g = partition.add(i);
+                        map.put(key, g);
+                    }
+                    partition.update(g, values[i]);
+                }
+                groups[p] = partition;
+            });
+        }
+
+        // Concatenate the partitions, then order the groups by their first row.
+        var all = groups[0];
+        for (int p = 1; p < partitions; p++) {
+            all.first.addAll(groups[p].first);
+            all.count.addAll(groups[p].count);
+            all.sum.addAll(groups[p].sum);
+            all.min.addAll(groups[p].min);
+            all.max.addAll(groups[p].max);
+        }
+        int numGroups = all.size();
+        long[] order = new long[numGroups];
+        for (int g = 0; g < numGroups; g++) {
+            order[g] = ((long) all.first.getInt(g) << 32) | g;
+        }
+        if (partitions > 1) {
+            Arrays.sort(order);
+        }
+
+        int[] firstRows = new int[numGroups];
+        var stats = ((STFloat64ArrayValue) resize(
+                symbolTable.get(instruction.op2).getValue(), numGroups, NUM_STATS)).getValue();
+        for (int k = 0; k < numGroups; k++) {
+            int g = (int) order[k];
+            long count = all.count.getLong(g);
+            double sum = all.sum.getDouble(g);
+            firstRows[k] = all.first.getInt(g);
+            stats[k * NUM_STATS + STAT_COUNT] = count;
+            stats[k * NUM_STATS + STAT_SUM] = sum;
+            stats[k * NUM_STATS + STAT_MIN] = all.min.getDouble(g);
+            stats[k * NUM_STATS + STAT_MAX] = all.max.getDouble(g);
+            stats[k * NUM_STATS + STAT_MEAN] = sum / count;
+        }
+        gather(keysEntry, firstRows, symbolTable.get(instruction.op1).getValue());
+    }
+
+    /**
+     * Counts values into nbins equal bins over [lo, hi], a value equal
+     * to hi goes in the last bin. Values outside the range and NaNs are
+     * not counted.
+     */
+    static void histogram(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var valuesEntry = symbolTable.get(instruction.op1);
+        ArraysUtil.checkNotMapped("HISTOGRAM", valuesEntry, symbolTable.get(instruction.result));
+        int nbins = symbolTable.get(instruction.op2).getValue().getInt32();
+        double lo = symbolTable.get(params.get(0).op1).getValue().getFloat64();
+        double hi = symbolTable.get(params.get(0).op2).getValue().getFloat64();
+        if (nbins <= 0 || !(lo < hi)) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "HISTOGRAM: expected #bins > 0 and lo < hi, actual #bins=" + nbins
+                            + ", lo=" + lo + ", hi=" + hi
+            );
+        }
+        double[] values = asDoubles(parallelism, valuesEntry);
+        int n = values.length;
+        double scale = nbins / (hi - lo);
+
+        int partitions = parallelism.partitions(n);
+        long[][] counts = new long[partitions][];
+        parallelism.forEachPartition(partitions, p -> {
+            long[] c = new long[nbins];
+            int to = (int) ((long) n * (p + 1) / partitions);
+            for (int i = (int) ((long) n * p / partitions); i < to; i++) {
+                double v = values[i];
+                if (v >= lo && v <= hi) {
+                    c[Math.min(nbins - 1, (int) ((v - lo) * scale))]++;
+                }
+            }
+            counts[p] = c;
+        });
+        for (int p = 1; p < partitions; p++) {
+            for (int b = 0; b < nbins; b++) {
+                counts[0][b] += counts[p][b];
+            }
+        }
+
+        var countsEntry = symbolTable.get(instruction.result);
+        var countsValue = resize(countsEntry.getValue(), nbins);
+        if (countsEntry.getType().getAtomTypeId() == PuffinBasicAtomTypeId.INT64) {
+            System.arraycopy(counts[0], 0, ((STInt64ArrayValue) countsValue).getValue(), 0, nbins);
+        } else {
+            int[] dst = ((STInt32ArrayValue) countsValue).getValue();
+            for (int b = 0; b < nbins; b++) {
+                dst[b] = (int) counts[0][b];
+            }
+        }
+    }
+
+    /**
+     * Inner join on key equality: returns the (left, right) index pairs of
+     * matching rows, ordered by right index, then left index. The hash
+     * table is built on the left keys; probing counts the matches of each
+     * right row first, so the pairs can be written in parallel.
+     */
+    static void hashJoin(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var leftEntry = symbolTable.get(params.get(0).op1);
+        var rightEntry = symbolTable.get(params.get(0).op2);
+        ArraysUtil.checkNotMapped(
+                "HASHJOIN", leftEntry, rightEntry, symbolTable.get(instruction.op1), symbolTable.get(instruction.op2));
+        int nl = leftEntry.getValue().getTotalLength();
+        int nr = rightEntry.getValue().getTotalLength();
+
+        // next[] chains the left rows with equal keys in ascending order.
+        int[] next = new int[nl];
+        final IntUnaryOperator headOf;
+        if (leftEntry.getType().getAtomTypeId() == PuffinBasicAtomTypeId.STRING) {
+            String[] left = ((STStringArrayValue) leftEntry.getValue()).getValue();
+            String[] right = ((STStringArrayValue) rightEntry.getValue()).getValue();
+            var head = new Object2IntOpenHashMap<String>(nl);
+            head.defaultReturnValue(-1);
+            for (int i = nl - 1; i >= 0; i--) {
+                next[i] = head.put(left[i], i);
+            }
+            headOf = r -> head.getInt(right[r]);
+        } else {
+            long[] left = asLongKeys(parallelism, leftEntry);
+            long[] right = asLongKeys(parallelism, rightEntry);
+            var head = new Long2IntOpenHashMap(nl);
+            head.defaultReturnValue(-1);
+            for (int i = nl - 1; i >= 0; i--) {
+                next[i] = head.put(left[i], i);
+            }
+            headOf = r -> head.get(right[r]);
+        }
+
+        int[] offsets = new int[nr + 1];
+        parallelism.forRange(nr, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int c = 0;
+                for (int j = headOf.applyAsInt(r); j != -1; j = next[j]) {
+                    c++;
+                }
+                offsets[r + 1] = c;
+            }
+        });
+        long total = 0;
+        for (int r = 0; r < nr; r++) {
+            total += offsets[r + 1];
+            if (total > Integer.MAX_VALUE - 8) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_OUT_OF_RANGE,
+                        "HASHJOIN: too many matches"
+                );
+            }
+            offsets[r + 1] = (int) total;
+        }
+
+        int[] leftIdx = ((STInt32ArrayValue) resize(
+                symbolTable.get(instruction.op1).getValue(), (int) total)).getValue();
+        int[] rightIdx = ((STInt32ArrayValue) resize(
+                symbolTable.get(instruction.op2).getValue(), (int) total)).getValue();
+        parallelism.forRange(nr, (from, to) -> {
+            for (int r = from; r < to; r++) {
+                int k = offsets[r];
+                for (int j = headOf.applyAsInt(r); j != -1; j = next[j]) {
+                    leftIdx[k] = j;
+                    rightIdx[k] = r;
+                    k++;
+                }
+            }
+        });
+    }
+
+    private static int partition(long hash, int partitions) {
+        return (int) ((hash >>> 1) % partitions);
+    }
+
+    private static void checkLength(String name, int n1, int n2) {
+        if (n1 != n2) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    name + ": array length mismatch: " + n1 + " vs " + n2
+            );
+        }
+    }
+
+    private static double[] asDoubles(ArrayParallelism parallelism, STEntry entry) {
+        var array = entry.getValue();
+        int n = array.getTotalLength();
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] v = ((STInt32ArrayValue) array).getValue();
+                double[] d = new double[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        d[i] = v[i];
+                    }
+                });
+                return d;
+            }
+            case INT64: {
+                long[] v = ((STInt64ArrayValue) array).getValue();
+                double[] d = new double[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        d[i] = v[i];
+                    }
+                });
+                return d;
+            }
+            case FLOAT: {
+                float[] v = ((STFloat32ArrayValue) array).getValue();
+                double[] d = new double[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        d[i] = v[i];
+                    }
+                });
+                return d;
+            }
+            case DOUBLE:
+                return ((STFloat64ArrayValue) array).getValue();
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+                return null;
+        }
+    }
+
+    private static long[] asLongKeys(ArrayParallelism parallelism, STEntry entry) {
+        var array = entry.getValue();
+        int n = array.getTotalLength();
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] v = ((STInt32ArrayValue) array).getValue();
+                long[] k = new long[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        k[i] = v[i];
+                    }
+                });
+                return k;
+            }
+            case INT64:
+                return ((STInt64ArrayValue) array).getValue();
+            case FLOAT: {
+                float[] v = ((STFloat32ArrayValue) array).getValue();
+                long[] k = new long[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        k[i] = Float.floatToIntBits(v[i] + 0.0f);
+                    }
+                });
+                return k;
+            }
+            case DOUBLE: {
+                double[] v = ((STFloat64ArrayValue) array).getValue();
+                long[] k = new long[n];
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        k[i] = Double.doubleToLongBits(v[i] + 0.0);
+                    }
+                });
+                return k;
+            }
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+                return null;
+        }
+    }
+
+    /**
+     * dst(i) = src(rows(i)), dst may be src.
+     */
+    private static void gather(STEntry srcEntry, int[] rows, STValue dst) {
+        int n = rows.length;
+        switch (srcEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] src = ((STInt32ArrayValue) srcEntry.getValue()).getValue();
+                int[] out = ((STInt32ArrayValue) resize(dst, n)).getValue();
+                for (int i = 0; i < n; i++) {
+                    out[i] = src[rows[i]];
+                }
+            }
+                break;
+            case INT64: {
+                long[] src = ((STInt64ArrayValue) srcEntry.getValue()).getValue();
+                long[] out = ((STInt64ArrayValue) resize(dst, n)).getValue();
+                for (int i = 0; i < n; i++) {
+                    out[i] = src[rows[i]];
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] src = ((STFloat32ArrayValue) srcEntry.getValue()).getValue();
+                float[] out = ((STFloat32ArrayValue) resize(dst, n)).getValue();
+                for (int i = 0; i < n; i++) {
+                    out[i] = src[rows[i]];
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] src = ((STFloat64ArrayValue) srcEntry.getValue()).getValue();
+                double[] out = ((STFloat64ArrayValue) resize(dst, n)).getValue();
+                for (int i = 0; i < n; i++) {
+                    out[i] = src[rows[i]];
+                }
+            }
+                break;
+            case STRING: {
+                String[] src = ((STStringArrayValue) srcEntry.getValue()).getValue();
+                String[] out = ((STStringArrayValue) resize(dst, n)).getValue();
+                for (int i = 0; i < n; i++) {
+                    out[i] = src[rows[i]];
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(srcEntry.getType().getAtomTypeId());
+        }
+    }
+
+    private static STValue resize(STValue array, int... dims) {
+        if (!array.getArrayDimensions().equals(IntArrayList.wrap(dims))) {
+            array.setArrayDimensions(IntArrayList.wrap(dims));
+        }
+        return array;
+    }
+}
@@ -0,0 +1,530 @@
+package org.puffinbasic.runtime;
+
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.error.PuffinBasicInternalError;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.List;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DIVISION_BY_ZERO;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+/**
+ * Whole-array arithmetic. Each op is a plain indexed loop over the
+ * primitive arrays, which C2 auto-vectorizes, and large arrays are
+ * split into ranges by {@link ArrayParallelism}.
+ */
+final class ArrayMath {
+
+    static void elementwise(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            Instruction instruction)
+    {
+        var src1Entry = symbolTable.get(instruction.op1);
+        var src2Entry = symbolTable.get(instruction.op2);
+        var dstEntry = symbolTable.get(instruction.result);
+        ArraysUtil.checkNotMapped(instruction.opCode.name(), src1Entry, src2Entry, dstEntry);
+        int n = checkCompatible(src1Entry, src2Entry);
+        checkCompatible(src1Entry, dstEntry);
+        var op = instruction.opCode;
+
+        switch (dstEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] a = ((STInt32ArrayValue) src1Entry.getValue()).getValue();
+                int[] b = ((STInt32ArrayValue) src2Entry.getValue()).getValue();
+                int[] c = ((STInt32ArrayValue) dstEntry.getValue()).getValue();
+                if (op == OpCode.ARRAYADD) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] + b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYSUB) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] - b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYMUL) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] * b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYDIV) {
+                    for (int v : b) {
+                        if (v == 0) {
+                            throw new PuffinBasicRuntimeError(DIVISION_BY_ZERO, "Division by zero");
+                        }
+                    }
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] / b[i];
+                        }
+                    });
+                } else {
+                    throw new PuffinBasicInternalError("Unexpected op: " + op);
+                }
+            }
+                break;
+            case INT64: {
+                long[] a = ((STInt64ArrayValue) src1Entry.getValue()).getValue();
+                long[] b = ((STInt64ArrayValue) src2Entry.getValue()).getValue();
+                long[] c = ((STInt64ArrayValue) dstEntry.getValue()).getValue();
+                if (op == OpCode.ARRAYADD) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] + b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYSUB) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] - b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYMUL) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] * b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYDIV) {
+                    for (long v : b) {
+                        if (v == 0) {
+                            throw new PuffinBasicRuntimeError(DIVISION_BY_ZERO, "Division by zero");
+                        }
+                    }
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] / b[i];
+                        }
+                    });
+                } else {
+                    throw new PuffinBasicInternalError("Unexpected op: " + op);
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] a = ((STFloat32ArrayValue) src1Entry.getValue()).getValue();
+                float[] b = ((STFloat32ArrayValue) src2Entry.getValue()).getValue();
+                float[] c = ((STFloat32ArrayValue) dstEntry.getValue()).getValue();
+                if (op == OpCode.ARRAYADD) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] + b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYSUB) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] - b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYMUL) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] * b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYDIV) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] / b[i];
+                        }
+                    });
+                } else {
+                    throw new PuffinBasicInternalError("Unexpected op: " + op);
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] a = ((STFloat64ArrayValue) src1Entry.getValue()).getValue();
+                double[] b = ((STFloat64ArrayValue) src2Entry.getValue()).getValue();
+                double[] c = ((STFloat64ArrayValue) dstEntry.getValue()).getValue();
+                if (op == OpCode.ARRAYADD) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] + b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYSUB) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] - b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYMUL) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] * b[i];
+                        }
+                    });
+                } else if (op == OpCode.ARRAYDIV) {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            c[i] = a[i] / b[i];
+                        }
+                    });
+                } else {
+                    throw new PuffinBasicInternalError("Unexpected op: " + op);
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(dstEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * dst = alpha * src
+     * On integer arrays, results out of the element range saturate to its
+     * min/max, for whole and fractional alphas alike.
+     */
+    static void scale(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            Instruction instruction)
+    {
+        var srcEntry = symbolTable.get(instruction.op1);
+        var alphaEntry = symbolTable.get(instruction.op2);
+        var alpha = alphaEntry.getValue().getFloat64();
+        var dstEntry = symbolTable.get(instruction.result);
+        ArraysUtil.checkNotMapped("ARRAYSCALE", srcEntry, dstEntry);
+        int n = checkCompatible(srcEntry, dstEntry);
+
+        switch (dstEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] x = ((STInt32ArrayValue) srcEntry.getValue()).getValue();
+                int[] y = ((STInt32ArrayValue) dstEntry.getValue()).getValue();
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = (int) (alpha * x[i]);
+                    }
+                });
+            }
+                break;
+            case INT64: {
+                long[] x = ((STInt64ArrayValue) srcEntry.getValue()).getValue();
+                long[] y = ((STInt64ArrayValue) dstEntry.getValue()).getValue();
+                if (isIntegral(alphaEntry)) {
+                    long lalpha = alphaEntry.getValue().getInt64();
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            y[i] = saturatedMultiply(lalpha, x[i]);
+                        }
+                    });
+                } else {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            y[i] = (long) (alpha * x[i]);
+                        }
+                    });
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] x = ((STFloat32ArrayValue) srcEntry.getValue()).getValue();
+                float[] y = ((STFloat32ArrayValue) dstEntry.getValue()).getValue();
+                float falpha = (float) alpha;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = falpha * x[i];
+                    }
+                });
+            }
+                break;
+            case DOUBLE: {
+                double[] x = ((STFloat64ArrayValue) srcEntry.getValue()).getValue();
+                double[] y = ((STFloat64ArrayValue) dstEntry.getValue()).getValue();
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = alpha * x[i];
+                    }
+                });
+            }
+                break;
+            default:
+                throwUnsupportedType(dstEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * y = alpha * x + y
+     * On integer arrays, results out of the element range saturate to its
+     * min/max, for whole and fractional alphas alike.
+     */
+    static void axpy(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            Instruction instruction)
+    {
+        var xEntry = symbolTable.get(instruction.op1);
+        var alphaEntry = symbolTable.get(instruction.op2);
+        var alpha = alphaEntry.getValue().getFloat64();
+        var yEntry = symbolTable.get(instruction.result);
+        ArraysUtil.checkNotMapped("ARRAYAXPY", xEntry, yEntry);
+        int n = checkCompatible(xEntry, yEntry);
+
+        switch (yEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] x = ((STInt32ArrayValue) xEntry.getValue()).getValue();
+                int[] y = ((STInt32ArrayValue) yEntry.getValue()).getValue();
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = (int) (alpha * x[i] + y[i]);
+                    }
+                });
+            }
+                break;
+            case INT64: {
+                long[] x = ((STInt64ArrayValue) xEntry.getValue()).getValue();
+                long[] y = ((STInt64ArrayValue) yEntry.getValue()).getValue();
+                if (isIntegral(alphaEntry)) {
+                    long lalpha = alphaEntry.getValue().getInt64();
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            y[i] = saturatedAdd(saturatedMultiply(lalpha, x[i]), y[i]);
+                        }
+                    });
+                } else {
+                    parallelism.forRange(n, (from, to) -> {
+                        for (int i = from; i < to; i++) {
+                            y[i] = saturatedAdd((long) (alpha * x[i]), y[i]);
+                        }
+                    });
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] x = ((STFloat32ArrayValue) xEntry.getValue()).getValue();
+                float[] y = ((STFloat32ArrayValue) yEntry.getValue()).getValue();
+                float falpha = (float) alpha;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = falpha * x[i] + y[i];
+                    }
+                });
+            }
+                break;
+            case DOUBLE: {
+                double[] x = ((STFloat64ArrayValue) xEntry.getValue()).getValue();
+                double[] y = ((STFloat64ArrayValue) yEntry.getValue()).getValue();
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        y[i] = alpha * x[i] + y[i];
+                    }
+                });
+            }
+                break;
+            default:
+                throwUnsupportedType(yEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * True when alpha is a whole number, so that int64 arrays are scaled
+     * with exact long arithmetic rather than through a double, which
+     * loses precision above 2^53.
+     */
+    private static boolean isIntegral(STEntry alpha) {
+        switch (alpha.getType().getAtomTypeId()) {
+            case INT32:
+            case INT64:
+                return true;
+            default:
+                double value = alpha.getValue().getFloat64();
+                return value == Math.rint(value) && Math.abs(value) < 0x1p63;
+        }
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        long low = a * b;
+        if (high == (low >> 63)) {
+            return low;
+        }
+        return high < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        if (((a ^ sum) & (b ^ sum)) < 0) {
+            return a < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return sum;
+    }
+
+    static void dot(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            Instruction instruction)
+    {
+        var xEntry = symbolTable.get(instruction.op1);
+        var yEntry = symbolTable.get(instruction.op2);
+        var result = symbolTable.get(instruction.result).getValue();
+        ArraysUtil.checkNotMapped("ARRAYDOT", xEntry, yEntry);
+        int n = checkCompatible(xEntry, yEntry);
+
+        final double dot;
+        switch (xEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] x = ((STInt32ArrayValue) xEntry.getValue()).getValue();
+                int[] y = ((STInt32ArrayValue) yEntry.getValue()).getValue();
+                dot = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += (double) x[i] * y[i];
+                    }
+                    return s;
+                }, Double::sum);
+            }
+                break;
+            case INT64: {
+                long[] x = ((STInt64ArrayValue) xEntry.getValue()).getValue();
+                long[] y = ((STInt64ArrayValue) yEntry.getValue()).getValue();
+                dot = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += (double) x[i] * y[i];
+                    }
+                    return s;
+                }, Double::sum);
+            }
+                break;
+            case FLOAT: {
+                float[] x = ((STFloat32ArrayValue) xEntry.getValue()).getValue();
+                float[] y = ((STFloat32ArrayValue) yEntry.getValue()).getValue();
+                dot = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += (double) x[i] * y[i];
+                    }
+                    return s;
+                }, Double::sum);
+            }
+                break;
+            case DOUBLE: {
+                double[] x = ((STFloat64ArrayValue) xEntry.getValue()).getValue();
+                double[] y = ((STFloat64ArrayValue) yEntry.getValue()).getValue();
+                dot = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += x[i] * y[i];
+                    }
+                    return s;
+                }, Double::sum);
+            }
+                break;
+            default:
+                throwUnsupportedType(xEntry.getType().getAtomTypeId());
+                return;
+        }
+        result.setFloat64(dot);
+    }
+
+    static void clamp(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var entry = symbolTable.get(instruction.op1);
+        ArraysUtil.checkNotMapped("ARRAYCLAMP", entry);
+        var lo = symbolTable.get(params.get(0).op1).getValue();
+        var hi = symbolTable.get(params.get(0).op2).getValue();
+        int n = entry.getValue().getTotalLength();
+
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] x = ((STInt32ArrayValue) entry.getValue()).getValue();
+                int min = lo.getInt32();
+                int max = hi.getInt32();
+                checkRange(min, max);
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        x[i] = Math.min(Math.max(x[i], min), max);
+                    }
+                });
+            }
+                break;
+            case INT64: {
+                long[] x = ((STInt64ArrayValue) entry.getValue()).getValue();
+                long min = lo.getInt64();
+                long max = hi.getInt64();
+                checkRange(min, max);
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        x[i] = Math.min(Math.max(x[i], min), max);
+                    }
+                });
+            }
+                break;
+            case FLOAT: {
+                float[] x = ((STFloat32ArrayValue) entry.getValue()).getValue();
+                float min = lo.getFloat32();
+                float max = hi.getFloat32();
+                checkRange(min, max);
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        x[i] = Math.min(Math.max(x[i], min), max);
+                    }
+                });
+            }
+                break;
+            case DOUBLE: {
+                double[] x = ((STFloat64ArrayValue) entry.getValue()).getValue();
+                double min = lo.getFloat64();
+                double max = hi.getFloat64();
+                checkRange(min, max);
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        x[i] = Math.min(Math.max(x[i], min), max);
+                    }
+                });
+            }
+                break;
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+        }
+    }
+
+    private static void checkRange(double min, double max) {
+        if (min > max) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "ARRAYCLAMP: min=" + min + " is greater than max=" + max
+            );
+        }
+    }
+
+    private static int checkCompatible(STEntry entry1, STEntry entry2) {
+        var type1 = entry1.getType().getAtomTypeId();
+        var type2 = entry2.getType().getAtomTypeId();
+        if (type1 != type2) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    "Array data type mismatch: " + type1 + " is not compatible with " + type2
+            );
+        }
+        int n1 = entry1.getValue().getTotalLength();
+        int n2 = entry2.getValue().getTotalLength();
+        if (n1 != n2) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Array length mismatch: " + n1 + " is not compatible with " + n2
+            );
+        }
+        return n1;
+    }
+}
@@ -0,0 +1,179 @@
+package org.puffinbasic.runtime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs bulk array operations on a fork-join pool once an array reaches
+ * the size threshold. Ranges are split in halves down to fixed size leaves,
+ * so the reduction tree only depends on the array length: floating point
+ * results are the same for any parallelism, and for the serial path.
+ * Pools are shared by all instances with the same parallelism and created
+ * on first use, so building one per run is cheap and leaks no threads.
+ */
+public final class ArrayParallelism {
+
+    public static final int DEFAULT_THRESHOLD = 1 << 17;
+    private static final int LEAF_SIZE = 1 << 14;
+
+    @FunctionalInterface
+    interface RangeAction {
+        void apply(int from, int to);
+    }
+
+    @FunctionalInterface
+    interface RangeFunction<T> {
+        T apply(int from, int to);
+    }
+
+    private static final ConcurrentMap<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    private final int threshold;
+    private final int parallelism;
+
+    public ArrayParallelism(int threshold, int parallelism) {
+        this.threshold = Math.max(1, threshold);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public static ArrayParallelism ofDefault() {
+        return new ArrayParallelism(DEFAULT_THRESHOLD, Runtime.getRuntime().availableProcessors());
+    }
+
+    boolean isParallel(long n) {
+        return parallelism > 1 && n >= threshold;
+    }
+
+    private ForkJoinPool pool() {
+        return POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Runs the task inside the pool, so that Arrays.parallelSort & co.
+     * fork their subtasks onto it instead of the common pool.
+     */
+    void run(int n, Runnable parallel, Runnable serial) {
+        if (isParallel(n)) {
+            pool().submit(parallel).join();
+        } else {
+            serial.run();
+        }
+    }
+
+    void forRange(int n, RangeAction action) {
+        if (isParallel(n)) {
+            pool().invoke(new ForRange(action, 0, n, LEAF_SIZE));
+        } else {
+            action.apply(0, n);
+        }
+    }
+
+    /**
+     * Splits [0, rows) into row stripes, each stripe doing at least a leaf
+     * worth of work given the work per row (e.g. #columns).
+     */
+    void forRows(int rows, long workPerRow, RangeAction action) {
+        if (isParallel(rows * workPerRow)) {
+            int leafRows = (int) Math.max(1, LEAF_SIZE / Math.max(1, workPerRow));
+            pool().invoke(new ForRange(action, 0, rows, leafRows));
+        } else {
+            action.apply(0, rows);
+        }
+    }
+
+    /**
+     * Returns the number of partitions for a partitioned pass over n elements,
+     * 1 when the pass should run serially.
+     */
+    int partitions(long n) {
+        return isParallel(n) ? parallelism : 1;
+    }
+
+    void forEachPartition(int partitions, IntConsumer action) {
+        if (partitions == 1) {
+            action.accept(0);
+        } else {
+            pool().invoke(new ForRange((from, to) -> {
+                for (int p = from; p < to; p++) {
+                    action.accept(p);
+                }
+            }, 0, partitions, 1));
+        }
+    }
+
+    <T> T reduce(int n, RangeFunction<T> leaf, BinaryOperator<T> combine) {
+        if (isParallel(n)) {
+            return pool().invoke(new Reduce<>(leaf, combine, 0, n));
+        } else {
+            return reduceSerial(leaf, combine, 0, n);
+        }
+    }
+
+    private static <T> T reduceSerial(RangeFunction<T> leaf, BinaryOperator<T> combine, int from, int to) {
+        if (to - from <= LEAF_SIZE) {
+            return leaf.apply(from, to);
+        }
+        int mid = (from + to) >>> 1;
+        return combine.apply(
+                reduceSerial(leaf, combine, from, mid),
+                reduceSerial(leaf, combine, mid, to));
+    }
+
+    private static final class ForRange extends RecursiveAction {
+        private final RangeAction action;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+
+        ForRange(RangeAction action, int from, int to, int leafSize) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leafSize) {
+                action.apply(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new ForRange(action, from, mid, leafSize),
+                        new ForRange(action, mid, to, leafSize));
+            }
+        }
+    }
+
+    private static final class Reduce<T> extends RecursiveTask<T> {
+        private final RangeFunction<T> leaf;
+        private final BinaryOperator<T> combine;
+        private final int from;
+        private final int to;
+
+        Reduce(RangeFunction<T> leaf, BinaryOperator<T> combine, int from, int to) {
+            this.leaf = leaf;
+            this.combine = combine;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= LEAF_SIZE) {
+                return leaf.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            var left = new Reduce<>(leaf, combine, from, mid);
+            var right = new Reduce<>(leaf, combine, mid, to);
+            left.fork();
+            T rightResult = right.compute();
+            return combine.apply(left.join(), rightResult);
+        }
+    }
+}
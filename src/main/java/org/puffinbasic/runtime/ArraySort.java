@@ -0,0 +1,492 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+/**
+ * Index sorts over the primitive arrays. ARGSORT sorts a permutation
+ * array by one or more key columns with a stable merge sort, comparing
+ * keys through the primitive arrays, so nothing is boxed. A single INT32
+ * or FLOAT key is packed with its index into a long and sorted by
+ * Arrays.sort. PERMUTE gathers an array through a permutation and
+ * ARRAY1DMERGE merges two sorted arrays.
+ */
+final class ArraySort {
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int SORT_LEAF_SIZE = 1 << 13;
+
+    @FunctionalInterface
+    interface IndexComparator {
+        int compare(int i, int j);
+    }
+
+    static void argsort(
+            ArrayParallelism parallelism,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        ArraysUtil.checkNotMapped("ARGSORT", symbolTable.get(instruction.op1));
+        int numKeys = params.size();
+        var keys = new STEntry[numKeys];
+        var descending = new boolean[numKeys];
+        int n = -1;
+        for (int i = 0; i < numKeys; i++) {
+            keys[i] = symbolTable.get(params.get(i).op1);
+            ArraysUtil.checkNotMapped("ARGSORT", keys[i]);
+            descending[i] = symbolTable.get(params.get(i).op2).getValue().getInt32() != 0;
+            int len = keys[i].getValue().getTotalLength();
+            if (n == -1) {
+                n = len;
+            } else if (n != len) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "ARGSORT: key length mismatch: " + n + " vs " + len
+                );
+            }
+        }
+
+        final int[] perm;
+        var type = keys[0].getType().getAtomTypeId();
+        if (numKeys == 1 && type == PuffinBasicAtomTypeId.INT32) {
+            perm = packedArgsort(parallelism, ((STInt32ArrayValue) keys[0].getValue()).getValue(), descending[0]);
+        } else if (numKeys == 1 && type == PuffinBasicAtomTypeId.FLOAT) {
+            float[] v = ((STFloat32ArrayValue) keys[0].getValue()).getValue();
+            int[] bits = new int[n];
+            parallelism.forRange(v.length, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    int b = Float.floatToIntBits(v[i]);
+                    // Same order as Float.compare: -0.0 < 0.0, NaN last.
+                    bits[i] = b ^ ((b >> 31) & 0x7fffffff);
+                }
+            });
+            perm = packedArgsort(parallelism, bits, descending[0]);
+        } else {
+            var comparators = new IndexComparator[numKeys];
+            for (int i = 0; i < numKeys; i++) {
+                var cmp = keyComparator(keys[i]);
+                comparators[i] = descending[i] ? (x, y) -> cmp.compare(y, x) : cmp;
+            }
+            final IndexComparator comparator;
+            if (numKeys == 1) {
+                comparator = comparators[0];
+            } else {
+                comparator = (x, y) -> {
+                    for (var cmp : comparators) {
+                        int c = cmp.compare(x, y);
+                        if (c != 0) {
+                            return c;
+                        }
+                    }
+                    return 0;
+                };
+            }
+            perm = new int[n];
+            for (int i = 0; i < n; i++) {
+                perm[i] = i;
+            }
+            sort(parallelism, perm, comparator);
+        }
+
+        var permValue = resize1d(symbolTable.get(instruction.op1).getValue(), n);
+        System.arraycopy(perm, 0, ((STInt32ArrayValue) permValue).getValue(), 0, n);
+    }
+
+    /**
+     * Sorts (key, index) pairs packed into longs: the index in the low bits
+     * breaks ties, which keeps the sort stable.
+     */
+    private static int[] packedArgsort(ArrayParallelism parallelism, int[] keys, boolean descending) {
+        int n = keys.length;
+        long[] packed = new long[n];
+        parallelism.forRange(n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                int key = descending ? ~keys[i] : keys[i];
+                packed[i] = ((long) key << 32) | i;
+            }
+        });
+        parallelism.run(n, () -> Arrays.parallelSort(packed), () -> Arrays.sort(packed));
+        int[] perm = new int[n];
+        parallelism.forRange(n, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                perm[i] = (int) packed[i];
+            }
+        });
+        return perm;
+    }
+
+    private static IndexComparator keyComparator(STEntry entry) {
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] v = ((STInt32ArrayValue) entry.getValue()).getValue();
+                return (i, j) -> Integer.compare(v[i], v[j]);
+            }
+            case INT64: {
+                long[] v = ((STInt64ArrayValue) entry.getValue()).getValue();
+                return (i, j) -> Long.compare(v[i], v[j]);
+            }
+            case FLOAT: {
+                float[] v = ((STFloat32ArrayValue) entry.getValue()).getValue();
+                return (i, j) -> Float.compare(v[i], v[j]);
+            }
+            case DOUBLE: {
+                double[] v = ((STFloat64ArrayValue) entry.getValue()).getValue();
+                return (i, j) -> Double.compare(v[i], v[j]);
+            }
+            case STRING: {
+                String[] v = ((STStringArrayValue) entry.getValue()).getValue();
+                return (i, j) -> v[i].compareTo(v[j]);
+            }
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+                return null;
+        }
+    }
+
+    private static void sort(ArrayParallelism parallelism, int[] index, IndexComparator cmp) {
+        int n = index.length;
+        int[] aux = new int[n];
+        parallelism.run(n,
+                () -> new SortTask(index, aux, 0, n, cmp).invoke(),
+                () -> mergeSort(index, aux, 0, n, cmp));
+    }
+
+    private static void mergeSort(int[] a, int[] aux, int from, int to, IndexComparator cmp) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, from, to, cmp);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, aux, from, mid, cmp);
+        mergeSort(a, aux, mid, to, cmp);
+        merge(a, aux, from, mid, to, cmp);
+    }
+
+    private static void insertionSort(int[] a, int from, int to, IndexComparator cmp) {
+        for (int i = from + 1; i < to; i++) {
+            int v = a[i];
+            int j = i - 1;
+            while (j >= from && cmp.compare(a[j], v) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    /**
+     * Merges the sorted runs a[from, mid) and a[mid, to), taking from the
+     * left run on ties.
+     */
+    private static void merge(int[] a, int[] aux, int from, int mid, int to, IndexComparator cmp) {
+        if (cmp.compare(a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(a, from, aux, from, mid - from);
+        int i = from;
+        int j = mid;
+        int k = from;
+        while (i < mid && j < to) {
+            a[k++] = cmp.compare(a[j], aux[i]) < 0 ? a[j++] : aux[i++];
+        }
+        System.arraycopy(aux, i, a, k, mid - i);
+    }
+
+    private static final class SortTask extends RecursiveAction {
+        private final int[] a;
+        private final int[] aux;
+        private final int from;
+        private final int to;
+        private final IndexComparator cmp;
+
+        SortTask(int[] a, int[] aux, int from, int to, IndexComparator cmp) {
+            this.a = a;
+            this.aux = aux;
+            this.from = from;
+            this.to = to;
+            this.cmp = cmp;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SORT_LEAF_SIZE) {
+                mergeSort(a, aux, from, to, cmp);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SortTask(a, aux, from, mid, cmp), new SortTask(a, aux, mid, to, cmp));
+                merge(a, aux, from, mid, to, cmp);
+            }
+        }
+    }
+
+    static void permute(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var srcEntry = symbolTable.get(instruction.op1);
+        var permEntry = symbolTable.get(instruction.op2);
+        var dstEntry = symbolTable.get(instruction.result);
+        ArraysUtil.checkNotMapped("PERMUTE", srcEntry, permEntry, dstEntry);
+        int[] perm = ((STInt32ArrayValue) permEntry.getValue()).getValue();
+        int srcLen = srcEntry.getValue().getTotalLength();
+        int n = perm.length;
+        for (int i = 0; i < n; i++) {
+            if (perm[i] < 0 || perm[i] >= srcLen) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "PERMUTE: index " + perm[i] + " at " + i + " is out of range [0, " + srcLen + ")"
+                );
+            }
+        }
+
+        switch (srcEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] src = ((STInt32ArrayValue) srcEntry.getValue()).getValue();
+                int[] dst = ((STInt32ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                int[] out = dst == src ? new int[n] : dst;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = src[perm[i]];
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case INT64: {
+                long[] src = ((STInt64ArrayValue) srcEntry.getValue()).getValue();
+                long[] dst = ((STInt64ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                long[] out = dst == src ? new long[n] : dst;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = src[perm[i]];
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] src = ((STFloat32ArrayValue) srcEntry.getValue()).getValue();
+                float[] dst = ((STFloat32ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                float[] out = dst == src ? new float[n] : dst;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = src[perm[i]];
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] src = ((STFloat64ArrayValue) srcEntry.getValue()).getValue();
+                double[] dst = ((STFloat64ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                double[] out = dst == src ? new double[n] : dst;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = src[perm[i]];
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case STRING: {
+                String[] src = ((STStringArrayValue) srcEntry.getValue()).getValue();
+                String[] dst = ((STStringArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                String[] out = dst == src ? new String[n] : dst;
+                parallelism.forRange(n, (from, to) -> {
+                    for (int i = from; i < to; i++) {
+                        out[i] = src[perm[i]];
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(srcEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * Merges two arrays sorted in ascending order, taking from the first
+     * array on ties. Each range of the output finds its start in both
+     * inputs by binary search, so ranges are merged independently.
+     */
+    static void array1dMerge(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var aEntry = symbolTable.get(instruction.op1);
+        var bEntry = symbolTable.get(instruction.op2);
+        var dstEntry = symbolTable.get(instruction.result);
+        ArraysUtil.checkNotMapped("ARRAY1DMERGE", aEntry, bEntry, dstEntry);
+        int na = aEntry.getValue().getTotalLength();
+        int nb = bEntry.getValue().getTotalLength();
+        int n = na + nb;
+
+        switch (aEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] a = ((STInt32ArrayValue) aEntry.getValue()).getValue();
+                int[] b = ((STInt32ArrayValue) bEntry.getValue()).getValue();
+                int[] dst = ((STInt32ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                int[] out = dst == a || dst == b ? new int[n] : dst;
+                IndexComparator aVsB = (x, y) -> Integer.compare(a[x], b[y]);
+                parallelism.forRange(n, (from, to) -> {
+                    int i = coRank(from, na, nb, aVsB);
+                    int iEnd = coRank(to, na, nb, aVsB);
+                    int j = from - i;
+                    int jEnd = to - iEnd;
+                    int k = from;
+                    while (i < iEnd && j < jEnd) {
+                        out[k++] = b[j] < a[i] ? b[j++] : a[i++];
+                    }
+                    System.arraycopy(a, i, out, k, iEnd - i);
+                    System.arraycopy(b, j, out, k + iEnd - i, jEnd - j);
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case INT64: {
+                long[] a = ((STInt64ArrayValue) aEntry.getValue()).getValue();
+                long[] b = ((STInt64ArrayValue) bEntry.getValue()).getValue();
+                long[] dst = ((STInt64ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                long[] out = dst == a || dst == b ? new long[n] : dst;
+                IndexComparator aVsB = (x, y) -> Long.compare(a[x], b[y]);
+                parallelism.forRange(n, (from, to) -> {
+                    int i = coRank(from, na, nb, aVsB);
+                    int iEnd = coRank(to, na, nb, aVsB);
+                    int j = from - i;
+                    int jEnd = to - iEnd;
+                    int k = from;
+                    while (i < iEnd && j < jEnd) {
+                        out[k++] = b[j] < a[i] ? b[j++] : a[i++];
+                    }
+                    System.arraycopy(a, i, out, k, iEnd - i);
+                    System.arraycopy(b, j, out, k + iEnd - i, jEnd - j);
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] a = ((STFloat32ArrayValue) aEntry.getValue()).getValue();
+                float[] b = ((STFloat32ArrayValue) bEntry.getValue()).getValue();
+                float[] dst = ((STFloat32ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                float[] out = dst == a || dst == b ? new float[n] : dst;
+                IndexComparator aVsB = (x, y) -> Float.compare(a[x], b[y]);
+                parallelism.forRange(n, (from, to) -> {
+                    int i = coRank(from, na, nb, aVsB);
+                    int iEnd = coRank(to, na, nb, aVsB);
+                    int j = from - i;
+                    int jEnd = to - iEnd;
+                    int k = from;
+                    while (i < iEnd && j < jEnd) {
+                        out[k++] = Float.compare(b[j], a[i]) < 0 ? b[j++] : a[i++];
+                    }
+                    System.arraycopy(a, i, out, k, iEnd - i);
+                    System.arraycopy(b, j, out, k + iEnd - i, jEnd - j);
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] a = ((STFloat64ArrayValue) aEntry.getValue()).getValue();
+                double[] b = ((STFloat64ArrayValue) bEntry.getValue()).getValue();
+                double[] dst = ((STFloat64ArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                double[] out = dst == a || dst == b ? new double[n] : dst;
+                IndexComparator aVsB = (x, y) -> Double.compare(a[x], b[y]);
+                parallelism.forRange(n, (from, to) -> {
+                    int i = coRank(from, na, nb, aVsB);
+                    int iEnd = coRank(to, na, nb, aVsB);
+                    int j = from - i;
+                    int jEnd = to - iEnd;
+                    int k = from;
+                    while (i < iEnd && j < jEnd) {
+                        out[k++] = Double.compare(b[j], a[i]) < 0 ? b[j++] : a[i++];
+                    }
+                    System.arraycopy(a, i, out, k, iEnd - i);
+                    System.arraycopy(b, j, out, k + iEnd - i, jEnd - j);
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            case STRING: {
+                String[] a = ((STStringArrayValue) aEntry.getValue()).getValue();
+                String[] b = ((STStringArrayValue) bEntry.getValue()).getValue();
+                String[] dst = ((STStringArrayValue) resize1d(dstEntry.getValue(), n)).getValue();
+                String[] out = dst == a || dst == b ? new String[n] : dst;
+                IndexComparator aVsB = (x, y) -> a[x].compareTo(b[y]);
+                parallelism.forRange(n, (from, to) -> {
+                    int i = coRank(from, na, nb, aVsB);
+                    int iEnd = coRank(to, na, nb, aVsB);
+                    int j = from - i;
+                    int jEnd = to - iEnd;
+                    int k = from;
+                    while (i < iEnd && j < jEnd) {
+                        out[k++] = b[j].compareTo(a[i]) < 0 ? b[j++] : a[i++];
+                    }
+                    System.arraycopy(a, i, out, k, iEnd - i);
+                    System.arraycopy(b, j, out, k + iEnd - i, jEnd - j);
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, n);
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(aEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * Returns the number of elements of a among the first k merged elements.
+     */
+    private static int coRank(int k, int na, int nb, IndexComparator aVsB) {
+        int lo = Math.max(0, k - nb);
+        int hi = Math.min(k, na);
+        while (lo < hi) {
+            int i = (lo + hi) >>> 1;
+            if (aVsB.compare(i, k - i - 1) <= 0) {
+                lo = i + 1;
+            } else {
+                hi = i;
+            }
+        }
+        return lo;
+    }
+
+    private static STValue resize1d(STValue array, int n) {
+        var dims = array.getArrayDimensions();
+        if (dims.size() != 1 || dims.getInt(0) != n) {
+            array.setArrayDimensions(IntArrayList.wrap(new int[] {n}));
+        }
+        return array;
+    }
+}
@@ -0,0 +1,266 @@
+package org.puffinbasic.runtime;
+
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.util.Arrays;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_OUT_OF_RANGE;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+/**
+ * Statistics computed directly over the primitive backing arrays.
+ * Mean and std take a single Welford pass; percentiles use quickselect on
+ * a scratch copy that is reused across calls. Results match commons-math's
+ * SummaryStatistics and DescriptiveStatistics (legacy percentile
+ * estimation, NaNs removed).
+ */
+final class ArrayStats {
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private double[] scratch = new double[0];
+
+    private static final class Moments {
+        private long n;
+        private double m1;
+        private double m2;
+
+        void add(double d) {
+            n++;
+            double dev = d - m1;
+            double nDev = dev / n;
+            m1 += nDev;
+            m2 += (n - 1) * dev * nDev;
+        }
+
+        double mean() {
+            return n == 0 ? Double.NaN : m1;
+        }
+
+        double variance() {
+            return n == 0 ? Double.NaN : n == 1 ? 0 : m2 / (n - 1);
+        }
+    }
+
+    private static Moments moments(STEntry entry) {
+        var moments = new Moments();
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32:
+                for (int v : ((STInt32ArrayValue) entry.getValue()).getValue()) {
+                    moments.add(v);
+                }
+                break;
+            case INT64:
+                for (long v : ((STInt64ArrayValue) entry.getValue()).getValue()) {
+                    moments.add(v);
+                }
+                break;
+            case FLOAT:
+                for (float v : ((STFloat32ArrayValue) entry.getValue()).getValue()) {
+                    moments.add(v);
+                }
+                break;
+            case DOUBLE:
+                for (double v : ((STFloat64ArrayValue) entry.getValue()).getValue()) {
+                    moments.add(v);
+                }
+                break;
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+        }
+        return moments;
+    }
+
+    static double mean(STEntry entry) {
+        return moments(entry).mean();
+    }
+
+    static double stddev(STEntry entry) {
+        return Math.sqrt(moments(entry).variance());
+    }
+
+    double percentile(STEntry entry, double pct) {
+        checkPercentile(pct);
+        int n = copyToScratch(entry);
+        if (n <= 1) {
+            return n == 0 ? Double.NaN : scratch[0];
+        }
+        double pos = position(pct, n);
+        if (pos < 1) {
+            select(scratch, 0, n, 0);
+            return scratch[0];
+        }
+        if (pos >= n) {
+            select(scratch, 0, n, n - 1);
+            return scratch[n - 1];
+        }
+        int k = (int) Math.floor(pos);
+        select(scratch, 0, n, k - 1);
+        select(scratch, k, n, k);
+        return interpolate(pos, scratch[k - 1], scratch[k]);
+    }
+
+    /**
+     * Computes several percentiles with one copy of the array: the needed
+     * order statistics are selected in ascending order, each one only
+     * searching the part right of the previous one.
+     */
+    void percentiles(STEntry entry, double[] pcts, double[] result) {
+        for (double pct : pcts) {
+            checkPercentile(pct);
+        }
+        int n = copyToScratch(entry);
+        if (n <= 1) {
+            Arrays.fill(result, n == 0 ? Double.NaN : scratch[0]);
+            return;
+        }
+        int[] ranks = new int[pcts.length * 2];
+        for (int i = 0; i < pcts.length; i++) {
+            double pos = position(pcts[i], n);
+            int k = pos < 1 ? 0 : pos >= n ? n - 1 : (int) Math.floor(pos);
+            ranks[2 * i] = Math.max(0, k - 1);
+            ranks[2 * i + 1] = k;
+        }
+        Arrays.sort(ranks);
+        int last = -1;
+        for (int k : ranks) {
+            if (k > last) {
+                select(scratch, last + 1, n, k);
+                last = k;
+            }
+        }
+        for (int i = 0; i < pcts.length; i++) {
+            double pos = position(pcts[i], n);
+            if (pos < 1) {
+                result[i] = scratch[0];
+            } else if (pos >= n) {
+                result[i] = scratch[n - 1];
+            } else {
+                int k = (int) Math.floor(pos);
+                result[i] = interpolate(pos, scratch[k - 1], scratch[k]);
+            }
+        }
+    }
+
+    private static void checkPercentile(double pct) {
+        if (!(pct >= 0 && pct <= 100)) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_OUT_OF_RANGE,
+                    "Percentile value out of range: " + pct
+            );
+        }
+    }
+
+    private static double position(double pct, int n) {
+        double p = pct / 100;
+        return p == 0 ? 0 : p == 1 ? n : p * (n + 1);
+    }
+
+    private static double interpolate(double pos, double lower, double upper) {
+        return lower + (pos - Math.floor(pos)) * (upper - lower);
+    }
+
+    /**
+     * Copies the array as doubles, without NaNs, and returns the count.
+     */
+    private int copyToScratch(STEntry entry) {
+        int len = entry.getValue().getTotalLength();
+        if (scratch.length < len) {
+            scratch = new double[len];
+        }
+        double[] work = scratch;
+        int n = 0;
+        switch (entry.getType().getAtomTypeId()) {
+            case INT32:
+                for (int v : ((STInt32ArrayValue) entry.getValue()).getValue()) {
+                    work[n++] = v;
+                }
+                break;
+            case INT64:
+                for (long v : ((STInt64ArrayValue) entry.getValue()).getValue()) {
+                    work[n++] = v;
+                }
+                break;
+            case FLOAT:
+                for (float v : ((STFloat32ArrayValue) entry.getValue()).getValue()) {
+                    if (!Float.isNaN(v)) {
+                        work[n++] = v;
+                    }
+                }
+                break;
+            case DOUBLE:
+                for (double v : ((STFloat64ArrayValue) entry.getValue()).getValue()) {
+                    if (!Double.isNaN(v)) {
+                        work[n++] = v;
+                    }
+                }
+                break;
+            default:
+                throwUnsupportedType(entry.getType().getAtomTypeId());
+        }
+        return n;
+    }
+
+    /**
+     * Rearranges a[from, to) so that a[k] holds the value it would have
+     * if the range was sorted, with smaller or equal values left of it
+     * and greater or equal values right of it.
+     */
+    private static void select(double[] a, int from, int to, int k) {
+        int lo = from;
+        int hi = to - 1;
+        while (hi - lo >= INSERTION_SORT_THRESHOLD) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < a[lo]) {
+                swap(a, lo, mid);
+            }
+            if (a[hi] < a[lo]) {
+                swap(a, lo, hi);
+            }
+            if (a[hi] < a[mid]) {
+                swap(a, mid, hi);
+            }
+            double pivot = a[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (a[i] < pivot) {
+                    i++;
+                }
+                while (a[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(a, i++, j--);
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            double v = a[i];
+            int j = i - 1;
+            while (j >= lo && a[j] > v) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = v;
+        }
+    }
+
+    private static void swap(double[] a, int i, int j) {
+        double t = a[i];
+        a[i] = a[j];
+        a[j] = t;
+    }
+}
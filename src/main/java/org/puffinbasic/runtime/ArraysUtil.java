@@ -2,8 +2,6 @@ package org.puffinbasic.runtime;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
-import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.domain.STObjects.AbstractSTEntry;
@@ -13,19 +11,27 @@ import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
 import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
 import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
 import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STMappedArrayValue;
 import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.parser.PuffinBasicIR.Instruction;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
 import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
 
 final class ArraysUtil {
 
+    private static final int TRANSPOSE_BLOCK = 64;
+    private static final int MATMUL_BLOCK_K = 128;
+    private static final int MATMUL_BLOCK_N = 1024;
+
     static final class ArrayState {
         private int dimIndex;
 
@@ -38,12 +44,61 @@ final class ArraysUtil {
         }
     }
 
-    static void dim(PuffinBasicSymbolTable symbolTable, List<Instruction> params, Instruction instruction) {
+    /**
+     * The MAPPED arrays of one execution. Their changes are written to the
+     * files on CLOSE, and the mappings are released when the array is
+     * dimensioned again and when the program ends.
+     */
+    static final class MappedArrays {
+        private final List<STMappedArrayValue> arrays = new ArrayList<>();
+
+        void add(STMappedArrayValue array) {
+            arrays.add(array);
+        }
+
+        void release(STMappedArrayValue array) {
+            arrays.remove(array);
+            array.release();
+        }
+
+        void force() {
+            for (var array : arrays) {
+                array.force();
+            }
+        }
+
+        void close() {
+            for (var array : arrays) {
+                array.release();
+            }
+            arrays.clear();
+        }
+    }
+
+    static void dim(
+            MappedArrays mappedArrays,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
         IntList dims = new IntArrayList(params.size());
         for (var param : params) {
             dims.add(symbolTable.get(param.op1).getValue().getInt32());
         }
-        symbolTable.get(instruction.op1).getValue().setArrayDimensions(dims);
+        var entry = (AbstractSTEntry) symbolTable.get(instruction.op1);
+        if (entry.getValue() instanceof STMappedArrayValue) {
+            mappedArrays.release((STMappedArrayValue) entry.getValue());
+            if (instruction.op2 == NULL_ID) {
+                entry.createAndSetInstance(symbolTable);
+            }
+        }
+        if (instruction.op2 != NULL_ID) {
+            var path = symbolTable.get(instruction.op2).getValue().getString();
+            var array = new STMappedArrayValue(entry.getType().getAtomTypeId(), path);
+            entry.setValue(array);
+            mappedArrays.add(array);
+        }
+        entry.getValue().setArrayDimensions(dims);
     }
 
     static void resetIndex(ArrayState state, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
@@ -80,41 +135,90 @@ final class ArraysUtil {
     }
 
     static void arrayref(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        var index = symbolTable.get(instruction.op1).getValue().getArrayIndex1D();
+        var index = symbolTable.get(instruction.op1).getValue().getArrayIndex1D64();
         symbolTable.get(instruction.result).getValue().setArrayReferenceIndex1D(index);
     }
 
-    static void arrayfill(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void arrayfill(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var array = symbolTable.get(instruction.op1).getValue();
         var fillEntry = symbolTable.get(instruction.op2);
         var fill = fillEntry.getValue();
 
+        final Object fillValue;
         switch (fillEntry.getType().getAtomTypeId()) {
             case INT32:
-                array.fill(fill.getInt32());
+                fillValue = fill.getInt32();
                 break;
             case INT64:
-                array.fill(fill.getInt64());
+                fillValue = fill.getInt64();
                 break;
             case FLOAT:
-                array.fill(fill.getFloat32());
+                fillValue = fill.getFloat32();
                 break;
             case DOUBLE:
-                array.fill(fill.getFloat64());
+                fillValue = fill.getFloat64();
                 break;
             case STRING:
-                array.fillString(fill.getString());
+                fillValue = fill.getString();
                 break;
             default:
                 throwUnsupportedType(fillEntry.getType().getAtomTypeId());
+                return;
+        }
+
+        if (!(array instanceof STMappedArrayValue)
+                && parallelism.isParallel(array.getTotalLength())
+                && parallelFill(parallelism, array, fillValue))
+        {
+            return;
+        }
+        if (fillValue instanceof String) {
+            array.fillString((String) fillValue);
+        } else {
+            array.fill((Number) fillValue);
+        }
+    }
+
+    private static boolean parallelFill(ArrayParallelism parallelism, STValue array, Object fillValue) {
+        int n = array.getTotalLength();
+        if (fillValue instanceof Number) {
+            var number = (Number) fillValue;
+            if (array instanceof STInt32ArrayValue) {
+                int[] value = ((STInt32ArrayValue) array).getValue();
+                int v = number.intValue();
+                parallelism.forRange(n, (from, to) -> Arrays.fill(value, from, to, v));
+                return true;
+            } else if (array instanceof STInt64ArrayValue) {
+                long[] value = ((STInt64ArrayValue) array).getValue();
+                long v = number.longValue();
+                parallelism.forRange(n, (from, to) -> Arrays.fill(value, from, to, v));
+                return true;
+            } else if (array instanceof STFloat32ArrayValue) {
+                float[] value = ((STFloat32ArrayValue) array).getValue();
+                float v = number.floatValue();
+                parallelism.forRange(n, (from, to) -> Arrays.fill(value, from, to, v));
+                return true;
+            } else if (array instanceof STFloat64ArrayValue) {
+                double[] value = ((STFloat64ArrayValue) array).getValue();
+                double v = number.doubleValue();
+                parallelism.forRange(n, (from, to) -> Arrays.fill(value, from, to, v));
+                return true;
+            }
+        } else if (array instanceof STStringArrayValue) {
+            String[] value = ((STStringArrayValue) array).getValue();
+            String v = (String) fillValue;
+            parallelism.forRange(n, (from, to) -> Arrays.fill(value, from, to, v));
+            return true;
         }
+        return false;
     }
 
-    static void arrayCopy(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void arrayCopy(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var array1Entry = symbolTable.get(instruction.op1);
         var array1 = array1Entry.getValue();
         var array2Entry = symbolTable.get(instruction.op2);
         var array2 = array2Entry.getValue();
+        checkNotMapped("ARRAYCOPY", array1Entry, array2Entry);
         if (array1Entry.getType().getAtomTypeId() != array2Entry.getType().getAtomTypeId()) {
             throw new PuffinBasicRuntimeError(
                     DATA_TYPE_MISMATCH,
@@ -133,35 +237,27 @@ final class ArraysUtil {
         switch (array1Entry.getType().getAtomTypeId()) {
             case INT32: {
                 int[] value = ((STInt32ArrayValue) array1).getValue();
-                System.arraycopy(value, 0, ((STInt32ArrayValue) array2).getValue(), 0, value.length);
+                copy(parallelism, value, ((STInt32ArrayValue) array2).getValue(), value.length);
             }
                 break;
             case INT64: {
                 long[] value = ((STInt64ArrayValue) array1).getValue();
-                System.arraycopy(
-                        value, 0, ((STInt64ArrayValue) array2).getValue(), 0, value.length
-                );
+                copy(parallelism, value, ((STInt64ArrayValue) array2).getValue(), value.length);
             }
                 break;
             case FLOAT: {
                 float[] value = ((STFloat32ArrayValue) array1).getValue();
-                System.arraycopy(
-                        value, 0, ((STFloat32ArrayValue) array2).getValue(), 0, value.length
-                );
+                copy(parallelism, value, ((STFloat32ArrayValue) array2).getValue(), value.length);
             }
                 break;
             case DOUBLE: {
                 double[] value = ((STFloat64ArrayValue) array1).getValue();
-                System.arraycopy(
-                        value, 0, ((STFloat64ArrayValue) array2).getValue(), 0, value.length
-                );
+                copy(parallelism, value, ((STFloat64ArrayValue) array2).getValue(), value.length);
             }
                 break;
             case STRING: {
                 String[] value = ((STStringArrayValue) array1).getValue();
-                System.arraycopy(
-                        value, 0, ((STStringArrayValue) array2).getValue(), 0, value.length
-                );
+                copy(parallelism, value, ((STStringArrayValue) array2).getValue(), value.length);
             }
                 break;
             default:
@@ -169,11 +265,16 @@ final class ArraysUtil {
         }
     }
 
+    private static void copy(ArrayParallelism parallelism, Object src, Object dst, int n) {
+        parallelism.forRange(n, (from, to) -> System.arraycopy(src, from, dst, from, to - from));
+    }
+
     static void array2dShiftVertical(
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY2DSHIFTVER", arrayEntry);
         var array = arrayEntry.getValue();
         var shift = symbolTable.get(instruction.op2).getValue().getInt32();
         var dims = array.getArrayDimensions();
@@ -234,6 +335,7 @@ final class ArraysUtil {
             Instruction instruction)
     {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY2DSHIFTHOR", arrayEntry);
         var array = arrayEntry.getValue();
         var shift = symbolTable.get(instruction.op2).getValue().getInt32();
         var dims = array.getArrayDimensions();
@@ -379,6 +481,495 @@ final class ArraysUtil {
         }
     }
 
+    /**
+     * c = a x b. Rows of c are computed in stripes, and each stripe walks
+     * blocks of a's columns and b's rows so the touched parts of b and c
+     * stay in cache. b and the stripe of c are held as one array per row:
+     * the inner loop then indexes both with the same j, which lets C2
+     * vectorize it (it can't prove two slices of int[]s don't overlap).
+     * Each stripe only reads its own rows of a, so c may be a or b.
+     */
+    static void matMul(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var aEntry = symbolTable.get(instruction.op1);
+        var bEntry = symbolTable.get(instruction.op2);
+        var cEntry = symbolTable.get(instruction.result);
+        checkNotMapped("MATMUL", aEntry, bEntry, cEntry);
+        checkSameType("MATMUL", aEntry, bEntry);
+        checkSameType("MATMUL", aEntry, cEntry);
+        var aDims = aEntry.getValue().getArrayDimensions();
+        var bDims = bEntry.getValue().getArrayDimensions();
+        int m = aDims.getInt(0);
+        int k = aDims.getInt(1);
+        int n = bDims.getInt(1);
+        if (k != bDims.getInt(0)) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "MATMUL: #columns of first matrix " + k
+                            + " doesn't match #rows of second matrix " + bDims.getInt(0)
+            );
+        }
+
+        switch (aEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] a = ((STInt32ArrayValue) aEntry.getValue()).getValue();
+                int[] b = ((STInt32ArrayValue) bEntry.getValue()).getValue();
+                int[][] bRows = new int[k][];
+                for (int p = 0; p < k; p++) {
+                    bRows[p] = Arrays.copyOfRange(b, p * n, p * n + n);
+                }
+                int[] c = ((STInt32ArrayValue) resize2d(cEntry.getValue(), m, n)).getValue();
+                parallelism.forRows(m, (long) k * n, (from, to) -> {
+                    int[][] cRows = new int[to - from][n];
+                    for (int kk = 0; kk < k; kk += MATMUL_BLOCK_K) {
+                        int kEnd = Math.min(k, kk + MATMUL_BLOCK_K);
+                        for (int jj = 0; jj < n; jj += MATMUL_BLOCK_N) {
+                            int jEnd = Math.min(n, jj + MATMUL_BLOCK_N);
+                            for (int i = from; i < to; i++) {
+                                int[] ci = cRows[i - from];
+                                int ai = i * k;
+                                for (int p = kk; p < kEnd; p++) {
+                                    int aip = a[ai + p];
+                                    int[] bp = bRows[p];
+                                    for (int j = jj; j < jEnd; j++) {
+                                        ci[j] += aip * bp[j];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        System.arraycopy(cRows[i - from], 0, c, i * n, n);
+                    }
+                });
+            }
+                break;
+            case INT64: {
+                long[] a = ((STInt64ArrayValue) aEntry.getValue()).getValue();
+                long[] b = ((STInt64ArrayValue) bEntry.getValue()).getValue();
+                long[][] bRows = new long[k][];
+                for (int p = 0; p < k; p++) {
+                    bRows[p] = Arrays.copyOfRange(b, p * n, p * n + n);
+                }
+                long[] c = ((STInt64ArrayValue) resize2d(cEntry.getValue(), m, n)).getValue();
+                parallelism.forRows(m, (long) k * n, (from, to) -> {
+                    long[][] cRows = new long[to - from][n];
+                    for (int kk = 0; kk < k; kk += MATMUL_BLOCK_K) {
+                        int kEnd = Math.min(k, kk + MATMUL_BLOCK_K);
+                        for (int jj = 0; jj < n; jj += MATMUL_BLOCK_N) {
+                            int jEnd = Math.min(n, jj + MATMUL_BLOCK_N);
+                            for (int i = from; i < to; i++) {
+                                long[] ci = cRows[i - from];
+                                int ai = i * k;
+                                for (int p = kk; p < kEnd; p++) {
+                                    long aip = a[ai + p];
+                                    long[] bp = bRows[p];
+                                    for (int j = jj; j < jEnd; j++) {
+                                        ci[j] += aip * bp[j];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        System.arraycopy(cRows[i - from], 0, c, i * n, n);
+                    }
+                });
+            }
+                break;
+            case FLOAT: {
+                float[] a = ((STFloat32ArrayValue) aEntry.getValue()).getValue();
+                float[] b = ((STFloat32ArrayValue) bEntry.getValue()).getValue();
+                float[][] bRows = new float[k][];
+                for (int p = 0; p < k; p++) {
+                    bRows[p] = Arrays.copyOfRange(b, p * n, p * n + n);
+                }
+                float[] c = ((STFloat32ArrayValue) resize2d(cEntry.getValue(), m, n)).getValue();
+                parallelism.forRows(m, (long) k * n, (from, to) -> {
+                    float[][] cRows = new float[to - from][n];
+                    for (int kk = 0; kk < k; kk += MATMUL_BLOCK_K) {
+                        int kEnd = Math.min(k, kk + MATMUL_BLOCK_K);
+                        for (int jj = 0; jj < n; jj += MATMUL_BLOCK_N) {
+                            int jEnd = Math.min(n, jj + MATMUL_BLOCK_N);
+                            for (int i = from; i < to; i++) {
+                                float[] ci = cRows[i - from];
+                                int ai = i * k;
+                                for (int p = kk; p < kEnd; p++) {
+                                    float aip = a[ai + p];
+                                    float[] bp = bRows[p];
+                                    for (int j = jj; j < jEnd; j++) {
+                                        ci[j] += aip * bp[j];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        System.arraycopy(cRows[i - from], 0, c, i * n, n);
+                    }
+                });
+            }
+                break;
+            case DOUBLE: {
+                double[] a = ((STFloat64ArrayValue) aEntry.getValue()).getValue();
+                double[] b = ((STFloat64ArrayValue) bEntry.getValue()).getValue();
+                double[][] bRows = new double[k][];
+                for (int p = 0; p < k; p++) {
+                    bRows[p] = Arrays.copyOfRange(b, p * n, p * n + n);
+                }
+                double[] c = ((STFloat64ArrayValue) resize2d(cEntry.getValue(), m, n)).getValue();
+                parallelism.forRows(m, (long) k * n, (from, to) -> {
+                    double[][] cRows = new double[to - from][n];
+                    for (int kk = 0; kk < k; kk += MATMUL_BLOCK_K) {
+                        int kEnd = Math.min(k, kk + MATMUL_BLOCK_K);
+                        for (int jj = 0; jj < n; jj += MATMUL_BLOCK_N) {
+                            int jEnd = Math.min(n, jj + MATMUL_BLOCK_N);
+                            for (int i = from; i < to; i++) {
+                                double[] ci = cRows[i - from];
+                                int ai = i * k;
+                                for (int p = kk; p < kEnd; p++) {
+                                    double aip = a[ai + p];
+                                    double[] bp = bRows[p];
+                                    for (int j = jj; j < jEnd; j++) {
+                                        ci[j] += aip * bp[j];
+                                    }
+                                }
+                            }
+                        }
+                    }
+                    for (int i = from; i < to; i++) {
+                        System.arraycopy(cRows[i - from], 0, c, i * n, n);
+                    }
+                });
+            }
+                break;
+            default:
+                throwUnsupportedType(aEntry.getType().getAtomTypeId());
+        }
+    }
+
+    static void matTranspose(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var srcEntry = symbolTable.get(instruction.op1);
+        var dstEntry = symbolTable.get(instruction.op2);
+        checkNotMapped("MATTRANSPOSE", srcEntry, dstEntry);
+        checkSameType("MATTRANSPOSE", srcEntry, dstEntry);
+        var dims = srcEntry.getValue().getArrayDimensions();
+        int m = dims.getInt(0);
+        int n = dims.getInt(1);
+
+        switch (srcEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] src = ((STInt32ArrayValue) srcEntry.getValue()).getValue();
+                int[] dst = ((STInt32ArrayValue) resize2d(dstEntry.getValue(), n, m)).getValue();
+                int[] out = dst == src ? new int[m * n] : dst;
+                parallelism.forRows(n, m, (from, to) -> {
+                    for (int ii = 0; ii < m; ii += TRANSPOSE_BLOCK) {
+                        int iEnd = Math.min(m, ii + TRANSPOSE_BLOCK);
+                        for (int jj = from; jj < to; jj += TRANSPOSE_BLOCK) {
+                            int jEnd = Math.min(to, jj + TRANSPOSE_BLOCK);
+                            for (int i = ii; i < iEnd; i++) {
+                                int si = i * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    out[j * m + i] = src[si + j];
+                                }
+                            }
+                        }
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case INT64: {
+                long[] src = ((STInt64ArrayValue) srcEntry.getValue()).getValue();
+                long[] dst = ((STInt64ArrayValue) resize2d(dstEntry.getValue(), n, m)).getValue();
+                long[] out = dst == src ? new long[m * n] : dst;
+                parallelism.forRows(n, m, (from, to) -> {
+                    for (int ii = 0; ii < m; ii += TRANSPOSE_BLOCK) {
+                        int iEnd = Math.min(m, ii + TRANSPOSE_BLOCK);
+                        for (int jj = from; jj < to; jj += TRANSPOSE_BLOCK) {
+                            int jEnd = Math.min(to, jj + TRANSPOSE_BLOCK);
+                            for (int i = ii; i < iEnd; i++) {
+                                int si = i * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    out[j * m + i] = src[si + j];
+                                }
+                            }
+                        }
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] src = ((STFloat32ArrayValue) srcEntry.getValue()).getValue();
+                float[] dst = ((STFloat32ArrayValue) resize2d(dstEntry.getValue(), n, m)).getValue();
+                float[] out = dst == src ? new float[m * n] : dst;
+                parallelism.forRows(n, m, (from, to) -> {
+                    for (int ii = 0; ii < m; ii += TRANSPOSE_BLOCK) {
+                        int iEnd = Math.min(m, ii + TRANSPOSE_BLOCK);
+                        for (int jj = from; jj < to; jj += TRANSPOSE_BLOCK) {
+                            int jEnd = Math.min(to, jj + TRANSPOSE_BLOCK);
+                            for (int i = ii; i < iEnd; i++) {
+                                int si = i * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    out[j * m + i] = src[si + j];
+                                }
+                            }
+                        }
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] src = ((STFloat64ArrayValue) srcEntry.getValue()).getValue();
+                double[] dst = ((STFloat64ArrayValue) resize2d(dstEntry.getValue(), n, m)).getValue();
+                double[] out = dst == src ? new double[m * n] : dst;
+                parallelism.forRows(n, m, (from, to) -> {
+                    for (int ii = 0; ii < m; ii += TRANSPOSE_BLOCK) {
+                        int iEnd = Math.min(m, ii + TRANSPOSE_BLOCK);
+                        for (int jj = from; jj < to; jj += TRANSPOSE_BLOCK) {
+                            int jEnd = Math.min(to, jj + TRANSPOSE_BLOCK);
+                            for (int i = ii; i < iEnd; i++) {
+                                int si = i * n;
+                                for (int j = jj; j < jEnd; j++) {
+                                    out[j * m + i] = src[si + j];
+                                }
+                            }
+                        }
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(srcEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * dst = src convolved with an odd sized kernel centered on each cell,
+     * cells outside src count as 0. The kernel is flipped, so this is a
+     * convolution rather than a correlation. For each output row, every kernel
+     * weight is applied to a whole source row, shifted into a scratch row
+     * so the multiply-add loop is over aligned arrays and vectorizes.
+     */
+    static void array2dConv(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var srcEntry = symbolTable.get(instruction.op1);
+        var kernelEntry = symbolTable.get(instruction.op2);
+        var dstEntry = symbolTable.get(instruction.result);
+        checkNotMapped("ARRAY2DCONV", srcEntry, kernelEntry, dstEntry);
+        checkSameType("ARRAY2DCONV", srcEntry, kernelEntry);
+        checkSameType("ARRAY2DCONV", srcEntry, dstEntry);
+        var dims = srcEntry.getValue().getArrayDimensions();
+        int m = dims.getInt(0);
+        int n = dims.getInt(1);
+        var kDims = kernelEntry.getValue().getArrayDimensions();
+        int km = kDims.getInt(0);
+        int kn = kDims.getInt(1);
+        if (km % 2 == 0 || kn % 2 == 0) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "ARRAY2DCONV: kernel dimensions must be odd, actual: " + km + "x" + kn
+            );
+        }
+        if (km > 2 * m + 1 || kn > 2 * n + 1) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "ARRAY2DCONV: kernel " + km + "x" + kn + " is larger than 2 * " + m + "x" + n + " + 1"
+            );
+        }
+        int hm = km / 2;
+        int hn = kn / 2;
+
+        switch (srcEntry.getType().getAtomTypeId()) {
+            case INT32: {
+                int[] src = ((STInt32ArrayValue) srcEntry.getValue()).getValue();
+                int[] kernel = ((STInt32ArrayValue) kernelEntry.getValue()).getValue();
+                int[] dst = ((STInt32ArrayValue) resize2d(dstEntry.getValue(), m, n)).getValue();
+                int[] out = dst == src || dst == kernel ? new int[m * n] : dst;
+                parallelism.forRows(m, (long) kernel.length * n, (from, to) -> {
+                    int[] acc = new int[n];
+                    int[] shifted = new int[n];
+                    for (int r = from; r < to; r++) {
+                        Arrays.fill(acc, 0);
+                        for (int kr = 0; kr < km; kr++) {
+                            int sr = r + kr - hm;
+                            if (sr < 0 || sr >= m) {
+                                continue;
+                            }
+                            for (int kc = 0; kc < kn; kc++) {
+                                int w = kernel[(km - 1 - kr) * kn + kn - 1 - kc];
+                                int cFrom = Math.max(0, hn - kc);
+                                int cTo = Math.min(n, n + hn - kc);
+                                System.arraycopy(src, sr * n + cFrom + kc - hn, shifted, cFrom, cTo - cFrom);
+                                Arrays.fill(shifted, 0, cFrom, 0);
+                                Arrays.fill(shifted, cTo, n, 0);
+                                for (int c = 0; c < n; c++) {
+                                    acc[c] += w * shifted[c];
+                                }
+                            }
+                        }
+                        System.arraycopy(acc, 0, out, r * n, n);
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case INT64: {
+                long[] src = ((STInt64ArrayValue) srcEntry.getValue()).getValue();
+                long[] kernel = ((STInt64ArrayValue) kernelEntry.getValue()).getValue();
+                long[] dst = ((STInt64ArrayValue) resize2d(dstEntry.getValue(), m, n)).getValue();
+                long[] out = dst == src || dst == kernel ? new long[m * n] : dst;
+                parallelism.forRows(m, (long) kernel.length * n, (from, to) -> {
+                    long[] acc = new long[n];
+                    long[] shifted = new long[n];
+                    for (int r = from; r < to; r++) {
+                        Arrays.fill(acc, 0);
+                        for (int kr = 0; kr < km; kr++) {
+                            int sr = r + kr - hm;
+                            if (sr < 0 || sr >= m) {
+                                continue;
+                            }
+                            for (int kc = 0; kc < kn; kc++) {
+                                long w = kernel[(km - 1 - kr) * kn + kn - 1 - kc];
+                                int cFrom = Math.max(0, hn - kc);
+                                int cTo = Math.min(n, n + hn - kc);
+                                System.arraycopy(src, sr * n + cFrom + kc - hn, shifted, cFrom, cTo - cFrom);
+                                Arrays.fill(shifted, 0, cFrom, 0);
+                                Arrays.fill(shifted, cTo, n, 0);
+                                for (int c = 0; c < n; c++) {
+                                    acc[c] += w * shifted[c];
+                                }
+                            }
+                        }
+                        System.arraycopy(acc, 0, out, r * n, n);
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case FLOAT: {
+                float[] src = ((STFloat32ArrayValue) srcEntry.getValue()).getValue();
+                float[] kernel = ((STFloat32ArrayValue) kernelEntry.getValue()).getValue();
+                float[] dst = ((STFloat32ArrayValue) resize2d(dstEntry.getValue(), m, n)).getValue();
+                float[] out = dst == src || dst == kernel ? new float[m * n] : dst;
+                parallelism.forRows(m, (long) kernel.length * n, (from, to) -> {
+                    float[] acc = new float[n];
+                    float[] shifted = new float[n];
+                    for (int r = from; r < to; r++) {
+                        Arrays.fill(acc, 0);
+                        for (int kr = 0; kr < km; kr++) {
+                            int sr = r + kr - hm;
+                            if (sr < 0 || sr >= m) {
+                                continue;
+                            }
+                            for (int kc = 0; kc < kn; kc++) {
+                                float w = kernel[(km - 1 - kr) * kn + kn - 1 - kc];
+                                int cFrom = Math.max(0, hn - kc);
+                                int cTo = Math.min(n, n + hn - kc);
+                                System.arraycopy(src, sr * n + cFrom + kc - hn, shifted, cFrom, cTo - cFrom);
+                                Arrays.fill(shifted, 0, cFrom, 0);
+                                Arrays.fill(shifted, cTo, n, 0);
+                                for (int c = 0; c < n; c++) {
+                                    acc[c] += w * shifted[c];
+                                }
+                            }
+                        }
+                        System.arraycopy(acc, 0, out, r * n, n);
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            case DOUBLE: {
+                double[] src = ((STFloat64ArrayValue) srcEntry.getValue()).getValue();
+                double[] kernel = ((STFloat64ArrayValue) kernelEntry.getValue()).getValue();
+                double[] dst = ((STFloat64ArrayValue) resize2d(dstEntry.getValue(), m, n)).getValue();
+                double[] out = dst == src || dst == kernel ? new double[m * n] : dst;
+                parallelism.forRows(m, (long) kernel.length * n, (from, to) -> {
+                    double[] acc = new double[n];
+                    double[] shifted = new double[n];
+                    for (int r = from; r < to; r++) {
+                        Arrays.fill(acc, 0);
+                        for (int kr = 0; kr < km; kr++) {
+                            int sr = r + kr - hm;
+                            if (sr < 0 || sr >= m) {
+                                continue;
+                            }
+                            for (int kc = 0; kc < kn; kc++) {
+                                double w = kernel[(km - 1 - kr) * kn + kn - 1 - kc];
+                                int cFrom = Math.max(0, hn - kc);
+                                int cTo = Math.min(n, n + hn - kc);
+                                System.arraycopy(src, sr * n + cFrom + kc - hn, shifted, cFrom, cTo - cFrom);
+                                Arrays.fill(shifted, 0, cFrom, 0);
+                                Arrays.fill(shifted, cTo, n, 0);
+                                for (int c = 0; c < n; c++) {
+                                    acc[c] += w * shifted[c];
+                                }
+                            }
+                        }
+                        System.arraycopy(acc, 0, out, r * n, n);
+                    }
+                });
+                if (out != dst) {
+                    System.arraycopy(out, 0, dst, 0, out.length);
+                }
+            }
+                break;
+            default:
+                throwUnsupportedType(srcEntry.getType().getAtomTypeId());
+        }
+    }
+
+    /**
+     * Throws unless all the entries hold in-memory arrays. The bulk
+     * builtins work on the backing Java array, and a MAPPED array has none,
+     * its elements are in the mapped file.
+     */
+    static void checkNotMapped(String name, STEntry... entries) {
+        for (var entry : entries) {
+            if (entry.getValue() instanceof STMappedArrayValue) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        name + ": not supported on MAPPED arrays"
+                );
+            }
+        }
+    }
+
+    private static void checkSameType(String name, STEntry entry1, STEntry entry2) {
+        var type1 = entry1.getType().getAtomTypeId();
+        var type2 = entry2.getType().getAtomTypeId();
+        if (type1 != type2) {
+            throw new PuffinBasicRuntimeError(
+                    DATA_TYPE_MISMATCH,
+                    name + ": array data type mismatch: " + type1 + " is not compatible with " + type2
+            );
+        }
+    }
+
+    private static STValue resize2d(STValue array, int rows, int cols) {
+        var dims = array.getArrayDimensions();
+        if (dims.getInt(0) != rows || dims.getInt(1) != cols) {
+            array.setArrayDimensions(IntArrayList.wrap(new int[] {rows, cols}));
+        }
+        return array;
+    }
+
     static void array1DCopy(
             PuffinBasicSymbolTable symbolTable,
             Instruction i0,
@@ -392,6 +983,7 @@ final class ArraysUtil {
         var dst = dstEntry.getValue();
         var dst0 = symbolTable.get(i1.op2).getValue().getInt32();
         var len = symbolTable.get(instruction.op1).getValue().getInt32();
+        checkNotMapped("ARRAY1DCOPY", srcEntry, dstEntry);
         if (srcEntry.getType().getAtomTypeId() != dstEntry.getType().getAtomTypeId()) {
             throw new PuffinBasicRuntimeError(
                     DATA_TYPE_MISMATCH,
@@ -456,25 +1048,37 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dSort(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void array1dSort(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var entry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DSORT", entry);
         var array = entry.getValue();
+        int n = array.getTotalLength();
 
         switch (entry.getType().getAtomTypeId()) {
-            case INT32:
-                Arrays.sort(((STInt32ArrayValue) array).getValue());
+            case INT32: {
+                int[] value = ((STInt32ArrayValue) array).getValue();
+                parallelism.run(n, () -> Arrays.parallelSort(value), () -> Arrays.sort(value));
+            }
                 break;
-            case INT64:
-                Arrays.sort(((STInt64ArrayValue) array).getValue());
+            case INT64: {
+                long[] value = ((STInt64ArrayValue) array).getValue();
+                parallelism.run(n, () -> Arrays.parallelSort(value), () -> Arrays.sort(value));
+            }
                 break;
-            case FLOAT:
-                Arrays.sort(((STFloat32ArrayValue) array).getValue());
+            case FLOAT: {
+                float[] value = ((STFloat32ArrayValue) array).getValue();
+                parallelism.run(n, () -> Arrays.parallelSort(value), () -> Arrays.sort(value));
+            }
                 break;
-            case DOUBLE:
-                Arrays.sort(((STFloat64ArrayValue) array).getValue());
+            case DOUBLE: {
+                double[] value = ((STFloat64ArrayValue) array).getValue();
+                parallelism.run(n, () -> Arrays.parallelSort(value), () -> Arrays.sort(value));
+            }
                 break;
-            case STRING:
-                Arrays.sort(((STStringArrayValue) array).getValue());
+            case STRING: {
+                String[] value = ((STStringArrayValue) array).getValue();
+                parallelism.run(n, () -> Arrays.parallelSort(value), () -> Arrays.sort(value));
+            }
                 break;
             default:
                 throwUnsupportedType(entry.getType().getAtomTypeId());
@@ -483,6 +1087,7 @@ final class ArraysUtil {
 
     static void array1dBinSearch(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DBINSEARCH", arrayEntry);
         var array = arrayEntry.getValue();
         var search = symbolTable.get(instruction.op2).getValue();
         var result = symbolTable.get(instruction.result).getValue();
@@ -509,53 +1114,63 @@ final class ArraysUtil {
         result.setInt32(index);
     }
 
-    static void array1dMin(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void array1dMin(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DMIN", arrayEntry);
         var array = arrayEntry.getValue();
         var result = symbolTable.get(instruction.result).getValue();
+        int n = array.getTotalLength();
         switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32: {
                 int[] value = ((STInt32ArrayValue) array).getValue();
-                var min = Integer.MAX_VALUE;
-                for (var v : value) {
-                    if (v < min) {
-                        min = v;
+                result.setInt32(parallelism.reduce(n, (from, to) -> {
+                    var min = Integer.MAX_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] < min) {
+                            min = value[i];
+                        }
                     }
-                }
-                result.setInt32(min);
+                    return min;
+                }, Math::min));
             }
                 break;
             case INT64: {
                 long[] value = ((STInt64ArrayValue) array).getValue();
-                var min = Long.MAX_VALUE;
-                for (var v : value) {
-                    if (v < min) {
-                        min = v;
+                result.setInt64(parallelism.reduce(n, (from, to) -> {
+                    var min = Long.MAX_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] < min) {
+                            min = value[i];
+                        }
                     }
-                }
-                result.setInt64(min);
+                    return min;
+                }, Math::min));
             }
                 break;
             case FLOAT: {
                 float[] value = ((STFloat32ArrayValue) array).getValue();
-                var min = Float.MAX_VALUE;
-                for (var v : value) {
-                    if (v < min) {
-                        min = v;
+                result.setFloat32(parallelism.reduce(n, (from, to) -> {
+                    var min = Float.MAX_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] < min) {
+                            min = value[i];
+                        }
                     }
-                }
-                result.setFloat32(min);
+                    return min;
+                }, (a, b) -> b < a ? b : a));
             }
                 break;
             case DOUBLE: {
                 double[] value = ((STFloat64ArrayValue) array).getValue();
-                var min = Double.MAX_VALUE;
-                for (var v : value) {
-                    if (v < min) {
-                        min = v;
+                result.setFloat64(parallelism.reduce(n, (from, to) -> {
+                    var min = Double.MAX_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] < min) {
+                            min = value[i];
+                        }
                     }
-                }
-                result.setFloat64(min);
+                    return min;
+                }, (a, b) -> b < a ? b : a));
             }
                 break;
             default:
@@ -563,53 +1178,63 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dMax(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void array1dMax(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DMAX", arrayEntry);
         var array = arrayEntry.getValue();
         var result = symbolTable.get(instruction.result).getValue();
+        int n = array.getTotalLength();
         switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32: {
                 int[] value = ((STInt32ArrayValue) array).getValue();
-                var max = Integer.MIN_VALUE;
-                for (var v : value) {
-                    if (v > max) {
-                        max = v;
+                result.setInt32(parallelism.reduce(n, (from, to) -> {
+                    var max = Integer.MIN_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] > max) {
+                            max = value[i];
+                        }
                     }
-                }
-                result.setInt32(max);
+                    return max;
+                }, Math::max));
             }
             break;
             case INT64: {
                 long[] value = ((STInt64ArrayValue) array).getValue();
-                var max = Long.MIN_VALUE;
-                for (var v : value) {
-                    if (v > max) {
-                        max = v;
+                result.setInt64(parallelism.reduce(n, (from, to) -> {
+                    var max = Long.MIN_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] > max) {
+                            max = value[i];
+                        }
                     }
-                }
-                result.setInt64(max);
+                    return max;
+                }, Math::max));
             }
             break;
             case FLOAT: {
                 float[] value = ((STFloat32ArrayValue) array).getValue();
-                var max = Float.MIN_VALUE;
-                for (var v : value) {
-                    if (v > max) {
-                        max = v;
+                result.setFloat32(parallelism.reduce(n, (from, to) -> {
+                    var max = Float.MIN_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] > max) {
+                            max = value[i];
+                        }
                     }
-                }
-                result.setFloat32(max);
+                    return max;
+                }, (a, b) -> b > a ? b : a));
             }
             break;
             case DOUBLE: {
                 double[] value = ((STFloat64ArrayValue) array).getValue();
-                var max = Double.MIN_VALUE;
-                for (var v : value) {
-                    if (v > max) {
-                        max = v;
+                result.setFloat64(parallelism.reduce(n, (from, to) -> {
+                    var max = Double.MIN_VALUE;
+                    for (int i = from; i < to; i++) {
+                        if (value[i] > max) {
+                            max = value[i];
+                        }
                     }
-                }
-                result.setFloat64(max);
+                    return max;
+                }, (a, b) -> b > a ? b : a));
             }
             break;
             default:
@@ -619,119 +1244,132 @@ final class ArraysUtil {
 
     static void array1dMean(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DMEAN", arrayEntry);
         var result = symbolTable.get(instruction.result).getValue();
-        var stats = array1dSummaryStats(arrayEntry);
-        result.setFloat64(stats.getMean());
+        result.setFloat64(ArrayStats.mean(arrayEntry));
     }
 
     static void array1dStddev(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
-        var array = arrayEntry.getValue();
-        var result = symbolTable.get(instruction.result).getValue();
-        var stats = array1dSummaryStats(arrayEntry);
-        result.setFloat64(Math.sqrt(stats.getVariance()));
-    }
-
-    static void array1dSum(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DSTD", arrayEntry);
         var result = symbolTable.get(instruction.result).getValue();
-        var stats = array1dSummaryStats(arrayEntry);
-        result.setFloat64(stats.getSum());
+        result.setFloat64(ArrayStats.stddev(arrayEntry));
     }
 
-    static void array1dMedian(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void array1dSum(ArrayParallelism parallelism, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DSUM", arrayEntry);
+        var array = arrayEntry.getValue();
         var result = symbolTable.get(instruction.result).getValue();
-        var stats = array1dDescriptiveStats(arrayEntry);
-        result.setFloat64(stats.getPercentile(50));
-    }
-
-    static void array1dPercentile(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        var arrayEntry = symbolTable.get(instruction.op1);
-        var pct = symbolTable.get(instruction.op2).getValue().getFloat64();
-        if (pct < 0 || pct > 100) {
-            throw new PuffinBasicRuntimeError(
-                    PuffinBasicRuntimeError.ErrorCode.DATA_OUT_OF_RANGE,
-                    "Percentile value out of range: " + pct
-            );
-        }
-        var result = symbolTable.get(instruction.result).getValue();
-        var stats = array1dDescriptiveStats(arrayEntry);
-        result.setFloat64(stats.getPercentile(pct));
-    }
-
-    private static SummaryStatistics array1dSummaryStats(STEntry array) {
-        var stats = new SummaryStatistics();
-        switch (array.getType().getAtomTypeId()) {
+        int n = array.getTotalLength();
+        final double sum;
+        switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32: {
-                int[] value = ((STInt32ArrayValue) array.getValue()).getValue();
-                for (int v : value) {
-                    stats.addValue(v);
-                }
+                int[] value = ((STInt32ArrayValue) array).getValue();
+                sum = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += value[i];
+                    }
+                    return s;
+                }, Double::sum);
             }
-            break;
+                break;
             case INT64: {
-                long[] value = ((STInt64ArrayValue) array.getValue()).getValue();
-                for (long v : value) {
-                    stats.addValue(v);
-                }
+                long[] value = ((STInt64ArrayValue) array).getValue();
+                sum = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += value[i];
+                    }
+                    return s;
+                }, Double::sum);
             }
-            break;
+                break;
             case FLOAT: {
-                float[] value = ((STFloat32ArrayValue) array.getValue()).getValue();
-                for (float v : value) {
-                    stats.addValue(v);
-                }
+                float[] value = ((STFloat32ArrayValue) array).getValue();
+                sum = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += value[i];
+                    }
+                    return s;
+                }, Double::sum);
             }
-            break;
+                break;
             case DOUBLE: {
-                double[] value = ((STFloat64ArrayValue) array.getValue()).getValue();
-                for (double v : value) {
-                    stats.addValue(v);
-                }
+                double[] value = ((STFloat64ArrayValue) array).getValue();
+                sum = parallelism.reduce(n, (from, to) -> {
+                    double s = 0;
+                    for (int i = from; i < to; i++) {
+                        s += value[i];
+                    }
+                    return s;
+                }, Double::sum);
             }
-            break;
+                break;
             default:
-                throwUnsupportedType(array.getType().getAtomTypeId());
+                throwUnsupportedType(arrayEntry.getType().getAtomTypeId());
+                return;
         }
-        return stats;
+        result.setFloat64(sum);
+    }
+
+    static void array1dMedian(ArrayStats stats, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DMEDIAN", arrayEntry);
+        var result = symbolTable.get(instruction.result).getValue();
+        result.setFloat64(stats.percentile(arrayEntry, 50));
+    }
+
+    static void array1dPercentile(ArrayStats stats, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY1DPCT", arrayEntry);
+        var pct = symbolTable.get(instruction.op2).getValue().getFloat64();
+        var result = symbolTable.get(instruction.result).getValue();
+        result.setFloat64(stats.percentile(arrayEntry, pct));
     }
 
-    private static DescriptiveStatistics array1dDescriptiveStats(STEntry array) {
-        var stats = new DescriptiveStatistics();
-        switch (array.getType().getAtomTypeId()) {
+    static void array1dPercentiles(ArrayStats stats, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var arrayEntry = symbolTable.get(instruction.op1);
+        var pctsEntry = symbolTable.get(instruction.op2);
+        checkNotMapped("ARRAY1DPCTS", arrayEntry, pctsEntry, symbolTable.get(instruction.result));
+        var resultArray = symbolTable.get(instruction.result).getValue();
+        var pctsArray = pctsEntry.getValue();
+        int n = pctsArray.getTotalLength();
+        double[] pcts = new double[n];
+        switch (pctsEntry.getType().getAtomTypeId()) {
             case INT32: {
-                int[] value = ((STInt32ArrayValue) array.getValue()).getValue();
-                for (int v : value) {
-                    stats.addValue(v);
+                int[] value = ((STInt32ArrayValue) pctsArray).getValue();
+                for (int i = 0; i < n; i++) {
+                    pcts[i] = value[i];
                 }
             }
-            break;
+                break;
             case INT64: {
-                long[] value = ((STInt64ArrayValue) array.getValue()).getValue();
-                for (long v : value) {
-                    stats.addValue(v);
+                long[] value = ((STInt64ArrayValue) pctsArray).getValue();
+                for (int i = 0; i < n; i++) {
+                    pcts[i] = value[i];
                 }
             }
-            break;
+                break;
             case FLOAT: {
-                float[] value = ((STFloat32ArrayValue) array.getValue()).getValue();
-                for (float v : value) {
-                    stats.addValue(v);
-                }
-            }
-            break;
-            case DOUBLE: {
-                double[] value = ((STFloat64ArrayValue) array.getValue()).getValue();
-                for (double v : value) {
-                    stats.addValue(v);
+                float[] value = ((STFloat32ArrayValue) pctsArray).getValue();
+                for (int i = 0; i < n; i++) {
+                    pcts[i] = value[i];
                 }
             }
-            break;
+                break;
+            case DOUBLE:
+                System.arraycopy(((STFloat64ArrayValue) pctsArray).getValue(), 0, pcts, 0, n);
+                break;
             default:
-                throwUnsupportedType(array.getType().getAtomTypeId());
+                throwUnsupportedType(pctsEntry.getType().getAtomTypeId());
+        }
+        if (resultArray.getTotalLength() != n) {
+            resultArray.setArrayDimensions(IntArrayList.wrap(new int[] {n}));
         }
-        return stats;
+        stats.percentiles(arrayEntry, pcts, ((STFloat64ArrayValue) resultArray).getValue());
     }
 
     static void array2dFindRow(
@@ -743,6 +1381,7 @@ final class ArraysUtil {
         var i2 = params.get(1);
 
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY2DFINDROW", arrayEntry);
         var array = arrayEntry.getValue();
         var search = symbolTable.get(instruction.op2).getValue();
         var result = symbolTable.get(instruction.result).getValue();
@@ -790,6 +1429,7 @@ final class ArraysUtil {
         var i2 = params.get(1);
 
         var arrayEntry = symbolTable.get(instruction.op1);
+        checkNotMapped("ARRAY2DFINDCOLUMN", arrayEntry);
         var array = arrayEntry.getValue();
         var search = symbolTable.get(instruction.op2).getValue();
         var result = symbolTable.get(instruction.result).getValue();
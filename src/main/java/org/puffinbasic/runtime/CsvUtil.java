@@ -0,0 +1,356 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STFloat32ArrayValue;
+import org.puffinbasic.domain.STObjects.STFloat64ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt32ArrayValue;
+import org.puffinbasic.domain.STObjects.STInt64ArrayValue;
+import org.puffinbasic.domain.STObjects.STStringArrayValue;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+import static org.puffinbasic.runtime.Functions.throwUnsupportedType;
+
+final class CsvUtil {
+
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Keeps the parser of the last LOADCSV open, so that loading a file
+     * in consecutive chunks continues where the previous chunk ended.
+     * The parser is dropped when SAVECSV writes the file, or when the file
+     * size or modified time changed since it was opened.
+     */
+    static final class CsvState {
+        private String path;
+        private int skip;
+        private long nextRecord;
+        private long size;
+        private FileTime lastModified;
+        private CSVParser parser;
+        private Iterator<CSVRecord> records;
+
+        private boolean canContinue(String path, int skip, long first) {
+            if (parser == null
+                    || !this.path.equals(path)
+                    || this.skip != skip
+                    || this.nextRecord != first)
+            {
+                return false;
+            }
+            try {
+                var file = Paths.get(path);
+                return Files.size(file) == size && Files.getLastModifiedTime(file).equals(lastModified);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void open(String path, int skip, long first) {
+            close();
+            try {
+                var file = Paths.get(path);
+                this.size = Files.size(file);
+                this.lastModified = Files.getLastModifiedTime(file);
+                var reader = new BufferedReader(new InputStreamReader(
+                        Files.newInputStream(file), StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+                this.parser = CSVFormat.DEFAULT.parse(reader);
+            } catch (IOException e) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Failed to open file '" + path + "' for reading, error: " + e.getMessage()
+                );
+            }
+            this.path = path;
+            this.skip = skip;
+            this.records = parser.iterator();
+            for (long i = 0; i < skip + first && records.hasNext(); i++) {
+                records.next();
+            }
+            this.nextRecord = first;
+        }
+
+        void invalidate(String path) {
+            if (parser != null && this.path.equals(path)) {
+                close();
+            }
+        }
+
+        void close() {
+            if (parser != null) {
+                try {
+                    parser.close();
+                } catch (IOException e) {
+                    throw new PuffinBasicRuntimeError(
+                            IO_ERROR,
+                            "Failed to close file '" + path + "', error: " + e.getMessage()
+                    );
+                } finally {
+                    parser = null;
+                    records = null;
+                }
+            }
+        }
+    }
+
+    static void loadCsv(
+            CsvState state,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var path = symbolTable.get(instruction.op1).getValue().getString();
+        var skip = symbolTable.get(instruction.op2).getValue().getInt32();
+        var first = symbolTable.get(params.get(0).op1).getValue().getInt64();
+        var count = symbolTable.get(params.get(0).op2).getValue().getInt32();
+        if (skip < 0 || first < 0) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "LOADCSV: skip and first row must be >= 0, actual skip=" + skip + ", first=" + first
+            );
+        }
+
+        int numColumns = params.size() - 1;
+        var columns = new Column[numColumns];
+        for (int i = 0; i < numColumns; i++) {
+            var param = params.get(i + 1);
+            var entry = symbolTable.get(param.op1);
+            ArraysUtil.checkNotMapped("LOADCSV", entry);
+            var colIndex = symbolTable.get(param.op2).getValue().getInt32();
+            if (colIndex < 0) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "LOADCSV: column index must be >= 0, actual=" + colIndex
+                );
+            }
+            columns[i] = new Column(entry.getType().getAtomTypeId(), colIndex, count);
+        }
+
+        if (!state.canContinue(path, skip, first)) {
+            state.open(path, skip, first);
+        }
+
+        int numRows = 0;
+        var records = state.records;
+        while ((count < 0 || numRows < count) && records.hasNext()) {
+            var record = records.next();
+            for (var column : columns) {
+                if (column.index >= record.size()) {
+                    throw new PuffinBasicRuntimeError(
+                            IO_ERROR,
+                            "LOADCSV: record " + record.getRecordNumber()
+                                    + " has no column " + column.index + ": " + record
+                    );
+                }
+                column.add(record.get(column.index), record.getRecordNumber());
+            }
+            numRows++;
+        }
+        state.nextRecord = first + numRows;
+        if (!records.hasNext()) {
+            state.close();
+        }
+
+        for (int i = 0; i < numColumns; i++) {
+            columns[i].storeInto(symbolTable.get(params.get(i + 1).op1).getValue(), numRows);
+        }
+    }
+
+    static void saveCsv(
+            CsvState state,
+            PuffinBasicSymbolTable symbolTable,
+            List<Instruction> params,
+            Instruction instruction)
+    {
+        var path = symbolTable.get(instruction.op1).getValue().getString();
+        int numColumns = params.size();
+        var arrays = new STValue[numColumns];
+        var types = new PuffinBasicAtomTypeId[numColumns];
+        String[] headers = null;
+        int numRows = -1;
+        for (int i = 0; i < numColumns; i++) {
+            var param = params.get(i);
+            var entry = symbolTable.get(param.op1);
+            ArraysUtil.checkNotMapped("SAVECSV", entry);
+            arrays[i] = entry.getValue();
+            types[i] = entry.getType().getAtomTypeId();
+            if (param.op2 != NULL_ID) {
+                if (headers == null) {
+                    headers = new String[numColumns];
+                }
+                headers[i] = symbolTable.get(param.op2).getValue().getString();
+            }
+            var len = arrays[i].getTotalLength();
+            if (numRows == -1) {
+                numRows = len;
+            } else if (numRows != len) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "SAVECSV: array length mismatch: " + numRows + " vs " + len
+                );
+            }
+        }
+
+        state.invalidate(path);
+        try (var writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(path)), StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+             var printer = new CSVPrinter(writer, CSVFormat.DEFAULT))
+        {
+            if (headers != null) {
+                printer.printRecord((Object[]) headers);
+            }
+            for (int row = 0; row < numRows; row++) {
+                for (int i = 0; i < numColumns; i++) {
+                    printer.print(formatCell(types[i], arrays[i], row));
+                }
+                printer.println();
+            }
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to write file '" + path + "', error: " + e.getMessage()
+            );
+        }
+    }
+
+    private static String formatCell(PuffinBasicAtomTypeId type, STValue array, int row) {
+        switch (type) {
+            case INT32:
+                return Integer.toString(((STInt32ArrayValue) array).getValue()[row]);
+            case INT64:
+                return Long.toString(((STInt64ArrayValue) array).getValue()[row]);
+            case FLOAT:
+                return Float.toString(((STFloat32ArrayValue) array).getValue()[row]);
+            case DOUBLE:
+                return Double.toString(((STFloat64ArrayValue) array).getValue()[row]);
+            case STRING:
+                return ((STStringArrayValue) array).getValue()[row];
+            default:
+                throwUnsupportedType(type);
+                return null;
+        }
+    }
+
+    /**
+     * Accumulates one CSV column into a primitive list of the array's type.
+     */
+    private static final class Column {
+        private final PuffinBasicAtomTypeId type;
+        private final int index;
+        private IntArrayList int32s;
+        private LongArrayList int64s;
+        private FloatArrayList float32s;
+        private DoubleArrayList float64s;
+        private ObjectArrayList<String> strings;
+
+        Column(PuffinBasicAtomTypeId type, int index, int expectedRows) {
+            this.type = type;
+            this.index = index;
+            int capacity = expectedRows > 0 ? expectedRows : 1024;
+            switch (type) {
+                case INT32:
+                    int32s = new IntArrayList(capacity);
+                    break;
+                case INT64:
+                    int64s = new LongArrayList(capacity);
+                    break;
+                case FLOAT:
+                    float32s = new FloatArrayList(capacity);
+                    break;
+                case DOUBLE:
+                    float64s = new DoubleArrayList(capacity);
+                    break;
+                case STRING:
+                    strings = new ObjectArrayList<>(capacity);
+                    break;
+                default:
+                    throwUnsupportedType(type);
+            }
+        }
+
+        void add(String cell, long recordNumber) {
+            if (type == PuffinBasicAtomTypeId.STRING) {
+                strings.add(cell);
+                return;
+            }
+            var text = cell.trim();
+            try {
+                switch (type) {
+                    case INT32:
+                        int32s.add(text.isEmpty() ? 0 : Integer.parseInt(text));
+                        break;
+                    case INT64:
+                        int64s.add(text.isEmpty() ? 0 : Long.parseLong(text));
+                        break;
+                    case FLOAT:
+                        float32s.add(text.isEmpty() ? 0 : Float.parseFloat(text));
+                        break;
+                    case DOUBLE:
+                        float64s.add(text.isEmpty() ? 0 : Double.parseDouble(text));
+                        break;
+                }
+            } catch (NumberFormatException e) {
+                throw new PuffinBasicRuntimeError(
+                        DATA_TYPE_MISMATCH,
+                        "LOADCSV: record " + recordNumber + ", column " + index
+                                + ": '" + cell + "' is not a valid " + type
+                );
+            }
+        }
+
+        void storeInto(STValue array, int numRows) {
+            if (array.getTotalLength() != numRows) {
+                array.setArrayDimensions(IntArrayList.wrap(new int[] {numRows}));
+            }
+            switch (type) {
+                case INT32:
+                    System.arraycopy(int32s.elements(), 0,
+                            ((STInt32ArrayValue) array).getValue(), 0, numRows);
+                    break;
+                case INT64:
+                    System.arraycopy(int64s.elements(), 0,
+                            ((STInt64ArrayValue) array).getValue(), 0, numRows);
+                    break;
+                case FLOAT:
+                    System.arraycopy(float32s.elements(), 0,
+                            ((STFloat32ArrayValue) array).getValue(), 0, numRows);
+                    break;
+                case DOUBLE:
+                    System.arraycopy(float64s.elements(), 0,
+                            ((STFloat64ArrayValue) array).getValue(), 0, numRows);
+                    break;
+                case STRING:
+                    System.arraycopy(strings.elements(), 0,
+                            ((STStringArrayValue) array).getValue(), 0, numRows);
+                    break;
+            }
+        }
+    }
+}
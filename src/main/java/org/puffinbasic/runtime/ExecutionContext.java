@@ -0,0 +1,81 @@
+package org.puffinbasic.runtime;
+
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.file.PuffinBasicFiles;
+import org.puffinbasic.file.SystemInputOutputFile;
+import org.puffinbasic.parser.CompiledProgram;
+import org.puffinbasic.runtime.ArraysUtil.MappedArrays;
+import org.puffinbasic.runtime.CsvUtil.CsvState;
+import org.puffinbasic.runtime.GraphicsRuntime.GraphicsState;
+
+import java.io.PrintStream;
+
+/**
+ * Everything one execution of a compiled program reads and writes:
+ * the values and scopes (a copy of the program's symbol table), the
+ * output and environment, open files, graphics, sound, CSV state and
+ * MAPPED arrays.
+ * A context is used by one run; the program it came from is not touched.
+ */
+public final class ExecutionContext implements AutoCloseable {
+
+    private final PuffinBasicSymbolTable symbolTable;
+    private final PrintStream out;
+    private final Environment env;
+    private final PuffinBasicFiles files;
+    private final GraphicsState graphicsState;
+    private final SoundState soundState;
+    private final CsvState csvState;
+    private final MappedArrays mappedArrays;
+
+    public ExecutionContext(CompiledProgram program, PrintStream out, Environment env) {
+        this.symbolTable = program.newSymbolTable();
+        this.out = out;
+        this.env = env;
+        this.files = new PuffinBasicFiles(new SystemInputOutputFile(System.in, out));
+        this.graphicsState = new GraphicsState();
+        this.soundState = new SoundState();
+        this.csvState = new CsvState();
+        this.mappedArrays = new MappedArrays();
+    }
+
+    public PuffinBasicSymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    PrintStream getOut() {
+        return out;
+    }
+
+    Environment getEnv() {
+        return env;
+    }
+
+    PuffinBasicFiles getFiles() {
+        return files;
+    }
+
+    GraphicsState getGraphicsState() {
+        return graphicsState;
+    }
+
+    SoundState getSoundState() {
+        return soundState;
+    }
+
+    CsvState getCsvState() {
+        return csvState;
+    }
+
+    MappedArrays getMappedArrays() {
+        return mappedArrays;
+    }
+
+    @Override
+    public void close() {
+        GraphicsRuntime.end(graphicsState);
+        soundState.close();
+        csvState.close();
+        mappedArrays.close();
+    }
+}
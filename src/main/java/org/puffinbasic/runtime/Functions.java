@@ -682,13 +682,58 @@ public class Functions {
         symbolTable.get(instruction.result).getValue().setString(result);
     }
 
-    static void splitdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void splitdlr(RegexCache regexCache, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
         var str = symbolTable.get(instruction.op1).getValue().getString();
         var regex = symbolTable.get(instruction.op2).getValue().getString();
-        String[] tokens = str.split(regex);
+        String[] tokens = regexCache.split(str, regex);
         STRING.copyArray(tokens, symbolTable.get(instruction.result).getValue());
     }
 
+    static void regexmatch(RegexCache regexCache, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var str = symbolTable.get(instruction.op1).getValue().getString();
+        var regex = symbolTable.get(instruction.op2).getValue().getString();
+        var matches = regexCache.get(regex).matcher(str).matches();
+        symbolTable.get(instruction.result).getValue().setInt32(matches ? -1 : 0);
+    }
+
+    static void regexfinddlr(RegexCache regexCache, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+        var str = symbolTable.get(instruction.op1).getValue().getString();
+        var regex = symbolTable.get(instruction.op2).getValue().getString();
+        var matcher = regexCache.get(regex).matcher(str);
+        String[] groups;
+        if (matcher.find()) {
+            groups = new String[matcher.groupCount() + 1];
+            for (int i = 0; i < groups.length; i++) {
+                var group = matcher.group(i);
+                groups[i] = group == null ? "" : group;
+            }
+        } else {
+            groups = new String[0];
+        }
+        STRING.copyArray(groups, symbolTable.get(instruction.result).getValue());
+    }
+
+    static void regexreplacedlr(
+            RegexCache regexCache,
+            PuffinBasicSymbolTable symbolTable,
+            Instruction param,
+            Instruction instruction)
+    {
+        var str = symbolTable.get(param.op1).getValue().getString();
+        var regex = symbolTable.get(param.op2).getValue().getString();
+        var replacement = symbolTable.get(instruction.op1).getValue().getString();
+        String result;
+        try {
+            result = regexCache.get(regex).matcher(str).replaceAll(replacement);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new PuffinBasicRuntimeError(
+                    ILLEGAL_FUNCTION_PARAM,
+                    "Bad replacement '" + replacement + "': " + e.getMessage()
+            );
+        }
+        symbolTable.get(instruction.result).getValue().setString(result);
+    }
+
     static void throwUnsupportedType(PuffinBasicAtomTypeId type) {
         throw new PuffinBasicInternalError(
                 "Data type " + type + " is not supported"
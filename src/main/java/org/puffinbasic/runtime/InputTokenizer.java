@@ -0,0 +1,308 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+
+/**
+ * Splits an INPUT line into comma separated fields (CSV quoting rules)
+ * and parses numeric fields in place, without a String per field.
+ * Anything outside the simple decimal forms falls back to the JDK parsers,
+ * so accepted inputs and error messages stay the same.
+ */
+final class InputTokenizer {
+
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+    private static final long MAX_EXACT_DOUBLE_MANTISSA = 1L << 53;
+    private static final long MAX_EXACT_FLOAT_MANTISSA = 1L << 24;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+    private static final double[] DOUBLE_POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+            1e21, 1e22
+    };
+    private static final float[] FLOAT_POWERS_OF_TEN = {
+            1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f
+    };
+
+    private final IntArrayList starts;
+    private final IntArrayList ends;
+    private final IntArrayList quoted;
+    private String line;
+    private boolean scanNegative;
+    private long scanMantissa;
+    private int scanExponent;
+
+    InputTokenizer() {
+        this.starts = new IntArrayList();
+        this.ends = new IntArrayList();
+        this.quoted = new IntArrayList();
+    }
+
+    /**
+     * Returns the number of fields in the line.
+     */
+    int tokenize(String line) {
+        this.line = line;
+        starts.clear();
+        ends.clear();
+        quoted.clear();
+
+        final int len = line.length();
+        int pos = 0;
+        while (true) {
+            if (pos < len && line.charAt(pos) == QUOTE) {
+                int start = ++pos;
+                boolean escaped = false;
+                while (true) {
+                    if (pos >= len) {
+                        throw new PuffinBasicRuntimeError(
+                                IO_ERROR,
+                                "Failed to read inputs, error: EOF reached before encapsulated token finished"
+                        );
+                    }
+                    if (line.charAt(pos) == QUOTE) {
+                        if (pos + 1 < len && line.charAt(pos + 1) == QUOTE) {
+                            escaped = true;
+                            pos += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    pos++;
+                }
+                addField(start, pos, escaped ? 2 : 1);
+                pos++;
+                while (pos < len && line.charAt(pos) != DELIMITER) {
+                    if (!Character.isWhitespace(line.charAt(pos))) {
+                        throw new PuffinBasicRuntimeError(
+                                IO_ERROR,
+                                "Failed to read inputs, error: invalid char between encapsulated token and delimiter"
+                        );
+                    }
+                    pos++;
+                }
+            } else {
+                int start = pos;
+                while (pos < len && line.charAt(pos) != DELIMITER) {
+                    pos++;
+                }
+                addField(start, pos, 0);
+            }
+            if (pos >= len) {
+                break;
+            }
+            pos++;
+        }
+        return starts.size();
+    }
+
+    private void addField(int start, int end, int quoteState) {
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        starts.add(start);
+        ends.add(end);
+        quoted.add(quoteState);
+    }
+
+    void assign(int i, PuffinBasicAtomTypeId dataType, STValue value) {
+        final int start = starts.getInt(i);
+        final int end = ends.getInt(i);
+        if (quoted.getInt(i) == 2) {
+            var text = line.substring(start, end).replace("\"\"", "\"").trim();
+            assignParsed(text, dataType, value);
+            return;
+        }
+        switch (dataType) {
+            case INT32:
+                value.setInt32(parseInt32(start, end));
+                break;
+            case INT64:
+                value.setInt64(parseInt64(start, end));
+                break;
+            case FLOAT:
+                value.setFloat32(parseFloat32(start, end));
+                break;
+            case DOUBLE:
+                value.setFloat64(parseFloat64(start, end));
+                break;
+            case STRING:
+                value.setString(line.substring(start, end));
+                break;
+        }
+    }
+
+    String recordToString() {
+        var sb = new StringBuilder("[");
+        for (int i = 0; i < starts.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(line, starts.getInt(i), ends.getInt(i));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static void assignParsed(String text, PuffinBasicAtomTypeId dataType, STValue value) {
+        switch (dataType) {
+            case INT32:
+                value.setInt32(Integer.parseInt(text));
+                break;
+            case INT64:
+                value.setInt64(Long.parseLong(text));
+                break;
+            case FLOAT:
+                value.setFloat32(Float.parseFloat(text));
+                break;
+            case DOUBLE:
+                value.setFloat64(Double.parseDouble(text));
+                break;
+            case STRING:
+                value.setString(text);
+                break;
+        }
+    }
+
+    private int parseInt32(int start, int end) {
+        long parsed = parseSmallLong(start, end);
+        if (parsed != Long.MIN_VALUE && parsed >= Integer.MIN_VALUE && parsed <= Integer.MAX_VALUE) {
+            return (int) parsed;
+        }
+        return Integer.parseInt(line.substring(start, end));
+    }
+
+    private long parseInt64(int start, int end) {
+        long parsed = parseSmallLong(start, end);
+        if (parsed != Long.MIN_VALUE) {
+            return parsed;
+        }
+        return Long.parseLong(line.substring(start, end));
+    }
+
+    /**
+     * Parses [+-]digits with at most 18 digits, returns Long.MIN_VALUE
+     * when the field needs the JDK parser.
+     */
+    private long parseSmallLong(int start, int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            negative = line.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos == end || end - pos > MAX_MANTISSA_DIGITS) {
+            return Long.MIN_VALUE;
+        }
+        long result = 0;
+        for (; pos < end; pos++) {
+            int digit = line.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            result = result * 10 + digit;
+        }
+        return negative ? -result : result;
+    }
+
+    private float parseFloat32(int start, int end) {
+        if (scanDecimal(start, end)
+                && scanMantissa < MAX_EXACT_FLOAT_MANTISSA
+                && scanExponent >= -10 && scanExponent <= 10)
+        {
+            float result = scanExponent >= 0
+                    ? (float) scanMantissa * FLOAT_POWERS_OF_TEN[scanExponent]
+                    : (float) scanMantissa / FLOAT_POWERS_OF_TEN[-scanExponent];
+            return scanNegative ? -result : result;
+        }
+        return Float.parseFloat(line.substring(start, end));
+    }
+
+    private double parseFloat64(int start, int end) {
+        if (scanDecimal(start, end)
+                && scanMantissa < MAX_EXACT_DOUBLE_MANTISSA
+                && scanExponent >= -22 && scanExponent <= 22)
+        {
+            double result = scanExponent >= 0
+                    ? (double) scanMantissa * DOUBLE_POWERS_OF_TEN[scanExponent]
+                    : (double) scanMantissa / DOUBLE_POWERS_OF_TEN[-scanExponent];
+            return scanNegative ? -result : result;
+        }
+        return Double.parseDouble(line.substring(start, end));
+    }
+
+    /**
+     * Scans [+-]digits[.digits][(e|E)[+-]digits] into mantissa and decimal
+     * exponent. With an exactly representable mantissa and power of ten,
+     * a single multiply or divide is correctly rounded.
+     */
+    private boolean scanDecimal(int start, int end) {
+        int pos = start;
+        scanNegative = false;
+        if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+            scanNegative = line.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+        for (; pos < end; pos++) {
+            char c = line.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (mantissa != 0 || c != '0') {
+                    if (++significant > MAX_MANTISSA_DIGITS) {
+                        return false;
+                    }
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (pos < end) {
+            char c = line.charAt(pos);
+            if (c != 'e' && c != 'E') {
+                return false;
+            }
+            pos++;
+            boolean negativeExponent = false;
+            if (pos < end && (line.charAt(pos) == '-' || line.charAt(pos) == '+')) {
+                negativeExponent = line.charAt(pos) == '-';
+                pos++;
+            }
+            if (pos == end || end - pos > 4) {
+                return false;
+            }
+            int value = 0;
+            for (; pos < end; pos++) {
+                int digit = line.charAt(pos) - '0';
+                if (digit < 0 || digit > 9) {
+                    return false;
+                }
+                value = value * 10 + digit;
+            }
+            exponent += negativeExponent ? -value : value;
+        }
+        scanExponent = mantissa == 0 ? 0 : exponent;
+        scanMantissa = mantissa;
+        return true;
+    }
+}
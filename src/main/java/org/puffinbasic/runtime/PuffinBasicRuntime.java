@@ -1,16 +1,18 @@
 package org.puffinbasic.runtime;
 
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntStack;
+import org.puffinbasic.domain.ObjectFile;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.file.PuffinBasicFiles;
-import org.puffinbasic.file.SystemInputOutputFile;
+import org.puffinbasic.parser.CompiledProgram;
 import org.puffinbasic.parser.PuffinBasicIR;
 import org.puffinbasic.parser.PuffinBasicIR.Instruction;
 import org.puffinbasic.runtime.ArraysUtil.ArrayState;
+import org.puffinbasic.runtime.ArraysUtil.MappedArrays;
+import org.puffinbasic.runtime.CsvUtil.CsvState;
 import org.puffinbasic.runtime.Formatter.FormatterCache;
 import org.puffinbasic.runtime.GraphicsRuntime.GraphicsState;
 import org.puffinbasic.runtime.Statements.ReadData;
@@ -23,89 +25,82 @@ import java.util.stream.Collectors;
 
 import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 import static org.puffinbasic.parser.PuffinBasicIR.OpCode.DATA;
-import static org.puffinbasic.parser.PuffinBasicIR.OpCode.LABEL;
 
 public class PuffinBasicRuntime {
 
-    private final PuffinBasicIR ir;
+    private final CompiledProgram program;
+    private final ExecutionContext context;
+    private final PuffinBasicSymbolTable symbolTable;
     private PrintBuffer printBuffer;
     private ArrayState arrayState;
     private IntStack gosubReturnLabelStack;
     private int programCounter;
     private Random random;
-    private Int2IntMap labelToInstrNum;
-    private Int2IntMap lineNumToInstrNum;
     private List<Instruction> params;
     private FormatterCache formatterCache;
-    private PuffinBasicFiles files;
+    private InputTokenizer inputTokenizer;
+    private ArrayStats arrayStats;
+    private final CsvState csvState;
+    private final MappedArrays mappedArrays;
+    private RegexCache regexCache;
+    private final PuffinBasicFiles files;
     private ReadData readData;
-    private final PrintStream out;
     private final Environment env;
-    private GraphicsState graphicsState;
-    private SoundState soundState;
+    private final ArrayParallelism arrayParallelism;
+    private final GraphicsState graphicsState;
+    private final SoundState soundState;
 
     public PuffinBasicRuntime(PuffinBasicIR ir, PrintStream out, Environment env) {
-        this.ir = ir;
-        this.out = out;
-        this.env = env;
+        this(new CompiledProgram(ir), out, env, ArrayParallelism.ofDefault());
     }
 
-    private Int2IntMap computeLabelToInstructionNumber(List<Instruction> instructions) {
-        Int2IntMap labelToInstrNum = new Int2IntOpenHashMap();
-        for (int i = 0; i < instructions.size(); i++) {
-            var instr = instructions.get(i);
-            if (instr.opCode == LABEL) {
-                labelToInstrNum.put(instr.op1, i);
-            }
-        }
-        return labelToInstrNum;
+    public PuffinBasicRuntime(
+            CompiledProgram program, PrintStream out, Environment env, ArrayParallelism arrayParallelism)
+    {
+        this(program, new ExecutionContext(program, out, env), arrayParallelism);
     }
 
-    private int getInstrNumForLabel(int id) {
-        var instrNum = labelToInstrNum.getOrDefault(id, -1);
-        if (instrNum == -1) {
-            throw new PuffinBasicInternalError("Failed to find instruction# for label: " + id);
-        }
-        return instrNum;
+    public PuffinBasicRuntime(
+            CompiledProgram program, ExecutionContext context, ArrayParallelism arrayParallelism)
+    {
+        this.program = program;
+        this.context = context;
+        this.symbolTable = context.getSymbolTable();
+        this.files = context.getFiles();
+        this.env = context.getEnv();
+        this.csvState = context.getCsvState();
+        this.mappedArrays = context.getMappedArrays();
+        this.graphicsState = context.getGraphicsState();
+        this.soundState = context.getSoundState();
+        this.arrayParallelism = arrayParallelism;
     }
 
-    private Int2IntMap computeLineNumberToInstructionNumber(List<Instruction> instructions) {
-        var linenumToInstrNum = new Int2IntOpenHashMap();
-        int instrNum = 0;
-        for (var instruction : instructions) {
-            int lineNumber = instruction.getInputRef().lineNumber;
-            if (lineNumber >= 0) {
-                linenumToInstrNum.putIfAbsent(lineNumber, instrNum);
-            }
-            ++instrNum;
-        }
-        return linenumToInstrNum;
-    }
-
-    private int getInstrNumForLineNumber(int lineNumber) {
-        var instrNum = lineNumToInstrNum.getOrDefault(lineNumber, -1);
-        if (instrNum == -1) {
-            throw new PuffinBasicInternalError("Failed to find instruction# for line#: " + lineNumber);
+    public void run() {
+        try {
+            execute();
+        } catch (Exception e) {
+            e.printStackTrace(System.err);
         }
-        return instrNum;
     }
 
-    public void run() {
-        var instructions = ir.getInstructions();
-        this.labelToInstrNum = computeLabelToInstructionNumber(instructions);
-        this.lineNumToInstrNum = computeLineNumberToInstructionNumber(instructions);
+    /**
+     * Runs the program like run, but throws the first error instead of
+     * printing it, for callers that embed the interpreter.
+     */
+    public void execute() {
+        var instructions = program.getInstructions();
         this.printBuffer = new PrintBuffer();
         this.arrayState = new ArrayState();
         this.gosubReturnLabelStack = new IntArrayList();
         this.random = new Random();
         this.formatterCache = new FormatterCache();
+        this.inputTokenizer = new InputTokenizer();
+        this.arrayStats = new ArrayStats();
+        this.regexCache = new RegexCache();
         this.params = new ArrayList<>(4);
-        this.files = new PuffinBasicFiles(new SystemInputOutputFile(System.in, out));
-        this.readData = processDataInstructions(instructions);
-        this.graphicsState = new GraphicsState();
-        this.soundState = new SoundState();
 
         try {
+            this.readData = processDataInstructions(instructions);
             var numInstructions = instructions.size();
             boolean end = false;
             while (!end && programCounter < numInstructions) {
@@ -113,22 +108,19 @@ public class PuffinBasicRuntime {
                 try {
                     end = runInstruction(instruction);
                 } catch (PuffinBasicRuntimeError e) {
-                    throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+                    throw new PuffinBasicRuntimeError(e, instruction, program.getCodeStreamFor(instruction));
                 } catch (Exception e) {
-                    throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+                    throw new PuffinBasicRuntimeError(e, instruction, program.getCodeStreamFor(instruction));
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace(System.err);
         } finally {
-            GraphicsRuntime.end(graphicsState);
-            soundState.close();
+            context.close();
         }
     }
 
     private ReadData processDataInstructions(List<Instruction> instructions) {
         return new ReadData(instructions.stream().filter(i -> i.opCode == DATA).map(instruction ->
-                ir.getSymbolTable().get(instruction.op1)
+                symbolTable.get(instruction.op1)
         ).collect(Collectors.toList()));
     }
 
@@ -137,13 +129,13 @@ public class PuffinBasicRuntime {
 
         switch (instruction.opCode) {
             case VARREF:
-                Types.varref(ir.getSymbolTable(), instruction);
+                Types.varref(symbolTable, instruction);
                 break;
             case DIM: {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                ArraysUtil.dim(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.dim(mappedArrays, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -151,7 +143,7 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                ArraysUtil.allocArray(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.allocArray(symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -159,23 +151,23 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                ArraysUtil.reallocArray(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.reallocArray(symbolTable, params, instruction);
                 params.clear();
             }
             break;
             case CREATE_INSTANCE:
-                Statements.createInstance(ir.getSymbolTable(), instruction);
+                Statements.createInstance(symbolTable, instruction);
                 break;
             case STRUCT_LVALUE: {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                Statements.structLValue(ir.getSymbolTable(), params, instruction);
+                Statements.structLValue(symbolTable, params, instruction);
                 params.clear();
             }
                 break;
             case MEMBER_FUNC_CALL: {
-                Statements.memberFuncCall(ir.getSymbolTable(), params, instruction);
+                Statements.memberFuncCall(symbolTable, params, instruction);
                 params.clear();
             }
                 break;
@@ -183,369 +175,476 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                Statements.structMemberRef(ir.getSymbolTable(), params, instruction);
+                Statements.structMemberRef(symbolTable, params, instruction);
                 params.clear();
             }
                 break;
             case ASSIGN:
             case COPY:
-                Types.copy(ir.getSymbolTable(), instruction);
+                Types.copy(symbolTable, instruction);
                 break;
             case PARAM_COPY:
-                Types.paramCopy(ir.getSymbolTable(), instruction);
+                Types.paramCopy(symbolTable, instruction);
                 break;
             case UNARY_MINUS:
-                Operators.unaryMinus(ir.getSymbolTable(), instruction);
+                Operators.unaryMinus(symbolTable, instruction);
                 break;
             case PRINT:
-                Statements.print(printBuffer, ir.getSymbolTable(), instruction);
+                Statements.print(printBuffer, symbolTable, instruction);
                 break;
             case PRINTUSING:
-                Statements.printusing(formatterCache, printBuffer, ir.getSymbolTable(), instruction);
+                Statements.printusing(formatterCache, printBuffer, symbolTable, instruction);
                 break;
             case FLUSH:
-                Statements.flush(files, printBuffer, ir.getSymbolTable(), instruction);
+                Statements.flush(files, printBuffer, symbolTable, instruction);
                 break;
             case RESET_ARRAY_IDX:
-                ArraysUtil.resetIndex(arrayState, ir.getSymbolTable(), instruction);
+                ArraysUtil.resetIndex(arrayState, symbolTable, instruction);
                 break;
             case SET_ARRAY_IDX:
-                ArraysUtil.setIndex(arrayState, ir.getSymbolTable(), instruction);
+                ArraysUtil.setIndex(arrayState, symbolTable, instruction);
                 break;
             case ARRAYREF:
-                ArraysUtil.arrayref(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayref(symbolTable, instruction);
                 break;
             case LABEL:
                 break;
             case GOTO_LINENUM: {
-                var lineNumber = ir.getSymbolTable().get(instruction.op1).getValue().getInt32();
-                nextProgramCounter = getInstrNumForLineNumber(lineNumber);
+                var lineNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+                nextProgramCounter = program.getInstrNumForLineNumber(lineNumber);
             }
                 break;
             case GOTO_LABEL_IF: {
-                if (ir.getSymbolTable().get(instruction.op1).getValue().getInt64() != 0) {
-                    nextProgramCounter = getInstrNumForLabel(instruction.op2);
+                if (symbolTable.get(instruction.op1).getValue().getInt64() != 0) {
+                    nextProgramCounter = program.getInstrNumForLabel(instruction.op2);
                 }
             }
                 break;
             case GOTO_LABEL:
-                nextProgramCounter = getInstrNumForLabel(instruction.op1);
+                nextProgramCounter = program.getInstrNumForLabel(instruction.op1);
                 break;
             case GOTO_CALLER:
-                nextProgramCounter = ir.getSymbolTable().getCurrentScope().getCallerInstrId();
+                nextProgramCounter = symbolTable.getCurrentScope().getCallerInstrId();
                 break;
             case PUSH_RT_SCOPE:
-                ir.getSymbolTable().pushRuntimeScope(instruction.op1, getInstrNumForLabel(instruction.op2));
+                symbolTable.pushRuntimeScope(instruction.op1, program.getInstrNumForLabel(instruction.op2));
                 break;
             case POP_RT_SCOPE:
-                ir.getSymbolTable().popScope();
+                symbolTable.popScope();
                 break;
             case PUSH_RETLABEL:
                 gosubReturnLabelStack.push(instruction.op1);
                 break;
             case RETURN: {
                 if (instruction.op1 == NULL_ID) {
-                    nextProgramCounter = getInstrNumForLabel(gosubReturnLabelStack.popInt());
+                    nextProgramCounter = program.getInstrNumForLabel(gosubReturnLabelStack.popInt());
                 } else {
                     // Ignore label because we need to return to the lineNumber
                     gosubReturnLabelStack.popInt();
-                    var lineNumber = ir.getSymbolTable().get(instruction.op1).getValue().getInt32();
-                    nextProgramCounter = getInstrNumForLineNumber(lineNumber);
+                    var lineNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+                    nextProgramCounter = program.getInstrNumForLineNumber(lineNumber);
                 }
             }
                 break;
             case EXPI32:
-                Operators.expInt32(ir.getSymbolTable(), instruction);
+                Operators.expInt32(symbolTable, instruction);
                 break;
             case EXPI64:
-                Operators.expInt64(ir.getSymbolTable(), instruction);
+                Operators.expInt64(symbolTable, instruction);
                 break;
             case EXPF32:
-                Operators.expFloat32(ir.getSymbolTable(), instruction);
+                Operators.expFloat32(symbolTable, instruction);
                 break;
             case EXPF64:
-                Operators.expFloat64(ir.getSymbolTable(), instruction);
+                Operators.expFloat64(symbolTable, instruction);
                 break;
             case MULI32:
-                Operators.mulInt32(ir.getSymbolTable(), instruction);
+                Operators.mulInt32(symbolTable, instruction);
                 break;
             case MULI64:
-                Operators.mulInt64(ir.getSymbolTable(), instruction);
+                Operators.mulInt64(symbolTable, instruction);
                 break;
             case MULF32:
-                Operators.mulFloat32(ir.getSymbolTable(), instruction);
+                Operators.mulFloat32(symbolTable, instruction);
                 break;
             case MULF64:
-                Operators.mulFloat64(ir.getSymbolTable(), instruction);
+                Operators.mulFloat64(symbolTable, instruction);
                 break;
             case IDIV:
-                Operators.idiv(ir.getSymbolTable(), instruction);
+                Operators.idiv(symbolTable, instruction);
                 break;
             case FDIV:
-                Operators.fdiv(ir.getSymbolTable(), instruction);
+                Operators.fdiv(symbolTable, instruction);
                 break;
             case ADDI32:
-                Operators.addInt32(ir.getSymbolTable(), instruction);
+                Operators.addInt32(symbolTable, instruction);
                 break;
             case ADDI64:
-                Operators.addInt64(ir.getSymbolTable(), instruction);
+                Operators.addInt64(symbolTable, instruction);
                 break;
             case ADDF32:
-                Operators.addFloat32(ir.getSymbolTable(), instruction);
+                Operators.addFloat32(symbolTable, instruction);
                 break;
             case ADDF64:
-                Operators.addFloat64(ir.getSymbolTable(), instruction);
+                Operators.addFloat64(symbolTable, instruction);
                 break;
             case SUBI32:
-                Operators.subInt32(ir.getSymbolTable(), instruction);
+                Operators.subInt32(symbolTable, instruction);
                 break;
             case SUBI64:
-                Operators.subInt64(ir.getSymbolTable(), instruction);
+                Operators.subInt64(symbolTable, instruction);
                 break;
             case SUBF32:
-                Operators.subFloat32(ir.getSymbolTable(), instruction);
+                Operators.subFloat32(symbolTable, instruction);
                 break;
             case SUBF64:
-                Operators.subFloat64(ir.getSymbolTable(), instruction);
+                Operators.subFloat64(symbolTable, instruction);
                 break;
             case MOD:
-                Operators.mod(ir.getSymbolTable(), instruction);
+                Operators.mod(symbolTable, instruction);
                 break;
             case EQI32:
-                Operators.eqInt32(ir.getSymbolTable(), instruction);
+                Operators.eqInt32(symbolTable, instruction);
                 break;
             case EQI64:
-                Operators.eqInt64(ir.getSymbolTable(), instruction);
+                Operators.eqInt64(symbolTable, instruction);
                 break;
             case EQF32:
-                Operators.eqFloat32(ir.getSymbolTable(), instruction);
+                Operators.eqFloat32(symbolTable, instruction);
                 break;
             case EQF64:
-                Operators.eqFloat64(ir.getSymbolTable(), instruction);
+                Operators.eqFloat64(symbolTable, instruction);
                 break;
             case EQSTR:
-                Operators.eqStr(ir.getSymbolTable(), instruction);
+                Operators.eqStr(symbolTable, instruction);
                 break;
             case NEI32:
-                Operators.neInt32(ir.getSymbolTable(), instruction);
+                Operators.neInt32(symbolTable, instruction);
                 break;
             case NEI64:
-                Operators.neInt64(ir.getSymbolTable(), instruction);
+                Operators.neInt64(symbolTable, instruction);
                 break;
             case NEF32:
-                Operators.neFloat32(ir.getSymbolTable(), instruction);
+                Operators.neFloat32(symbolTable, instruction);
                 break;
             case NEF64:
-                Operators.neFloat64(ir.getSymbolTable(), instruction);
+                Operators.neFloat64(symbolTable, instruction);
                 break;
             case NESTR:
-                Operators.neStr(ir.getSymbolTable(), instruction);
+                Operators.neStr(symbolTable, instruction);
                 break;
             case LTI32:
-                Operators.ltInt32(ir.getSymbolTable(), instruction);
+                Operators.ltInt32(symbolTable, instruction);
                 break;
             case LTI64:
-                Operators.ltInt64(ir.getSymbolTable(), instruction);
+                Operators.ltInt64(symbolTable, instruction);
                 break;
             case LTF32:
-                Operators.ltFloat32(ir.getSymbolTable(), instruction);
+                Operators.ltFloat32(symbolTable, instruction);
                 break;
             case LTF64:
-                Operators.ltFloat64(ir.getSymbolTable(), instruction);
+                Operators.ltFloat64(symbolTable, instruction);
                 break;
             case LTSTR:
-                Operators.ltStr(ir.getSymbolTable(), instruction);
+                Operators.ltStr(symbolTable, instruction);
                 break;
             case LEI32:
-                Operators.leInt32(ir.getSymbolTable(), instruction);
+                Operators.leInt32(symbolTable, instruction);
                 break;
             case LEI64:
-                Operators.leInt64(ir.getSymbolTable(), instruction);
+                Operators.leInt64(symbolTable, instruction);
                 break;
             case LEF32:
-                Operators.leFloat32(ir.getSymbolTable(), instruction);
+                Operators.leFloat32(symbolTable, instruction);
                 break;
             case LEF64:
-                Operators.leFloat64(ir.getSymbolTable(), instruction);
+                Operators.leFloat64(symbolTable, instruction);
                 break;
             case LESTR:
-                Operators.leStr(ir.getSymbolTable(), instruction);
+                Operators.leStr(symbolTable, instruction);
                 break;
             case GTI32:
-                Operators.gtInt32(ir.getSymbolTable(), instruction);
+                Operators.gtInt32(symbolTable, instruction);
                 break;
             case GTI64:
-                Operators.gtInt64(ir.getSymbolTable(), instruction);
+                Operators.gtInt64(symbolTable, instruction);
                 break;
             case GTF32:
-                Operators.gtFloat32(ir.getSymbolTable(), instruction);
+                Operators.gtFloat32(symbolTable, instruction);
                 break;
             case GTF64:
-                Operators.gtFloat64(ir.getSymbolTable(), instruction);
+                Operators.gtFloat64(symbolTable, instruction);
                 break;
             case GTSTR:
-                Operators.gtStr(ir.getSymbolTable(), instruction);
+                Operators.gtStr(symbolTable, instruction);
                 break;
             case GEI32:
-                Operators.geInt32(ir.getSymbolTable(), instruction);
+                Operators.geInt32(symbolTable, instruction);
                 break;
             case GEI64:
-                Operators.geInt64(ir.getSymbolTable(), instruction);
+                Operators.geInt64(symbolTable, instruction);
                 break;
             case GEF32:
-                Operators.geFloat32(ir.getSymbolTable(), instruction);
+                Operators.geFloat32(symbolTable, instruction);
                 break;
             case GEF64:
-                Operators.geFloat64(ir.getSymbolTable(), instruction);
+                Operators.geFloat64(symbolTable, instruction);
                 break;
             case GESTR:
-                Operators.geStr(ir.getSymbolTable(), instruction);
+                Operators.geStr(symbolTable, instruction);
                 break;
             case NOT:
-                Operators.unaryNot(ir.getSymbolTable(), instruction);
+                Operators.unaryNot(symbolTable, instruction);
                 break;
             case AND:
-                Operators.and(ir.getSymbolTable(), instruction);
+                Operators.and(symbolTable, instruction);
                 break;
             case OR:
-                Operators.or(ir.getSymbolTable(), instruction);
+                Operators.or(symbolTable, instruction);
                 break;
             case XOR:
-                Operators.xor(ir.getSymbolTable(), instruction);
+                Operators.xor(symbolTable, instruction);
                 break;
             case EQV:
-                Operators.eqv(ir.getSymbolTable(), instruction);
+                Operators.eqv(symbolTable, instruction);
                 break;
             case IMP:
-                Operators.imp(ir.getSymbolTable(), instruction);
+                Operators.imp(symbolTable, instruction);
                 break;
             case LEFTSHIFT:
-                Operators.leftShift(ir.getSymbolTable(), instruction);
+                Operators.leftShift(symbolTable, instruction);
                 break;
             case RIGHTSHIFT:
-                Operators.rightShift(ir.getSymbolTable(), instruction);
+                Operators.rightShift(symbolTable, instruction);
                 break;
             case END:
                 return true;
             case ABS:
-                Functions.abs(ir.getSymbolTable(), instruction);
+                Functions.abs(symbolTable, instruction);
                 break;
             case ASC:
-                Functions.asc(ir.getSymbolTable(), instruction);
+                Functions.asc(symbolTable, instruction);
                 break;
             case SIN:
-                Functions.sin(ir.getSymbolTable(), instruction);
+                Functions.sin(symbolTable, instruction);
                 break;
             case COS:
-                Functions.cos(ir.getSymbolTable(), instruction);
+                Functions.cos(symbolTable, instruction);
                 break;
             case TAN:
-                Functions.tan(ir.getSymbolTable(), instruction);
+                Functions.tan(symbolTable, instruction);
                 break;
             case ASIN:
-                Functions.asin(ir.getSymbolTable(), instruction);
+                Functions.asin(symbolTable, instruction);
                 break;
             case ACOS:
-                Functions.acos(ir.getSymbolTable(), instruction);
+                Functions.acos(symbolTable, instruction);
                 break;
             case ATN:
-                Functions.atn(ir.getSymbolTable(), instruction);
+                Functions.atn(symbolTable, instruction);
                 break;
             case SINH:
-                Functions.sinh(ir.getSymbolTable(), instruction);
+                Functions.sinh(symbolTable, instruction);
                 break;
             case COSH:
-                Functions.cosh(ir.getSymbolTable(), instruction);
+                Functions.cosh(symbolTable, instruction);
                 break;
             case TANH:
-                Functions.tanh(ir.getSymbolTable(), instruction);
+                Functions.tanh(symbolTable, instruction);
                 break;
             case SQR:
-                Functions.sqr(ir.getSymbolTable(), instruction);
+                Functions.sqr(symbolTable, instruction);
                 break;
             case LOG:
-                Functions.log(ir.getSymbolTable(), instruction);
+                Functions.log(symbolTable, instruction);
                 break;
             case LOG10:
-                Functions.log10(ir.getSymbolTable(), instruction);
+                Functions.log10(symbolTable, instruction);
                 break;
             case LOG2:
-                Functions.log2(ir.getSymbolTable(), instruction);
+                Functions.log2(symbolTable, instruction);
                 break;
             case EEXP:
-                Functions.exp(ir.getSymbolTable(), instruction);
+                Functions.exp(symbolTable, instruction);
                 break;
             case TORAD:
-                Functions.toRad(ir.getSymbolTable(), instruction);
+                Functions.toRad(symbolTable, instruction);
                 break;
             case TODEG:
-                Functions.toDeg(ir.getSymbolTable(), instruction);
+                Functions.toDeg(symbolTable, instruction);
                 break;
             case FLOOR:
-                Functions.floor(ir.getSymbolTable(), instruction);
+                Functions.floor(symbolTable, instruction);
                 break;
             case CEIL:
-                Functions.ceil(ir.getSymbolTable(), instruction);
+                Functions.ceil(symbolTable, instruction);
                 break;
             case ROUND:
-                Functions.round(ir.getSymbolTable(), instruction);
+                Functions.round(symbolTable, instruction);
                 break;
             case E:
-                Functions.e(ir.getSymbolTable(), instruction);
+                Functions.e(symbolTable, instruction);
                 break;
             case PI:
-                Functions.pi(ir.getSymbolTable(), instruction);
+                Functions.pi(symbolTable, instruction);
                 break;
             case MIN:
-                Functions.min(ir.getSymbolTable(), instruction);
+                Functions.min(symbolTable, instruction);
                 break;
             case MAX:
-                Functions.max(ir.getSymbolTable(), instruction);
+                Functions.max(symbolTable, instruction);
                 break;
             case ARRAYFILL:
-                ArraysUtil.arrayfill(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayfill(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAYCOPY:
-                ArraysUtil.arrayCopy(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayCopy(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAY1DMIN:
-                ArraysUtil.array1dMin(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMin(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAY1DMAX:
-                ArraysUtil.array1dMax(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMax(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAY1DMEAN:
-                ArraysUtil.array1dMean(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMean(symbolTable, instruction);
                 break;
             case ARRAY1DSUM:
-                ArraysUtil.array1dSum(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dSum(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAY1DSTD:
-                ArraysUtil.array1dStddev(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dStddev(symbolTable, instruction);
                 break;
             case ARRAY1DMEDIAN:
-                ArraysUtil.array1dMedian(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMedian(arrayStats, symbolTable, instruction);
                 break;
             case ARRAY1DPCT:
-                ArraysUtil.array1dPercentile(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dPercentile(arrayStats, symbolTable, instruction);
+                break;
+            case ARRAY1DPCTS:
+                ArraysUtil.array1dPercentiles(arrayStats, symbolTable, instruction);
+                break;
+            case ARRAYADD:
+            case ARRAYSUB:
+            case ARRAYMUL:
+            case ARRAYDIV:
+                ArrayMath.elementwise(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARRAYSCALE:
+                ArrayMath.scale(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARRAYAXPY:
+                ArrayMath.axpy(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARRAYDOT:
+                ArrayMath.dot(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARRAYCLAMP: {
+                if (params.size() != 1) {
+                    throw new PuffinBasicInternalError("Expected 1 param, but found: " + params.size());
+                }
+                ArrayMath.clamp(arrayParallelism, symbolTable, params, instruction);
+                params.clear();
+            }
+                break;
+            case LOADCSV: {
+                if (params.size() < 2) {
+                    throw new PuffinBasicInternalError("Expected >=2 params, but found: " + params);
+                }
+                CsvUtil.loadCsv(csvState, symbolTable, params, instruction);
+                params.clear();
+            }
+            break;
+            case SAVECSV: {
+                if (params.isEmpty()) {
+                    throw new PuffinBasicInternalError("Expected >0 params, but found none!");
+                }
+                CsvUtil.saveCsv(csvState, symbolTable, params, instruction);
+                params.clear();
+            }
+            break;
+            case ARRAYSAVE:
+                ArrayFileUtil.arraySave(symbolTable, instruction);
+                break;
+            case ARRAYLOAD:
+                ArrayFileUtil.arrayLoad(symbolTable, instruction);
+                break;
+            case SAVEOBJ:
+                ObjectFile.save(
+                        symbolTable,
+                        symbolTable.get(instruction.op1).getValue().getString(),
+                        symbolTable.get(instruction.op2));
+                break;
+            case LOADOBJ:
+                ObjectFile.load(
+                        symbolTable,
+                        symbolTable.get(instruction.op1).getValue().getString(),
+                        symbolTable.get(instruction.op2));
                 break;
             case ARRAY1DSORT:
-                ArraysUtil.array1dSort(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dSort(arrayParallelism, symbolTable, instruction);
                 break;
             case ARRAY1DBINSEARCH:
-                ArraysUtil.array1dBinSearch(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dBinSearch(symbolTable, instruction);
                 break;
             case ARRAY2DSHIFTVER:
-                ArraysUtil.array2dShiftVertical(ir.getSymbolTable(), instruction);
+                ArraysUtil.array2dShiftVertical(symbolTable, instruction);
                 break;
             case ARRAY2DSHIFTHOR:
-                ArraysUtil.array2dShiftHorizontal(ir.getSymbolTable(), instruction);
+                ArraysUtil.array2dShiftHorizontal(symbolTable, instruction);
+                break;
+            case ARRAY2DCONV:
+                ArraysUtil.array2dConv(arrayParallelism, symbolTable, instruction);
+                break;
+            case MATMUL:
+                ArraysUtil.matMul(arrayParallelism, symbolTable, instruction);
+                break;
+            case MATTRANSPOSE:
+                ArraysUtil.matTranspose(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARGSORT: {
+                if (params.isEmpty()) {
+                    throw new PuffinBasicInternalError("Expected >0 params, but found none!");
+                }
+                ArraySort.argsort(arrayParallelism, symbolTable, params, instruction);
+                params.clear();
+            }
+                break;
+            case PERMUTE:
+                ArraySort.permute(arrayParallelism, symbolTable, instruction);
+                break;
+            case ARRAY1DMERGE:
+                ArraySort.array1dMerge(arrayParallelism, symbolTable, instruction);
+                break;
+            case GROUPBY: {
+                if (params.size() != 1) {
+                    throw new PuffinBasicInternalError("Expected 1 param, but found: " + params.size());
+                }
+                ArrayGroup.groupBy(arrayParallelism, symbolTable, params, instruction);
+                params.clear();
+            }
+                break;
+            case HISTOGRAM: {
+                if (params.size() != 1) {
+                    throw new PuffinBasicInternalError("Expected 1 param, but found: " + params.size());
+                }
+                ArrayGroup.histogram(arrayParallelism, symbolTable, params, instruction);
+                params.clear();
+            }
+                break;
+            case HASHJOIN: {
+                if (params.size() != 1) {
+                    throw new PuffinBasicInternalError("Expected 1 param, but found: " + params.size());
+                }
+                ArrayGroup.hashJoin(arrayParallelism, symbolTable, params, instruction);
+                params.clear();
+            }
                 break;
             case ARRAY1DCOPY: {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array1DCopy(ir.getSymbolTable(), params.get(0), params.get(1), instruction);
+                ArraysUtil.array1DCopy(symbolTable, params.get(0), params.get(1), instruction);
                 params.clear();
             }
             break;
@@ -553,7 +652,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array2dFindRow(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.array2dFindRow(symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -561,82 +660,96 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array2dFindColumn(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.array2dFindColumn(symbolTable, params, instruction);
                 params.clear();
             }
             break;
             case CINT:
-                Functions.cint(ir.getSymbolTable(), instruction);
+                Functions.cint(symbolTable, instruction);
                 break;
             case CLNG:
-                Functions.clng(ir.getSymbolTable(), instruction);
+                Functions.clng(symbolTable, instruction);
                 break;
             case CSNG:
-                Functions.csng(ir.getSymbolTable(), instruction);
+                Functions.csng(symbolTable, instruction);
                 break;
             case CDBL:
-                Functions.cdbl(ir.getSymbolTable(), instruction);
+                Functions.cdbl(symbolTable, instruction);
                 break;
             case CHRDLR:
-                Functions.chrdlr(ir.getSymbolTable(), instruction);
+                Functions.chrdlr(symbolTable, instruction);
                 break;
             case CVI:
-                Functions.cvi(ir.getSymbolTable(), instruction);
+                Functions.cvi(symbolTable, instruction);
                 break;
             case CVL:
-                Functions.cvl(ir.getSymbolTable(), instruction);
+                Functions.cvl(symbolTable, instruction);
                 break;
             case CVS:
-                Functions.cvs(ir.getSymbolTable(), instruction);
+                Functions.cvs(symbolTable, instruction);
                 break;
             case CVD:
-                Functions.cvd(ir.getSymbolTable(), instruction);
+                Functions.cvd(symbolTable, instruction);
                 break;
             case MKIDLR:
-                Functions.mkidlr(ir.getSymbolTable(), instruction);
+                Functions.mkidlr(symbolTable, instruction);
                 break;
             case MKLDLR:
-                Functions.mkldlr(ir.getSymbolTable(), instruction);
+                Functions.mkldlr(symbolTable, instruction);
                 break;
             case MKSDLR:
-                Functions.mksdlr(ir.getSymbolTable(), instruction);
+                Functions.mksdlr(symbolTable, instruction);
                 break;
             case MKDDLR:
-                Functions.mkddlr(ir.getSymbolTable(), instruction);
+                Functions.mkddlr(symbolTable, instruction);
                 break;
             case SPACEDLR:
-                Functions.spacedlr(ir.getSymbolTable(), instruction);
+                Functions.spacedlr(symbolTable, instruction);
                 break;
             case STRDLR:
-                Functions.strdlr(ir.getSymbolTable(), instruction);
+                Functions.strdlr(symbolTable, instruction);
                 break;
             case VAL:
-                Functions.val(ir.getSymbolTable(), instruction);
+                Functions.val(symbolTable, instruction);
                 break;
             case INT:
-                Functions.fnint(ir.getSymbolTable(), instruction);
+                Functions.fnint(symbolTable, instruction);
                 break;
             case FIX:
-                Functions.fix(ir.getSymbolTable(), instruction);
+                Functions.fix(symbolTable, instruction);
                 break;
             case LEN:
-                Functions.len(ir.getSymbolTable(), instruction);
+                Functions.len(symbolTable, instruction);
                 break;
             case HEXDLR:
-                Functions.hexdlr(ir.getSymbolTable(), instruction);
+                Functions.hexdlr(symbolTable, instruction);
                 break;
             case OCTDLR:
-                Functions.octdlr(ir.getSymbolTable(), instruction);
+                Functions.octdlr(symbolTable, instruction);
                 break;
             case LEFTDLR:
-                Functions.leftdlr(ir.getSymbolTable(), instruction);
+                Functions.leftdlr(symbolTable, instruction);
                 break;
             case RIGHTDLR:
-                Functions.rightdlr(ir.getSymbolTable(), instruction);
+                Functions.rightdlr(symbolTable, instruction);
                 break;
             case SPLITDLR:
-                Functions.splitdlr(ir.getSymbolTable(), instruction);
+                Functions.splitdlr(regexCache, symbolTable, instruction);
                 break;
+            case REGEXMATCH:
+                Functions.regexmatch(regexCache, symbolTable, instruction);
+                break;
+            case REGEXFINDDLR:
+                Functions.regexfinddlr(regexCache, symbolTable, instruction);
+                break;
+            case REGEXREPLACEDLR: {
+                if (params.size() != 1) {
+                    throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
+                }
+                Functions.regexreplacedlr(regexCache, symbolTable, params.get(0), instruction);
+                params.clear();
+            }
+            break;
             case PARAM1:
             case PARAM2:
                 params.add(instruction);
@@ -645,7 +758,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Functions.instr(ir.getSymbolTable(), params.get(0), instruction);
+                Functions.instr(symbolTable, params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -653,7 +766,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Functions.middlr(ir.getSymbolTable(), params.get(0), instruction);
+                Functions.middlr(symbolTable, params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -661,7 +774,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Statements.middlr(ir.getSymbolTable(), params.get(0), instruction);
+                Statements.middlr(symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -669,18 +782,19 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                Statements.open(files, ir.getSymbolTable(), params.get(0), params.get(1), instruction);
+                Statements.open(files, symbolTable, params.get(0), params.get(1), instruction);
                 params.clear();
             }
                 break;
             case CLOSE_ALL:
                 Statements.closeAll(files);
+                mappedArrays.force();
                 break;
             case CLOSE:
-                Statements.close(files, ir.getSymbolTable(), instruction);
+                Statements.close(files, symbolTable, instruction);
                 break;
             case FIELD: {
-                Statements.field(files, ir.getSymbolTable(), params, instruction);
+                Statements.field(files, symbolTable, params, instruction);
                 params.clear();
             }
                 break;
@@ -688,63 +802,63 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.hsb2rgb(ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.hsb2rgb(symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
             case PUTF:
-                Statements.putf(files, ir.getSymbolTable(), instruction);
+                Statements.putf(files, symbolTable, instruction);
                 break;
             case GETF:
-                Statements.getf(files, ir.getSymbolTable(), instruction);
+                Statements.getf(files, symbolTable, instruction);
                 break;
             case LOC:
-                Functions.loc(files, ir.getSymbolTable(), instruction);
+                Functions.loc(files, symbolTable, instruction);
                 break;
             case LOF:
-                Functions.lof(files, ir.getSymbolTable(), instruction);
+                Functions.lof(files, symbolTable, instruction);
                 break;
             case EOF:
-                Functions.eof(files, ir.getSymbolTable(), instruction);
+                Functions.eof(files, symbolTable, instruction);
                 break;
             case RND:
-                Functions.rnd(random, ir.getSymbolTable(), instruction);
+                Functions.rnd(random, symbolTable, instruction);
                 break;
             case RANDOMIZE:
-                Statements.randomize(random, ir.getSymbolTable(), instruction);
+                Statements.randomize(random, symbolTable, instruction);
                 break;
             case RANDOMIZE_TIMER:
                 Statements.randomizeTimer(random);
                 break;
             case SGN:
-                Functions.sgn(ir.getSymbolTable(), instruction);
+                Functions.sgn(symbolTable, instruction);
                 break;
             case LSET:
-                Statements.lset(ir.getSymbolTable(), instruction);
+                Statements.lset(symbolTable, instruction);
                 break;
             case RSET:
-                Statements.rset(ir.getSymbolTable(), instruction);
+                Statements.rset(symbolTable, instruction);
                 break;
             case TIMER:
-                Functions.timer(ir.getSymbolTable(), instruction);
+                Functions.timer(symbolTable, instruction);
                 break;
             case TIMERMILLIS:
-                Functions.timerMillis(ir.getSymbolTable(), instruction);
+                Functions.timerMillis(symbolTable, instruction);
                 break;
             case STRINGDLR:
-                Functions.stringdlr(ir.getSymbolTable(), instruction);
+                Functions.stringdlr(symbolTable, instruction);
                 break;
             case SWAP:
-                Statements.swap(ir.getSymbolTable(), instruction);
+                Statements.swap(symbolTable, instruction);
                 break;
             case CONCAT:
-                Operators.concat(ir.getSymbolTable(), instruction);
+                Operators.concat(symbolTable, instruction);
                 break;
             case INPUTDLR:
-                Functions.inputdlr(files, ir.getSymbolTable(), instruction);
+                Functions.inputdlr(files, symbolTable, instruction);
                 break;
             case INPUT: {
-                Statements.input(files, ir.getSymbolTable(), params, instruction);
+                Statements.input(files, inputTokenizer, symbolTable, params, instruction);
                 params.clear();
             }
                 break;
@@ -752,12 +866,12 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Statements.lineinput(files, ir.getSymbolTable(), params.get(0), instruction);
+                Statements.lineinput(files, symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
             case WRITE:
-                Statements.write(printBuffer, ir.getSymbolTable(), instruction);
+                Statements.write(printBuffer, symbolTable, instruction);
                 break;
             case DATA:
                 break;
@@ -765,19 +879,19 @@ public class PuffinBasicRuntime {
                 readData.restore();
                 break;
             case READ:
-                Statements.read(readData, ir.getSymbolTable(), instruction);
+                Statements.read(readData, symbolTable, instruction);
                 break;
             case ENVIRONDLR:
-                Functions.environdlr(env, ir.getSymbolTable(), instruction);
+                Functions.environdlr(env, symbolTable, instruction);
                 break;
             case SLEEP:
-                Statements.sleep(ir.getSymbolTable(), instruction);
+                Statements.sleep(symbolTable, instruction);
                 break;
             case SCREEN: {
                 if (params.size() != 3) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.screen(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.screen(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -788,7 +902,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 3) {
                         throw new PuffinBasicInternalError("Expected 3 params, but found: " + params);
                 }
-                GraphicsRuntime.circle(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.circle(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -796,7 +910,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.line(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.line(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -804,7 +918,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 params, but found: " + params);
                 }
-                GraphicsRuntime.color(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.color(graphicsState, symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -812,7 +926,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.paint(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.paint(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -820,7 +934,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.pset(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.pset(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -828,7 +942,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.get(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.get(graphicsState, symbolTable, params, instruction);
                 params.clear();
             }
             break;
@@ -836,7 +950,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.put(graphicsState, ir.getSymbolTable(), params.get(0), params.get(1), instruction);
+                GraphicsRuntime.put(graphicsState, symbolTable, params.get(0), params.get(1), instruction);
                 params.clear();
             }
             break;
@@ -844,7 +958,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.bufferCopyHor(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.bufferCopyHor(graphicsState, symbolTable, params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -852,7 +966,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.font(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.font(graphicsState, symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -860,21 +974,21 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.drawstr(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.drawstr(graphicsState, symbolTable, params.get(0), instruction);
                 params.clear();
             }
             break;
             case LOADIMG:
-                GraphicsRuntime.loadimg(ir.getSymbolTable(), instruction);
+                GraphicsRuntime.loadimg(symbolTable, instruction);
                 break;
             case SAVEIMG:
-                GraphicsRuntime.saveimg(ir.getSymbolTable(), instruction);
+                GraphicsRuntime.saveimg(symbolTable, instruction);
                 break;
             case DRAW:
-                GraphicsRuntime.draw(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.draw(graphicsState, symbolTable, instruction);
                 break;
             case INKEYDLR:
-                GraphicsRuntime.inkeydlr(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.inkeydlr(graphicsState, symbolTable, instruction);
                 break;
             case CLS:
                 GraphicsRuntime.cls(graphicsState);
@@ -883,40 +997,40 @@ public class PuffinBasicRuntime {
                 GraphicsRuntime.beep();
                 break;
             case LOADWAV:
-                GraphicsRuntime.loadwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.loadwav(soundState, symbolTable, instruction);
                 break;
             case PLAYWAV:
-                GraphicsRuntime.playwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.playwav(soundState, symbolTable, instruction);
                 break;
             case STOPWAV:
-                GraphicsRuntime.stopwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.stopwav(soundState, symbolTable, instruction);
                 break;
             case LOOPWAV:
-                GraphicsRuntime.loopwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.loopwav(soundState, symbolTable, instruction);
                 break;
             case MOUSEMOVEDX:
-                GraphicsRuntime.mouseMovedX(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseMovedX(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEMOVEDY:
-                GraphicsRuntime.mouseMovedY(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseMovedY(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEDRAGGEDX:
-                GraphicsRuntime.mouseDraggedX(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseDraggedX(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEDRAGGEDY:
-                GraphicsRuntime.mouseDraggedY(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseDraggedY(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEBUTTONCLICKED:
-                GraphicsRuntime.mouseButtonClicked(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonClicked(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEBUTTONPRESSED:
-                GraphicsRuntime.mouseButtonPressed(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonPressed(graphicsState, symbolTable, instruction);
                 break;
             case MOUSEBUTTONRELEASED:
-                GraphicsRuntime.mouseButtonReleased(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonReleased(graphicsState, symbolTable, instruction);
                 break;
             case ISKEYPRESSED:
-                GraphicsRuntime.isKeyPressed(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.isKeyPressed(graphicsState, symbolTable, instruction);
                 break;
         }
 
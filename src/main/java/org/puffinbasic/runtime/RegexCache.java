@@ -0,0 +1,135 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+
+/**
+ * Bounded LRU cache of compiled patterns, keyed by the pattern string,
+ * so that SPLIT$ and the REGEX functions don't recompile the same regex
+ * on every call inside a loop. Splitting on a literal delimiter (no regex
+ * metacharacters, or only escaped punctuation) skips regex entirely.
+ */
+final class RegexCache {
+
+    static final int DEFAULT_CAPACITY = 256;
+    private static final String METACHARS = ".$|()[]{}^?*+\\";
+    private static final String[] NO_TOKENS = new String[0];
+
+    private final Map<String, Pattern> patterns;
+    private String lastRegex;
+    private String lastLiteral;
+
+    RegexCache(int capacity) {
+        this.patterns = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    RegexCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    Pattern get(String regex) {
+        var pattern = patterns.get(regex);
+        if (pattern == null) {
+            try {
+                pattern = Pattern.compile(regex);
+            } catch (PatternSyntaxException e) {
+                throw new PuffinBasicRuntimeError(
+                        ILLEGAL_FUNCTION_PARAM,
+                        "Bad regex '" + regex + "': " + e.getDescription()
+                );
+            }
+            patterns.put(regex, pattern);
+        }
+        return pattern;
+    }
+
+    int size() {
+        return patterns.size();
+    }
+
+    /**
+     * Same result as String.split(regex).
+     */
+    String[] split(String str, String regex) {
+        var literal = literalOf(regex);
+        if (literal == null) {
+            return get(regex).split(str);
+        }
+        return splitLiteral(str, literal);
+    }
+
+    private static String[] splitLiteral(String str, String delimiter) {
+        int next = str.indexOf(delimiter);
+        if (next < 0) {
+            return new String[] {str};
+        }
+        var tokens = new ObjectArrayList<String>();
+        int from = 0;
+        while (next >= 0) {
+            tokens.add(str.substring(from, next));
+            from = next + delimiter.length();
+            next = str.indexOf(delimiter, from);
+        }
+        tokens.add(str.substring(from));
+        int size = tokens.size();
+        while (size > 0 && tokens.get(size - 1).isEmpty()) {
+            size--;
+        }
+        return size == 0 ? NO_TOKENS : tokens.subList(0, size).toArray(NO_TOKENS);
+    }
+
+    /**
+     * Returns the text matched by the regex if it is a plain literal,
+     * else null. The last answer is remembered, since a loop usually
+     * splits with the same delimiter.
+     */
+    private String literalOf(String regex) {
+        if (regex.equals(lastRegex)) {
+            return lastLiteral;
+        }
+        lastRegex = regex;
+        lastLiteral = unescapeLiteral(regex);
+        return lastLiteral;
+    }
+
+    private static String unescapeLiteral(String regex) {
+        if (regex.isEmpty()) {
+            return null;
+        }
+        StringBuilder sb = null;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 == regex.length()) {
+                    return null;
+                }
+                char escaped = regex.charAt(i + 1);
+                if (Character.isLetterOrDigit(escaped)) {
+                    return null;
+                }
+                if (sb == null) {
+                    sb = new StringBuilder(regex.length()).append(regex, 0, i);
+                }
+                sb.append(escaped);
+                i++;
+            } else if (METACHARS.indexOf(c) >= 0) {
+                return null;
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? regex : sb.toString();
+    }
+}
@@ -1,11 +1,9 @@
 package org.puffinbasic.runtime;
 
 import it.unimi.dsi.fastutil.ints.IntArrayList;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
+import org.puffinbasic.domain.STObjects.DictType;
 import org.puffinbasic.domain.STObjects.STEntry;
 import org.puffinbasic.domain.STObjects.STRef;
 import org.puffinbasic.domain.STObjects.STValue;
@@ -20,7 +18,6 @@ import org.puffinbasic.file.PuffinBasicFiles;
 import org.puffinbasic.parser.PuffinBasicIR.Instruction;
 import org.puffinbasic.runtime.Formatter.FormatterCache;
 
-import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
@@ -346,6 +343,7 @@ public class Statements {
 
     public static void input(
             PuffinBasicFiles files,
+            InputTokenizer tokenizer,
             PuffinBasicSymbolTable symbolTable,
             List<Instruction> instructions,
             Instruction instruction)
@@ -364,7 +362,7 @@ public class Statements {
             file = files.sys;
         }
 
-        CSVRecord record = null;
+        int numFields = 0;
         boolean retry = false;
         do {
             if (retry) {
@@ -374,46 +372,19 @@ public class Statements {
                     throw new PuffinBasicRuntimeError(
                             IO_ERROR,
                             "Record mismatch: expected=" + instructions.size()
-                                    + ", found in file=" + record.size()
-                                    +", record: " + record
+                                    + ", found in file=" + numFields
+                                    +", record: " + tokenizer.recordToString()
                     );
                 }
             }
-            CSVParser parser;
-            try {
-                parser = CSVParser.parse(file.readLine(), CSVFormat.DEFAULT);
-            } catch (IOException e) {
-                throw new PuffinBasicRuntimeError(
-                        IO_ERROR,
-                        "Failed to read inputs, error: " + e.getMessage()
-                );
-            }
-            record = parser.iterator().next();
+            numFields = tokenizer.tokenize(file.readLine());
             retry = true;
-        } while (record.size() != instructions.size());
+        } while (numFields != instructions.size());
 
         int i = 0;
         for (var instr0 : instructions) {
             var entry = symbolTable.get(instr0.op1);
-            var value = entry.getValue();
-            switch (entry.getType().getAtomTypeId()) {
-                case INT32:
-                    value.setInt32(Integer.parseInt(record.get(i).trim()));
-                    break;
-                case INT64:
-                    value.setInt64(Long.parseLong(record.get(i).trim()));
-                    break;
-                case FLOAT:
-                    value.setFloat32(Float.parseFloat(record.get(i).trim()));
-                    break;
-                case DOUBLE:
-                    value.setFloat64(Double.parseDouble(record.get(i).trim()));
-                    break;
-                case STRING:
-                    value.setString(record.get(i).trim());
-                    break;
-            }
-            ++i;
+            tokenizer.assign(i++, entry.getType().getAtomTypeId(), entry.getValue());
         }
     }
 
@@ -489,7 +460,12 @@ public class Statements {
             PuffinBasicSymbolTable symbolTable, Instruction instruction)
     {
         var entry = (STVariable) symbolTable.get(instruction.op1);
-        entry.createAndSetInstance(symbolTable);
+        if (instruction.op2 != NULL_ID) {
+            var path = symbolTable.get(instruction.op2).getValue().getString();
+            entry.setValue(((DictType) entry.getType()).newMappedInstance(path));
+        } else {
+            entry.createAndSetInstance(symbolTable);
+        }
     }
 
     static void structLValue(
@@ -0,0 +1,61 @@
+package org.puffinbasic.script;
+
+import org.apache.commons.io.output.WriterOutputStream;
+import org.puffinbasic.PuffinBasicProgram;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.runtime.Environment.SystemEnv;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+
+final class PuffinBasicCompiledScript extends CompiledScript {
+
+    private final ScriptEngine engine;
+    private final PuffinBasicProgram program;
+
+    PuffinBasicCompiledScript(ScriptEngine engine, PuffinBasicProgram program) {
+        this.engine = engine;
+        this.program = program;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        var inputs = new HashMap<String, Object>();
+        for (var name : program.getVariableNames()) {
+            var scope = context.getAttributesScope(name);
+            if (scope != -1) {
+                inputs.put(name, context.getAttribute(name, scope));
+            }
+        }
+
+        var charset = Charset.defaultCharset();
+        var writerOut = new WriterOutputStream(context.getWriter(), charset);
+        var out = new PrintStream(writerOut, false, charset);
+        try {
+            var outputs = program.run(inputs, out, new SystemEnv());
+            context.getBindings(ScriptContext.ENGINE_SCOPE).putAll(outputs);
+        } catch (PuffinBasicRuntimeError e) {
+            throw toScriptException(e);
+        } finally {
+            // Also flushes the decoded text to the context's writer.
+            out.flush();
+        }
+        return null;
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    static ScriptException toScriptException(Exception e) {
+        var scriptException = new ScriptException(e.getMessage());
+        scriptException.initCause(e);
+        return scriptException;
+    }
+}
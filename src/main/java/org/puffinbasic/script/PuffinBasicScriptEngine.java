@@ -0,0 +1,115 @@
+package org.puffinbasic.script;
+
+import org.apache.commons.io.IOUtils;
+import org.puffinbasic.PuffinBasicEngine;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.error.PuffinBasicSemanticError;
+import org.puffinbasic.error.PuffinBasicSyntaxError;
+
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * JSR-223 adapter over PuffinBasicEngine.
+ * Bindings whose names match a global scalar or array variable of the
+ * script (with the type suffix, e.g. "N%") are set before it runs, and
+ * the final values of those variables are put back into the engine scope
+ * bindings. PRINT output goes to the context's writer. eval returns null.
+ * Use compile to parse a script once and evaluate it many times.
+ */
+public final class PuffinBasicScriptEngine extends AbstractScriptEngine implements Compilable {
+
+    private static final String UNKNOWN_SOURCE_FILE = "<SCRIPT>";
+
+    private final ScriptEngineFactory factory;
+    private final PuffinBasicEngine engine;
+
+    PuffinBasicScriptEngine(ScriptEngineFactory factory, PuffinBasicEngine engine) {
+        this.factory = factory;
+        this.engine = engine;
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script, context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(read(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(script, getContext());
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(read(script));
+    }
+
+    private CompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        var filename = context.getAttribute(ScriptEngine.FILENAME);
+        try {
+            var program = engine.compile(
+                    filename instanceof String ? (String) filename : UNKNOWN_SOURCE_FILE,
+                    script,
+                    getHostArrays(context));
+            return new PuffinBasicCompiledScript(this, program);
+        } catch (PuffinBasicSyntaxError | PuffinBasicSemanticError | PuffinBasicRuntimeError e) {
+            throw PuffinBasicCompiledScript.toScriptException(e);
+        }
+    }
+
+    /**
+     * Bound Java arrays and collections are declared as BASIC arrays,
+     * so the script can index them without DIM.
+     */
+    private static List<String> getHostArrays(ScriptContext context) {
+        var hostArrays = new ArrayList<String>();
+        for (int scope : context.getScopes()) {
+            var bindings = context.getBindings(scope);
+            if (bindings == null) {
+                continue;
+            }
+            for (var binding : bindings.entrySet()) {
+                var value = binding.getValue();
+                if (value instanceof Collection || (value != null && value.getClass().isArray())) {
+                    hostArrays.add(binding.getKey());
+                }
+            }
+        }
+        return hostArrays;
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private static String read(Reader reader) throws ScriptException {
+        try {
+            return IOUtils.toString(reader);
+        } catch (IOException e) {
+            throw PuffinBasicCompiledScript.toScriptException(e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.puffinbasic.script;
+
+import org.puffinbasic.PuffinBasicEngine;
+
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import java.util.List;
+
+/**
+ * JSR-223 factory, registered in META-INF/services, so that
+ * new ScriptEngineManager().getEngineByName("puffinbasic") finds it.
+ */
+public final class PuffinBasicScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final String ENGINE_NAME = "PuffinBASIC";
+    private static final String ENGINE_VERSION = "0.1";
+    private static final String LANGUAGE_NAME = "BASIC";
+    private static final String LANGUAGE_VERSION = "PuffinBASIC";
+    private static final List<String> NAMES = List.of("puffinbasic", "PuffinBASIC", "basic");
+    private static final List<String> EXTENSIONS = List.of("bas");
+    private static final List<String> MIME_TYPES = List.of("text/x-basic");
+
+    // Stateless, so every script engine from this factory shares it.
+    private final PuffinBasicEngine engine = new PuffinBasicEngine();
+
+    @Override
+    public String getEngineName() {
+        return ENGINE_NAME;
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return ENGINE_VERSION;
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return EXTENSIONS;
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    @Override
+    public List<String> getNames() {
+        return NAMES;
+    }
+
+    @Override
+    public String getLanguageName() {
+        return LANGUAGE_NAME;
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return LANGUAGE_VERSION;
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE:
+                return getEngineName();
+            case ScriptEngine.ENGINE_VERSION:
+                return getEngineVersion();
+            case ScriptEngine.LANGUAGE:
+                return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION:
+                return getLanguageVersion();
+            case ScriptEngine.NAME:
+                return NAMES.get(0);
+            default:
+                // "THREADING" is null: bindings are plain maps. Compiled
+                // scripts can still be evaluated concurrently, each with
+                // its own bindings.
+                return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        return obj + "." + m + "(" + String.join(", ", args) + ")";
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "PRINT \"" + toDisplay.replace("\"", "\" + CHR$(34) + \"") + "\"";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        return String.join(System.lineSeparator(), statements);
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new PuffinBasicScriptEngine(this, engine);
+    }
+}
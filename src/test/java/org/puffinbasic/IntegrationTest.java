@@ -4,21 +4,45 @@ import org.junit.Before;
 import org.junit.Test;
 import org.puffinbasic.PuffinBasicInterpreterMain.UserOptions;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.CompiledProgram;
 import org.puffinbasic.runtime.Environment;
 import org.puffinbasic.runtime.Environment.SystemEnv;
 
+import javax.script.Compilable;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.puffinbasic.PuffinBasicInterpreterMain.compile;
 import static org.puffinbasic.PuffinBasicInterpreterMain.interpretAndRun;
+import static org.puffinbasic.PuffinBasicInterpreterMain.run;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IMPORT_ERROR;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
 
 public class IntegrationTest {
@@ -167,6 +191,410 @@ public class IntegrationTest {
         Files.delete(Path.of(tmpdir, filename));
     }
 
+    @Test
+    public void testSequentialAccessFileLines() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String prefix = "puffin_basic_test_sequential_lines_" + Instant.now().getEpochSecond();
+        // 1023 lines of 1024 bytes, so the next line ends at the 1MB read chunk
+        var filler = ("F".repeat(1023) + "\n").repeat(1023);
+        // CR as the last byte of the chunk and LF as the first of the next one,
+        // then CRLF, an empty line, a CR line and no newline at EOF
+        var file1 = Path.of(tmpdir, prefix + "_1.data");
+        Files.writeString(file1, filler + "C".repeat(1023) + "\r\nAFTER\r\n\r\nMAC\rLAST");
+        // A line straddling the chunk boundary
+        var file2 = Path.of(tmpdir, prefix + "_2.data");
+        Files.writeString(file2, filler + "F".repeat(1000) + "\nHEAD" + "S".repeat(3000) + "TAIL\nAFTER\r\nLAST");
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_SEQ_FILENAME1", file1.getFileName().toString());
+        env.set("TEST_SEQ_FILENAME2", file2.getFileName().toString());
+        runTest("sequentiallines.bas", "sequentiallines.bas.output");
+        Files.delete(file1);
+        Files.delete(file2);
+    }
+
+    @Test
+    public void testInputTokenizer() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        var file = Path.of(tmpdir, "puffin_basic_test_input_" + Instant.now().getEpochSecond() + ".data");
+        Files.writeString(file, String.join("\n",
+                "\"He said \"\"hi, there\"\"\", 42, 1.5",
+                "\"a,b\"  , -7 ,2.5e3",
+                "\"\"\"\"\"\", +0, -0.0",
+                ",  ,",
+                "",
+                "\"\",plain text",
+                "-2147483648, 2147483647",
+                "9223372036854775807, -9223372036854775808",
+                "3.4028235E38, 1e-10, 0.1",
+                "1.7976931348623157E308, 4.9e-324, 123456789012345678901234567890, -1.25E+2",
+                ""));
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_INPUT_FILENAME", file.getFileName().toString());
+        runTest("inputtokenizer.bas", "inputtokenizer.bas.output");
+
+        // Malformed fields keep the JDK parser and CSV error messages
+        var engine = new PuffinBasicEngine();
+        var cases = new String[][] {
+                {"A%", "12x", "For input string: \"12x\""},
+                {"A%", "99999999999", "For input string: \"99999999999\""},
+                {"A%", "", "For input string: \"\""},
+                {"A@", "1e3", "For input string: \"1e3\""},
+                {"A#", "1.2.3", "multiple points"},
+                {"A!", "--1", "For input string: \"--1\""},
+                {"A$", "\"open", "[" + IO_ERROR + "] Failed to read inputs, error: EOF reached before encapsulated token finished"},
+                {"A$", "\"x\" y", "[" + IO_ERROR + "] Failed to read inputs, error: invalid char between encapsulated token and delimiter"},
+        };
+        for (var c : cases) {
+            Files.writeString(file, c[1] + "\n");
+            var program = engine.compile("OPEN F$ FOR INPUT AS #1 : INPUT#1, " + c[0] + "\n");
+            try {
+                program.run(Map.of("F$", file.toString()), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(c[1] + " should fail for " + c[0]);
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith(c[2]));
+            }
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String filename = "puffin_basic_test_csv_"
+                + Instant.now().getEpochSecond() + ".csv";
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_CSV_FILENAME", filename);
+        runTest("csv.bas", "csv.bas.output");
+        Files.delete(Path.of(tmpdir, filename));
+    }
+
+    @Test
+    public void testArrayFile() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String filename = "puffin_basic_test_array_file_"
+                + Instant.now().getEpochSecond() + ".data";
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_ARRAY_FILENAME", filename);
+        runTest("arrayfile.bas", "arrayfile.bas.output");
+        Files.delete(Path.of(tmpdir, filename));
+    }
+
+    @Test
+    public void testArrayFileCorrupt() throws IOException {
+        var file = Files.createTempFile("puffin_basic_test_array_", ".data");
+        var engine = new PuffinBasicEngine();
+        var out = new PrintStream(new ByteArrayOutputStream());
+        engine.compile("DIM A%(3, 4) : ARRAYSAVE F$, A%").run(Map.of("F$", file.toString()), out, env);
+        var ints = Files.readAllBytes(file);
+        engine.compile("DIM E$(3) : E$(0) = \"ab\" : ARRAYSAVE F$, E$").run(Map.of("F$", file.toString()), out, env);
+        var strings = Files.readAllBytes(file);
+
+        // {file, offset, value}, offset -1 cuts the last byte, -2 appends one
+        var cases = new Object[][] {
+                {ints, 12, Integer.MAX_VALUE},
+                {ints, 16, -1},
+                {ints, 16, 1 << 16, 20, 1 << 16},
+                {ints, 16, 4},
+                {ints, -1},
+                {ints, -2},
+                {strings, 20, -1},
+                {strings, 20, Integer.MAX_VALUE},
+                {strings, 20, 3},
+                {strings, 16, 1 << 30},
+                {strings, -1},
+                {strings, -2},
+        };
+        for (var c : cases) {
+            var bytes = ((byte[]) c[0]).clone();
+            if ((int) c[1] == -1) {
+                bytes = Arrays.copyOf(bytes, bytes.length - 1);
+            } else if ((int) c[1] == -2) {
+                bytes = Arrays.copyOf(bytes, bytes.length + 1);
+            } else {
+                for (int i = 1; i < c.length; i += 2) {
+                    ByteBuffer.wrap(bytes, (int) c[i], 4).order(ByteOrder.LITTLE_ENDIAN).putInt((int) c[i + 1]);
+                }
+            }
+            Files.write(file, bytes);
+            var load = c[0] == ints ? "DIM A%(1, 1) : ARRAYLOAD F$, A%" : "DIM E$(1) : ARRAYLOAD F$, E$";
+            try {
+                engine.compile(load).run(Map.of("F$", file.toString()), out, env);
+                fail("Loading a corrupt array file should fail: " + Arrays.toString(c));
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("[" + IO_ERROR + "]"));
+            }
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testMappedArray() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String filename = "puffin_basic_test_mapped_array_"
+                + Instant.now().getEpochSecond() + ".data";
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_MAPPED_FILENAME", filename);
+        runTest("mapped.bas", "mapped.bas.output");
+        for (var suffix : List.of("", ".2", ".3", ".4")) {
+            Files.delete(Path.of(tmpdir, filename + suffix));
+        }
+    }
+
+    @Test
+    public void testMappedArrayExistingFile() throws IOException {
+        var file = Files.createTempFile("puffin_basic_test_mapped_", ".data");
+        var engine = new PuffinBasicEngine();
+        engine.compile("F$ = \"" + file + "\" : DIM M#(3, 4) MAPPED F$ : M#(1, 1) = 5 : CLOSE")
+                .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+        var stored = Files.readAllBytes(file);
+
+        // An existing file is never resized or retyped
+        var cases = new String[][] {
+                {"DIM M#(2, 2) MAPPED F$", IO_ERROR.name(), "dims [3, 4], can't map it with dims [2, 2]"},
+                {"DIM M#(3, 4, 1) MAPPED F$", IO_ERROR.name(), "dims [3, 4], can't map it with dims [3, 4, 1]"},
+                {"DIM M%(3, 4) MAPPED F$", DATA_TYPE_MISMATCH.name(), "has type DOUBLE, expected INT32"},
+        };
+        for (var c : cases) {
+            try {
+                engine.compile("F$ = \"" + file + "\" : " + c[0])
+                        .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(c[0] + " should fail");
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("[" + c[1] + "]"));
+                assertTrue(e.getMessage(), e.getMessage().contains(c[2]));
+            }
+            assertArrayEquals(stored, Files.readAllBytes(file));
+        }
+
+        // The matching dims keep the data, an empty file is created
+        var out = new ByteArrayOutputStream();
+        engine.compile("F$ = \"" + file + "\" : DIM M#(3, 4) MAPPED F$ : PRINT M#(1, 1)")
+                .run(Map.of(), new PrintStream(out), env);
+        assertEquals(" 5.0 \n", out.toString());
+        Files.write(file, new byte[0]);
+        engine.compile("F$ = \"" + file + "\" : DIM M#(2, 2) MAPPED F$ : CLOSE")
+                .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+        assertEquals(Integer.BYTES * 6 + Double.BYTES * 4, Files.size(file));
+        Files.delete(file);
+    }
+
+    @Test
+    public void testMappedArrayBulkBuiltins() throws IOException {
+        var dir = Files.createTempDirectory("puffin_basic_test_mapped_");
+        // M# and V# are MAPPED, the other arrays are in memory
+        var setup = "M$ = \"" + dir.resolve("m.data") + "\" : DIM M#(2, 2) MAPPED M$\n"
+                + "V$ = \"" + dir.resolve("v.data") + "\" : DIM V#(4) MAPPED V$\n"
+                + "DIM A#(2, 2) : DIM B#(2, 2) : DIM K#(1, 1)\n"
+                + "DIM X#(4) : DIM Y#(4) : DIM P%(4) : DIM R#(2) : DIM C%(1)\n";
+        var cases = new String[][] {
+                {"ARRAYCOPY", "ARRAYCOPY M#, A#"},
+                {"ARRAYCOPY", "ARRAYCOPY A#, M#"},
+                {"ARRAY1DCOPY", "ARRAY1DCOPY V#, 0, X#, 0, 2"},
+                {"ARRAY1DMIN", "Z# = ARRAY1DMIN(V#)"},
+                {"ARRAY1DMAX", "Z# = ARRAY1DMAX(V#)"},
+                {"ARRAY1DSUM", "Z# = ARRAY1DSUM(V#)"},
+                {"ARRAY1DMEAN", "Z# = ARRAY1DMEAN(V#)"},
+                {"ARRAY1DSTD", "Z# = ARRAY1DSTD(V#)"},
+                {"ARRAY1DMEDIAN", "Z# = ARRAY1DMEDIAN(V#)"},
+                {"ARRAY1DPCT", "Z# = ARRAY1DPCT(V#, 90)"},
+                {"ARRAY1DPCTS", "ARRAY1DPCTS V#, R#, R#"},
+                {"ARRAY1DSORT", "ARRAY1DSORT V#"},
+                {"ARRAY1DBINSEARCH", "Z% = ARRAY1DBINSEARCH(V#, 1)"},
+                {"ARRAY2DSHIFTVER", "ARRAY2DSHIFTVER M#, 1"},
+                {"ARRAY2DSHIFTHOR", "ARRAY2DSHIFTHOR M#, 1"},
+                {"ARRAY2DCONV", "ARRAY2DCONV M#, K#, A#"},
+                {"MATMUL", "MATMUL M#, A#, B#"},
+                {"MATMUL", "MATMUL A#, B#, M#"},
+                {"MATTRANSPOSE", "MATTRANSPOSE M#, A#"},
+                {"ARRAYADD", "ARRAYADD M#, A#, B#"},
+                {"ARRAYMUL", "ARRAYMUL A#, B#, M#"},
+                {"ARRAYSCALE", "ARRAYSCALE M#, 2, A#"},
+                {"ARRAYAXPY", "ARRAYAXPY 2, A#, M#"},
+                {"ARRAYDOT", "Z# = ARRAYDOT(M#, A#)"},
+                {"ARRAYCLAMP", "ARRAYCLAMP M#, 0, 1"},
+                {"ARGSORT", "ARGSORT P%, V#"},
+                {"PERMUTE", "PERMUTE V#, P%, X#"},
+                {"ARRAY1DMERGE", "ARRAY1DMERGE V#, X#, Y#"},
+                {"GROUPBY", "GROUPBY V#, X#, Y#, A#"},
+                {"HISTOGRAM", "HISTOGRAM V#, 0, 1, 2, C%"},
+                {"HASHJOIN", "HASHJOIN V#, X#, P%, C%"},
+                {"SAVECSV", "SAVECSV \"" + dir.resolve("v.csv") + "\" AS V#"},
+                {"LOADCSV", "LOADCSV \"" + dir.resolve("v.csv") + "\", 0 AS V#"},
+                {"ARRAYSAVE", "ARRAYSAVE \"" + dir.resolve("v.arr") + "\", V#"},
+                {"ARRAYLOAD", "ARRAYLOAD \"" + dir.resolve("v.arr") + "\", V#"},
+        };
+        var engine = new PuffinBasicEngine();
+        for (var c : cases) {
+            var program = engine.compile(setup + c[1]);
+            try {
+                program.run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(c[1] + " should fail on a MAPPED array");
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith(
+                        "[" + DATA_TYPE_MISMATCH + "] " + c[0] + ": not supported on MAPPED arrays"));
+            }
+        }
+
+        try (var files = Files.list(dir)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void testMappedDict() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String filename = "puffin_basic_test_mapped_dict_"
+                + Instant.now().getEpochSecond() + ".data";
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_MAPPED_DICT_FILENAME", filename);
+        runTest("mappeddict.bas", "mappeddict.bas.output");
+        Files.delete(Path.of(tmpdir, filename + "1"));
+        Files.delete(Path.of(tmpdir, filename + "2"));
+    }
+
+    @Test
+    public void testMappedDictFailedGrow() throws IOException {
+        var dir = Files.createTempDirectory("puffin_basic_test_mapped_dict_");
+        var file = dir.resolve("d.data");
+        var engine = new PuffinBasicEngine();
+        var fill = engine.compile("DICT<%, %> d MAPPED \"" + file + "\"\n"
+                + "FOR I% = 1 TO N% : d.put(I%, I% * 2) : NEXT\n"
+                + "L% = LEN(d) : V% = d.getOrDefault(N%, -1)\n");
+        var out = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(500, fill.run(Map.of("N%", 500), out, env).get("L%"));
+
+        // The grow writes the new table to d.data.tmp; make that fail
+        var tmp = Files.createDirectory(dir.resolve("d.data.tmp"));
+        Files.writeString(tmp.resolve("blocker"), "");
+        try {
+            fill.run(Map.of("N%", 5000), out, env);
+            fail("Grow should fail");
+        } catch (PuffinBasicRuntimeError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("[" + IO_ERROR + "]"));
+        }
+        Files.delete(tmp.resolve("blocker"));
+        Files.delete(tmp);
+
+        // The dict still holds everything put before the failed grow,
+        // which was the 513th put
+        var outputs = fill.run(Map.of("N%", 512), out, env);
+        assertEquals(512, outputs.get("L%"));
+        assertEquals(1024, outputs.get("V%"));
+        outputs = fill.run(Map.of("N%", 5000), out, env);
+        assertEquals(5000, outputs.get("L%"));
+        assertEquals(10000, outputs.get("V%"));
+        assertEquals(List.of(file), listFiles(dir));
+
+        Files.delete(file);
+        Files.delete(dir);
+    }
+
+    private static List<Path> listFiles(Path dir) throws IOException {
+        try (var files = Files.list(dir)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testSaveObj() throws IOException {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        String filename = "puffin_basic_test_saveobj_"
+                + Instant.now().getEpochSecond() + ".data";
+        env.set("TEST_TMP_DIR", tmpdir);
+        env.set("TEST_SAVEOBJ_FILENAME", filename);
+        runTest("saveobj.bas", "saveobj.bas.output");
+        Files.delete(Path.of(tmpdir, filename));
+    }
+
+    @Test
+    public void testLoadObjCorruptCounts() throws IOException {
+        var file = Files.createTempFile("puffin_basic_test_loadobj_", ".data");
+        var engine = new PuffinBasicEngine();
+        // {declaration, variable, offset of a count from the end of the file}
+        var cases = new String[][] {
+                {"DEQUE<%> X", "X", "4"},
+                {"LIST<$> X", "X", "4"},
+                {"X$ = \"\"", "X$", "4"},
+                {"DIM X%(2, 3)", "X%", "28"},
+        };
+        for (var c : cases) {
+            engine.compile(c[0] + " : SAVEOBJ F$, " + c[1] + "\n")
+                    .run(Map.of("F$", file.toString()), new PrintStream(new ByteArrayOutputStream()), env);
+            var bytes = Files.readAllBytes(file);
+            for (int count : new int[] {Integer.MAX_VALUE, (1 << 30) + 1, -5}) {
+                int pos = bytes.length - Integer.parseInt(c[2]);
+                ByteBuffer.wrap(bytes, pos, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(count);
+                Files.write(file, bytes);
+                try {
+                    engine.compile(c[0] + " : LOADOBJ F$, " + c[1] + "\n")
+                            .run(Map.of("F$", file.toString()), new PrintStream(new ByteArrayOutputStream()), env);
+                    fail(c[0] + " should fail to load count " + count);
+                } catch (PuffinBasicRuntimeError e) {
+                    assertTrue(e.getMessage(), e.getMessage().startsWith("[" + IO_ERROR + "]"));
+                }
+            }
+        }
+        Files.delete(file);
+    }
+
+    @Test
+    public void testArrayParallel() {
+        runTest("array_parallel.bas", "array_parallel.bas.output");
+        runTest("array_parallel.bas", "array_parallel.bas.output",
+                new UserOptions(false, false, false, false, false, 1000, 4, null));
+    }
+
+    @Test
+    public void testArrayMath() {
+        runTest("array_math.bas", "array_math.bas.output");
+    }
+
+    @Test
+    public void testMatrix() {
+        runTest("matrix.bas", "matrix.bas.output");
+        runTest("matrix.bas", "matrix.bas.output",
+                new UserOptions(false, false, false, false, false, 100, 4, null));
+    }
+
+    @Test
+    public void testArray2dConvKernelSize() {
+        var engine = new PuffinBasicEngine();
+        // 2 * n + 1 still overlaps src at the center tap
+        engine.compile("DIM A%(2, 3) : DIM K%(5, 7) : ARRAY2DCONV A%, K%, A%\n")
+                .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+        for (var kernel : new String[] {"K%(7, 7)", "K%(5, 9)"}) {
+            try {
+                engine.compile("DIM A%(2, 3) : DIM " + kernel + " : ARRAY2DCONV A%, K%, A%\n")
+                        .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(kernel + " should be rejected");
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("[" + ILLEGAL_FUNCTION_PARAM + "]"));
+            }
+        }
+    }
+
+    @Test
+    public void testSort() {
+        runTest("sort.bas", "sort.bas.output");
+        runTest("sort.bas", "sort.bas.output",
+                new UserOptions(false, false, false, false, false, 100, 4, null));
+    }
+
+    @Test
+    public void testGroupBy() {
+        runTest("groupby.bas", "groupby.bas.output");
+        runTest("groupby.bas", "groupby.bas.output",
+                new UserOptions(false, false, false, false, false, 100, 4, null));
+    }
+
+    @Test
+    public void testRegex() {
+        runTest("regex.bas", "regex.bas.output");
+    }
+
     @Test
     public void testStruct() {
         runTest("struct.bas", "struct.bas.output");
@@ -187,11 +615,319 @@ public class IntegrationTest {
         runTest("dict.bas", "dict.bas.output");
     }
 
+    @Test
+    public void testBitset() {
+        runTest("bitset.bas", "bitset.bas.output");
+    }
+
+    @Test
+    public void testPQueue() {
+        runTest("pqueue.bas", "pqueue.bas.output");
+    }
+
+    @Test
+    public void testPQueueStaleHandles() {
+        var engine = new PuffinBasicEngine();
+        var setup = "PQUEUE<%, $> pq\n"
+                + "H1% = pq.push(5, \"a\") : X$ = pq.pop() : H2% = pq.push(7, \"b\")\n";
+        // The popped handle's slot is reused by the next push, with a new generation
+        var vars = engine.compile(setup + "pq.decreaseKey(H2%, 1) : P% = pq.peekPriority()\n")
+                .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+        assertEquals(1, vars.get("P%"));
+        assertTrue(!vars.get("H1%").equals(vars.get("H2%")));
+        for (var stale : new String[] {
+                "pq.decreaseKey(H1%, 1)",
+                "pq.clear() : H3% = pq.push(9, \"c\") : pq.decreaseKey(H2%, 1)",
+        }) {
+            try {
+                engine.compile(setup + stale + "\n")
+                        .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(stale + " should reject the stale handle");
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("[" + ILLEGAL_FUNCTION_PARAM + "]"));
+            }
+        }
+    }
+
+    @Test
+    public void testDeque() {
+        runTest("deque.bas", "deque.bas.output");
+    }
+
+    @Test
+    public void testSortedDict() {
+        runTest("sorteddict.bas", "sorteddict.bas.output");
+    }
+
+    @Test
+    public void testSpatialGrid() {
+        runTest("spatialgrid.bas", "spatialgrid.bas.output");
+    }
+
+    @Test
+    public void testSpatialGridNonFinite() {
+        var engine = new PuffinBasicEngine();
+        var setup = "SPATIALGRID grid : DIM IDS%(1) : grid.insert(1, 0, 0, 1, 1)\n"
+                + "INF# = 10# ^ 300 : INF# = INF# * INF# : NAN# = INF# - INF#\n";
+        for (var stmt : new String[] {
+                "grid.insert(2, 0, 0, INF#, 1)",
+                "grid.move(1, NAN#, 0, 1, 1)",
+                "N% = grid.query(-INF#, -INF#, INF#, INF#, IDS%)",
+        }) {
+            try {
+                engine.compile(setup + stmt + "\n")
+                        .run(Map.of(), new PrintStream(new ByteArrayOutputStream()), env);
+                fail(stmt + " should reject non-finite coordinates");
+            } catch (PuffinBasicRuntimeError e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("[" + ILLEGAL_FUNCTION_PARAM + "]"));
+            }
+        }
+    }
+
+    @Test
+    public void testColumnList() {
+        runTest("columnlist.bas", "columnlist.bas.output");
+    }
+
+    @Test
+    public void testLineOrder() {
+        var source = "30 PRINT \"C\"\n10 PRINT \"A\"\n20 PRINT \"X\"\n20 PRINT \"B\"\n";
+        var bos = new ByteArrayOutputStream();
+        var out = new PrintStream(bos);
+        interpretAndRun(
+                new UserOptions(true, false, false, false, false, 100, 4, null),
+                source,
+                out,
+                env);
+        out.close();
+        assertEquals("A\nB\nC\n", new String(bos.toByteArray()));
+    }
+
+    @Test
+    public void testCompileOnceRunMany() throws Exception {
+        for (var source : List.of("func.bas", "udf.bas", "ref.bas", "struct.bas", "list.bas", "dict.bas")) {
+            var program = compile(UserOptions.ofTest(), loadSourceCodeFromResource(source));
+            var expected = loadOutputFromResource(source + ".output");
+            for (int i = 0; i < 3; i++) {
+                assertEquals(expected, runCompiled(program));
+            }
+            var executor = Executors.newFixedThreadPool(4);
+            try {
+                var futures = new ArrayList<Future<String>>();
+                for (int i = 0; i < 8; i++) {
+                    futures.add(executor.submit(() -> runCompiled(program)));
+                }
+                for (var future : futures) {
+                    assertEquals(expected, future.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void testEngine() {
+        var program = new PuffinBasicEngine().compile(
+                "<TEST>",
+                "Y# = X# * 2\n"
+                        + "S% = 0\n"
+                        + "FOR I% = 0 TO LEN(A%) - 1 : S% = S% + A%(I%) : A%(I%) = -A%(I%) : NEXT\n"
+                        + "PRINT NAME$; S%\n",
+                List.of("A%"));
+        assertEquals(Set.of("A%", "I%", "NAME$", "S%", "X#", "Y#"), program.getVariableNames());
+
+        var bos = new ByteArrayOutputStream();
+        var out = new PrintStream(bos);
+        var outputs = program.run(Map.of("X#", 21, "A%", new int[] {1, 2, 3}, "NAME$", "abc"), out, env);
+        assertEquals(42.0, outputs.get("Y#"));
+        assertEquals(6, outputs.get("S%"));
+        assertArrayEquals(new int[] {-1, -2, -3}, (int[]) outputs.get("A%"));
+
+        outputs = program.run(Map.of("X#", 1.5, "A%", List.of(10L, 20L), "NAME$", "xyz"), out, env);
+        assertEquals(3.0, outputs.get("Y#"));
+        assertEquals(30, outputs.get("S%"));
+        out.close();
+        assertEquals("abc 6 \nxyz 30 \n", new String(bos.toByteArray()));
+    }
+
+    @Test
+    public void testScriptEngine() throws ScriptException {
+        var engine = new ScriptEngineManager().getEngineByName("puffinbasic");
+        var writer = new StringWriter();
+        engine.getContext().setWriter(writer);
+        engine.put("N%", 5);
+        engine.put("V#", new double[] {0.5, 0.25});
+        engine.eval("T% = N% * N% + V#(1) * 4\nPRINT \"T\"; T%");
+        assertEquals(26, engine.get("T%"));
+        assertEquals("T 26 \n", writer.toString());
+
+        var script = ((Compilable) engine).compile("SQ% = N% * N%");
+        for (int n = 1; n <= 3; n++) {
+            var bindings = engine.createBindings();
+            bindings.put("N%", n);
+            script.eval(bindings);
+            assertEquals(n * n, bindings.get("SQ%"));
+        }
+    }
+
+    @Test
+    public void testCompiledProgramCache() throws IOException {
+        var cacheDir = Files.createTempDirectory("puffin_basic_test_cache_");
+        var userOptions = new UserOptions(
+                false, false, false, false, false, 100, 4, cacheDir.toString(), null);
+        var sources = List.of(
+                "forloop.bas", "gosublabel.bas", "readdata.bas", "def.bas", "func.bas", "udf.bas",
+                "ref.bas", "struct.bas", "list.bas", "dict.bas", "pqueue.bas", "deque.bas",
+                "sorteddict.bas", "bitset.bas", "spatialgrid.bas", "columnlist.bas", "matrix.bas");
+        for (var source : sources) {
+            runTest(source, source + ".output", userOptions);
+        }
+        var entries = listCacheEntries(cacheDir);
+        assertEquals(sources.size(), entries.size());
+
+        // Hits leave the entries as they are
+        for (var source : sources) {
+            runTest(source, source + ".output", userOptions);
+        }
+        assertEquals(entries, listCacheEntries(cacheDir));
+
+        // Changing an imported file invalidates the entry
+        var lib = cacheDir.resolve("lib.bas");
+        var main = cacheDir.resolve("main.bas");
+        Files.writeString(lib, "LIBTAG \"_lib_\"\nPRINT \"lib v1\"\n");
+        Files.writeString(main, "10 IMPORT \"lib.bas\"\n20 PRINT \"main\"\n");
+        assertEquals("lib v1\nmain\n", runFile(main, userOptions));
+        assertEquals("lib v1\nmain\n", runFile(main, userOptions));
+        Files.writeString(lib, "LIBTAG \"_lib_\"\nPRINT \"lib v2\"\n");
+        assertEquals("lib v2\nmain\n", runFile(main, userOptions));
+
+        // A cache that can't be written to doesn't fail the run
+        var notADir = cacheDir.resolve("not_a_dir");
+        Files.writeString(notADir, "");
+        var badCacheOptions = new UserOptions(
+                false, false, false, false, false, 100, 4, notADir.toString(), null);
+        runTest("forloop.bas", "forloop.bas.output", badCacheOptions);
+
+        try (var files = Files.list(cacheDir)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDir);
+    }
+
+    @Test
+    public void testCompiledProgramCacheCorruptCounts() throws IOException {
+        var cacheDir = Files.createTempDirectory("puffin_basic_test_cache_");
+        var userOptions = new UserOptions(
+                false, false, false, false, false, 100, 4, cacheDir.toString(), null);
+        var main = cacheDir.resolve("main.bas");
+        Files.writeString(main, "10 PRINT \"main\"\n");
+        assertEquals("main\n", runFile(main, userOptions));
+        var entry = listCacheEntries(cacheDir).keySet().stream()
+                .filter(file -> !file.equals(main))
+                .findFirst()
+                .orElseThrow();
+        var bytes = Files.readAllBytes(entry);
+        var buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        // magic, version, #imports = 0, #sourceFiles = 1
+        buffer.position(16);
+        skipString(buffer);
+        if (buffer.getInt() != 0) {
+            skipString(buffer);
+        }
+        skipString(buffer);
+        int numInstructionsPos = buffer.position();
+
+        // A damaged entry is ignored and replaced
+        for (int count : new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE / 8 + 1, 1 << 26, -1}) {
+            ByteBuffer.wrap(bytes, numInstructionsPos, 4).order(ByteOrder.LITTLE_ENDIAN).putInt(count);
+            Files.write(entry, bytes);
+            assertEquals("main\n", runFile(main, userOptions));
+        }
+
+        try (var files = Files.list(cacheDir)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(cacheDir);
+    }
+
+    @Test
+    public void testParallelImports() throws IOException {
+        var dir = Files.createTempDirectory("puffin_basic_test_imports_");
+        var common = dir.resolve("common.bas");
+        var lib1 = dir.resolve("lib1.bas");
+        var lib2 = dir.resolve("lib2.bas");
+        var main = dir.resolve("main.bas");
+        Files.writeString(common, "LIBTAG \"_common_\"\nPRINT \"common\"\n");
+        Files.writeString(lib1, "LIBTAG \"_lib1_\"\nIMPORT \"common.bas\"\nPRINT \"lib1\"\n");
+        Files.writeString(lib2, "LIBTAG \"_lib2_\"\nIMPORT \"common.bas\"\nPRINT \"lib2\"\n");
+        Files.writeString(main, "10 IMPORT \"lib1.bas\"\n20 IMPORT \"lib2.bas\"\n30 PRINT \"main\"\n");
+        // Same order whether the libs are parsed serially or in parallel
+        for (int parallelism : new int[] {1, 4}) {
+            var userOptions = new UserOptions(
+                    false, false, false, false, false, 100, parallelism, null);
+            assertEquals("lib1\ncommon\nlib2\nmain\n", runFile(main, userOptions));
+        }
+
+        Files.writeString(common, "LIBTAG \"_common_\"\nIMPORT \"lib1.bas\"\nPRINT \"common\"\n");
+        try {
+            runFile(main, UserOptions.ofTest());
+            fail("Circular import should fail");
+        } catch (PuffinBasicRuntimeError e) {
+            assertTrue(e.getMessage().startsWith("[" + IMPORT_ERROR + "]"));
+        }
+
+        for (var file : List.of(common, lib1, lib2, main)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        buffer.position(buffer.position() + length);
+    }
+
+    private static Map<Path, Object> listCacheEntries(Path cacheDir) throws IOException {
+        var entries = new HashMap<Path, Object>();
+        try (var files = Files.list(cacheDir)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                entries.put(file, Files.getLastModifiedTime(file));
+            }
+        }
+        return entries;
+    }
+
+    private String runFile(Path file, UserOptions userOptions) throws IOException {
+        var bos = new ByteArrayOutputStream();
+        var out = new PrintStream(bos);
+        interpretAndRun(userOptions, file.toString(), Files.readString(file), out, env);
+        out.close();
+        return new String(bos.toByteArray());
+    }
+
+    private String runCompiled(CompiledProgram program) {
+        var bos = new ByteArrayOutputStream();
+        var out = new PrintStream(bos);
+        run(UserOptions.ofTest(), program, out, env);
+        out.close();
+        return new String(bos.toByteArray());
+    }
+
     private void runTest(String source, String output) {
+        runTest(source, output, UserOptions.ofTest());
+    }
+
+    private void runTest(String source, String output, UserOptions userOptions) {
         var bos = new ByteArrayOutputStream();
         var out = new PrintStream(bos);
         interpretAndRun(
-                UserOptions.ofTest(),
+                userOptions,
                 loadSourceCodeFromResource(source),
                 out,
                 env);
@@ -16,6 +16,8 @@
 160 NEXT I% : PRINT ""
 170 PRINT ARRAY1DBINSEARCH(C%, 2), ARRAY1DBINSEARCH(C%, 3)
 180 PRINT ARRAY1DMEAN(C%), ARRAY1DSUM(C%), ARRAY1DSTD(C%), ARRAY1DMEDIAN(C%), ARRAY1DPCT(C%, 90), ARRAY1DMIN(C%), ARRAY1DMAX(C%)
+182 DIM P#(3) : P#(0) = 10 : P#(1) = 50 : P#(2) = 90 : DIM R#(1)
+184 ARRAY1DPCTS C%, P#, R# : PRINT LEN(R#), R#(0), R#(1), R#(2)
 190 DIM D%(5, 3)
 250 GOSUB 2000 : GOSUB 1000 ' INIT and PRINT D%
 260 FOR S% = 0 TO 6
@@ -0,0 +1,32 @@
+10 DIM A#(2, 3) : DIM B#(2, 3) : DIM C#(2, 3)
+20 FOR I% = 0 TO 1 : FOR J% = 0 TO 2 : A#(I%, J%) = I% * 3 + J% + 1 : B#(I%, J%) = 2 : NEXT : NEXT
+30 ARRAYADD A#, B#, C# : PRINT C#(0, 0), C#(1, 2)
+40 ARRAYSUB A#, B#, C# : PRINT C#(0, 0), C#(1, 2)
+50 ARRAYMUL A#, B#, C# : PRINT C#(0, 0), C#(1, 2)
+60 ARRAYDIV A#, B#, C# : PRINT C#(0, 0), C#(1, 2)
+70 ARRAYSCALE A#, 0.5, C# : PRINT C#(0, 1), C#(1, 1)
+80 ARRAYAXPY 10, A#, C# : PRINT C#(0, 1), C#(1, 1)
+90 PRINT ARRAYDOT(A#, B#)
+100 ARRAYCLAMP A#, 2, 5 : PRINT A#(0, 0), A#(0, 2), A#(1, 2)
+110 DIM X%(4) : DIM Y%(4)
+120 FOR I% = 0 TO 3 : X%(I%) = I% * 5 : Y%(I%) = I% + 1 : NEXT
+130 ARRAYDIV X%, Y%, X% : PRINT X%(0), X%(1), X%(2), X%(3)
+140 ARRAYSCALE Y%, 2.5, Y% : PRINT Y%(0), Y%(1), Y%(3)
+150 ARRAYAXPY -1, Y%, X% : PRINT X%(1), X%(3)
+160 PRINT ARRAYDOT(X%, Y%)
+170 DIM L@(2) : L@(0) = 3000000000@ : L@(1) = -3
+180 ARRAYMUL L@, L@, L@ : PRINT L@(0), L@(1)
+190 DIM F!(3) : F!(0) = -1.5 : F!(1) = 0.25 : F!(2) = 9
+200 ARRAYCLAMP F!, -1, 1 : ARRAYADD F!, F!, F! : PRINT F!(0), F!(1), F!(2)
+210 DIM B@(2) : B@(0) = 9007199254740993@ : B@(1) = -3
+220 ARRAYSCALE B@, 3, B@ : PRINT B@(0), B@(1)
+230 ARRAYAXPY 1, B@, B@ : PRINT B@(0), B@(1)
+240 DIM K%(2) : K%(0) = 2000000000 : K%(1) = -2000000000
+250 ARRAYSCALE K%, 2, K% : PRINT K%(0), K%(1)
+260 ARRAYAXPY 0.5, K%, K% : PRINT K%(0), K%(1)
+270 B@(0) = 5000000000000000000@ : B@(1) = -5000000000000000000@
+280 ARRAYSCALE B@, 2, B@ : PRINT B@(0), B@(1)
+290 B@(0) = 5000000000000000000@ : B@(1) = -5000000000000000000@
+300 ARRAYAXPY 1, B@, B@ : PRINT B@(0), B@(1)
+310 B@(0) = 5000000000000000000@ : B@(1) = -5000000000000000000@
+320 ARRAYAXPY 0.9, B@, B@ : PRINT B@(0), B@(1)
@@ -0,0 +1,16 @@
+10 N% = 100000
+20 DIM A#(N%) : DIM B#(N%) : DIM C%(N%) : DIM D@(N%) : DIM E!(N%) : DIM S$(N%)
+30 FOR I% = 0 TO N% - 1
+40   A#(I%) = SIN(I%) * 1000 : C%(I%) = (I% * 7919) MOD 100003 - 50000
+50   D@(I%) = I% * 1000000@ : E!(I%) = COS(I%) : S$(I%) = STR$((I% * 31) MOD 1000)
+60 NEXT
+70 PRINT ARRAY1DSUM(A#), ARRAY1DMIN(A#), ARRAY1DMAX(A#)
+80 PRINT ARRAY1DSUM(C%), ARRAY1DMIN(C%), ARRAY1DMAX(C%)
+90 PRINT ARRAY1DSUM(D@), ARRAY1DMIN(D@), ARRAY1DMAX(D@)
+100 PRINT ARRAY1DSUM(E!), ARRAY1DMIN(E!), ARRAY1DMAX(E!)
+110 ARRAYCOPY A#, B# : PRINT B#(0), B#(N% / 2), B#(N% - 1)
+120 ARRAY1DSORT B# : PRINT B#(0), B#(N% / 2), B#(N% - 1)
+130 ARRAY1DSORT C% : PRINT C%(0), C%(N% / 2), C%(N% - 1)
+140 ARRAY1DSORT S$ : PRINT S$(0), S$(N% / 2), S$(N% - 1)
+150 ARRAYFILL A#, 2.5 : ARRAYFILL C%, 3.7 : ARRAYFILL D@, -2
+160 PRINT ARRAY1DSUM(A#), ARRAY1DSUM(C%), ARRAY1DMAX(D@)
@@ -0,0 +1,18 @@
+10 FILE$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_ARRAY_FILENAME")
+20 DIM A%(3, 4) : DIM B@(5) : DIM C!(2, 2) : DIM D#(6) : DIM E$(3)
+30 FOR I% = 0 TO 2 : FOR J% = 0 TO 3 : A%(I%, J%) = I% * 10 + J% : NEXT : NEXT
+40 FOR I% = 0 TO 4 : B@(I%) = 10000000000@ + I% : NEXT
+50 C!(0, 0) = 1.5 : C!(1, 1) = -2.25
+60 FOR I% = 0 TO 5 : D#(I%) = I% / 3# : NEXT
+70 E$(0) = "hello" : E$(1) = "" : E$(2) = "w, orld"
+80 DIM A2%(1, 1) : DIM B2@(1) : DIM C2!(1, 1) : DIM D2#(1) : DIM E2$(1)
+90 ARRAYSAVE FILE$, A% : ARRAYLOAD FILE$, A2%
+100 PRINT LEN(A2%, 0), LEN(A2%, 1), A2%(2, 3), A2%(1, 2)
+110 ARRAYSAVE FILE$, B@ : ARRAYLOAD FILE$, B2@
+120 PRINT LEN(B2@), B2@(0), B2@(4)
+130 ARRAYSAVE FILE$, C! : ARRAYLOAD FILE$, C2!
+140 PRINT C2!(0, 0), C2!(1, 1), C2!(0, 1)
+150 ARRAYSAVE FILE$, D# : ARRAYLOAD FILE$, D2#
+160 PRINT D2#(0), D2#(1), D2#(5)
+170 ARRAYSAVE FILE$, E$ : ARRAYLOAD FILE$, E2$
+180 PRINT LEN(E2$), E2$(0), E2$(1), E2$(2)
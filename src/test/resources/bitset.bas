@@ -0,0 +1,69 @@
+PRINT "BITSET"
+
+BITSET b1
+b1.set(3)
+b1.set(64)
+b1.set(100)
+PRINT LEN(b1), b1.cardinality()
+PRINT b1.get(3), b1.get(4)
+
+b1.flip(3)
+b1.flip(4)
+PRINT b1.get(3), b1.get(4)
+PRINT b1.nextSetBit(0), b1.nextSetBit(65), b1.nextSetBit(101)
+PRINT b1.nextClearBit(64)
+
+b1.clear(4)
+auto b1val = b1.values()
+FOR I% = 0 TO LEN(b1val) - 1
+  PRINT b1val(I%),
+NEXT : PRINT ""
+
+PRINT "BULK"
+
+BITSET b2
+b2.setRange(60, 70)
+BITSET b3
+b3.setRange(60, 70)
+b3.and(b1)
+PRINT LEN(b3), b3.nextSetBit(0)
+b3.or(b2)
+PRINT LEN(b3)
+b3.xor(b1)
+PRINT LEN(b3), b3.get(100)
+b3.andNot(b2)
+PRINT LEN(b3)
+b1.clearAll()
+PRINT LEN(b1)
+
+PRINT "SIEVE"
+
+BITSET composite
+N% = 100
+FOR I% = 2 TO 10
+  IF composite.get(I%) = 0 THEN FOR J% = I% * I% TO N% STEP I% : composite.set(J%) : NEXT
+NEXT
+P% = composite.nextClearBit(2)
+WHILE P% <= N%
+  PRINT P%;
+  P% = composite.nextClearBit(P% + 1)
+WEND
+PRINT ""
+
+PRINT "STRUCT AND FUNCTION"
+
+STRUCT flags { BITSET seen, C% }
+flags f1 {}
+f1.seen.set(7)
+PRINT f1.seen.get(7), LEN(f1.seen)
+
+FUNCTION countFrom% (BITSET b, from%) {
+  C% = 0
+  I% = b.nextSetBit(from%)
+  WHILE I% >= 0
+    C% = C% + 1
+    I% = b.nextSetBit(I% + 1)
+  WEND
+  RETURN C%
+}
+PRINT countFrom%(b2, 65)
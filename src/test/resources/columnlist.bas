@@ -0,0 +1,67 @@
+PRINT "COLUMNLIST"
+
+STRUCT particle { ID%, X#, Y!, NAME$ }
+particle p {}
+COLUMNLIST<particle> ps
+FOR I% = 0 TO 19
+  p.ID% = I%
+  p.X# = I% * 1.5
+  p.Y! = 100 - I%
+  p.NAME$ = "P" + STR$(I%)
+  R% = ps.append(p)
+NEXT
+PRINT LEN(ps), R%
+PRINT ps.ID(3), ps.X(3), ps.Y(3), ps.NAME(3)
+ps.setX(3, 42)
+ps.setNAME(3, "three")
+PRINT ps.X(3), ps.NAME(3)
+
+PRINT "ROWS"
+particle q {}
+ps.get(5, q)
+PRINT q.ID%, q.X#, q.Y!, q.NAME$
+q.NAME$ = "moved"
+q.Y! = -1
+ps.set(6, q)
+PRINT ps.ID(6), ps.Y(6), ps.NAME(6)
+
+PRINT "COLUMNS"
+AUTO xs = ps.columnX()
+PRINT LEN(xs)
+FOR I% = 0 TO LEN(xs) - 1
+  xs(I%) = xs(I%) * 2
+NEXT
+PRINT ps.X(0), ps.X(3), ps.X(19)
+AUTO names = ps.columnNAME()
+PRINT names(3), names(6)
+AUTO ids = ps.columnID()
+S% = 0
+FOR I% = 0 TO LEN(ids) - 1 : S% = S% + ids(I%) : NEXT
+PRINT S%
+
+PRINT "CLEAR"
+ps.clear()
+PRINT LEN(ps)
+ps.append(p)
+PRINT LEN(ps), ps.ID(0), ps.NAME(0)
+
+PRINT "STRUCT AND FUNCTION"
+
+STRUCT point { PX%, PY% }
+STRUCT shape { COLUMNLIST<point> pts, N% }
+shape sh {}
+point pt {}
+FOR I% = 1 TO 4
+  pt.PX% = I%
+  pt.PY% = I% * I%
+  sh.pts.append(pt)
+NEXT
+PRINT LEN(sh.pts)
+
+FUNCTION sumY% (COLUMNLIST<point> l) {
+  AUTO ys = l.columnPY()
+  T% = 0
+  FOR J% = 0 TO LEN(ys) - 1 : T% = T% + ys(J%) : NEXT
+  RETURN T%
+}
+PRINT sumY%(sh.pts)
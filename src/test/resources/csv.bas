@@ -0,0 +1,33 @@
+10 FILE$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_CSV_FILENAME")
+20 DIM ID%(5) : DIM NAME$(5) : DIM SCORE#(5) : DIM BIG@(5)
+30 FOR I% = 0 TO 4
+40 ID%(I%) = I% + 1
+50 NAME$(I%) = "N, " + CHR$(65 + I%)
+60 SCORE#(I%) = (I% + 1) * 1.5
+70 BIG@(I%) = 10000000000@ * (I% + 1)
+80 NEXT
+90 SAVECSV FILE$ USING "id", "name", "score", "big" AS ID%, NAME$, SCORE#, BIG@
+100 DIM A%(1) : DIM B$(1) : DIM C#(1) : DIM D@(1)
+110 LOADCSV FILE$, 1 AS A%, B$, C#, D@
+120 PRINT LEN(A%), LEN(B$)
+130 FOR I% = 0 TO LEN(A%) - 1
+140 PRINT A%(I%), B$(I%), C#(I%), D@(I%)
+150 NEXT
+160 DIM S!(1) : DIM N$(1)
+170 LOADCSV FILE$, 1 USING 2, 1 AS S!, N$
+180 PRINT LEN(S!), S!(0), N$(4)
+190 R% = 0
+200 WHILE R% < 5
+210 LOADCSV FILE$, 1, R%, 2 USING 0 AS A%
+220 PRINT "CHUNK"; R%; LEN(A%); A%(0)
+230 R% = R% + LEN(A%)
+240 WEND
+250 LOADCSV FILE$, 1, 0, 2 USING 0 AS A%
+260 FOR I% = 0 TO 4 : ID%(I%) = ID%(I%) * 100 : NEXT
+270 SAVECSV FILE$ USING "id" AS ID%
+280 LOADCSV FILE$, 1, 2, 2 USING 0 AS A%
+290 PRINT "SAVED"; A%(0); A%(1)
+300 LOADCSV FILE$, 1, 0, 2 USING 0 AS A%
+310 OPEN "O", #1, FILE$ : WRITE#1, "id" : FOR I% = 7 TO 11 : WRITE#1, I% : NEXT : CLOSE #1
+320 LOADCSV FILE$, 1, 2, 2 USING 0 AS A%
+330 PRINT "WRITTEN"; A%(0); A%(1)
@@ -0,0 +1,69 @@
+PRINT "DEQUE of INT32"
+
+DEQUE<%> dq1
+dq1.pushBack(1)
+dq1.pushBack(2)
+dq1.pushFront(0)
+PRINT LEN(dq1), dq1.peekFront(), dq1.peekBack(), dq1.get(1)
+dq1.set(1, 20)
+PRINT dq1.popFront(), dq1.popBack(), dq1.popFront(), LEN(dq1)
+
+FOR I% = 1 TO 40 : dq1.pushFront(I%) : dq1.pushBack(-I%) : NEXT
+FOR I% = 1 TO 30 : X% = dq1.popFront() : NEXT
+PRINT LEN(dq1), dq1.peekFront(), dq1.peekBack(), dq1.get(10)
+auto dq1val = dq1.values()
+PRINT LEN(dq1val), dq1val(0), dq1val(LEN(dq1val) - 1)
+dq1.clear()
+PRINT LEN(dq1)
+
+PRINT "DEQUE of STRING"
+
+DEQUE<$> dq2
+dq2.pushBack("b")
+dq2.pushFront("a")
+dq2.pushBack("c")
+auto dq2val = dq2.values()
+FOR I% = 0 TO LEN(dq2val) - 1
+  PRINT dq2val(I%);
+NEXT : PRINT ""
+PRINT dq2.popBack(), dq2.popFront(), dq2.popFront()
+
+PRINT "SLIDING WINDOW MAX"
+
+DIM V#(10)
+FOR I% = 0 TO 9 : READ V#(I%) : NEXT
+DATA 1, 3, 2, 5, 4, 1, 1, 6, 2, 0
+DEQUE<%> idx
+FOR I% = 0 TO 9
+  MORE% = LEN(idx) > 0
+  WHILE MORE%
+    IF V#(idx.peekBack()) <= V#(I%) THEN X% = idx.popBack() : MORE% = LEN(idx) > 0 ELSE MORE% = 0
+  WEND
+  idx.pushBack(I%)
+  IF idx.peekFront() <= I% - 3 THEN X% = idx.popFront()
+  IF I% >= 2 THEN PRINT V#(idx.peekFront());
+NEXT
+PRINT ""
+
+PRINT "BFS"
+
+DIM G%(5, 5)
+G%(1, 0) = 1 : G%(1, 1) = 1 : G%(1, 2) = 1 : G%(3, 2) = 1 : G%(3, 3) = 1 : G%(3, 4) = 1
+DIM D%(5, 5)
+FOR Y% = 0 TO 4 : FOR X% = 0 TO 4 : D%(Y%, X%) = -1 : NEXT : NEXT
+DEQUE<%> frontier
+frontier.pushBack(0)
+D%(0, 0) = 0
+WHILE LEN(frontier) > 0
+  P% = frontier.popFront()
+  Y% = P% \ 5 : X% = P% MOD 5
+  FOR K% = 0 TO 3
+    NY% = Y% : NX% = X%
+    IF K% = 0 THEN NY% = Y% - 1
+    IF K% = 1 THEN NY% = Y% + 1
+    IF K% = 2 THEN NX% = X% - 1
+    IF K% = 3 THEN NX% = X% + 1
+    IF NY% >= 0 AND NY% < 5 AND NX% >= 0 AND NX% < 5 THEN IF G%(NY%, NX%) = 0 AND D%(NY%, NX%) < 0 THEN D%(NY%, NX%) = D%(Y%, X%) + 1 : frontier.pushBack(NY% * 5 + NX%)
+  NEXT
+WEND
+PRINT D%(4, 0), D%(4, 4), D%(2, 4)
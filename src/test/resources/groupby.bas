@@ -0,0 +1,31 @@
+10 DIM R$(8) : DIM A#(8) : DIM K$(1) : DIM S#(1, 1)
+20 FOR I% = 0 TO 7 : READ R$(I%), A#(I%) : NEXT : A#(5) = -1
+30 DATA "north", 10, "south", 4, "north", 2.5, "east", 7, "south", 6, "north", 1, "west", 3, "east", 1
+40 GROUPBY R$, A#, K$, S#
+50 FOR G% = 0 TO 3 : PRINT K$(G%), S#(G%, 0), S#(G%, 1), S#(G%, 2), S#(G%, 3), S#(G%, 4) : NEXT
+60 DIM C%(10) : DIM V%(10) : DIM KC%(1)
+70 FOR I% = 0 TO 9 : C%(I%) = I% MOD 3 : V%(I%) = I% : NEXT
+80 GROUPBY C%, V%, C%, S#
+90 FOR G% = 0 TO 2 : PRINT C%(G%), S#(G%, 0), S#(G%, 1), S#(G%, 4) : NEXT
+100 DIM X!(7) : DIM H%(1) : DIM H@(1)
+110 X!(0) = 0 : X!(1) = 0.5 : X!(2) = 1 : X!(3) = 9.99 : X!(4) = 10 : X!(5) = -1 : X!(6) = 11
+120 HISTOGRAM X!, 0, 10, 5, H%
+130 FOR B% = 0 TO 4 : PRINT H%(B%); : NEXT : PRINT ""
+140 HISTOGRAM X!, -5, 15, 2, H@ : PRINT H@(0), H@(1)
+150 DIM L%(5) : DIM RR%(4) : DIM LI%(1) : DIM RI%(1)
+160 L%(0) = 1 : L%(1) = 2 : L%(2) = 1 : L%(3) = 3 : L%(4) = 4
+170 RR%(0) = 4 : RR%(1) = 1 : RR%(2) = 5 : RR%(3) = 2
+180 HASHJOIN L%, RR%, LI%, RI%
+190 FOR I% = 0 TO 3 : PRINT LI%(I%); RI%(I%); "|"; : NEXT : PRINT ""
+200 DIM NL$(3) : DIM NR$(2) : NL$(0) = "a" : NL$(1) = "b" : NL$(2) = "a" : NR$(0) = "a" : NR$(1) = "c"
+210 HASHJOIN NL$, NR$, LI%, RI% : PRINT LI%(0), RI%(0), LI%(1), RI%(1)
+300 ' LARGE INPUTS
+310 DIM BK@(30000) : DIM BV!(30000) : DIM OK@(1)
+320 FOR I% = 0 TO 29999 : BK@(I%) = (I% * 7919) MOD 1009 : BV!(I%) = (I% MOD 17) / 4 : NEXT
+330 GROUPBY BK@, BV!, OK@, S#
+340 T# = 0 : N# = 0 : FOR G% = 0 TO 1008 : T# = T# + S#(G%, 1) : N# = N# + S#(G%, 0) : NEXT
+350 PRINT OK@(0), OK@(1), OK@(1008), N#, T#, S#(5, 2), S#(5, 3), S#(5, 4)
+360 HISTOGRAM BV!, 0, 4, 4, H% : PRINT H%(0), H%(1), H%(2), H%(3)
+370 DIM BR@(2000) : FOR I% = 0 TO 1999 : BR@(I%) = I% : NEXT
+380 HASHJOIN BK@, BR@, LI%, RI%
+390 PRINT LI%(0), RI%(0), LI%(29999), RI%(29999), BK@(LI%(12345)) = BR@(RI%(12345))
@@ -0,0 +1,23 @@
+10 OPEN ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_INPUT_FILENAME") FOR INPUT AS #1
+20 REM Quoted fields with embedded quotes and commas
+30 FOR I% = 1 TO 3
+40 INPUT#1, A$, B%, C#
+50 PRINT "["; A$; "]", B%, C#
+60 NEXT
+70 REM Empty fields and an empty line
+80 INPUT#1, A$, B$, C$
+90 PRINT "["; A$; "]["; B$; "]["; C$; "]"
+100 INPUT#1, A$
+110 PRINT "["; A$; "]"
+120 INPUT#1, A$, B$
+130 PRINT "["; A$; "]["; B$; "]"
+140 REM Long and exponent numbers
+150 INPUT#1, B%, D%
+160 PRINT B%, D%
+170 INPUT#1, E@, F@
+180 PRINT E@, F@
+190 INPUT#1, G!, H!, J!
+200 PRINT G!, H!, J!
+210 INPUT#1, C#, K#, L#, M#
+220 PRINT C#, K#, L#, M#
+230 CLOSE #1
@@ -0,0 +1,20 @@
+10 FILE$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_MAPPED_FILENAME")
+15 F2$ = FILE$ + ".2" : F3$ = FILE$ + ".3" : F4$ = FILE$ + ".4"
+20 DIM M#(3, 4) MAPPED FILE$
+30 FOR I% = 0 TO 2 : FOR J% = 0 TO 3 : M#(I%, J%) = I% * 10 + J% / 4# : NEXT : NEXT
+40 M#(1, 1) = M#(1, 1) + 100
+50 PRINT LEN(M#, 0), LEN(M#, 1), M#(0, 1), M#(1, 1), M#(2, 3)
+60 DIM M#(3, 4) MAPPED FILE$
+70 PRINT M#(1, 1), M#(2, 3)
+80 DIM H#(1, 1) : ARRAYLOAD FILE$, H#
+90 PRINT LEN(H#, 0), LEN(H#, 1), H#(1, 1), H#(2, 3)
+100 DIM M#(2, 2) MAPPED F2$
+110 PRINT M#(1, 1)
+120 ARRAYFILL M#, 2.5 : PRINT M#(0, 0), M#(1, 1)
+130 DIM M#(2) : M#(1) = 7 : PRINT M#(1)
+140 DIM B@(4) MAPPED F3$
+150 B@(3) = 10000000000@ : B@(0) = B@(3) * 2
+160 PRINT B@(0), B@(3), B@(1)
+170 DIM K%(5) MAPPED F4$
+180 K%(2) = 3.7 : PRINT K%(2) + 1
+190 CLOSE : PRINT K%(2)
@@ -0,0 +1,38 @@
+FILE1$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_MAPPED_DICT_FILENAME") + "1"
+FILE2$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_MAPPED_DICT_FILENAME") + "2"
+
+PRINT "MAPPED DICT"
+
+DICT<$, %> d1 MAPPED FILE1$
+PRINT LEN(d1)
+d1.put("a", 1)
+d1.put("b", 2)
+d1.put("a", 3)
+PRINT LEN(d1), d1.getOrDefault("a", -1), d1.getOrDefault("b", -1), d1.getOrDefault("z", -1)
+PRINT d1.containsKey("b"), d1.removeKey("b"), d1.containsKey("b"), LEN(d1)
+
+FOR I% = 1 TO 5000
+  d1.put("key" + STR$(I%), I% * 2)
+NEXT
+PRINT LEN(d1), d1.getOrDefault("key4321", -1), d1.getOrDefault("key5001", -1)
+
+PRINT "REOPEN"
+DICT<$, %> d2 MAPPED FILE1$
+PRINT LEN(d2), d2.getOrDefault("a", -1), d2.getOrDefault("key1", -1), d2.getOrDefault("key5000", -1)
+AUTO k = d2.keys()
+PRINT LEN(k)
+
+PRINT "NUMERIC KEYS AND STRING VALUES"
+DICT<@, $> d3 MAPPED FILE2$
+FOR I% = 0 TO 2999
+  d3.put(I% * 1000000000@, "v" + STR$(I%))
+NEXT
+FOR I% = 0 TO 2999 STEP 2
+  d3.removeKey(I% * 1000000000@)
+NEXT
+d3.put(7000000000@, "seven")
+PRINT LEN(d3), d3.getOrDefault(7000000000@, "?"), d3.getOrDefault(8000000000@, "?"), d3.getOrDefault(9000000000@, "?")
+DICT<@, $> d4 MAPPED FILE2$
+PRINT LEN(d4), d4.getOrDefault(2999000000000@, "?")
+d4.clear()
+PRINT LEN(d4), d4.getOrDefault(7000000000@, "?")
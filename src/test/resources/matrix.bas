@@ -0,0 +1,30 @@
+10 DIM A#(2, 3) : DIM B#(3, 2) : DIM C#(1, 1)
+20 FOR I% = 0 TO 1 : FOR J% = 0 TO 2 : A#(I%, J%) = I% * 3 + J% + 1 : B#(J%, I%) = J% - I% : NEXT : NEXT
+30 MATMUL A#, B#, C# : PRINT C#(0, 0), C#(0, 1), C#(1, 0), C#(1, 1)
+40 MATTRANSPOSE A#, C# : PRINT C#(0, 0), C#(0, 1), C#(1, 0), C#(2, 1)
+50 MATTRANSPOSE A#, A# : PRINT A#(0, 0), A#(0, 1), A#(1, 0), A#(2, 1)
+60 MATTRANSPOSE B#, B# : MATMUL B#, A#, A# : PRINT A#(0, 0), A#(0, 1), A#(1, 1)
+70 DIM M%(200, 150) : DIM N%(150, 100) : DIM P%(1, 1) : DIM Q%(1, 1)
+80 FOR I% = 0 TO 199 : FOR J% = 0 TO 149 : M%(I%, J%) = (I% + 2 * J%) MOD 7 - 3 : NEXT : NEXT
+90 FOR I% = 0 TO 149 : FOR J% = 0 TO 99 : N%(I%, J%) = (3 * I% + J%) MOD 5 - 2 : NEXT : NEXT
+100 MATMUL M%, N%, P%
+110 S% = 0 : FOR K% = 0 TO 149 : S% = S% + M%(123, K%) * N%(K%, 77) : NEXT
+120 PRINT P%(123, 77), S%, P%(0, 0), P%(199, 99)
+130 MATTRANSPOSE P%, Q% : MATTRANSPOSE Q%, Q% : PRINT Q%(123, 77), Q%(199, 99)
+140 DIM K!(3, 3) : ARRAYFILL K!, 1 : K!(1, 1) = 2
+150 DIM G!(3, 4) : FOR I% = 0 TO 2 : FOR J% = 0 TO 3 : G!(I%, J%) = I% * 4 + J% : NEXT : NEXT
+160 ARRAY2DCONV G!, K!, G! : PRINT G!(0, 0), G!(1, 1), G!(2, 3)
+170 DIM R%(1, 4) : DIM KR%(1, 3) : FOR J% = 0 TO 3 : R%(0, J%) = J% + 1 : NEXT : KR%(0, 0) = 1 : KR%(0, 1) = 10 : KR%(0, 2) = 100
+180 ARRAY2DCONV R%, KR%, R% : PRINT R%(0, 0), R%(0, 1), R%(0, 2), R%(0, 3)
+190 DIM C%(3, 1) : DIM KC%(3, 1) : FOR I% = 0 TO 2 : C%(I%, 0) = I% + 1 : KC%(I%, 0) = 10 ^ I% : NEXT
+195 ARRAY2DCONV C%, KC%, C% : PRINT C%(0, 0), C%(1, 0), C%(2, 0)
+200 ' GAME OF LIFE: NS% = 2 * #NEIGHBOURS + ALIVE, ALIVE NEXT IFF 5 <= NS% <= 7
+210 DIM W%(3, 3) : ARRAYFILL W%, 2 : W%(1, 1) = 1
+220 DIM L%(8, 10) : DIM NS%(8, 10) : DIM NT%(8, 10) : DIM THREE%(8, 10) : ARRAYFILL THREE%, 3
+230 L%(0, 1) = 1 : L%(1, 2) = 1 : L%(2, 0) = 1 : L%(2, 1) = 1 : L%(2, 2) = 1
+240 FOR GEN% = 1 TO 4
+250     ARRAY2DCONV L%, W%, NS% : ARRAYCOPY NS%, NT%
+260     ARRAYCLAMP NS%, 4, 5 : ARRAYCLAMP NT%, 7, 8
+270     ARRAYSUB NS%, NT%, L% : ARRAYADD L%, THREE%, L%
+280 NEXT
+290 FOR I% = 0 TO 7 : R$ = "" : FOR J% = 0 TO 9 : R$ = R$ + STR$(L%(I%, J%)) : NEXT : PRINT R$ : NEXT
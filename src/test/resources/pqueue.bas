@@ -0,0 +1,79 @@
+PRINT "PQUEUE of STRING"
+
+PQUEUE<%, $> pq1
+pq1.push(5, "five")
+pq1.push(1, "one")
+pq1.push(3, "three")
+pq1.push(3, "three again")
+H% = pq1.push(9, "nine")
+PRINT LEN(pq1), pq1.peek(), pq1.peekPriority()
+
+pq1.decreaseKey(H%, 0)
+PRINT pq1.peek()
+WHILE LEN(pq1) > 0
+  PRINT pq1.pop(); " ";
+WEND
+PRINT ""
+
+PRINT "PQUEUE of DOUBLE priority"
+
+PQUEUE<#, %> pq2
+pq2.push(2.5, 25)
+pq2.push(0.5, 5)
+pq2.push(1.5, 15)
+pq2.push(-1.5, 0)
+PRINT pq2.peekPriority()
+WHILE LEN(pq2) > 0
+  PRINT pq2.pop();
+WEND
+PRINT ""
+
+pq2.push(1, 1)
+pq2.clear()
+PRINT LEN(pq2)
+
+PRINT "PQUEUE of STRUCT"
+
+STRUCT node { X%, Y% }
+PQUEUE<@, node> pq3
+node n1 {}
+n1.X% = 1 : n1.Y% = 2
+pq3.push(20, n1)
+node n2 {}
+n2.X% = 3 : n2.Y% = 4
+pq3.push(10, n2)
+node n3 {}
+n3 = pq3.pop()
+PRINT n3.X%, n3.Y%, LEN(pq3)
+
+PRINT "DIJKSTRA"
+
+' 6 nodes, edges as (from, to, weight)
+DIM EF%(9) : DIM ET%(9) : DIM EW%(9)
+FOR I% = 0 TO 8 : READ EF%(I%), ET%(I%), EW%(I%) : NEXT
+DATA 0, 1, 7, 0, 2, 9, 0, 5, 14, 1, 2, 10, 1, 3, 15, 2, 3, 11, 2, 5, 2, 3, 4, 6, 4, 5, 9
+DIM DIST%(6) : DIM HANDLE%(6) : DIM DONE%(6)
+FOR I% = 0 TO 5 : DIST%(I%) = 1000000 : HANDLE%(I%) = -1 : NEXT
+PQUEUE<%, %> frontier
+DIST%(0) = 0
+HANDLE%(0) = frontier.push(0, 0)
+WHILE LEN(frontier) > 0
+  U% = frontier.pop()
+  DONE%(U%) = -1
+  FOR I% = 0 TO 8
+    V% = -1
+    IF EF%(I%) = U% THEN V% = ET%(I%)
+    IF ET%(I%) = U% THEN V% = EF%(I%)
+    IF V% >= 0 THEN GOSUB "relax"
+  NEXT
+WEND
+FOR I% = 0 TO 5 : PRINT DIST%(I%); : NEXT : PRINT ""
+END
+
+LABEL "relax"
+IF DONE%(V%) THEN RETURN
+D% = DIST%(U%) + EW%(I%)
+IF D% >= DIST%(V%) THEN RETURN
+IF HANDLE%(V%) < 0 THEN HANDLE%(V%) = frontier.push(D%, V%) ELSE frontier.decreaseKey(HANDLE%(V%), D%)
+DIST%(V%) = D%
+RETURN
@@ -0,0 +1,19 @@
+10 AUTO T = SPLIT$("a::b::::c::", "::")
+20 PRINT LEN(T) : FOR I% = 0 TO LEN(T) - 1 : PRINT "[" + T(I%) + "]"; : NEXT : PRINT ""
+30 AUTO P = SPLIT$("x|y|z", "\|")
+40 PRINT LEN(P), P(0), P(2)
+50 AUTO W = SPLIT$("one  two   three", " +")
+60 PRINT LEN(W), W(1), W(2)
+70 AUTO E = SPLIT$(",,", ",") : PRINT LEN(E)
+80 AUTO N = SPLIT$("", ",") : PRINT LEN(N)
+90 PRINT REGEXMATCH("2024-01-15", "\d{4}-\d{2}-\d{2}"), REGEXMATCH("x2024-01-15", "\d{4}-\d{2}-\d{2}")
+100 AUTO G = REGEXFIND$("GET /index.html 200", "(\w+) (\S+) (\d+)")
+110 PRINT LEN(G) : FOR I% = 0 TO LEN(G) - 1 : PRINT G(I%) : NEXT
+120 AUTO M = REGEXFIND$("no digits", "\d+") : PRINT LEN(M)
+130 PRINT REGEXREPLACE$("2024-01-15", "(\d+)-(\d+)-(\d+)", "$3/$2/$1")
+140 PRINT REGEXREPLACE$("a.b.c", "\.", "")
+150 C% = 0
+160 FOR I% = 1 TO 1000
+170   IF REGEXMATCH("id" + STR$(I%), "id\s*\d*5") THEN C% = C% + 1
+180 NEXT
+190 PRINT C%
@@ -0,0 +1,148 @@
+FILE$ = ENVIRON$("TEST_TMP_DIR") + "/" + ENVIRON$("TEST_SAVEOBJ_FILENAME")
+
+PRINT "STRUCT"
+
+STRUCT point { X#, Y# }
+STRUCT shape { NAME$, N%, point origin, DIM W!(2, 3), LIST<%> tags, DICT<$, #> props }
+shape s1 {}
+s1.NAME$ = "tri"
+s1.N% = 3
+s1.origin.X# = 1.5
+s1.origin.Y# = -2.25
+s1.W!(1, 2) = 7.5
+s1.tags.append(10)
+s1.tags.append(20)
+s1.props.put("area", 12.5)
+SAVEOBJ FILE$, s1
+shape s2 {}
+LOADOBJ FILE$, s2
+PRINT s2.NAME$, s2.N%, s2.origin.X#, s2.origin.Y#, s2.W!(1, 2)
+PRINT LEN(s2.tags), s2.tags.get(0), s2.tags.get(1), s2.props.getOrDefault("area", 0)
+
+PRINT "ARRAY"
+
+DIM A@(3, 4)
+FOR I% = 0 TO 2 : FOR J% = 0 TO 3 : A@(I%, J%) = I% * 1000000000000@ + J% : NEXT : NEXT
+SAVEOBJ FILE$, A@
+DIM B@(1, 1)
+LOADOBJ FILE$, B@
+PRINT LEN(B@), B@(2, 3), B@(1, 0)
+
+PRINT "LIST OF STRUCT"
+
+LIST<point> pts1
+FOR I% = 1 TO 1000
+  point p {}
+  p.X# = I%
+  p.Y# = I% * 0.5
+  pts1.append(p)
+NEXT
+SAVEOBJ FILE$, pts1
+LIST<point> pts2
+LOADOBJ FILE$, pts2
+point q {}
+q = pts2.get(999)
+PRINT LEN(pts2), q.X#, q.Y#
+
+PRINT "SET AND DICT"
+
+SET<$> set1
+set1.add("a") : set1.add("b") : set1.add("c")
+SAVEOBJ FILE$, set1
+SET<$> set2
+set2.add("z")
+LOADOBJ FILE$, set2
+PRINT LEN(set2), set2.contains("b"), set2.contains("z")
+DICT<%, @> d1
+FOR I% = 0 TO 9999 : d1.put(I%, I% * 3@) : NEXT
+SAVEOBJ FILE$, d1
+DICT<%, @> d2
+LOADOBJ FILE$, d2
+PRINT LEN(d2), d2.getOrDefault(1234, -1), d2.getOrDefault(10000, -1)
+
+PRINT "BITSET"
+
+BITSET b1
+b1.set(3) : b1.set(64) : b1.set(1000)
+SAVEOBJ FILE$, b1
+BITSET b2
+b2.set(5)
+LOADOBJ FILE$, b2
+PRINT b2.cardinality(), b2.get(3), b2.get(5), b2.nextSetBit(65)
+
+PRINT "PQUEUE"
+
+PQUEUE<%, $> pq1
+H1% = pq1.push(30, "c")
+H2% = pq1.push(10, "a")
+H3% = pq1.push(20, "b")
+X$ = pq1.pop()
+SAVEOBJ FILE$, pq1
+PQUEUE<%, $> pq2
+LOADOBJ FILE$, pq2
+pq2.decreaseKey(H1%, 5)
+PRINT LEN(pq2), pq2.pop(), pq2.pop()
+H4% = pq2.push(1, "d")
+PRINT H4% <> H3%, pq2.pop()
+
+PRINT "DEQUE"
+
+DEQUE<#> dq1
+FOR I% = 1 TO 20 : dq1.pushBack(I% / 4) : NEXT
+FOR I% = 1 TO 5 : X# = dq1.popFront() : NEXT
+dq1.pushFront(-1)
+SAVEOBJ FILE$, dq1
+DEQUE<#> dq2
+LOADOBJ FILE$, dq2
+PRINT LEN(dq2), dq2.peekFront(), dq2.peekBack(), dq2.get(1)
+DEQUE<%> dq3
+FOR I% = 1 TO 20 : dq3.pushFront(I% * 100000) : NEXT
+SAVEOBJ FILE$, dq3
+DEQUE<%> dq4
+LOADOBJ FILE$, dq4
+PRINT LEN(dq4), dq4.popFront(), dq4.popBack()
+DEQUE<!> dq5
+FOR I% = 1 TO 20 : dq5.pushBack(I% / 8) : NEXT
+SAVEOBJ FILE$, dq5
+DEQUE<!> dq6
+LOADOBJ FILE$, dq6
+PRINT LEN(dq6), dq6.get(2), dq6.peekBack()
+
+PRINT "SORTEDDICT"
+
+SORTEDDICT<$, %> sd1
+sd1.put("pear", 3) : sd1.put("apple", 1) : sd1.put("fig", 2)
+SAVEOBJ FILE$, sd1
+SORTEDDICT<$, %> sd2
+LOADOBJ FILE$, sd2
+PRINT LEN(sd2), sd2.firstKey(), sd2.lastKey(), sd2.getOrDefault("fig", -1)
+
+PRINT "SPATIALGRID"
+
+SPATIALGRID g1
+g1.setCellSize(16)
+g1.insert(1, 0, 0, 10, 10)
+g1.insert(2, 5, 5, 15, 15)
+g1.insert(3, 100, 100, 110, 110)
+X% = g1.remove(2)
+SAVEOBJ FILE$, g1
+SPATIALGRID g2
+LOADOBJ FILE$, g2
+DIM IDS%(1)
+N% = g2.query(0, 0, 200, 200, IDS%)
+PRINT LEN(g2), N%, IDS%(0), IDS%(1)
+
+PRINT "COLUMNLIST"
+
+COLUMNLIST<point> cl1
+point r {}
+FOR I% = 0 TO 99
+  r.X# = I%
+  r.Y# = -I%
+  R% = cl1.append(r)
+NEXT
+SAVEOBJ FILE$, cl1
+COLUMNLIST<point> cl2
+LOADOBJ FILE$, cl2
+AUTO ys = cl2.columnY()
+PRINT LEN(cl2), cl2.X(42), ys(99)
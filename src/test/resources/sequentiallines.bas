@@ -0,0 +1,14 @@
+10 DIR$ = ENVIRON$("TEST_TMP_DIR") + "/"
+20 FILE$ = DIR$ + ENVIRON$("TEST_SEQ_FILENAME1") : GOSUB 1000
+30 FILE$ = DIR$ + ENVIRON$("TEST_SEQ_FILENAME2") : GOSUB 1000
+40 END
+1000 OPEN FILE$ FOR INPUT AS #1
+1010 N% = 0
+1020 WHILE NOT EOF(1)
+1030 LINE INPUT#1, L$
+1040 N% = N% + 1
+1050 IF N% > 1023 THEN PRINT N%, LEN(L$), LEFT$(L$, 4), RIGHT$(L$, 4)
+1060 WEND
+1070 CLOSE #1
+1080 PRINT "LINES", N%
+1090 RETURN
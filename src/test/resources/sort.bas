@@ -0,0 +1,40 @@
+10 DIM N$(6) : DIM S%(6) : DIM P%(1)
+20 FOR I% = 0 TO 5 : READ N$(I%), S%(I%) : NEXT
+30 DATA "dave", 70, "carol", 90, "alice", 70, "bob", 85, "erin", 90, "frank", 70
+35 NP% = 6
+40 ARGSORT P%, S% : GOSUB 1000
+50 ARGSORT P%, S% DESC : GOSUB 1000
+60 ARGSORT P%, S% DESC, N$ : GOSUB 1000
+70 ARGSORT P%, N$ DESC : GOSUB 1000
+80 DIM SN$(1) : DIM SS%(1) : ARGSORT P%, S%, N$ : PERMUTE N$, P%, SN$ : PERMUTE S%, P%, SS%
+90 FOR I% = 0 TO 5 : PRINT SN$(I%); SS%(I%); : NEXT : PRINT ""
+100 PERMUTE S%, P%, S% : PRINT S%(0), S%(5)
+110 DIM F!(5) : F!(0) = 1.5 : F!(1) = -0.0 : F!(2) = -2 : F!(3) = 0 : F!(4) = 1.5
+115 NP% = 5
+120 ARGSORT P%, F! : GOSUB 1000
+130 DIM D#(4) : D#(0) = 3 : D#(1) = 1 : D#(2) = 2 : D#(3) = 1
+135 NP% = 4
+140 ARGSORT P%, D# DESC : GOSUB 1000
+150 DIM A%(4) : DIM B%(3) : DIM C%(1)
+160 A%(0) = 1 : A%(1) = 3 : A%(2) = 3 : A%(3) = 8 : B%(0) = 2 : B%(1) = 3 : B%(2) = 9
+170 ARRAY1DMERGE A%, B%, C% : FOR I% = 0 TO 6 : PRINT C%(I%); : NEXT : PRINT ""
+180 DIM X$(2) : DIM Y$(2) : X$(0) = "b" : X$(1) = "d" : Y$(0) = "a" : Y$(1) = "c"
+190 ARRAY1DMERGE X$, Y$, X$ : FOR I% = 0 TO 3 : PRINT X$(I%); : NEXT : PRINT ""
+200 ' LARGE INPUTS
+210 DIM K%(20000) : DIM L@(20000) : DIM Q%(1) : DIM R%(1)
+220 FOR I% = 0 TO 19999 : K%(I%) = (I% * 7919) MOD 101 : L@(I%) = (I% * 104729) MOD 997 : NEXT
+230 ARGSORT Q%, K% : ARGSORT R%, K%, L@ DESC
+240 OK% = -1
+250 FOR I% = 1 TO 19999
+260   A1% = Q%(I% - 1) : A2% = Q%(I%)
+270   IF K%(A1%) > K%(A2%) OR (K%(A1%) = K%(A2%) AND A1% > A2%) THEN OK% = 0
+280   B1% = R%(I% - 1) : B2% = R%(I%)
+290   IF K%(B1%) > K%(B2%) OR (K%(B1%) = K%(B2%) AND L@(B1%) < L@(B2%)) THEN OK% = 0
+300   IF K%(B1%) = K%(B2%) AND L@(B1%) = L@(B2%) AND B1% > B2% THEN OK% = 0
+310 NEXT
+320 DIM SK%(1) : DIM M%(1) : PERMUTE K%, Q%, SK% : ARRAY1DMERGE SK%, SK%, M%
+330 FOR I% = 1 TO 39999 : IF M%(I% - 1) > M%(I%) THEN OK% = 0
+340 NEXT
+350 PRINT OK%, Q%(0), R%(0), M%(39999)
+999 END
+1000 FOR I% = 0 TO NP% - 1 : PRINT P%(I%); : NEXT : PRINT "" : RETURN
@@ -0,0 +1,63 @@
+PRINT "SORTEDDICT of INT32 to STRING"
+
+SORTEDDICT<%, $> sd1
+FOR I% = 10 TO 1 STEP -1
+  sd1.put(I% * 10, "v" + STR$(I% * 10))
+NEXT
+PRINT LEN(sd1), sd1.firstKey(), sd1.lastKey()
+PRINT sd1.getOrDefault(30, "none"), sd1.getOrDefault(35, "none")
+PRINT sd1.floorKey(35, -1), sd1.ceilingKey(35, -1), sd1.floorKey(5, -1), sd1.ceilingKey(101, -1)
+PRINT sd1.floorKey(40, -1), sd1.ceilingKey(40, -1)
+
+auto r1 = sd1.rangeKeys(25, 60)
+FOR I% = 0 TO LEN(r1) - 1 : PRINT r1(I%); : NEXT : PRINT ""
+auto r2 = sd1.rangeValues(25, 60)
+FOR I% = 0 TO LEN(r2) - 1 : PRINT r2(I%); : NEXT : PRINT ""
+auto r3 = sd1.firstKeys(3)
+FOR I% = 0 TO LEN(r3) - 1 : PRINT r3(I%); : NEXT : PRINT ""
+auto r4 = sd1.rangeKeys(60, 25)
+PRINT LEN(r4)
+
+PRINT sd1.removeRange(20, 50), LEN(sd1)
+auto k1 = sd1.keys()
+FOR I% = 0 TO LEN(k1) - 1 : PRINT k1(I%); : NEXT : PRINT ""
+PRINT sd1.removeKey(10), sd1.removeKey(10), sd1.containsKey(100)
+sd1.clear()
+PRINT LEN(sd1)
+
+PRINT "SORTEDDICT of STRING to DOUBLE"
+
+SORTEDDICT<$, #> sd2
+sd2.put("pear", 3.5)
+sd2.put("apple", 1.5)
+sd2.put("fig", 2.5)
+sd2.put("banana", 0.5)
+PRINT sd2.firstKey(), sd2.lastKey(), sd2.floorKey("c", "?"), sd2.ceilingKey("c", "?")
+auto k2 = sd2.rangeKeys("b", "g")
+FOR I% = 0 TO LEN(k2) - 1 : PRINT k2(I%); " "; : NEXT : PRINT ""
+auto v2 = sd2.values()
+FOR I% = 0 TO LEN(v2) - 1 : PRINT v2(I%); : NEXT : PRINT ""
+
+PRINT "SORTEDDICT of DOUBLE to INT64"
+
+SORTEDDICT<#, @> sd3
+sd3.put(2.5, 25)
+sd3.put(0.25, 2)
+sd3.put(1.75, 17)
+PRINT sd3.floorKey(2.0, 0), sd3.ceilingKey(2.0, 0), sd3.getOrDefault(1.75, 0)
+auto k3 = sd3.keys()
+FOR I% = 0 TO LEN(k3) - 1 : PRINT k3(I%); : NEXT : PRINT ""
+
+PRINT "SORTEDDICT of STRUCT"
+
+STRUCT event { NAME$, DUR% }
+SORTEDDICT<@, event> schedule
+event e1 {}
+e1.NAME$ = "boot" : e1.DUR% = 5
+schedule.put(100, e1)
+event e2 {}
+e2.NAME$ = "tick" : e2.DUR% = 1
+schedule.put(50, e2)
+event e3 {}
+e3 = schedule.getOrDefault(schedule.firstKey(), e1)
+PRINT e3.NAME$, e3.DUR%
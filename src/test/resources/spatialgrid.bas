@@ -0,0 +1,84 @@
+PRINT "SPATIALGRID"
+
+SPATIALGRID grid
+grid.insert(1, 0, 0, 10, 10)
+grid.insert(2, 5, 5, 15, 15)
+grid.insert(3, 100, 100, 110, 110)
+grid.insert(4, 60, 0, 70, 200)
+grid.insert(5, 10, 0, 20, 5)
+PRINT LEN(grid)
+
+DIM IDS%(1)
+N% = grid.query(0, 0, 12, 12, IDS%)
+PRINT N%, LEN(IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.query(50, 90, 120, 105, IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.query(200, 200, 300, 300, IDS%)
+PRINT N%
+
+PRINT "OVERLAPS"
+
+DIM A%(1) : DIM B%(1)
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT
+
+grid.move(3, 65, 150, 75, 160)
+grid.move(1, 1, 1, 11, 11)
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT
+
+PRINT grid.remove(4), grid.remove(4), LEN(grid)
+N% = grid.overlaps(A%, B%)
+PRINT N%
+
+grid.setCellSize(4)
+N% = grid.query(0, 0, 12, 12, IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT
+
+PRINT "SWARM"
+
+' 400 sprites of size 8x8 on a 20x20 lattice with spacing 10: no overlaps,
+' then shift every other column by 5 so each shifted sprite overlaps its neighbours
+grid.clear()
+grid.setCellSize(32)
+FOR I% = 0 TO 399
+  X% = (I% MOD 20) * 10 : Y% = (I% \ 20) * 10
+  grid.insert(I%, X%, Y%, X% + 8, Y% + 8)
+NEXT
+PRINT grid.overlaps(A%, B%)
+FOR I% = 0 TO 399
+  IF (I% MOD 20) MOD 2 = 1 THEN X% = (I% MOD 20) * 10 - 5 : Y% = (I% \ 20) * 10 : grid.move(I%, X%, Y%, X% + 8, Y% + 8)
+NEXT
+N% = grid.overlaps(A%, B%)
+PRINT N%, A%(0), B%(0), A%(N% - 1), B%(N% - 1)
+grid.clear()
+PRINT LEN(grid)
+
+PRINT "LARGE"
+
+' Boxes and queries far wider than the cells, and coordinates past the int cell range
+grid.setCellSize(1)
+G# = 10# ^ 9 : H# = 10# ^ 300
+grid.insert(1, 0, 0, G#, G#)
+grid.insert(2, 5, 5, 6, 6)
+grid.insert(3, -10, -10, -9, -9)
+grid.insert(4, H#, H#, 2 * H#, 2 * H#)
+grid.insert(5, 100, 100, G# / 10, 200)
+N% = grid.query(-1000 * G#, -1000 * G#, 1000 * G#, 1000 * G#, IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.query(H# / 10, H# / 10, 3 * H#, 3 * H#, IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT
+grid.move(1, 0, 0, 2, 2)
+grid.move(5, 1, 1, 5.5, 5.5)
+N% = grid.query(-1000 * G#, -1000 * G#, 1000 * G#, 1000 * G#, IDS%)
+FOR I% = 0 TO N% - 1 : PRINT IDS%(I%); : NEXT : PRINT ""
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT
+grid.setCellSize(64)
+N% = grid.overlaps(A%, B%)
+FOR I% = 0 TO N% - 1 : PRINT A%(I%); B%(I%) : NEXT